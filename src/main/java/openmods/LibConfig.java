@@ -19,7 +19,26 @@ public class LibConfig {
 	@ConfigProperty(category = "feature", name = "calculatorCommands", comment = "Enables command line calculator")
 	public static boolean enableCalculatorCommands = true;
 
+	@OnLineModifiable
+	@ConfigProperty(category = "feature", name = "batchSyncUpdates", comment = "Collect all sync updates sent to player during tick and send them as single packet at end of server tick")
+	public static boolean batchSyncUpdates = true;
+
+	@OnLineModifiable
+	@ConfigProperty(category = "feature", name = "batchRpcCalls", comment = "Collect RPC calls sent through batched senders (opt-in, per proxy) during tick and send them as single packet at end of tick. When disabled, batched senders send calls immediately")
+	public static boolean batchRpcCalls = true;
+
 	@ConfigProperty(category = "debug", name = "tessellatorPoolLimit", comment = "Maximum allowed size of tessellator pool")
 	public static int tessellatorPoolLimit = 20;
 
+	@ConfigProperty(category = "feature", name = "evalModelCacheSize", comment = "Maximum estimated memory (in KiB) of baked quads kept for animated (eval) models")
+	public static int evalModelCacheSize = 16 * 1024;
+
+	@OnLineModifiable
+	@ConfigProperty(category = "feature", name = "evalModelArgQuantization", comment = "If positive, args of animated (eval) models are rounded to multiples of this value before baking, so close values share single model. 0 disables rounding")
+	public static float evalModelArgQuantization = 0;
+
+	@OnLineModifiable
+	@ConfigProperty(category = "feature", name = "delayedActionTickBudget", comment = "Maximum time (in ms) spent on delayed world callbacks per world per tick. Remaining callbacks are executed in next ticks. 0 or less removes limit")
+	public static float delayedActionTickBudget = 10;
+
 }
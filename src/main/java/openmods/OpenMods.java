@@ -16,6 +16,7 @@ import net.minecraftforge.fml.common.event.FMLInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
+import net.minecraftforge.fml.common.event.FMLServerStoppedEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.registry.EntityRegistry;
 import openmods.config.ConfigChangeListener;
@@ -24,8 +25,10 @@ import openmods.config.properties.CommandConfig;
 import openmods.config.properties.ConfigProcessing;
 import openmods.entity.DelayedEntityLoadManager;
 import openmods.entity.EntityBlock;
+import openmods.fakeplayer.CommandFakePlayerStats;
 import openmods.fakeplayer.FakePlayerPool;
 import openmods.integration.Integration;
+import openmods.network.CommandPayloadStats;
 import openmods.network.rpc.MethodEntry;
 import openmods.network.rpc.RpcCallDispatcher;
 import openmods.network.rpc.TargetTypeProvider;
@@ -37,6 +40,8 @@ import openmods.reflection.TypeVariableHolderHandler;
 import openmods.source.ClassSourceCollector;
 import openmods.source.CommandSource;
 import openmods.sync.SyncChannelHolder;
+import openmods.sync.SyncSchemaRegistry;
+import openmods.sync.SyncUpdateScheduler;
 import openmods.sync.SyncableBlock;
 import openmods.sync.SyncableBlockState;
 import openmods.sync.SyncableBoolean;
@@ -59,6 +64,7 @@ import openmods.sync.SyncableTank;
 import openmods.sync.SyncableUUID;
 import openmods.sync.SyncableUnsignedByte;
 import openmods.sync.SyncableVarInt;
+import openmods.utils.ChunkWatcherIndex;
 import openmods.utils.bitmap.IRpcDirectionBitMap;
 import openmods.utils.bitmap.IRpcIntBitMap;
 import openmods.world.DelayedActionTickHandler;
@@ -162,6 +168,10 @@ public class OpenMods {
 
 		MinecraftForge.EVENT_BUS.register(DelayedActionTickHandler.INSTANCE);
 
+		MinecraftForge.EVENT_BUS.register(SyncUpdateScheduler.INSTANCE);
+
+		MinecraftForge.EVENT_BUS.register(ChunkWatcherIndex.INSTANCE);
+
 		MinecraftForge.EVENT_BUS.register(ConfigStorage.instance);
 
 		collector = new ClassSourceCollector(evt.getAsmData());
@@ -188,5 +198,13 @@ public class OpenMods {
 	public void severStart(FMLServerStartingEvent evt) {
 		evt.registerServerCommand(new CommandConfig("om_config_s", true));
 		evt.registerServerCommand(new CommandSource("om_source_s", true, collector));
+		evt.registerServerCommand(new CommandPayloadStats());
+		evt.registerServerCommand(new CommandFakePlayerStats());
+	}
+
+	@EventHandler
+	public void serverStopped(FMLServerStoppedEvent evt) {
+		SyncSchemaRegistry.resetServerSchemas();
+		DelayedActionTickHandler.INSTANCE.removeAll();
 	}
 }
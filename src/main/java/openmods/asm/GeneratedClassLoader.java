@@ -0,0 +1,58 @@
+package openmods.asm;
+
+import com.google.common.base.Preconditions;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loader for classes generated at runtime. Parent is loader of this class, so generated code can only reference classes visible from OpenModsLib.
+ */
+public class GeneratedClassLoader extends ClassLoader {
+
+	private final Map<String, Object[]> pendingConstants = new ConcurrentHashMap<>();
+
+	public GeneratedClassLoader() {
+		super(GeneratedClassLoader.class.getClassLoader());
+	}
+
+	public Class<?> define(String name, byte[] data) {
+		return defineClass(name, data, 0, data.length);
+	}
+
+	/**
+	 * Defines and initializes class. Constants are available to static initializer of class via {@link #takeConstants(Class)}, so they can be stored in static final fields (and treated as constants by JIT).
+	 */
+	public Class<?> define(String name, byte[] data, Object[] constants) {
+		pendingConstants.put(name, constants);
+		try {
+			final Class<?> cls = define(name, data);
+			Class.forName(name, true, this);
+			return cls;
+		} catch (ClassNotFoundException e) {
+			throw new AssertionError(e);
+		} finally {
+			pendingConstants.remove(name);
+		}
+	}
+
+	/**
+	 * Called from static initializers of generated classes
+	 */
+	public static Object[] takeConstants(Class<?> cls) {
+		final GeneratedClassLoader loader = (GeneratedClassLoader)cls.getClassLoader();
+		final Object[] constants = loader.pendingConstants.remove(cls.getName());
+		Preconditions.checkState(constants != null, "No constants for class %s", cls);
+		return constants;
+	}
+
+	/**
+	 * Checks if class resolved by name from this loader is same as given one - otherwise generated code would fail to link against it
+	 */
+	public boolean isVisible(Class<?> cls) {
+		try {
+			return Class.forName(cls.getName(), false, this) == cls;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+}
@@ -29,6 +29,11 @@ import openmods.fakeplayer.FakePlayerPool.PlayerUserReturning;
 import openmods.world.DropCapture;
 import openmods.world.DropCapture.CaptureContext;
 
+/**
+ * Breaks block as fake player, returning captured drops.
+ * Machines breaking blocks every tick should queue it with {@link FakePlayerPool#submit(net.minecraft.world.WorldServer, PlayerUserReturning, java.util.function.Consumer)}
+ * and handle drops in callback (or use {@link FakePlayerPool#executeBatch} for many blocks at once), instead of acquiring player for every block.
+ */
 public class BreakBlockAction implements PlayerUserReturning<List<EntityItem>> {
 	private final World worldObj;
 	private final BlockPos blockPos;
@@ -140,7 +145,7 @@ public class BreakBlockAction implements PlayerUserReturning<List<EntityItem>> {
 		fakePlayer.inventory.currentItem = 0;
 		selectTool(state, fakePlayer);
 
-		final CaptureContext dropsCapturer = DropCapture.instance.start(blockPos);
+		final CaptureContext dropsCapturer = DropCapture.instance.start(worldObj, blockPos);
 
 		final List<EntityItem> drops;
 		try {
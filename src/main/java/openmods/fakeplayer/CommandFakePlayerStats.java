@@ -0,0 +1,68 @@
+package openmods.fakeplayer;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TextComponentTranslation;
+import openmods.fakeplayer.FakePlayerPool.ActionStats;
+import openmods.utils.CommandUtils;
+
+public class CommandFakePlayerStats extends CommandBase {
+
+	private static final String CMD_STATS = "stats";
+
+	private static final String CMD_RESET = "reset";
+
+	private static final List<String> SUBCOMMANDS = ImmutableList.of(CMD_STATS, CMD_RESET);
+
+	@Override
+	public String getName() {
+		return "om_fakeplayer_stats";
+	}
+
+	@Override
+	public String getUsage(ICommandSender sender) {
+		return "om_fakeplayer_stats stats|reset";
+	}
+
+	@Override
+	public List<String> getTabCompletions(MinecraftServer server, ICommandSender sender, String[] args, BlockPos pos) {
+		if (args.length == 1) return CommandUtils.filterPrefixes(args[0], SUBCOMMANDS);
+		return Collections.emptyList();
+	}
+
+	@Override
+	public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+		final String cmd = args.length > 0? args[0] : CMD_STATS;
+		if (args.length > 1) throw new CommandException("commands.generic.syntax");
+
+		if (cmd.equals(CMD_STATS)) {
+			final List<Map.Entry<Class<?>, ActionStats>> entries = Lists.newArrayList(FakePlayerPool.instance.getActionStats().entrySet());
+			if (entries.isEmpty()) {
+				sender.sendMessage(new TextComponentTranslation("openmodslib.command.fakeplayer_no_stats"));
+				return;
+			}
+
+			// most expensive first
+			entries.sort((a, b) -> Long.compare(b.getValue().getTotalNanos(), a.getValue().getTotalNanos()));
+			for (Map.Entry<Class<?>, ActionStats> e : entries) {
+				final ActionStats stats = e.getValue();
+				sender.sendMessage(new TextComponentTranslation("openmodslib.command.fakeplayer_stats",
+						e.getKey().getName(), stats.getCount(), String.format("%.1f", stats.getAverageNanos() / 1000), String.format("%.1f", stats.getMaxNanos() / 1000.0)));
+			}
+		} else if (cmd.equals(CMD_RESET)) {
+			FakePlayerPool.instance.resetActionStats();
+			sender.sendMessage(new TextComponentTranslation("openmodslib.command.fakeplayer_reset"));
+		} else {
+			throw new CommandException("commands.generic.syntax");
+		}
+	}
+
+}
@@ -1,17 +1,38 @@
 package openmods.fakeplayer;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+import net.minecraftforge.fml.common.gameevent.TickEvent.WorldTickEvent;
+import net.minecraftforge.fml.relauncher.Side;
 import openmods.LibConfig;
 import openmods.Log;
 
+/**
+ * Pool of fake players, one per loaded server world.
+ * <ul>
+ * <li>{@link #executeOnPlayer} - runs action immediately, when caller needs result in same tick (i.e. {@link openmods.entity.EntityBlock} placement)</li>
+ * <li>{@link #executeBatch} - runs many immediate actions (i.e. breaking area of blocks with {@link BreakBlockAction}) on single player</li>
+ * <li>{@link #submit} - queues action for end of world tick, preferred for machines that don't need result immediately, since all actions queued in tick share one player.
+ * Queue is dropped when world unloads, so callback may never be called.</li>
+ * </ul>
+ * Execution times are recorded per action class, see {@link #getActionStats()} and {@code om_fakeplayer_stats} command.
+ */
 public class FakePlayerPool {
 
 	public interface PlayerUser {
@@ -22,39 +43,197 @@ public class FakePlayerPool {
 		public T usePlayer(OpenModsFakePlayer fakePlayer);
 	}
 
-	private static PlayerUserReturning<Void> wrap(final PlayerUser user) {
-		return fakePlayer -> {
+	private static class PlayerUserWrapper implements PlayerUserReturning<Void> {
+		private final PlayerUser user;
+
+		public PlayerUserWrapper(PlayerUser user) {
+			this.user = user;
+		}
+
+		@Override
+		public Void usePlayer(OpenModsFakePlayer fakePlayer) {
 			user.usePlayer(fakePlayer);
 			return null;
-		};
+		}
+
+		@Override
+		public String toString() {
+			return user.toString();
+		}
+	}
+
+	private static PlayerUserReturning<Void> wrap(final PlayerUser user) {
+		return new PlayerUserWrapper(user);
 	}
 
-	private static class WorldPool {
+	public static class ActionStats {
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		private void record(long nanos) {
+			count.incrementAndGet();
+			totalNanos.addAndGet(nanos);
+
+			long currentMax;
+			do {
+				currentMax = maxNanos.get();
+			} while (nanos > currentMax && !maxNanos.compareAndSet(currentMax, nanos));
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		public long getTotalNanos() {
+			return totalNanos.get();
+		}
+
+		public long getMaxNanos() {
+			return maxNanos.get();
+		}
+
+		public double getAverageNanos() {
+			final long count = getCount();
+			return count > 0? (double)getTotalNanos() / count : 0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("count: %d, avg: %.1f us, max: %.1f us", getCount(), getAverageNanos() / 1000, getMaxNanos() / 1000.0);
+		}
+	}
+
+	// package-private for tests, since real fake players require running server
+	interface PlayerFactory {
+		public OpenModsFakePlayer create(WorldServer world, int id);
+	}
+
+	private final PlayerFactory playerFactory;
+
+	// per action class
+	private final ConcurrentMap<Class<?>, ActionStats> actionStats = Maps.newConcurrentMap();
+
+	private ActionStats getStats(PlayerUserReturning<?> user) {
+		final Class<?> cls = (user instanceof PlayerUserWrapper)? ((PlayerUserWrapper)user).user.getClass() : user.getClass();
+		ActionStats stats = actionStats.get(cls);
+		if (stats == null) {
+			stats = new ActionStats();
+			final ActionStats prev = actionStats.putIfAbsent(cls, stats);
+			if (prev != null) stats = prev;
+		}
+		return stats;
+	}
+
+	private <T> T execute(PlayerUserReturning<T> user, OpenModsFakePlayer player) {
+		final long start = System.nanoTime();
+		try {
+			return user.usePlayer(player);
+		} finally {
+			getStats(user).record(System.nanoTime() - start);
+		}
+	}
+
+	private class PendingAction<T> {
+		private final PlayerUserReturning<T> user;
+
+		@Nullable
+		private final Consumer<? super T> callback;
+
+		public PendingAction(PlayerUserReturning<T> user, @Nullable Consumer<? super T> callback) {
+			this.user = user;
+			this.callback = callback;
+		}
+
+		public void execute(OpenModsFakePlayer player) {
+			final T result = FakePlayerPool.this.execute(user, player);
+			if (callback != null) callback.accept(result);
+		}
+	}
+
+	private class WorldPool {
 		private final Queue<OpenModsFakePlayer> pool = new ConcurrentLinkedQueue<>();
 		private final AtomicInteger playerCount = new AtomicInteger();
 
-		public <T> T executeOnPlayer(WorldServer world, PlayerUserReturning<T> user) {
+		private final Queue<PendingAction<?>> pendingActions = new ConcurrentLinkedQueue<>();
+
+		private OpenModsFakePlayer acquirePlayer(WorldServer world) {
 			OpenModsFakePlayer player = pool.poll();
 
 			if (player == null) {
 				int id = playerCount.incrementAndGet();
 				if (id > LibConfig.fakePlayerThreshold) Log.warn("Maximum number of fake players in use %d reached. Something may leak them!", id);
-				player = new OpenModsFakePlayer(world, id);
+				player = playerFactory.create(world, id);
 			}
 
 			player.isDead = false;
-			T result = user.usePlayer(player);
+			return player;
+		}
+
+		private void releasePlayer(OpenModsFakePlayer player) {
 			player.setDead();
 			pool.add(player);
-			return result;
+		}
+
+		public <T> T executeOnPlayer(WorldServer world, PlayerUserReturning<T> user) {
+			final OpenModsFakePlayer player = acquirePlayer(world);
+			try {
+				return execute(user, player);
+			} finally {
+				releasePlayer(player);
+			}
+		}
+
+		public <T> List<T> executeBatch(WorldServer world, List<? extends PlayerUserReturning<T>> users) {
+			final List<T> results = Lists.newArrayListWithCapacity(users.size());
+			if (users.isEmpty()) return results;
+
+			final OpenModsFakePlayer player = acquirePlayer(world);
+			try {
+				for (int i = 0; i < users.size(); i++) {
+					// actions must not see leftovers of previous ones (same as after setDead)
+					if (i > 0) player.inventory.clear();
+					results.add(execute(users.get(i), player));
+				}
+			} finally {
+				releasePlayer(player);
+			}
+
+			return results;
+		}
+
+		public void executePending(WorldServer world) {
+			if (pendingActions.isEmpty()) return;
+
+			// actions submitted during processing will wait for next tick
+			int remaining = pendingActions.size();
+			final OpenModsFakePlayer player = acquirePlayer(world);
+			try {
+				PendingAction<?> action;
+				boolean first = true;
+				while (remaining-- > 0 && (action = pendingActions.poll()) != null) {
+					if (!first) player.inventory.clear();
+					first = false;
+
+					try {
+						action.execute(player);
+					} catch (RuntimeException e) {
+						Log.warn(e, "Failed to execute fake player action %s on world %s", action.user, world);
+					}
+				}
+			} finally {
+				releasePlayer(player);
+			}
 		}
 	}
 
-	private FakePlayerPool() {}
+	FakePlayerPool(PlayerFactory playerFactory) {
+		this.playerFactory = playerFactory;
+	}
 
-	public static final FakePlayerPool instance = new FakePlayerPool();
+	public static final FakePlayerPool instance = new FakePlayerPool(OpenModsFakePlayer::new);
 
-	private static final Map<World, WorldPool> worldPools = new WeakHashMap<>();
+	private final Map<World, WorldPool> worldPools = new WeakHashMap<>();
 
 	@SubscribeEvent
 	public void onWorldLoad(WorldEvent.Load evt) {
@@ -63,7 +242,16 @@ public class FakePlayerPool {
 
 	@SubscribeEvent
 	public void onWorldUnload(WorldEvent.Unload evt) {
-		worldPools.remove(evt.getWorld());
+		final WorldPool pool = worldPools.remove(evt.getWorld());
+		if (pool != null && !pool.pendingActions.isEmpty()) Log.debug("Dropping %d fake player actions from unloaded world %s", pool.pendingActions.size(), evt.getWorld());
+	}
+
+	@SubscribeEvent
+	public void onWorldTick(WorldTickEvent evt) {
+		if (evt.side == Side.SERVER && evt.phase == Phase.END && evt.world instanceof WorldServer) {
+			final WorldPool pool = worldPools.get(evt.world);
+			if (pool != null) pool.executePending((WorldServer)evt.world);
+		}
 	}
 
 	public void executeOnPlayer(WorldServer world, PlayerUser user) {
@@ -76,4 +264,38 @@ public class FakePlayerPool {
 		else Log.warn("Trying to execute %s on world %s, but it's not loaded", user, world);
 		return null;
 	}
+
+	/**
+	 * Executes all actions in order, on single fake player. Inventory is cleared between actions.
+	 */
+	public <T> List<T> executeBatch(WorldServer world, List<? extends PlayerUserReturning<T>> users) {
+		WorldPool pool = worldPools.get(world);
+		if (pool != null) return pool.executeBatch(world, users);
+		else Log.warn("Trying to execute %d actions on world %s, but it's not loaded", users.size(), world);
+		return Lists.newArrayList();
+	}
+
+	/**
+	 * Queues action to be executed at end of world tick, together with all other actions submitted for this world
+	 */
+	public <T> void submit(WorldServer world, PlayerUserReturning<T> user, @Nullable Consumer<? super T> callback) {
+		WorldPool pool = worldPools.get(world);
+		if (pool != null) pool.pendingActions.add(new PendingAction<>(user, callback));
+		else Log.warn("Trying to submit %s on world %s, but it's not loaded", user, world);
+	}
+
+	public void submit(WorldServer world, PlayerUser user) {
+		submit(world, wrap(user), null);
+	}
+
+	/**
+	 * Execution times of actions, grouped by action class
+	 */
+	public Map<Class<?>, ActionStats> getActionStats() {
+		return ImmutableMap.copyOf(actionStats);
+	}
+
+	public void resetActionStats() {
+		actionStats.clear();
+	}
 }
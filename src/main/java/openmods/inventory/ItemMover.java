@@ -5,17 +5,26 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
-import net.minecraft.item.ItemStack;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import net.minecraftforge.items.IItemHandler;
+import openmods.api.INeighbourTeAwareTile;
 import openmods.utils.CollectionUtils;
-import openmods.utils.InventoryUtils;
+import openmods.utils.NeighbourHandlerCache;
 
 public class ItemMover {
 
-	private Set<EnumFacing> sides;
+	// kept as reference - may be live view (i.e. from SyncableSides)
+	private Set<EnumFacing> sides = Collections.emptySet();
+
+	// refilled from sides on every call, so transfers don't allocate
+	private final EnumFacing[] sideOrder = new EnumFacing[EnumFacing.VALUES.length];
+
+	private final NeighbourHandlerCache<IItemHandler> neighbourCache = NeighbourHandlerCache.createItemHandlerCache();
+
+	// reused between calls, so transfers don't allocate
+	private final List<IItemHandler> neighbours = Lists.newArrayListWithCapacity(EnumFacing.VALUES.length);
 
 	private boolean randomizeSides = false;
 
@@ -52,29 +61,37 @@ public class ItemMover {
 		return this;
 	}
 
+	/**
+	 * Drops cached neighbour handlers. Should be called by owner on neighbour change (i.e. {@link INeighbourTeAwareTile}) and when owner is invalidated.
+	 */
+	public void invalidateNeighbours() {
+		neighbourCache.invalidate();
+	}
+
 	private Collection<IItemHandler> findNeighbours() {
-		if (sides.isEmpty()) return Collections.emptyList();
+		neighbours.clear();
+
+		int sideCount = 0;
+		for (EnumFacing side : sides)
+			sideOrder[sideCount++] = side;
+
+		if (sideCount == 0) return neighbours;
 
 		if (breakAfterFirstTry) {
-			final EnumFacing selectedSide = randomizeSides? CollectionUtils.getRandom(sides) : CollectionUtils.getFirst(sides);
-			final IItemHandler neighbour = InventoryUtils.tryGetHandler(world, pos.offset(selectedSide), selectedSide.getOpposite());
-			return neighbour != null? Collections.singletonList(neighbour) : Collections.<IItemHandler> emptyList();
+			final EnumFacing selectedSide = randomizeSides? sideOrder[world.rand.nextInt(sideCount)] : sideOrder[0];
+			final IItemHandler neighbour = neighbourCache.get(world, pos, selectedSide);
+			if (neighbour != null) neighbours.add(neighbour);
+			return neighbours;
 		}
 
-		Collection<EnumFacing> sidesToCheck = sides;
-		if (randomizeSides) {
-			final List<EnumFacing> tmp = Lists.newArrayList(sides);
-			Collections.shuffle(tmp);
-			sidesToCheck = tmp;
-		}
+		if (randomizeSides) CollectionUtils.shuffle(sideOrder, sideCount, world.rand);
 
-		final List<IItemHandler> handlers = Lists.newArrayList();
-		for (EnumFacing side : sidesToCheck) {
-			final IItemHandler neighbour = InventoryUtils.tryGetHandler(world, pos.offset(side), side.getOpposite());
-			if (neighbour != null) handlers.add(neighbour);
+		for (int i = 0; i < sideCount; i++) {
+			final IItemHandler neighbour = neighbourCache.get(world, pos, sideOrder[i]);
+			if (neighbour != null) neighbours.add(neighbour);
 		}
 
-		return handlers;
+		return neighbours;
 	}
 
 	public int pullToSlot(IItemHandler target, int targetSlot) {
@@ -83,30 +100,7 @@ public class ItemMover {
 
 	// extracted for testing
 	static int pullToSlot(IItemHandler target, int targetSlot, int maxSize, Iterable<IItemHandler> sources) {
-		int transferedAmount = 0;
-		MAIN: for (IItemHandler source : sources) {
-			for (int sourceSlot = 0; sourceSlot < source.getSlots(); sourceSlot++) {
-				final ItemStack stackToPull = source.getStackInSlot(sourceSlot);
-				if (stackToPull.isEmpty()) continue;
-
-				final ItemStack leftover = target.insertItem(targetSlot, stackToPull, true);
-				if (leftover.getCount() < stackToPull.getCount()) {
-					final int leftoverAmount = leftover.getCount();
-					final int amountToExtract = Math.min(maxSize - transferedAmount, stackToPull.getCount() - leftoverAmount);
-					final ItemStack extractedItem = source.extractItem(sourceSlot, amountToExtract, false);
-					if (!extractedItem.isEmpty()) {
-						// don't care about results here, since target already declared space
-						target.insertItem(targetSlot, extractedItem, false);
-						transferedAmount += amountToExtract;
-					}
-				}
-
-				final ItemStack targetContents = target.getStackInSlot(targetSlot);
-				if (targetContents != null && targetContents.getCount() >= targetContents.getMaxStackSize()) break MAIN;
-			}
-		}
-
-		return transferedAmount;
+		return ItemTransfer.pullToSlot(target, targetSlot, maxSize, sources);
 	}
 
 	public int pushFromSlot(IItemHandler source, int sourceSlot) {
@@ -115,27 +109,7 @@ public class ItemMover {
 
 	// extracted for testing
 	static int pushFromSlot(IItemHandler source, int sourceSlot, int maxSize, Iterable<IItemHandler> targets) {
-		int transferedAmount = 0;
-		MAIN: for (IItemHandler target : targets) {
-			ItemStack stackToPush = source.getStackInSlot(sourceSlot);
-			for (int targetSlot = 0; targetSlot < target.getSlots(); targetSlot++) {
-				if (stackToPush.isEmpty()) break MAIN;
-
-				final ItemStack leftover = target.insertItem(targetSlot, stackToPush, true);
-				if (leftover.getCount() < stackToPush.getCount()) {
-					final int leftoverAmount = leftover.getCount();
-					final int amountToExtract = Math.min(maxSize - transferedAmount, stackToPush.getCount() - leftoverAmount);
-					final ItemStack extractedItem = source.extractItem(sourceSlot, amountToExtract, false);
-					if (!extractedItem.isEmpty()) {
-						target.insertItem(targetSlot, extractedItem, false);
-						transferedAmount += extractedItem.getCount();
-						stackToPush = source.getStackInSlot(sourceSlot);
-					}
-				}
-			}
-		}
-
-		return transferedAmount;
+		return ItemTransfer.pushFromSlot(source, sourceSlot, maxSize, targets);
 	}
 
 }
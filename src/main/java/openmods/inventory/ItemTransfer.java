@@ -0,0 +1,297 @@
+package openmods.inventory;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import javax.annotation.Nullable;
+import net.minecraft.inventory.IInventory;
+import net.minecraft.item.ItemStack;
+import net.minecraftforge.items.IItemHandler;
+import net.minecraftforge.items.ItemHandlerHelper;
+import net.minecraftforge.items.wrapper.InvWrapper;
+
+/**
+ * Bulk transfer engine behind {@link ItemMover}.
+ * Every handler is indexed once per transfer, then whole batch of moves is planned from index and executed.
+ * Handlers that are plain wrappers of {@link GenericInventory} are accessed directly, without simulated inserts and intermediate copies.
+ */
+class ItemTransfer {
+
+	/**
+	 * Snapshot of handler slots: empty slots and non-empty slots grouped by stackable items, all in slot order.
+	 */
+	static class SlotIndex {
+		final IItemHandler handler;
+
+		@Nullable
+		final GenericInventory inventory;
+
+		private final ItemStack[] stacks;
+
+		private final int[] emptySlots;
+
+		private int emptyCount;
+
+		// first slot of every group, in order of first appearance
+		private final int[] groupHeads;
+
+		private int groupCount;
+
+		// next slot with same item or -1
+		private final int[] nextInGroup;
+
+		SlotIndex(IItemHandler handler) {
+			this.handler = handler;
+			this.inventory = getDirectInventory(handler);
+
+			final int slots = handler.getSlots();
+			this.stacks = new ItemStack[slots];
+			this.emptySlots = new int[slots];
+			this.groupHeads = new int[slots];
+			this.nextInGroup = new int[slots];
+
+			final int[] groupTails = new int[slots];
+			for (int slot = 0; slot < slots; slot++) {
+				final ItemStack stack = handler.getStackInSlot(slot);
+				stacks[slot] = stack;
+				nextInGroup[slot] = -1;
+
+				if (stack.isEmpty()) {
+					emptySlots[emptyCount++] = slot;
+				} else {
+					final int group = findGroup(stack);
+					if (group < 0) {
+						groupHeads[groupCount] = slot;
+						groupTails[groupCount] = slot;
+						groupCount++;
+					} else {
+						nextInGroup[groupTails[group]] = slot;
+						groupTails[group] = slot;
+					}
+				}
+			}
+		}
+
+		int findGroup(ItemStack stack) {
+			for (int group = 0; group < groupCount; group++)
+				if (ItemHandlerHelper.canItemStacksStack(stacks[groupHeads[group]], stack)) return group;
+
+			return -1;
+		}
+
+		/**
+		 * @return first slot with items stackable with given stack or -1. Following slots can be iterated with {@link #nextSlot(int)}
+		 */
+		int firstSlot(ItemStack stack) {
+			final int group = findGroup(stack);
+			return group >= 0? groupHeads[group] : -1;
+		}
+
+		int nextSlot(int slot) {
+			return nextInGroup[slot];
+		}
+	}
+
+	private static class Move {
+		final SlotIndex index;
+
+		final int slot;
+
+		final int amount;
+
+		public Move(SlotIndex index, int slot, int amount) {
+			this.index = index;
+			this.slot = slot;
+			this.amount = amount;
+		}
+	}
+
+	/**
+	 * Only plain wrappers are accessed directly, since subclasses of {@link InvWrapper} may add own restrictions
+	 */
+	@Nullable
+	static GenericInventory getDirectInventory(IItemHandler handler) {
+		if (handler.getClass() != InvWrapper.class) return null;
+		final IInventory inventory = ((InvWrapper)handler).getInv();
+		return inventory instanceof GenericInventory? (GenericInventory)inventory : null;
+	}
+
+	private static int directCapacity(GenericInventory inventory, int slot, ItemStack stack) {
+		if (!inventory.isItemValidForSlot(slot, stack)) return 0;
+
+		final int limit = Math.min(inventory.getInventoryStackLimit(), stack.getMaxStackSize());
+		final ItemStack current = inventory.getStackInSlot(slot);
+		if (current.isEmpty()) return limit;
+		if (!ItemHandlerHelper.canItemStacksStack(current, stack)) return 0;
+		return Math.max(0, limit - current.getCount());
+	}
+
+	private static int insertCapacity(IItemHandler handler, @Nullable GenericInventory inventory, int slot, ItemStack stack, int maxAmount) {
+		if (inventory != null) return Math.min(maxAmount, directCapacity(inventory, slot, stack));
+
+		final ItemStack leftover = handler.insertItem(slot, ItemHandlerHelper.copyStackWithSize(stack, maxAmount), true);
+		return maxAmount - leftover.getCount();
+	}
+
+	private static ItemStack extract(IItemHandler handler, @Nullable GenericInventory inventory, int slot, int amount) {
+		return inventory != null? inventory.decrStackSize(slot, amount) : handler.extractItem(slot, amount, false);
+	}
+
+	/**
+	 * Takes ownership of stack
+	 *
+	 * @return leftover
+	 */
+	private static ItemStack insert(IItemHandler handler, @Nullable GenericInventory inventory, int slot, ItemStack stack) {
+		if (inventory == null) return handler.insertItem(slot, stack, false);
+
+		final int accepted = Math.min(stack.getCount(), directCapacity(inventory, slot, stack));
+		if (accepted <= 0) return stack;
+
+		final ItemStack current = inventory.getStackInSlot(slot);
+		if (current.isEmpty()) {
+			if (accepted == stack.getCount()) {
+				inventory.setInventorySlotContents(slot, stack);
+				return ItemStack.EMPTY;
+			}
+
+			inventory.setInventorySlotContents(slot, ItemHandlerHelper.copyStackWithSize(stack, accepted));
+		} else {
+			current.grow(accepted);
+			inventory.setInventorySlotContents(slot, current);
+		}
+
+		stack.shrink(accepted);
+		return stack;
+	}
+
+	/**
+	 * Handlers other than {@link GenericInventory} may refuse extraction (i.e. output-only or restricted slots), so they are probed with simulated extract
+	 */
+	private static int extractCapacity(SlotIndex index, int slot, int maxAmount) {
+		final int available = Math.min(maxAmount, index.stacks[slot].getCount());
+		if (index.inventory != null) return available;
+		return index.handler.extractItem(slot, available, true).getCount();
+	}
+
+	/**
+	 * Plans moves from slot and following slots of same group
+	 *
+	 * @return total planned amount
+	 */
+	private static int planExtracts(List<Move> moves, SlotIndex index, int firstSlot, int maxAmount) {
+		int planned = 0;
+		for (int slot = firstSlot; slot >= 0 && planned < maxAmount; slot = index.nextSlot(slot)) {
+			final int amount = extractCapacity(index, slot, maxAmount - planned);
+			if (amount > 0) {
+				moves.add(new Move(index, slot, amount));
+				planned += amount;
+			}
+		}
+
+		return planned;
+	}
+
+	static int pullToSlot(IItemHandler target, int targetSlot, int maxSize, Iterable<IItemHandler> sources) {
+		if (maxSize <= 0) return 0;
+
+		final GenericInventory targetInventory = getDirectInventory(target);
+
+		ItemStack filter = target.getStackInSlot(targetSlot);
+		int remaining = filter.isEmpty()? 0 : insertCapacity(target, targetInventory, targetSlot, filter, maxSize);
+		if (!filter.isEmpty() && remaining <= 0) return 0;
+
+		final List<Move> moves = Lists.newArrayList();
+		for (IItemHandler source : sources) {
+			final SlotIndex index = new SlotIndex(source);
+
+			if (filter.isEmpty()) {
+				// target slot is empty - first item accepted by it and available in source decides what will be pulled
+				for (int group = 0; group < index.groupCount; group++) {
+					final int head = index.groupHeads[group];
+					final ItemStack candidate = index.stacks[head];
+					final int capacity = insertCapacity(target, targetInventory, targetSlot, candidate, maxSize);
+					if (capacity <= 0) continue;
+
+					final int planned = planExtracts(moves, index, head, capacity);
+					if (planned > 0) {
+						filter = candidate.copy();
+						remaining = capacity - planned;
+						break;
+					}
+				}
+			} else {
+				remaining -= planExtracts(moves, index, index.firstSlot(filter), remaining);
+			}
+
+			if (!filter.isEmpty() && remaining <= 0) break;
+		}
+
+		int transferredAmount = 0;
+		for (Move move : moves) {
+			final ItemStack extracted = extract(move.index.handler, move.index.inventory, move.slot, move.amount);
+			if (extracted.isEmpty()) continue;
+
+			final int extractedAmount = extracted.getCount();
+			final ItemStack leftover = insert(target, targetInventory, targetSlot, extracted);
+			transferredAmount += extractedAmount - leftover.getCount();
+
+			if (!leftover.isEmpty()) {
+				// target lied about capacity, so give items back and stop
+				move.index.handler.insertItem(move.slot, leftover, false);
+				break;
+			}
+		}
+
+		return transferredAmount;
+	}
+
+	static int pushFromSlot(IItemHandler source, int sourceSlot, int maxSize, Iterable<IItemHandler> targets) {
+		final ItemStack stack = source.getStackInSlot(sourceSlot);
+		if (stack.isEmpty() || maxSize <= 0) return 0;
+
+		final GenericInventory sourceInventory = getDirectInventory(source);
+
+		int remaining = Math.min(maxSize, stack.getCount());
+		final List<Move> moves = Lists.newArrayList();
+		for (IItemHandler target : targets) {
+			final SlotIndex index = new SlotIndex(target);
+
+			// candidates (slots with same item and empty slots) are visited in slot order
+			int mergeSlot = index.firstSlot(stack);
+			int emptyPos = 0;
+			while (remaining > 0) {
+				final int slot;
+				if (mergeSlot >= 0 && (emptyPos >= index.emptyCount || mergeSlot < index.emptySlots[emptyPos])) {
+					slot = mergeSlot;
+					mergeSlot = index.nextSlot(mergeSlot);
+				} else if (emptyPos < index.emptyCount) {
+					slot = index.emptySlots[emptyPos++];
+				} else {
+					break;
+				}
+
+				final int amount = insertCapacity(target, index.inventory, slot, stack, remaining);
+				if (amount > 0) {
+					moves.add(new Move(index, slot, amount));
+					remaining -= amount;
+				}
+			}
+
+			if (remaining <= 0) break;
+		}
+
+		int transferredAmount = 0;
+		for (Move move : moves) {
+			final ItemStack extracted = extract(source, sourceInventory, sourceSlot, move.amount);
+			if (extracted.isEmpty()) break;
+
+			final int extractedAmount = extracted.getCount();
+			final ItemStack leftover = insert(move.index.handler, move.index.inventory, move.slot, extracted);
+			transferredAmount += extractedAmount - leftover.getCount();
+
+			if (!leftover.isEmpty()) source.insertItem(sourceSlot, leftover, false);
+		}
+
+		return transferredAmount;
+	}
+}
@@ -1,12 +1,7 @@
 package openmods.liquids;
 
-import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
-import java.util.Collections;
 import java.util.EnumSet;
-import java.util.List;
 import java.util.Set;
-import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
@@ -15,15 +10,19 @@ import net.minecraftforge.fluids.FluidStack;
 import net.minecraftforge.fluids.FluidTank;
 import net.minecraftforge.fluids.capability.IFluidHandler;
 import net.minecraftforge.fluids.capability.IFluidTankProperties;
-import openmods.utils.BlockUtils;
+import openmods.api.INeighbourTeAwareTile;
 import openmods.utils.CollectionUtils;
-import openmods.utils.CompatibilityUtils;
+import openmods.utils.NeighbourHandlerCache;
 
 public class GenericTank extends FluidTank {
 
-	private List<EnumFacing> surroundingTanks = Lists.newArrayList();
+	private Set<EnumFacing> surroundingTanks = EnumSet.noneOf(EnumFacing.class);
 	private final IFluidFilter filter;
 
+	private final NeighbourHandlerCache<IFluidHandler> neighbours = NeighbourHandlerCache.createFluidHandlerCache();
+
+	private final EnumFacing[] sideBuffer = new EnumFacing[EnumFacing.VALUES.length];
+
 	@FunctionalInterface
 	public interface IFluidFilter {
 		public boolean canAcceptFluid(FluidStack stack);
@@ -57,20 +56,26 @@ public class GenericTank extends FluidTank {
 		this.filter = filter(CollectionUtils.transform(FluidStack.class, acceptableFluids, input -> new FluidStack(input, 0)));
 	}
 
-	private static boolean isNeighbourTank(World world, BlockPos coord, EnumFacing dir) {
-		TileEntity tile = BlockUtils.getTileInDirectionSafe(world, coord, dir);
-		return CompatibilityUtils.isFluidHandler(tile, dir.getOpposite());
-	}
-
-	private static Set<EnumFacing> getSurroundingTanks(World world, BlockPos coord) {
+	private Set<EnumFacing> getSurroundingTanks(World world, BlockPos coord) {
 		final Set<EnumFacing> result = EnumSet.noneOf(EnumFacing.class);
 
 		for (EnumFacing dir : EnumFacing.VALUES)
-			if (isNeighbourTank(world, coord, dir)) result.add(dir);
+			if (neighbours.get(world, coord, dir) != null) result.add(dir);
 
 		return result;
 	}
 
+	// fills sideBuffer with sides to visit, returns number of selected sides
+	private int selectSides(World world, Set<EnumFacing> allowedSides) {
+		int count = 0;
+		for (EnumFacing side : EnumFacing.VALUES)
+			if (surroundingTanks.contains(side) && (allowedSides == null || allowedSides.contains(side)))
+				sideBuffer[count++] = side;
+
+		CollectionUtils.shuffle(sideBuffer, count, world.rand);
+		return count;
+	}
+
 	public int getSpace() {
 		return getCapacity() - getFluidAmount();
 	}
@@ -80,20 +85,28 @@ public class GenericTank extends FluidTank {
 		return fluid != null && filter.canAcceptFluid(fluid);
 	}
 
+	/**
+	 * Drops cached neighbour handlers, without rescanning for tanks. Should be called by owner on neighbour change (i.e. {@link INeighbourTeAwareTile}) and when owner is invalidated.
+	 */
+	public void invalidateNeighbours() {
+		neighbours.invalidate();
+	}
+
 	public void updateNeighbours(World world, BlockPos coord, Set<EnumFacing> sides) {
-		this.surroundingTanks = Lists.newArrayList(Sets.difference(getSurroundingTanks(world, coord), sides));
+		neighbours.invalidate();
+		final Set<EnumFacing> tanks = getSurroundingTanks(world, coord);
+		tanks.removeAll(sides);
+		this.surroundingTanks = tanks;
 	}
 
 	public void updateNeighbours(World world, BlockPos coord) {
-		this.surroundingTanks = Lists.newArrayList(getSurroundingTanks(world, coord));
+		neighbours.invalidate();
+		this.surroundingTanks = getSurroundingTanks(world, coord);
 	}
 
-	private static int tryFillNeighbour(FluidStack drainedFluid, EnumFacing side, TileEntity otherTank) {
+	private static int tryFillNeighbour(FluidStack drainedFluid, IFluidHandler fluidHandler) {
 		final FluidStack toFill = drainedFluid.copy();
-		final EnumFacing fillSide = side.getOpposite();
-
-		final IFluidHandler fluidHandler = CompatibilityUtils.getFluidHandler(otherTank, fillSide);
-		return fluidHandler != null? fluidHandler.fill(toFill, true) : 0;
+		return fluidHandler.fill(toFill, true);
 	}
 
 	public void distributeToSides(int amount, World world, BlockPos coord, Set<EnumFacing> allowedSides) {
@@ -103,24 +116,19 @@ public class GenericTank extends FluidTank {
 
 		if (surroundingTanks.isEmpty()) return;
 
-		final List<EnumFacing> sides = Lists.newArrayList(surroundingTanks);
-
-		if (allowedSides != null) {
-			sides.retainAll(allowedSides);
-			if (sides.isEmpty()) return;
-		}
+		final int sideCount = selectSides(world, allowedSides);
+		if (sideCount == 0) return;
 
 		FluidStack drainedFluid = drain(amount, false);
 
 		if (drainedFluid != null && drainedFluid.amount > 0) {
 			int startingAmount = drainedFluid.amount;
-			Collections.shuffle(sides);
 
-			for (EnumFacing side : surroundingTanks) {
+			for (int i = 0; i < sideCount; i++) {
 				if (drainedFluid.amount <= 0) break;
 
-				TileEntity otherTank = BlockUtils.getTileInDirection(world, coord, side);
-				if (otherTank != null) drainedFluid.amount -= tryFillNeighbour(drainedFluid, side, otherTank);
+				final IFluidHandler otherTank = neighbours.get(world, coord, sideBuffer[i]);
+				if (otherTank != null) drainedFluid.amount -= tryFillNeighbour(drainedFluid, otherTank);
 			}
 
 			// return any remainder
@@ -141,17 +149,10 @@ public class GenericTank extends FluidTank {
 
 		if (surroundingTanks.isEmpty()) return;
 
-		final List<EnumFacing> sides = Lists.newArrayList(surroundingTanks);
-
-		if (allowedSides != null) {
-			sides.retainAll(allowedSides);
-			if (sides.isEmpty()) return;
-		}
-
-		Collections.shuffle(sides);
-		for (EnumFacing side : sides) {
+		final int sideCount = selectSides(world, allowedSides);
+		for (int i = 0; i < sideCount; i++) {
 			if (toDrain <= 0) break;
-			toDrain -= fillInternal(world, coord, side, toDrain);
+			toDrain -= fillInternal(world, coord, sideBuffer[i], toDrain);
 		}
 	}
 
@@ -171,10 +172,7 @@ public class GenericTank extends FluidTank {
 
 	private int fillInternal(World world, BlockPos coord, EnumFacing side, int maxDrain) {
 		int drain = 0;
-		final TileEntity otherTank = BlockUtils.getTileInDirection(world, coord, side);
-
-		final EnumFacing drainSide = side.getOpposite();
-		IFluidHandler handler = CompatibilityUtils.getFluidHandler(otherTank, drainSide);
+		final IFluidHandler handler = neighbours.get(world, coord, side);
 
 		if (handler != null) {
 			final IFluidTankProperties[] infos = handler.getTankProperties();
@@ -3,6 +3,7 @@ package openmods.model.eval;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -22,7 +23,9 @@ import net.minecraftforge.common.model.IModelPart;
 import net.minecraftforge.common.model.IModelState;
 import net.minecraftforge.common.model.animation.IJoint;
 import net.minecraftforge.common.property.IExtendedBlockState;
+import openmods.Log;
 import openmods.model.BakedModelAdapter;
+import org.apache.logging.log4j.Level;
 
 public class BakedEvalModel extends BakedModelAdapter {
 
@@ -46,30 +49,79 @@ public class BakedEvalModel extends BakedModelAdapter {
 		return model.bake(compositeState, format, bakedTextureGetter);
 	}
 
-	private final CacheLoader<Map<String, Float>, IBakedModel> loader = new CacheLoader<Map<String, Float>, IBakedModel>() {
+	private static class RecomposedModel extends BakedModelAdapter {
+		private final JointQuadGroups groups;
+
+		private final List<BakedQuad> generalQuads;
+
+		public RecomposedModel(JointQuadGroups groups, List<BakedQuad> generalQuads) {
+			super(groups.getBase(), ImmutableMap.of());
+			this.groups = groups;
+			this.generalQuads = generalQuads;
+		}
+
 		@Override
-		public IBakedModel load(final Map<String, Float> key) throws Exception {
-			final IModelState clipTransform = part -> {
-				if (!part.isPresent()) return Optional.empty();
+		public List<BakedQuad> getQuads(IBlockState state, EnumFacing side, long rand) {
+			return side == null? generalQuads : groups.getQuads(side);
+		}
+	}
+
+	// null - not analysed yet
+	private volatile Optional<JointQuadGroups> jointQuadGroups;
 
-				final IModelPart maybeJoint = part.get();
-				if (!(maybeJoint instanceof IJoint)) return Optional.empty();
+	private Optional<JointQuadGroups> getJointQuadGroups() {
+		Optional<JointQuadGroups> result = jointQuadGroups;
+		if (result == null) {
+			synchronized (this) {
+				result = jointQuadGroups;
+				if (result == null) {
+					try {
+						result = Optional.ofNullable(JointQuadGroups.create(this::bakeModelWithTransform, originalState));
+					} catch (RuntimeException e) {
+						Log.warn(e, "Failed to group quads of eval model %s, falling back to full bake", model);
+						result = Optional.empty();
+					}
+					jointQuadGroups = result;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	IBakedModel bakeVariant(Map<String, Float> args) {
+		final ITransformEvaluator.IJointEvaluator jointEvaluator = evaluator.bind(args);
 
-				final IJoint joint = (IJoint)part.get();
-				return Optional.of(evaluator.evaluate(joint, key));
-			};
-			return bakeModelWithTransform(clipTransform);
+		final Optional<JointQuadGroups> groups = getJointQuadGroups();
+		if (groups.isPresent()) {
+			try {
+				return new RecomposedModel(groups.get(), groups.get().recompose(jointEvaluator));
+			} catch (RuntimeException e) {
+				Log.log(Level.DEBUG, e, "Failed to recompose eval model %s for args %s, falling back to full bake", model, args);
+			}
 		}
-	};
 
-	private final LoadingCache<Map<String, Float>, IBakedModel> longTermCache = CacheBuilder.newBuilder()
-			.expireAfterAccess(5, TimeUnit.MINUTES)
-			.build(loader);
+		final IModelState clipTransform = part -> {
+			if (!part.isPresent()) return Optional.empty();
+
+			final IModelPart maybeJoint = part.get();
+			if (!(maybeJoint instanceof IJoint)) return Optional.empty();
+
+			final IJoint joint = (IJoint)part.get();
+			return Optional.of(jointEvaluator.evaluate(joint));
+		};
+		return bakeModelWithTransform(clipTransform);
+	}
 
 	private final LoadingCache<Map<String, Float>, IBakedModel> shortTermCache = CacheBuilder.newBuilder()
 			.expireAfterAccess(100, TimeUnit.MILLISECONDS)
 			.maximumSize(200)
-			.build(loader);
+			.build(new CacheLoader<Map<String, Float>, IBakedModel>() {
+				@Override
+				public IBakedModel load(Map<String, Float> key) {
+					return bakeVariant(key);
+				}
+			});
 
 	@Override
 	public List<BakedQuad> getQuads(IBlockState state, EnumFacing side, long rand) {
@@ -78,7 +130,11 @@ public class BakedEvalModel extends BakedModelAdapter {
 			final IExtendedBlockState extState = (IExtendedBlockState)state;
 
 			final EvalModelState args = extState.getValue(EvalModelState.PROPERTY);
-			if (args != null) { return (args.isShortLived()? shortTermCache : longTermCache).getUnchecked(args.getArgs()).getQuads(state, side, rand); }
+			if (args != null) {
+				final Map<String, Float> key = EvalModelCache.quantize(args.getArgs());
+				final IBakedModel variant = args.isShortLived()? shortTermCache.getUnchecked(key) : EvalModelCache.get(this, args, key);
+				return variant.getQuads(state, side, rand);
+			}
 		}
 
 		return super.getQuads(state, side, rand);
@@ -0,0 +1,62 @@
+package openmods.model.eval;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import java.util.Collections;
+import java.util.List;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TextComponentTranslation;
+import openmods.utils.CommandUtils;
+
+public class CommandEvalModelCache extends CommandBase {
+
+	private static final String CMD_STATS = "stats";
+
+	private static final String CMD_CLEAR = "clear";
+
+	private static final List<String> SUBCOMMANDS = ImmutableList.of(CMD_STATS, CMD_CLEAR);
+
+	@Override
+	public String getName() {
+		return "om_eval_cache";
+	}
+
+	@Override
+	public String getUsage(ICommandSender sender) {
+		return "om_eval_cache stats|clear";
+	}
+
+	@Override
+	public boolean checkPermission(MinecraftServer server, ICommandSender sender) {
+		return true;
+	}
+
+	@Override
+	public List<String> getTabCompletions(MinecraftServer server, ICommandSender sender, String[] args, BlockPos pos) {
+		if (args.length == 1) return CommandUtils.filterPrefixes(args[0], SUBCOMMANDS);
+		return Collections.emptyList();
+	}
+
+	@Override
+	public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+		final String cmd = args.length > 0? args[0] : CMD_STATS;
+		if (args.length > 1) throw new CommandException("commands.generic.syntax");
+
+		if (cmd.equals(CMD_STATS)) {
+			final CacheStats stats = EvalModelCache.stats();
+			sender.sendMessage(new TextComponentTranslation("openmodslib.command.eval_cache_size", EvalModelCache.size(), EvalModelCache.estimatedWeight() / 1024));
+			sender.sendMessage(new TextComponentTranslation("openmodslib.command.eval_cache_stats",
+					stats.hitCount(), stats.missCount(), String.format("%.1f%%", stats.hitRate() * 100), stats.evictionCount()));
+		} else if (cmd.equals(CMD_CLEAR)) {
+			EvalModelCache.clear();
+			sender.sendMessage(new TextComponentTranslation("openmodslib.command.eval_cache_cleared"));
+		} else {
+			throw new CommandException("commands.generic.syntax");
+		}
+	}
+
+}
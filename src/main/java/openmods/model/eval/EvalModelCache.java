@@ -0,0 +1,136 @@
+package openmods.model.eval;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.client.renderer.block.model.BakedQuad;
+import net.minecraft.client.renderer.block.model.IBakedModel;
+import net.minecraft.util.EnumFacing;
+import net.minecraftforge.client.event.ModelBakeEvent;
+import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.relauncher.Side;
+import openmods.LibConfig;
+
+/**
+ * Cache of long-lived eval model variants, shared by all {@link BakedEvalModel}s.
+ * Size is bounded by estimated memory of baked quads (see {@link LibConfig#evalModelCacheSize}), so models with continuously changing args can't grow it indefinitely.
+ * Entries reference their source models, so whole cache is dropped when models are rebaked (i.e. on resource reload).
+ */
+@EventBusSubscriber(Side.CLIENT)
+public class EvalModelCache {
+
+	// rough estimates of object headers, arrays and references
+	private static final int ENTRY_OVERHEAD = 256;
+
+	private static final int QUAD_OVERHEAD = 64;
+
+	private static class Key {
+		private final BakedEvalModel model;
+
+		private final Map<String, Float> args;
+
+		private final int hashCode;
+
+		public Key(BakedEvalModel model, Map<String, Float> args, int argsHashCode) {
+			this.model = model;
+			this.args = args;
+			this.hashCode = 31 * System.identityHashCode(model) + argsHashCode;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) return true;
+			if (!(obj instanceof Key)) return false;
+			final Key other = (Key)obj;
+			return other.model == this.model && other.hashCode == this.hashCode && other.args.equals(this.args);
+		}
+	}
+
+	private static final LoadingCache<Key, IBakedModel> cache = CacheBuilder.newBuilder()
+			.expireAfterAccess(5, TimeUnit.MINUTES)
+			.maximumWeight(Math.max(1, LibConfig.evalModelCacheSize) * 1024L)
+			.weigher((Key key, IBakedModel value) -> estimateSize(value))
+			.recordStats()
+			.build(new CacheLoader<Key, IBakedModel>() {
+				@Override
+				public IBakedModel load(Key key) {
+					return key.model.bakeVariant(key.args);
+				}
+			});
+
+	private static int estimateQuadsSize(List<BakedQuad> quads) {
+		int result = 0;
+		for (BakedQuad quad : quads)
+			result += QUAD_OVERHEAD + 4 * quad.getVertexData().length;
+		return result;
+	}
+
+	static int estimateSize(IBakedModel model) {
+		long result = ENTRY_OVERHEAD + estimateQuadsSize(model.getQuads(null, null, 0));
+		for (EnumFacing side : EnumFacing.VALUES)
+			result += estimateQuadsSize(model.getQuads(null, side, 0));
+
+		return (int)Math.min(result, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Rounds all args to nearest multiple of {@link LibConfig#evalModelArgQuantization} (if enabled), so close values share single baked variant
+	 */
+	static Map<String, Float> quantize(Map<String, Float> args) {
+		final float step = LibConfig.evalModelArgQuantization;
+		if (step <= 0 || args.isEmpty()) return args;
+
+		final ImmutableMap.Builder<String, Float> result = ImmutableMap.builder();
+		for (Map.Entry<String, Float> e : args.entrySet())
+			result.put(e.getKey(), (float)(Math.round(e.getValue() / (double)step) * step));
+
+		return result.build();
+	}
+
+	/**
+	 * @param args args of state, possibly {@link #quantize(Map) quantized}
+	 */
+	static IBakedModel get(BakedEvalModel model, EvalModelState state, Map<String, Float> args) {
+		// interned states share args, so unless they were quantized, hash is already known and equality check is cheap
+		final int argsHashCode = args == state.getArgs()? state.getArgsHashCode() : args.hashCode();
+		return cache.getUnchecked(new Key(model, args, argsHashCode));
+	}
+
+	public static CacheStats stats() {
+		return cache.stats();
+	}
+
+	public static long size() {
+		return cache.size();
+	}
+
+	/**
+	 * Sums estimated size of all entries - not intended for hot paths
+	 */
+	public static long estimatedWeight() {
+		long result = 0;
+		for (IBakedModel model : cache.asMap().values())
+			result += estimateSize(model);
+		return result;
+	}
+
+	public static void clear() {
+		cache.invalidateAll();
+	}
+
+	@SubscribeEvent
+	public static void onModelBake(ModelBakeEvent evt) {
+		clear();
+	}
+}
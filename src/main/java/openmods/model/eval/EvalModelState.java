@@ -1,6 +1,8 @@
 package openmods.model.eval;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Maps;
 import java.util.Map;
 import net.minecraftforge.common.property.IUnlistedProperty;
@@ -30,19 +32,50 @@ public class EvalModelState {
 		}
 	};
 
-	public static final EvalModelState EMPTY = new EvalModelState();
+	private static final Interner<EvalModelState> INTERNER = Interners.newWeakInterner();
+
+	public static final EvalModelState EMPTY = INTERNER.intern(new EvalModelState(ImmutableMap.<String, Float> of(), false));
 
 	private final Map<String, Float> args;
 
 	private final boolean shortLived;
 
-	private EvalModelState(Map<String, Float> args, boolean quickCache) {
+	private final int argsHashCode;
+
+	private final int hashCode;
+
+	private static class Transition {
+		final String name;
+
+		final float value;
+
+		final boolean shortLived;
+
+		final EvalModelState result;
+
+		public Transition(String name, float value, boolean shortLived, EvalModelState result) {
+			this.name = name;
+			this.value = value;
+			this.shortLived = shortLived;
+			this.result = result;
+		}
+	}
+
+	// args are usually continuous, so only most recent transition is remembered
+	private volatile Transition lastTransition;
+
+	private EvalModelState(Map<String, Float> args, boolean shortLived) {
 		this.args = ImmutableMap.copyOf(args);
-		this.shortLived = quickCache;
+		this.shortLived = shortLived;
+		this.argsHashCode = this.args.hashCode();
+		this.hashCode = 31 * argsHashCode + (shortLived? 1 : 0);
 	}
 
-	private EvalModelState() {
-		this(ImmutableMap.<String, Float> of(), false);
+	/**
+	 * All instances are canonical, so they can be compared by identity
+	 */
+	private static EvalModelState intern(Map<String, Float> args, boolean shortLived) {
+		return INTERNER.intern(new EvalModelState(args, shortLived));
 	}
 
 	public static EvalModelState create() {
@@ -54,30 +87,57 @@ public class EvalModelState {
 	}
 
 	public static EvalModelState create(Map<String, Float> args, boolean shortLived) {
-		return new EvalModelState(args, false);
+		return intern(args, shortLived);
 	}
 
-	public EvalModelState withArg(String name, float value) {
-		Map<String, Float> copy = Maps.newHashMap(args);
+	private EvalModelState transition(String name, float value, boolean shortLived) {
+		final Float currentValue = args.get(name);
+		if (shortLived == this.shortLived && currentValue != null && currentValue == value) return this;
+
+		final Transition last = lastTransition;
+		if (last != null && last.value == value && last.shortLived == shortLived && last.name.equals(name)) return last.result;
+
+		final Map<String, Float> copy = Maps.newHashMap(args);
 		copy.put(name, value);
-		return new EvalModelState(copy, this.shortLived);
+		final EvalModelState result = intern(copy, shortLived);
+		lastTransition = new Transition(name, value, shortLived, result);
+		return result;
+	}
+
+	public EvalModelState withArg(String name, float value) {
+		return transition(name, value, this.shortLived);
 	}
 
 	public EvalModelState withArg(String name, float value, boolean isRapidChanging) {
-		Map<String, Float> copy = Maps.newHashMap(args);
-		copy.put(name, value);
-		return new EvalModelState(copy, this.shortLived || isRapidChanging);
+		return transition(name, value, this.shortLived || isRapidChanging);
 	}
 
 	public EvalModelState markShortLived() {
-		return new EvalModelState(args, true);
+		return shortLived? this : intern(args, true);
 	}
 
 	Map<String, Float> getArgs() {
 		return args;
 	}
 
+	int getArgsHashCode() {
+		return argsHashCode;
+	}
+
 	boolean isShortLived() {
 		return shortLived;
 	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (!(obj instanceof EvalModelState)) return false;
+		final EvalModelState other = (EvalModelState)obj;
+		return other.hashCode == this.hashCode && other.shortLived == this.shortLived && other.args.equals(this.args);
+	}
 }
@@ -6,7 +6,9 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.PeekingIterator;
+import com.google.common.collect.Sets;
 import com.google.common.math.DoubleMath;
+import com.google.common.primitives.Ints;
 import info.openmods.calc.executable.OperatorDictionary;
 import info.openmods.calc.parsing.ast.IAstParser;
 import info.openmods.calc.parsing.ast.IModifierStateTransition;
@@ -26,6 +28,7 @@ import info.openmods.calc.types.fp.DoubleParser;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import net.minecraft.util.math.MathHelper;
 import net.minecraftforge.common.model.TRSRTransformation;
 import net.minecraftforge.common.model.animation.IClip;
@@ -84,26 +87,54 @@ public class EvaluatorFactory {
 	}
 
 	private abstract static class NumericExpr extends Expr<Float> {
-		public abstract float evaluate(Map<String, Float> args);
+		public abstract float evaluate(float[] args);
 	}
 
 	private abstract static class BooleanExpr extends Expr<Boolean> {
-		public abstract boolean evaluate(Map<String, Float> args);
+		public abstract boolean evaluate(float[] args);
+	}
+
+	// variables are resolved to indices in frame array when expressions are compiled
+	private static class VarSlots {
+		private final Map<String, Integer> slots = Maps.newHashMap();
+
+		private final List<String> names = Lists.newArrayList();
+
+		public int getSlot(String name) {
+			Integer slot = slots.get(name);
+			if (slot == null) {
+				slot = names.size();
+				names.add(name);
+				slots.put(name, slot);
+			}
+			return slot;
+		}
+
+		public String[] getNames() {
+			return names.toArray(new String[names.size()]);
+		}
 	}
 
 	private static class Scope {
 		private final Map<String, ExprFactory> vals;
 
-		public Scope(Map<String, ExprFactory> vals) {
+		private final VarSlots slots;
+
+		public Scope(Map<String, ExprFactory> vals, VarSlots slots) {
 			this.vals = ImmutableMap.copyOf(vals);
+			this.slots = slots;
 		}
 
 		public ExprFactory get(String name) {
 			return vals.get(name);
 		}
 
+		public int getSlot(String name) {
+			return slots.getSlot(name);
+		}
+
 		public Scope expand(Map<String, ExprFactory> patch) {
-			return new Scope(patch) {
+			return new Scope(patch, slots) {
 				@Override
 				public ExprFactory get(String name) {
 					final ExprFactory result = super.get(name);
@@ -262,7 +293,7 @@ public class EvaluatorFactory {
 		protected NumericExpr createEvaluatingNode(final NumericExpr arg) {
 			return new NumericExpr() {
 				@Override
-				public float evaluate(Map<String, Float> args) {
+				public float evaluate(float[] args) {
 					final float value = arg.evaluate(args);
 					return apply(value);
 				}
@@ -307,7 +338,7 @@ public class EvaluatorFactory {
 		protected BooleanExpr createEvaluatingNode(final BooleanExpr arg) {
 			return new BooleanExpr() {
 				@Override
-				public boolean evaluate(Map<String, Float> args) {
+				public boolean evaluate(float[] args) {
 					final boolean value = arg.evaluate(args);
 					return apply(value);
 				}
@@ -400,7 +431,7 @@ public class EvaluatorFactory {
 			final float unpackedConst = rightConst.floatValue();
 			return new NumericExpr() {
 				@Override
-				public float evaluate(Map<String, Float> args) {
+				public float evaluate(float[] args) {
 					final float leftValue = leftArg.evaluate(args);
 					return apply(leftValue, unpackedConst);
 				}
@@ -412,7 +443,7 @@ public class EvaluatorFactory {
 			final float unpackedConst = leftConst.floatValue();
 			return new NumericExpr() {
 				@Override
-				public float evaluate(Map<String, Float> args) {
+				public float evaluate(float[] args) {
 					final float rightValue = rightArg.evaluate(args);
 					return apply(unpackedConst, rightValue);
 				}
@@ -423,7 +454,7 @@ public class EvaluatorFactory {
 		protected NumericExpr nonConst(final NumericExpr leftArg, final NumericExpr rightArg) {
 			return new NumericExpr() {
 				@Override
-				public float evaluate(Map<String, Float> args) {
+				public float evaluate(float[] args) {
 					final float leftValue = leftArg.evaluate(args);
 					final float rightValue = rightArg.evaluate(args);
 					return apply(leftValue, rightValue);
@@ -504,7 +535,7 @@ public class EvaluatorFactory {
 		protected BooleanExpr nonConst(final BooleanExpr leftArg, final BooleanExpr rightArg) {
 			return new BooleanExpr() {
 				@Override
-				public boolean evaluate(Map<String, Float> args) {
+				public boolean evaluate(float[] args) {
 					final boolean leftValue = leftArg.evaluate(args);
 					final boolean rightValue = rightArg.evaluate(args);
 					return apply(leftValue, rightValue);
@@ -549,7 +580,7 @@ public class EvaluatorFactory {
 			final float unpackedConst = rightConst.floatValue();
 			return new BooleanExpr() {
 				@Override
-				public boolean evaluate(Map<String, Float> args) {
+				public boolean evaluate(float[] args) {
 					final float leftValue = leftArg.evaluate(args);
 					return apply(leftValue, unpackedConst);
 				}
@@ -561,7 +592,7 @@ public class EvaluatorFactory {
 			final float unpackedConst = leftConst.floatValue();
 			return new BooleanExpr() {
 				@Override
-				public boolean evaluate(Map<String, Float> args) {
+				public boolean evaluate(float[] args) {
 					final float rightValue = rightArg.evaluate(args);
 					return apply(unpackedConst, rightValue);
 				}
@@ -572,7 +603,7 @@ public class EvaluatorFactory {
 		protected BooleanExpr nonConst(final NumericExpr leftArg, final NumericExpr rightArg) {
 			return new BooleanExpr() {
 				@Override
-				public boolean evaluate(Map<String, Float> args) {
+				public boolean evaluate(float[] args) {
 					final float leftValue = leftArg.evaluate(args);
 					final float rightValue = rightArg.evaluate(args);
 					return apply(leftValue, rightValue);
@@ -803,11 +834,11 @@ public class EvaluatorFactory {
 				// may have children when placed via macro arg
 				return maybeMacro.createNumericExpr(children, scope);
 			} else {
+				final int slot = scope.getSlot(symbol);
 				return new NumericExpr() {
 					@Override
-					public float evaluate(Map<String, Float> args) {
-						final Float value = args.get(symbol);
-						return value != null? value : 0;
+					public float evaluate(float[] args) {
+						return args[slot];
 					}
 				};
 			}
@@ -840,7 +871,7 @@ public class EvaluatorFactory {
 		}
 
 		@Override
-		public float evaluate(Map<String, Float> args) {
+		public float evaluate(float[] args) {
 			return value;
 		}
 
@@ -863,7 +894,7 @@ public class EvaluatorFactory {
 		}
 
 		@Override
-		public boolean evaluate(Map<String, Float> args) {
+		public boolean evaluate(float[] args) {
 			return value;
 		}
 
@@ -885,7 +916,7 @@ public class EvaluatorFactory {
 		}
 
 		@Override
-		public boolean evaluate(Map<String, Float> args) {
+		public boolean evaluate(float[] args) {
 			return !arg.evaluate(args);
 		}
 	}
@@ -1083,11 +1114,11 @@ public class EvaluatorFactory {
 	}
 
 	private static interface ITransformExecutor {
-		public TRSRTransformation apply(TRSRTransformation initial, IJoint joint, Map<String, Float> args);
+		public TRSRTransformation apply(TRSRTransformation initial, IJoint joint, float[] args);
 	}
 
 	private static interface IValueExecutor {
-		public void apply(Map<String, Float> args);
+		public void apply(float[] args);
 	}
 
 	private interface IStatement {
@@ -1097,17 +1128,16 @@ public class EvaluatorFactory {
 	}
 
 	private static class AssignStatement implements IStatement {
-		private final String name;
+		private final int slot;
 		private final NumericExpr value;
 
-		public AssignStatement(String name, NumericExpr value) {
-			this.name = name;
+		public AssignStatement(int slot, NumericExpr value) {
+			this.slot = slot;
 			this.value = value;
 		}
 
-		private void eval(Map<String, Float> args) {
-			final Float v = value.evaluate(args);
-			args.put(name, v);
+		private void eval(float[] args) {
+			args[slot] = value.evaluate(args);
 		}
 
 		@Override
@@ -1263,13 +1293,13 @@ public class EvaluatorFactory {
 		protected NumericExpr createExpr(final List<NumericExpr> args) {
 			return new NumericExpr() {
 				@Override
-				public float evaluate(Map<String, Float> vars) {
+				public float evaluate(float[] vars) {
 					return Function.this.evaluate(vars, args);
 				}
 			};
 		}
 
-		protected abstract float evaluate(Map<String, Float> vars, List<NumericExpr> args);
+		protected abstract float evaluate(float[] vars, List<NumericExpr> args);
 	}
 
 	private abstract static class UnaryFunction extends Function {
@@ -1280,7 +1310,7 @@ public class EvaluatorFactory {
 		}
 
 		@Override
-		protected float evaluate(Map<String, Float> vars, List<NumericExpr> args) {
+		protected float evaluate(float[] vars, List<NumericExpr> args) {
 			final NumericExpr argExpr = args.get(0);
 			final float arg = argExpr.evaluate(vars);
 			return evaluate(arg);
@@ -1298,7 +1328,7 @@ public class EvaluatorFactory {
 		}
 
 		@Override
-		protected float evaluate(Map<String, Float> vars, List<NumericExpr> args) {
+		protected float evaluate(float[] vars, List<NumericExpr> args) {
 			final NumericExpr leftExpr = args.get(0);
 			final float leftArg = leftExpr.evaluate(vars);
 
@@ -1325,7 +1355,7 @@ public class EvaluatorFactory {
 				final NumericExpr right = args.get(1);
 				return new NumericExpr() {
 					@Override
-					public float evaluate(Map<String, Float> args) {
+					public float evaluate(float[] args) {
 						final float leftValue = left.evaluate(args);
 						final float rightValue = right.evaluate(args);
 						return AggregateFunction.this.evaluate(leftValue, rightValue);
@@ -1336,7 +1366,7 @@ public class EvaluatorFactory {
 				final List<NumericExpr> tail = args.subList(1, args.size());
 				return new NumericExpr() {
 					@Override
-					public float evaluate(Map<String, Float> args) {
+					public float evaluate(float[] args) {
 						float result = head.evaluate(args);
 						for (NumericExpr e : tail) {
 							final float val = e.evaluate(args);
@@ -1552,7 +1582,7 @@ public class EvaluatorFactory {
 
 					return new NumericExpr() {
 						@Override
-						public float evaluate(Map<String, Float> args) {
+						public float evaluate(float[] args) {
 							final boolean selector = cond.evaluate(args);
 							return (selector? ifTrue : ifFalse).evaluate(args);
 						}
@@ -1577,7 +1607,7 @@ public class EvaluatorFactory {
 
 					return new BooleanExpr() {
 						@Override
-						public boolean evaluate(Map<String, Float> args) {
+						public boolean evaluate(float[] args) {
 							final boolean selector = cond.evaluate(args);
 							return (selector? ifTrue : ifFalse).evaluate(args);
 						}
@@ -1593,7 +1623,7 @@ public class EvaluatorFactory {
 				final NumericExpr arg = children.get(0).createNumericExprFromNode(scope);
 				return new BooleanExpr() {
 					@Override
-					public boolean evaluate(Map<String, Float> args) {
+					public boolean evaluate(float[] args) {
 						final float value = arg.evaluate(args);
 						return value == 0? false : true;
 					}
@@ -1608,7 +1638,7 @@ public class EvaluatorFactory {
 				final BooleanExpr arg = children.get(0).createBooleanExprFromNode(scope);
 				return new NumericExpr() {
 					@Override
-					public float evaluate(Map<String, Float> args) {
+					public float evaluate(float[] args) {
 						final boolean value = arg.evaluate(args);
 						return value? 1 : 0;
 					}
@@ -1623,6 +1653,10 @@ public class EvaluatorFactory {
 
 	private final List<IStatement> statements = Lists.newArrayList();
 
+	private final VarSlots slots = new VarSlots();
+
+	private final Set<Integer> assignedSlots = Sets.newTreeSet();
+
 	public void appendStatement(String statement) {
 		try {
 			final TokenIterator tokens = TOKENIZER.tokenize(statement);
@@ -1634,8 +1668,10 @@ public class EvaluatorFactory {
 				final Node right = node.children.get(1);
 				if (left.op instanceof NodeOpGet) {
 					final String key = ((NodeOpGet)left.op).symbol;
-					final NumericExpr arg = right.createNumericExprFromNode(new Scope(globalScope));
-					statements.add(new AssignStatement(key, arg));
+					final NumericExpr arg = right.createNumericExprFromNode(new Scope(globalScope, slots));
+					final int slot = slots.getSlot(key);
+					assignedSlots.add(slot);
+					statements.add(new AssignStatement(slot, arg));
 				} else if (left.op instanceof NodeOpCall) {
 					final String key = ((NodeOpCall)left.op).symbol;
 					final List<String> args = Lists.newArrayList();
@@ -1646,7 +1682,7 @@ public class EvaluatorFactory {
 					}
 
 					//
-					globalScope.put(key, new Macro(key, args, right, new Scope(globalScope)));
+					globalScope.put(key, new Macro(key, args, right, new Scope(globalScope, slots)));
 				} else {
 					throw new UnsupportedOperationException("Expected single symbol or symbol call on left side of assignment");
 				}
@@ -1654,7 +1690,7 @@ public class EvaluatorFactory {
 				Preconditions.checkState(node.children.size() == 1, "Invalid number of arguments for clip application");
 				final Node arg = node.children.get(0);
 				final String key = ((NodeOpCall)node.op).symbol;
-				final NumericExpr argExpr = arg.createNumericExprFromNode(new Scope(globalScope));
+				final NumericExpr argExpr = arg.createNumericExprFromNode(new Scope(globalScope, slots));
 				statements.add(new ClipStatement(key, argExpr));
 			} else {
 				throw new UnsupportedOperationException("Only statements in form 'clip(<expr>, ...)' or `value := <expr>` allowed");
@@ -1700,18 +1736,54 @@ public class EvaluatorFactory {
 		};
 	}
 
+	private static class Frame {
+		private final String[] names;
+
+		public Frame(String[] names) {
+			this.names = names;
+		}
+
+		public float[] load(Map<String, Float> args) {
+			final float[] frame = new float[names.length];
+			for (int i = 0; i < names.length; i++) {
+				final Float value = args.get(names[i]);
+				if (value != null) frame[i] = value;
+			}
+			return frame;
+		}
+	}
+
 	private static class EvaluatorImpl implements ITransformEvaluator {
 
 		private final ITransformExecutor executor;
 
-		public EvaluatorImpl(ITransformExecutor executor) {
+		private final Frame frame;
+
+		private final boolean hasAssignments;
+
+		public EvaluatorImpl(ITransformExecutor executor, Frame frame, boolean hasAssignments) {
 			this.executor = executor;
+			this.frame = frame;
+			this.hasAssignments = hasAssignments;
 		}
 
 		@Override
 		public TRSRTransformation evaluate(IJoint joint, Map<String, Float> args) {
-			final Map<String, Float> mutableArgs = Maps.newHashMap(args);
-			return executor.apply(TRSRTransformation.identity(), joint, mutableArgs);
+			return executor.apply(TRSRTransformation.identity(), joint, frame.load(args));
+		}
+
+		@Override
+		public IJointEvaluator bind(Map<String, Float> args) {
+			final float[] initialValues = frame.load(args);
+			if (!hasAssignments)
+				return joint -> executor.apply(TRSRTransformation.identity(), joint, initialValues);
+
+			// assignments can't leak between joints, so every evaluation starts from copy of initial values
+			final float[] values = new float[initialValues.length];
+			return joint -> {
+				System.arraycopy(initialValues, 0, values, 0, values.length);
+				return executor.apply(TRSRTransformation.identity(), joint, values);
+			};
 		}
 	}
 
@@ -1724,22 +1796,35 @@ public class EvaluatorFactory {
 		for (IStatement statement : statements)
 			executors.add(statement.bind(provider));
 
-		return new EvaluatorImpl(composeTransformExecutors(executors));
+		return new EvaluatorImpl(composeTransformExecutors(executors), new Frame(slots.getNames()), !assignedSlots.isEmpty());
 	}
 
 	private static class ExpanderImpl implements IVarExpander {
 
 		private final IValueExecutor executor;
 
-		public ExpanderImpl(IValueExecutor executor) {
+		private final Frame frame;
+
+		private final String[] assignedNames;
+
+		private final int[] assignedSlots;
+
+		public ExpanderImpl(IValueExecutor executor, Frame frame, String[] assignedNames, int[] assignedSlots) {
 			this.executor = executor;
+			this.frame = frame;
+			this.assignedNames = assignedNames;
+			this.assignedSlots = assignedSlots;
 		}
 
 		@Override
 		public Map<String, Float> expand(Map<String, Float> args) {
-			final Map<String, Float> mutableArgs = Maps.newHashMap(args);
-			executor.apply(mutableArgs);
-			return mutableArgs;
+			final float[] values = frame.load(args);
+			executor.apply(values);
+
+			final Map<String, Float> result = Maps.newHashMap(args);
+			for (int i = 0; i < assignedSlots.length; i++)
+				result.put(assignedNames[i], values[assignedSlots[i]]);
+			return result;
 		}
 
 	}
@@ -1753,7 +1838,13 @@ public class EvaluatorFactory {
 		for (IStatement statement : statements)
 			executors.add(statement.free());
 
-		return new ExpanderImpl(composeValueExecutors(executors));
+		final String[] names = slots.getNames();
+		final int[] assigned = Ints.toArray(assignedSlots);
+		final String[] assignedNames = new String[assigned.length];
+		for (int i = 0; i < assigned.length; i++)
+			assignedNames[i] = names[assigned[i]];
+
+		return new ExpanderImpl(composeValueExecutors(executors), new Frame(names), assignedNames, assigned);
 	}
 
 }
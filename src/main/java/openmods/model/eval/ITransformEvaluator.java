@@ -7,6 +7,18 @@ import net.minecraftforge.common.model.animation.IJoint;
 @FunctionalInterface
 public interface ITransformEvaluator {
 
+	@FunctionalInterface
+	public interface IJointEvaluator {
+		public TRSRTransformation evaluate(IJoint joint);
+	}
+
 	public TRSRTransformation evaluate(IJoint joint, Map<String, Float> args);
 
+	/**
+	 * Resolves args once, for evaluating multiple joints with same values. Returned object is not thread-safe.
+	 */
+	public default IJointEvaluator bind(Map<String, Float> args) {
+		return joint -> evaluate(joint, args);
+	}
+
 }
@@ -0,0 +1,324 @@
+package openmods.model.eval;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import javax.vecmath.AxisAngle4f;
+import javax.vecmath.Matrix3f;
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Quat4f;
+import javax.vecmath.Vector3f;
+import javax.vecmath.Vector4f;
+import net.minecraft.client.renderer.block.model.BakedQuad;
+import net.minecraft.client.renderer.block.model.IBakedModel;
+import net.minecraft.client.renderer.vertex.VertexFormat;
+import net.minecraft.client.renderer.vertex.VertexFormatElement;
+import net.minecraft.util.EnumFacing;
+import net.minecraftforge.client.model.pipeline.LightUtil;
+import net.minecraftforge.common.model.IModelPart;
+import net.minecraftforge.common.model.IModelState;
+import net.minecraftforge.common.model.TRSRTransformation;
+import net.minecraftforge.common.model.animation.IJoint;
+import openmods.Log;
+
+/**
+ * Quads of eval model, baked once with identity clip transforms and grouped by joint that moves them.
+ * New variants are created by transforming vertex data of each group with its joint transform, instead of baking whole model again.
+ *
+ * Grouping is found by baking model once per joint with probe transform. Result is then validated against real bake with all joints transformed - models that
+ * don't move quads by simple affine transformation (i.e. nested joints, sided quads, weighted vertices) are rejected and should be baked normally.
+ */
+class JointQuadGroups {
+
+	private static final int MAX_JOINTS = 32;
+
+	private static final float POSITION_TOLERANCE = 1e-3f;
+
+	private static final float NORMAL_TOLERANCE = 0.05f;
+
+	private static final float OTHER_TOLERANCE = 1e-5f;
+
+	private static final int GENERAL_QUADS = EnumFacing.VALUES.length;
+
+	private static class Group {
+		final IJoint joint;
+
+		final TRSRTransformation origin;
+
+		final TRSRTransformation originInverse;
+
+		final int[] quads;
+
+		public Group(IJoint joint, TRSRTransformation origin, int[] quads) {
+			this.joint = joint;
+			this.origin = origin;
+			this.originInverse = origin.inverse();
+			this.quads = quads;
+		}
+	}
+
+	private final IBakedModel base;
+
+	// sided quads, followed by general ones
+	private final List<List<BakedQuad>> baseQuads;
+
+	private final Group[] groups;
+
+	private final boolean cornerOrigin;
+
+	private JointQuadGroups(IBakedModel base, List<List<BakedQuad>> baseQuads, Group[] groups, boolean cornerOrigin) {
+		this.base = base;
+		this.baseQuads = baseQuads;
+		this.groups = groups;
+		this.cornerOrigin = cornerOrigin;
+	}
+
+	private static List<List<BakedQuad>> getQuads(IBakedModel model) {
+		final List<List<BakedQuad>> result = Lists.newArrayListWithCapacity(GENERAL_QUADS + 1);
+		for (EnumFacing side : EnumFacing.VALUES)
+			result.add(ImmutableList.copyOf(model.getQuads(null, side, 0)));
+		result.add(ImmutableList.copyOf(model.getQuads(null, null, 0)));
+		return result;
+	}
+
+	private static IModelState createClip(Function<IJoint, Optional<TRSRTransformation>> transforms) {
+		return part -> {
+			if (!part.isPresent()) return Optional.empty();
+
+			final IModelPart maybeJoint = part.get();
+			if (!(maybeJoint instanceof IJoint)) return Optional.empty();
+
+			return transforms.apply((IJoint)maybeJoint);
+		};
+	}
+
+	private static TRSRTransformation createTestTransform(int index) {
+		final Quat4f rotation = new Quat4f();
+		rotation.set(new AxisAngle4f(1, 2, 3, 0.3f + 0.1f * index));
+		return new TRSRTransformation(new Vector3f(0.1f * (index + 1), 0.2f, -0.15f), rotation, null, null);
+	}
+
+	private static boolean areQuadsEqual(BakedQuad a, BakedQuad b) {
+		return a == b || Arrays.equals(a.getVertexData(), b.getVertexData());
+	}
+
+	/**
+	 * @param baker bakes model with given clip state (i.e. composed with original state)
+	 * @return null if model can't be recomposed from joint groups
+	 */
+	@Nullable
+	static JointQuadGroups create(Function<IModelState, IBakedModel> baker, IModelState originalState) {
+		final List<IJoint> joints = Lists.newArrayList();
+		final IBakedModel base = baker.apply(createClip(joint -> {
+			if (!joints.contains(joint)) joints.add(joint);
+			return Optional.of(TRSRTransformation.identity());
+		}));
+
+		if (joints.isEmpty() || joints.size() > MAX_JOINTS) return null;
+
+		final List<List<BakedQuad>> baseQuads = getQuads(base);
+		final List<BakedQuad> generalQuads = baseQuads.get(GENERAL_QUADS);
+		final int[] quadOwners = new int[generalQuads.size()];
+		Arrays.fill(quadOwners, -1);
+
+		for (int jointIndex = 0; jointIndex < joints.size(); jointIndex++) {
+			final IJoint probedJoint = joints.get(jointIndex);
+			final TRSRTransformation probe = createTestTransform(jointIndex);
+			final List<List<BakedQuad>> probedQuads = getQuads(baker.apply(createClip(joint -> Optional.of(joint.equals(probedJoint)? probe : TRSRTransformation.identity()))));
+
+			for (int side = 0; side < GENERAL_QUADS; side++) {
+				final List<BakedQuad> expected = baseQuads.get(side);
+				final List<BakedQuad> actual = probedQuads.get(side);
+				if (expected.size() != actual.size()) return null;
+				for (int i = 0; i < expected.size(); i++)
+					if (!areQuadsEqual(expected.get(i), actual.get(i))) return null;
+			}
+
+			final List<BakedQuad> probedGeneralQuads = probedQuads.get(GENERAL_QUADS);
+			if (probedGeneralQuads.size() != generalQuads.size()) return null;
+
+			for (int i = 0; i < generalQuads.size(); i++) {
+				if (!areQuadsEqual(generalQuads.get(i), probedGeneralQuads.get(i))) {
+					// quad moved by multiple joints - probably nested ones
+					if (quadOwners[i] >= 0) return null;
+					quadOwners[i] = jointIndex;
+				}
+			}
+		}
+
+		final List<Group> groups = Lists.newArrayList();
+		for (int jointIndex = 0; jointIndex < joints.size(); jointIndex++) {
+			int count = 0;
+			for (int owner : quadOwners)
+				if (owner == jointIndex) count++;
+
+			if (count == 0) continue;
+
+			final int[] quads = new int[count];
+			int pos = 0;
+			for (int i = 0; i < quadOwners.length; i++)
+				if (quadOwners[i] == jointIndex) quads[pos++] = i;
+
+			final IJoint joint = joints.get(jointIndex);
+			final TRSRTransformation origin = originalState.apply(Optional.of(joint)).orElse(TRSRTransformation.identity());
+			groups.add(new Group(joint, origin, quads));
+		}
+
+		final Group[] groupsArray = groups.toArray(new Group[groups.size()]);
+
+		final List<List<BakedQuad>> testModelQuads = getQuads(baker.apply(createClip(joint -> Optional.of(createTestTransform(joints.indexOf(joint))))));
+		for (int side = 0; side < GENERAL_QUADS; side++)
+			if (!areQuadListsSimilar(baseQuads.get(side), testModelQuads.get(side))) return null;
+
+		final List<BakedQuad> testQuads = testModelQuads.get(GENERAL_QUADS);
+
+		// models are not consistent about origin of joint transforms, so try both conventions
+		for (boolean cornerOrigin : new boolean[] { false, true }) {
+			final JointQuadGroups candidate = new JointQuadGroups(base, baseQuads, groupsArray, cornerOrigin);
+			final List<BakedQuad> predictedQuads = candidate.recompose(joint -> createTestTransform(joints.indexOf(joint)));
+			if (areQuadListsSimilar(predictedQuads, testQuads)) return candidate;
+		}
+
+		Log.debug("Eval model with joints %s can't be recomposed, falling back to full bake", joints);
+		return null;
+	}
+
+	public IBakedModel getBase() {
+		return base;
+	}
+
+	public List<BakedQuad> getQuads(@Nullable EnumFacing side) {
+		return baseQuads.get(side != null? side.ordinal() : GENERAL_QUADS);
+	}
+
+	/**
+	 * @return general (non-sided) quads, with joint transforms applied. Sided quads are never moved by joints
+	 */
+	public List<BakedQuad> recompose(ITransformEvaluator.IJointEvaluator evaluator) {
+		final List<BakedQuad> generalQuads = baseQuads.get(GENERAL_QUADS);
+		final BakedQuad[] result = generalQuads.toArray(new BakedQuad[generalQuads.size()]);
+
+		final float[] buffer = new float[4];
+		final Vector4f position = new Vector4f();
+		final Vector3f normal = new Vector3f();
+		final Matrix3f rotationScale = new Matrix3f();
+		final Matrix3f normalMatrix = new Matrix3f();
+
+		for (Group group : groups) {
+			TRSRTransformation transform = group.origin.compose(evaluator.evaluate(group.joint)).compose(group.originInverse);
+			if (cornerOrigin) transform = TRSRTransformation.blockCenterToCorner(transform);
+
+			final Matrix4f matrix = transform.getMatrix();
+			matrix.getRotationScale(rotationScale);
+			createNormalMatrix(rotationScale, normalMatrix);
+
+			for (int quadIndex : group.quads)
+				result[quadIndex] = transformQuad(result[quadIndex], matrix, normalMatrix, buffer, position, normal);
+		}
+
+		return Arrays.asList(result);
+	}
+
+	// inverse transpose scaled by determinant (i.e. cofactor matrix) - unlike inverse, it's defined for singular matrices, like zero scale used for hiding parts
+	private static void createNormalMatrix(Matrix3f m, Matrix3f result) {
+		result.m00 = m.m11 * m.m22 - m.m12 * m.m21;
+		result.m01 = m.m12 * m.m20 - m.m10 * m.m22;
+		result.m02 = m.m10 * m.m21 - m.m11 * m.m20;
+		result.m10 = m.m02 * m.m21 - m.m01 * m.m22;
+		result.m11 = m.m00 * m.m22 - m.m02 * m.m20;
+		result.m12 = m.m01 * m.m20 - m.m00 * m.m21;
+		result.m20 = m.m01 * m.m12 - m.m02 * m.m11;
+		result.m21 = m.m02 * m.m10 - m.m00 * m.m12;
+		result.m22 = m.m00 * m.m11 - m.m01 * m.m10;
+		// keep orientation for mirroring transforms
+		if (m.determinant() < 0) result.negate();
+	}
+
+	private static BakedQuad transformQuad(BakedQuad quad, Matrix4f matrix, Matrix3f normalMatrix, float[] buffer, Vector4f position, Vector3f normal) {
+		final VertexFormat format = quad.getFormat();
+		final int[] data = quad.getVertexData().clone();
+		final int vertexCount = data.length / format.getIntegerSize();
+
+		for (int e = 0; e < format.getElementCount(); e++) {
+			final VertexFormatElement.EnumUsage usage = format.getElement(e).getUsage();
+			if (usage == VertexFormatElement.EnumUsage.POSITION) {
+				for (int v = 0; v < vertexCount; v++) {
+					LightUtil.unpack(data, buffer, format, v, e);
+					position.set(buffer[0], buffer[1], buffer[2], 1);
+					matrix.transform(position);
+					buffer[0] = position.x;
+					buffer[1] = position.y;
+					buffer[2] = position.z;
+					LightUtil.pack(buffer, data, format, v, e);
+				}
+			} else if (usage == VertexFormatElement.EnumUsage.NORMAL) {
+				for (int v = 0; v < vertexCount; v++) {
+					LightUtil.unpack(data, buffer, format, v, e);
+					normal.set(buffer[0], buffer[1], buffer[2]);
+					normalMatrix.transform(normal);
+					if (normal.lengthSquared() > 0) normal.normalize();
+					buffer[0] = normal.x;
+					buffer[1] = normal.y;
+					buffer[2] = normal.z;
+					LightUtil.pack(buffer, data, format, v, e);
+				}
+			}
+		}
+
+		final EnumFacing face = quad.getFace();
+		final Vector3f faceNormal = new Vector3f(face.getFrontOffsetX(), face.getFrontOffsetY(), face.getFrontOffsetZ());
+		normalMatrix.transform(faceNormal);
+		// collapsed quad has no direction, so just keep original one
+		final EnumFacing newFace = faceNormal.lengthSquared() > 0? EnumFacing.getFacingFromVector(faceNormal.x, faceNormal.y, faceNormal.z) : face;
+
+		return new BakedQuad(data, quad.getTintIndex(), newFace, quad.getSprite(), quad.shouldApplyDiffuseLighting(), format);
+	}
+
+	private static boolean areQuadListsSimilar(List<BakedQuad> expected, List<BakedQuad> actual) {
+		if (expected.size() != actual.size()) return false;
+
+		final float[] expectedBuffer = new float[4];
+		final float[] actualBuffer = new float[4];
+		for (int i = 0; i < expected.size(); i++) {
+			final BakedQuad expectedQuad = expected.get(i);
+			final BakedQuad actualQuad = actual.get(i);
+
+			if (expectedQuad.getFace() != actualQuad.getFace() ||
+					expectedQuad.getTintIndex() != actualQuad.getTintIndex() ||
+					expectedQuad.getSprite() != actualQuad.getSprite() ||
+					expectedQuad.shouldApplyDiffuseLighting() != actualQuad.shouldApplyDiffuseLighting() ||
+					!expectedQuad.getFormat().equals(actualQuad.getFormat()) ||
+					expectedQuad.getVertexData().length != actualQuad.getVertexData().length) return false;
+
+			final VertexFormat format = expectedQuad.getFormat();
+			final int vertexCount = expectedQuad.getVertexData().length / format.getIntegerSize();
+			for (int e = 0; e < format.getElementCount(); e++) {
+				final VertexFormatElement element = format.getElement(e);
+				final float tolerance;
+				switch (element.getUsage()) {
+					case POSITION:
+						tolerance = POSITION_TOLERANCE;
+						break;
+					case NORMAL:
+						tolerance = NORMAL_TOLERANCE;
+						break;
+					default:
+						tolerance = OTHER_TOLERANCE;
+				}
+
+				for (int v = 0; v < vertexCount; v++) {
+					LightUtil.unpack(expectedQuad.getVertexData(), expectedBuffer, format, v, e);
+					LightUtil.unpack(actualQuad.getVertexData(), actualBuffer, format, v, e);
+					for (int c = 0; c < element.getElementCount(); c++)
+						if (Math.abs(expectedBuffer[c] - actualBuffer[c]) > tolerance) return false;
+				}
+			}
+		}
+
+		return true;
+	}
+}
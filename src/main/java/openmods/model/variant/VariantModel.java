@@ -2,13 +2,15 @@ package openmods.model.variant;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Function;
 import javax.annotation.Nullable;
 import net.minecraft.block.state.IBlockState;
@@ -16,6 +18,8 @@ import net.minecraft.client.renderer.block.model.BakedQuad;
 import net.minecraft.client.renderer.block.model.IBakedModel;
 import net.minecraft.client.renderer.block.model.ItemCameraTransforms.TransformType;
 import net.minecraft.client.renderer.block.model.ItemOverrideList;
+import net.minecraft.client.renderer.block.model.MultipartBakedModel;
+import net.minecraft.client.renderer.block.model.WeightedBakedModel;
 import net.minecraft.client.renderer.texture.TextureAtlasSprite;
 import net.minecraft.client.renderer.vertex.VertexFormat;
 import net.minecraft.util.EnumFacing;
@@ -35,28 +39,83 @@ public class VariantModel implements IModel {
 
 	private static class BakedModel extends BakedModelAdapter {
 
+		private static final int QUAD_LIST_COUNT = EnumFacing.VALUES.length + 1;
+
+		private static class Selection {
+			// base model first, then selected sub-models
+			private final IBakedModel[] models;
+
+			// baked models are immutable, so merged lists can be reused, unless some model picks quads based on state or random
+			private final boolean cacheable;
+
+			// per side, null side last
+			private final AtomicReferenceArray<List<BakedQuad>> quads = new AtomicReferenceArray<>(QUAD_LIST_COUNT);
+
+			public Selection(IBakedModel[] models) {
+				this.models = models;
+				this.cacheable = Arrays.stream(models).noneMatch(Selection::isVariable);
+			}
+
+			private static boolean isVariable(IBakedModel model) {
+				return model instanceof WeightedBakedModel || model instanceof MultipartBakedModel;
+			}
+
+			public List<BakedQuad> getQuads(@Nullable IBlockState state, @Nullable EnumFacing side, long rand) {
+				if (!cacheable) return mergeQuads(state, side, rand);
+
+				final int index = side != null? side.ordinal() : EnumFacing.VALUES.length;
+				List<BakedQuad> result = quads.get(index);
+				if (result == null) {
+					result = mergeQuads(state, side, rand);
+					quads.set(index, result);
+				}
+
+				return result;
+			}
+
+			private List<BakedQuad> mergeQuads(@Nullable IBlockState state, @Nullable EnumFacing side, long rand) {
+				final ImmutableList.Builder<BakedQuad> merged = ImmutableList.builder();
+				for (IBakedModel model : models)
+					merged.addAll(model.getQuads(state, side, rand));
+				return merged.build();
+			}
+		}
+
 		private final VariantModelData modelData;
 
-		private final Map<ResourceLocation, IBakedModel> bakedSubModels;
+		// in order of VariantModelData.getModelIndex()
+		private final IBakedModel[] bakedSubModels;
+
+		private final ConcurrentMap<BitSet, Selection> selections = Maps.newConcurrentMap();
 
-		public BakedModel(IBakedModel base, VariantModelData modelData, Map<ResourceLocation, IBakedModel> bakedSubModels, ImmutableMap<TransformType, TRSRTransformation> cameraTransforms) {
+		public BakedModel(IBakedModel base, VariantModelData modelData, IBakedModel[] bakedSubModels, ImmutableMap<TransformType, TRSRTransformation> cameraTransforms) {
 			super(base, cameraTransforms);
 			this.modelData = modelData;
 			this.bakedSubModels = bakedSubModels;
 		}
 
+		private Selection getSelection(BitSet modelMask) {
+			final Selection selection = selections.get(modelMask);
+			if (selection != null) return selection;
+
+			final IBakedModel[] models = new IBakedModel[modelMask.cardinality() + 1];
+			models[0] = base;
+			int pos = 1;
+			for (int i = modelMask.nextSetBit(0); i >= 0; i = modelMask.nextSetBit(i + 1))
+				models[pos++] = bakedSubModels[i];
+
+			final Selection newSelection = new Selection(models);
+			final Selection prev = selections.putIfAbsent(modelMask, newSelection);
+			return prev != null? prev : newSelection;
+		}
+
 		@Override
 		public List<BakedQuad> getQuads(@Nullable IBlockState state, @Nullable EnumFacing side, long rand) {
 			final VariantModelState modelState = getModelSelectors(state);
+			final BitSet modelMask = modelData.getModelMask(modelState);
+			if (modelMask.isEmpty()) return base.getQuads(state, side, rand);
 
-			final List<BakedQuad> result = Lists.newArrayList(base.getQuads(state, side, rand));
-
-			for (ResourceLocation subModel : modelData.getModels(modelState.getSelectors())) {
-				final IBakedModel bakedSubModel = bakedSubModels.get(subModel);
-				result.addAll(bakedSubModel.getQuads(state, side, rand));
-			}
-
-			return result;
+			return getSelection(modelMask).getQuads(state, side, rand);
 		}
 
 		private static VariantModelState getModelSelectors(IBlockState state) {
@@ -97,11 +156,13 @@ public class VariantModel implements IModel {
 
 	@Override
 	public IBakedModel bake(IModelState state, VertexFormat format, Function<ResourceLocation, TextureAtlasSprite> bakedTextureGetter) {
-		final Map<ResourceLocation, IBakedModel> bakedSubModels = Maps.newHashMap();
+		final List<ResourceLocation> subModels = modelData.getModelIndex();
+		final IBakedModel[] bakedSubModels = new IBakedModel[subModels.size()];
 
-		for (ResourceLocation subModel : modelData.getAllModels()) {
+		for (int i = 0; i < bakedSubModels.length; i++) {
+			final ResourceLocation subModel = subModels.get(i);
 			IModel model = ModelLoaderRegistry.getModelOrLogError(subModel, "Couldn't load sub-model dependency: " + subModel);
-			bakedSubModels.put(subModel, model.bake(new ModelStateComposition(state, model.getDefaultState()), format, bakedTextureGetter));
+			bakedSubModels[i] = model.bake(new ModelStateComposition(state, model.getDefaultState()), format, bakedTextureGetter);
 		}
 
 		final IModel baseModel;
@@ -3,10 +3,12 @@ package openmods.model.variant;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
-import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -18,21 +20,33 @@ class VariantModelData {
 
 	private final Evaluator expansions;
 
-	private final LoadingCache<Map<String, String>, Set<ResourceLocation>> cache;
+	// index of every model, used for bits in model masks
+	private final List<ResourceLocation> modelIndex;
+
+	private final LoadingCache<VariantModelState, BitSet> cache;
 
 	public VariantModelData(final VariantSelectorData variants, final Evaluator expansions) {
 		this.variants = variants;
 		this.expansions = expansions;
+		this.modelIndex = ImmutableList.copyOf(variants.getAllModels());
+
+		final Map<ResourceLocation, Integer> modelIds = Maps.newHashMap();
+		for (int i = 0; i < modelIndex.size(); i++)
+			modelIds.put(modelIndex.get(i), i);
 
 		this.cache = CacheBuilder.newBuilder()
 				.expireAfterAccess(5, TimeUnit.MINUTES)
 				.build(
-						new CacheLoader<Map<String, String>, Set<ResourceLocation>>() {
+						new CacheLoader<VariantModelState, BitSet>() {
 							@Override
-							public Set<ResourceLocation> load(Map<String, String> key) throws Exception {
-								final Map<String, String> mutableCopy = Maps.newHashMap(key);
+							public BitSet load(VariantModelState key) throws Exception {
+								final Map<String, String> mutableCopy = Maps.newHashMap(key.getSelectors());
 								expansions.expandVars(mutableCopy);
-								return variants.getModels(mutableCopy);
+
+								final BitSet result = new BitSet(modelIndex.size());
+								for (ResourceLocation model : variants.getModels(mutableCopy))
+									result.set(modelIds.get(model));
+								return result;
 							}
 						});
 	}
@@ -41,8 +55,15 @@ class VariantModelData {
 		this(new VariantSelectorData(), new Evaluator());
 	}
 
-	public Set<ResourceLocation> getModels(Map<String, String> key) {
-		return cache.getUnchecked(ImmutableMap.copyOf(key));
+	/**
+	 * @return set of selected models, as indices in {@link #getModelIndex()}. Returned value is shared and must not be modified
+	 */
+	public BitSet getModelMask(VariantModelState state) {
+		return cache.getUnchecked(state);
+	}
+
+	public List<ResourceLocation> getModelIndex() {
+		return modelIndex;
 	}
 
 	public Set<ResourceLocation> getAllModels() {
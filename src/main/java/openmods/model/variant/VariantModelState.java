@@ -1,9 +1,14 @@
 package openmods.model.variant;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import net.minecraftforge.common.property.IUnlistedProperty;
 
 public class VariantModelState {
@@ -33,14 +38,58 @@ public class VariantModelState {
 		}
 	};
 
-	public static final VariantModelState EMPTY = new VariantModelState();
+	private static final Interner<VariantModelState> INTERNER = Interners.newWeakInterner();
+
+	public static final VariantModelState EMPTY = INTERNER.intern(new VariantModelState(ImmutableMap.<String, String> of()));
+
+	private final Map<String, String> selectors;
+
+	// used as cache key on every model lookup
+	private final int hashCode;
+
+	// key -> value -> result
+	// results are weak, otherwise every state reachable from EMPTY would be pinned and interner could never release them
+	// created on first transition, since most instances are only short-lived interner lookup keys
+	private volatile ConcurrentMap<String, ConcurrentMap<String, VariantModelState>> transitions;
+
+	private volatile ConcurrentMap<Set<String>, VariantModelState> defaultKeysTransitions;
+
+	private static <K> ConcurrentMap<K, VariantModelState> createTransitionMap() {
+		return new MapMaker().weakValues().makeMap();
+	}
+
+	private ConcurrentMap<String, ConcurrentMap<String, VariantModelState>> getTransitions() {
+		ConcurrentMap<String, ConcurrentMap<String, VariantModelState>> result = transitions;
+		if (result == null) {
+			synchronized (this) {
+				result = transitions;
+				if (result == null) transitions = result = Maps.newConcurrentMap();
+			}
+		}
+		return result;
+	}
+
+	private ConcurrentMap<Set<String>, VariantModelState> getDefaultKeysTransitions() {
+		ConcurrentMap<Set<String>, VariantModelState> result = defaultKeysTransitions;
+		if (result == null) {
+			synchronized (this) {
+				result = defaultKeysTransitions;
+				if (result == null) defaultKeysTransitions = result = createTransitionMap();
+			}
+		}
+		return result;
+	}
 
 	private VariantModelState(Map<String, String> selectors) {
 		this.selectors = ImmutableMap.copyOf(selectors);
+		this.hashCode = this.selectors.hashCode();
 	}
 
-	private VariantModelState() {
-		this(ImmutableMap.<String, String> of());
+	/**
+	 * All instances are canonical, so they can be compared by identity
+	 */
+	private static VariantModelState intern(Map<String, String> selectors) {
+		return INTERNER.intern(new VariantModelState(selectors));
 	}
 
 	public static VariantModelState create() {
@@ -48,15 +97,29 @@ public class VariantModelState {
 	}
 
 	public static VariantModelState create(Map<String, String> selectors) {
-		return new VariantModelState(selectors);
+		return selectors.isEmpty()? EMPTY : intern(selectors);
 	}
 
-	private final Map<String, String> selectors;
-
 	public VariantModelState withKey(String key, String value) {
-		Map<String, String> copy = Maps.newHashMap(selectors);
-		copy.put(key, value);
-		return new VariantModelState(copy);
+		if (value.equals(selectors.get(key))) return this;
+
+		final ConcurrentMap<String, ConcurrentMap<String, VariantModelState>> transitions = getTransitions();
+		ConcurrentMap<String, VariantModelState> keyTransitions = transitions.get(key);
+		if (keyTransitions == null) {
+			keyTransitions = createTransitionMap();
+			final ConcurrentMap<String, VariantModelState> prev = transitions.putIfAbsent(key, keyTransitions);
+			if (prev != null) keyTransitions = prev;
+		}
+
+		VariantModelState result = keyTransitions.get(value);
+		if (result == null) {
+			final Map<String, String> copy = Maps.newHashMap(selectors);
+			copy.put(key, value);
+			result = intern(copy);
+			keyTransitions.putIfAbsent(value, result);
+		}
+
+		return result;
 	}
 
 	public VariantModelState withKey(String key) {
@@ -64,14 +127,34 @@ public class VariantModelState {
 	}
 
 	public VariantModelState withKeys(Set<String> keys) {
-		Map<String, String> copy = Maps.newHashMap(selectors);
-		for (String key : keys)
-			copy.put(key, DEFAULT_MARKER);
+		final ConcurrentMap<Set<String>, VariantModelState> defaultKeysTransitions = getDefaultKeysTransitions();
+		VariantModelState result = defaultKeysTransitions.get(keys);
+		if (result == null) {
+			final Map<String, String> copy = Maps.newHashMap(selectors);
+			for (String key : keys)
+				copy.put(key, DEFAULT_MARKER);
+
+			result = intern(copy);
+			defaultKeysTransitions.putIfAbsent(ImmutableSet.copyOf(keys), result);
+		}
 
-		return new VariantModelState(copy);
+		return result;
 	}
 
 	Map<String, String> getSelectors() {
 		return selectors;
 	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (!(obj instanceof VariantModelState)) return false;
+		final VariantModelState other = (VariantModelState)obj;
+		return other.hashCode == this.hashCode && other.selectors.equals(this.selectors);
+	}
 }
@@ -0,0 +1,56 @@
+package openmods.network;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Collections;
+import java.util.List;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TextComponentTranslation;
+import openmods.utils.CommandUtils;
+
+public class CommandPayloadStats extends CommandBase {
+
+	private static final String CMD_STATS = "stats";
+
+	private static final String CMD_RESET = "reset";
+
+	private static final List<String> SUBCOMMANDS = ImmutableList.of(CMD_STATS, CMD_RESET);
+
+	@Override
+	public String getName() {
+		return "om_payload_stats";
+	}
+
+	@Override
+	public String getUsage(ICommandSender sender) {
+		return "om_payload_stats stats|reset";
+	}
+
+	@Override
+	public List<String> getTabCompletions(MinecraftServer server, ICommandSender sender, String[] args, BlockPos pos) {
+		if (args.length == 1) return CommandUtils.filterPrefixes(args[0], SUBCOMMANDS);
+		return Collections.emptyList();
+	}
+
+	@Override
+	public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+		final String cmd = args.length > 0? args[0] : CMD_STATS;
+		if (args.length > 1) throw new CommandException("commands.generic.syntax");
+
+		if (cmd.equals(CMD_STATS)) {
+			sender.sendMessage(new TextComponentTranslation("openmodslib.command.payload_allocations",
+					PayloadBuffers.getAllocatedBuffers(), PayloadBuffers.getAllocatedBytes() / 1024));
+			sender.sendMessage(new TextComponentTranslation("openmodslib.command.payload_sends",
+					PayloadBuffers.getSentPayloads(), PayloadBuffers.getRecipients(), String.format("%.1f", PayloadBuffers.getAllocatedBytesPerSend())));
+		} else if (cmd.equals(CMD_RESET)) {
+			PayloadBuffers.resetCounters();
+			sender.sendMessage(new TextComponentTranslation("openmodslib.command.payload_reset"));
+		} else {
+			throw new CommandException("commands.generic.syntax");
+		}
+	}
+
+}
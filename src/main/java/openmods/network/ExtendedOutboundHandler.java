@@ -19,6 +19,13 @@ import net.minecraftforge.fml.relauncher.Side;
 public class ExtendedOutboundHandler extends ChannelOutboundHandlerAdapter {
 	public static final AttributeKey<IPacketTargetSelector<?>> MESSAGETARGET = AttributeKey.valueOf("om:outboundTarget");
 
+	// only for channels that allocate all payloads via PayloadBuffers, otherwise allocation and send counters wouldn't match
+	private final boolean recordSends;
+
+	private ExtendedOutboundHandler(boolean recordSends) {
+		this.recordSends = recordSends;
+	}
+
 	private static <T> Collection<NetworkDispatcher> getDispatchers(IPacketTargetSelector<T> target, Object arg) {
 		final Collection<NetworkDispatcher> output = Lists.newArrayList();
 		target.listDispatchers(target.castArg(arg), output);
@@ -52,9 +59,12 @@ public class ExtendedOutboundHandler extends ChannelOutboundHandlerAdapter {
 
 		try {
 			final Collection<NetworkDispatcher> dispatchers = getDispatchers(target, arg);
+			// same packet (and payload) is shared by all recipients
 			for (NetworkDispatcher dispatcher : dispatchers)
 				dispatcher.sendProxy(pkt);
 
+			if (recordSends) PayloadBuffers.recordSend(dispatchers.size());
+
 		} catch (Throwable t) {
 
 			throw new IllegalStateException(String.format(
@@ -65,12 +75,23 @@ public class ExtendedOutboundHandler extends ChannelOutboundHandlerAdapter {
 	}
 
 	public static void install(Map<Side, FMLEmbeddedChannel> channels) {
+		install(channels, false);
+	}
+
+	/**
+	 * @param recordSends if true, sends are counted in {@link PayloadBuffers} - should be set only when all payloads on channel are allocated and recorded there
+	 */
+	public static void install(Map<Side, FMLEmbeddedChannel> channels, boolean recordSends) {
 		for (Side side : Side.values())
-			install(channels.get(side));
+			install(channels.get(side), recordSends);
 	}
 
 	public static void install(FMLEmbeddedChannel fmlEmbeddedChannel) {
-		fmlEmbeddedChannel.pipeline().addAfter("fml:outbound", "om:outbound", new ExtendedOutboundHandler());
+		install(fmlEmbeddedChannel, false);
+	}
+
+	public static void install(FMLEmbeddedChannel fmlEmbeddedChannel, boolean recordSends) {
+		fmlEmbeddedChannel.pipeline().addAfter("fml:outbound", "om:outbound", new ExtendedOutboundHandler(recordSends));
 	}
 
 }
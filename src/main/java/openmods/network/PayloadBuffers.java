@@ -0,0 +1,90 @@
+package openmods.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.concurrent.atomic.AtomicLong;
+import net.minecraft.network.PacketBuffer;
+
+/**
+ * Allocation point for outgoing payloads, with counters of allocated bytes.
+ * NOTE: FML reads and splits proxy packets through backing array, so payloads must stay unpooled heap buffers.
+ * Instead of pooling, buffers are pre-sized from previous encode of same owner and shared between all recipients.
+ */
+public class PayloadBuffers {
+
+	private static final int MIN_SIZE = 16;
+
+	private static final AtomicLong allocatedBytes = new AtomicLong();
+
+	private static final AtomicLong allocatedBuffers = new AtomicLong();
+
+	private static final AtomicLong sentPayloads = new AtomicLong();
+
+	private static final AtomicLong recipients = new AtomicLong();
+
+	public static PacketBuffer allocate(int expectedSize) {
+		return new PacketBuffer(Unpooled.buffer(Math.max(expectedSize, MIN_SIZE)));
+	}
+
+	/**
+	 * Should be called once per buffer, after it was fully written.
+	 * Final capacity is counted as allocation, since growing buffer discards previous arrays.
+	 */
+	public static void recordAllocation(ByteBuf payload) {
+		allocatedBytes.addAndGet(payload.capacity());
+		allocatedBuffers.incrementAndGet();
+	}
+
+	public static void recordSend(int recipientCount) {
+		sentPayloads.incrementAndGet();
+		recipients.addAndGet(recipientCount);
+	}
+
+	public static long getAllocatedBytes() {
+		return allocatedBytes.get();
+	}
+
+	public static long getAllocatedBuffers() {
+		return allocatedBuffers.get();
+	}
+
+	public static long getSentPayloads() {
+		return sentPayloads.get();
+	}
+
+	public static long getRecipients() {
+		return recipients.get();
+	}
+
+	public static double getAllocatedBytesPerSend() {
+		final long sent = sentPayloads.get();
+		return sent > 0? (double)allocatedBytes.get() / sent : 0;
+	}
+
+	public static void resetCounters() {
+		allocatedBytes.set(0);
+		allocatedBuffers.set(0);
+		sentPayloads.set(0);
+		recipients.set(0);
+	}
+
+	/**
+	 * Size hint for next payload from same source. Updated without synchronization - it's only an estimate.
+	 */
+	public static class SizeEstimate {
+		private int lastSize = MIN_SIZE;
+
+		public PacketBuffer allocate() {
+			return PayloadBuffers.allocate(lastSize);
+		}
+
+		public int getLastSize() {
+			return lastSize;
+		}
+
+		public void update(ByteBuf payload) {
+			lastSize = payload.writerIndex();
+			recordAllocation(payload);
+		}
+	}
+}
@@ -1,7 +1,6 @@
 package openmods.network.event;
 
 import com.google.common.base.Preconditions;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
@@ -17,6 +16,7 @@ import net.minecraftforge.registries.IForgeRegistry;
 import openmods.Log;
 import openmods.OpenMods;
 import openmods.utils.CommonRegistryCallbacks;
+import openmods.utils.RegistryIdTable;
 
 @Sharable
 public class NetworkEventCodec extends MessageToMessageCodec<FMLProxyPacket, NetworkEvent> {
@@ -32,17 +32,19 @@ public class NetworkEventCodec extends MessageToMessageCodec<FMLProxyPacket, Net
 		final Channel channel = ctx.channel();
 		final Side side = channel.attr(NetworkRegistry.CHANNEL_SOURCE).get();
 
-		final NetworkEventEntry entry = CommonRegistryCallbacks.getObjectToEntryMap(registry).get(msg.getClass());
-		Preconditions.checkState(entry != null, "Can't find registration for class %s", msg.getClass());
-		final int id = CommonRegistryCallbacks.getEntryIdMap(registry).get(entry);
+		final RegistryIdTable<Class<? extends NetworkEvent>, NetworkEventEntry> ids = CommonRegistryCallbacks.getIdTable(registry);
+		final int id = ids.getObjectId(msg.getClass());
+		Preconditions.checkState(id != RegistryIdTable.NO_ID, "Can't find registration for class %s", msg.getClass());
+		final NetworkEventEntry entry = ids.getEntry(id);
 
 		final EventDirection validator = entry.getDirection();
 		Preconditions.checkState(validator != null && validator.validateSend(side),
 				"Invalid direction: sending packet %s on side %s", msg.getClass(), side);
 
-		final PacketBuffer buf = new PacketBuffer(Unpooled.buffer());
+		final PacketBuffer buf = entry.payloadSize.allocate();
 		buf.writeVarInt(id);
 		msg.writeToStream(buf);
+		entry.payloadSize.update(buf);
 
 		final FMLProxyPacket packet = new FMLProxyPacket(buf, NetworkEventDispatcher.CHANNEL_NAME);
 		packet.setDispatcher(msg.dispatcher);
@@ -56,7 +58,8 @@ public class NetworkEventCodec extends MessageToMessageCodec<FMLProxyPacket, Net
 
 		final PacketBuffer payload = new PacketBuffer(msg.payload());
 		final int typeId = payload.readVarInt();
-		final NetworkEventEntry type = CommonRegistryCallbacks.getEntryIdMap(registry).inverse().get(typeId);
+		final NetworkEventEntry type = CommonRegistryCallbacks.<Class<? extends NetworkEvent>, NetworkEventEntry> getIdTable(registry).getEntry(typeId);
+		Preconditions.checkState(type != null, "Unknown event type id %s", typeId);
 
 		final EventDirection validator = type.getDirection();
 		Preconditions.checkState(validator != null && validator.validateReceive(side),
@@ -18,7 +18,7 @@ public class NetworkEventDispatcher extends Dispatcher {
 
 	public NetworkEventDispatcher(IForgeRegistry<NetworkEventEntry> registry) {
 		this.channels = NetworkRegistry.INSTANCE.newChannel(CHANNEL_NAME, new NetworkEventCodec(registry), new NetworkEventInboundHandler());
-		ExtendedOutboundHandler.install(this.channels);
+		ExtendedOutboundHandler.install(this.channels, true);
 
 		this.senders = new Senders();
 	}
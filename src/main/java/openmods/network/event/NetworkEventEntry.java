@@ -3,11 +3,14 @@ package openmods.network.event;
 import com.google.common.base.Preconditions;
 import net.minecraft.util.ResourceLocation;
 import net.minecraftforge.registries.IForgeRegistryEntry;
+import openmods.network.PayloadBuffers;
 
 public abstract class NetworkEventEntry implements IForgeRegistryEntry<NetworkEventEntry> {
 
 	private ResourceLocation name;
 
+	final PayloadBuffers.SizeEstimate payloadSize = new PayloadBuffers.SizeEstimate();
+
 	public abstract Class<? extends NetworkEvent> getPacketType();
 
 	public abstract NetworkEvent createPacket();
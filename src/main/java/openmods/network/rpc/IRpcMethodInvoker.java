@@ -0,0 +1,5 @@
+package openmods.network.rpc;
+
+public interface IRpcMethodInvoker {
+	public void invoke(Object target, Object[] args) throws Throwable;
+}
@@ -4,6 +4,7 @@ import com.google.common.base.Preconditions;
 import java.lang.reflect.Method;
 import net.minecraft.util.ResourceLocation;
 import net.minecraftforge.registries.IForgeRegistryEntry;
+import openmods.network.PayloadBuffers;
 
 public class MethodEntry implements IForgeRegistryEntry<MethodEntry> {
 
@@ -13,9 +14,17 @@ public class MethodEntry implements IForgeRegistryEntry<MethodEntry> {
 
 	public final MethodParamsCodec paramsCodec;
 
+	public final IRpcMethodInvoker invoker;
+
+	public final boolean coalesce;
+
+	final PayloadBuffers.SizeEstimate payloadSize = new PayloadBuffers.SizeEstimate();
+
 	public MethodEntry(Method method) {
 		this.method = method;
 		this.paramsCodec = new MethodParamsCodec(method);
+		this.invoker = RpcClassGenerator.createInvoker(method);
+		this.coalesce = method.isAnnotationPresent(RpcCoalesce.class);
 	}
 
 	@Override
@@ -0,0 +1,14 @@
+package openmods.network.rpc;
+
+import java.util.List;
+
+public class RpcCallBatch {
+	// bigger batches are split by sender and rejected by receiver
+	public static final int MAX_SIZE = 1024;
+
+	public final List<RpcCall> calls;
+
+	public RpcCallBatch(List<RpcCall> calls) {
+		this.calls = calls;
+	}
+}
@@ -0,0 +1,115 @@
+package openmods.network.rpc;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.ClientTickEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+import net.minecraftforge.fml.common.gameevent.TickEvent.ServerTickEvent;
+import net.minecraftforge.fml.relauncher.Side;
+import openmods.LibConfig;
+import openmods.network.senders.IPacketSender;
+
+/**
+ * Sender wrapper that keeps RPC calls until end of tick and then sends them as single {@link RpcCallBatch}.
+ * Queues are only touched from thread of side that sent them (client or server thread), so no locking is needed.
+ */
+@EventBusSubscriber
+public class RpcCallBatcher implements IPacketSender {
+
+	private static final EnumMap<Side, Set<RpcCallBatcher>> pendingSenders = Maps.newEnumMap(Side.class);
+
+	static {
+		for (Side side : Side.values())
+			pendingSenders.put(side, Sets.newLinkedHashSet());
+	}
+
+	private final IPacketSender sender;
+
+	private final EnumMap<Side, List<RpcCall>> pendingCalls = Maps.newEnumMap(Side.class);
+
+	public RpcCallBatcher(IPacketSender sender) {
+		this.sender = sender;
+		for (Side side : Side.values())
+			pendingCalls.put(side, Lists.newArrayList());
+	}
+
+	@Override
+	public void sendMessage(Object msg) {
+		if (!LibConfig.batchRpcCalls || !(msg instanceof RpcCall)) {
+			sender.sendMessage(msg);
+			return;
+		}
+
+		final Side side = FMLCommonHandler.instance().getEffectiveSide();
+		final List<RpcCall> calls = pendingCalls.get(side);
+
+		final RpcCall call = (RpcCall)msg;
+		if (!call.method.coalesce || !replacePending(calls, call)) calls.add(call);
+		pendingSenders.get(side).add(this);
+	}
+
+	/**
+	 * Replaces pending call in place, so it keeps its order relative to calls made in between.
+	 * Targets are compared with equals, since every proxy has own target instance.
+	 */
+	private static boolean replacePending(List<RpcCall> calls, RpcCall call) {
+		final ListIterator<RpcCall> it = calls.listIterator();
+		while (it.hasNext()) {
+			final RpcCall pending = it.next();
+			if (pending.method == call.method && pending.target.equals(call.target)) {
+				it.set(call);
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public void sendMessages(Collection<Object> msgs) {
+		for (Object msg : msgs)
+			sendMessage(msg);
+	}
+
+	private void flush(Side side) {
+		final List<RpcCall> calls = pendingCalls.get(side);
+		if (calls.isEmpty()) return;
+
+		for (List<RpcCall> part : Lists.partition(calls, RpcCallBatch.MAX_SIZE)) {
+			if (part.size() == 1) sender.sendMessage(part.get(0));
+			else sender.sendMessage(new RpcCallBatch(ImmutableList.copyOf(part)));
+		}
+
+		calls.clear();
+	}
+
+	private static void flushAll(Side side) {
+		final Set<RpcCallBatcher> senders = pendingSenders.get(side);
+		if (senders.isEmpty()) return;
+
+		for (RpcCallBatcher sender : senders)
+			sender.flush(side);
+
+		senders.clear();
+	}
+
+	@SubscribeEvent
+	public static void onClientTick(ClientTickEvent evt) {
+		if (evt.phase == Phase.END) flushAll(Side.CLIENT);
+	}
+
+	@SubscribeEvent
+	public static void onServerTick(ServerTickEvent evt) {
+		if (evt.phase == Phase.END) flushAll(Side.SERVER);
+	}
+}
@@ -1,11 +1,11 @@
 package openmods.network.rpc;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.BiMap;
-import io.netty.buffer.Unpooled;
+import com.google.common.collect.Lists;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageCodec;
+import java.lang.reflect.Method;
 import java.util.List;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.network.INetHandler;
@@ -15,10 +15,25 @@ import net.minecraftforge.fml.common.network.internal.FMLProxyPacket;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.registries.IForgeRegistry;
 import openmods.OpenMods;
+import openmods.network.PayloadBuffers;
 import openmods.utils.CommonRegistryCallbacks;
+import openmods.utils.RegistryIdTable;
 
 @Sharable
-public class RpcCallCodec extends MessageToMessageCodec<FMLProxyPacket, RpcCall> {
+public class RpcCallCodec extends MessageToMessageCodec<FMLProxyPacket, Object> {
+
+	// outside of target id range, so can't be confused with single call
+	static final int BATCH_MARKER = 0x100;
+
+	interface CallEncoder {
+		public void encode(PacketBuffer output, RpcCall call);
+	}
+
+	interface CallDecoder {
+		public RpcCall decode(PacketBuffer input, int targetId);
+	}
+
+	private static final int MAX_VAR_INT_SIZE = 5;
 
 	private final IForgeRegistry<TargetTypeProvider> targetRegistry;
 
@@ -30,26 +45,60 @@ public class RpcCallCodec extends MessageToMessageCodec<FMLProxyPacket, RpcCall>
 	}
 
 	@Override
-	protected void encode(ChannelHandlerContext ctx, RpcCall call, List<Object> out) throws Exception {
-		final PacketBuffer output = new PacketBuffer(Unpooled.buffer());
+	public boolean acceptOutboundMessage(Object msg) throws Exception {
+		return msg instanceof RpcCall || msg instanceof RpcCallBatch;
+	}
+
+	@Override
+	protected void encode(ChannelHandlerContext ctx, Object msg, List<Object> out) throws Exception {
+		final PacketBuffer output;
+		if (msg instanceof RpcCallBatch) {
+			final List<RpcCall> calls = ((RpcCallBatch)msg).calls;
+
+			int expectedSize = 2 * MAX_VAR_INT_SIZE;
+			for (RpcCall call : calls)
+				expectedSize += call.method.payloadSize.getLastSize();
+
+			output = PayloadBuffers.allocate(expectedSize);
+			encodeBatch(output, calls, this::encodeCall);
+			PayloadBuffers.recordAllocation(output);
+		} else {
+			final RpcCall call = (RpcCall)msg;
+			output = call.method.payloadSize.allocate();
+			encodeCall(output, call);
+			call.method.payloadSize.update(output);
+		}
+
+		FMLProxyPacket packet = new FMLProxyPacket(output, RpcCallDispatcher.CHANNEL_NAME);
+		out.add(packet);
+	}
+
+	static void encodeBatch(PacketBuffer output, List<RpcCall> calls, CallEncoder encoder) {
+		Preconditions.checkArgument(!calls.isEmpty() && calls.size() <= RpcCallBatch.MAX_SIZE, "Invalid batch size: %s", calls.size());
+		output.writeVarInt(BATCH_MARKER);
+		output.writeVarInt(calls.size());
+		for (RpcCall call : calls)
+			encoder.encode(output, call);
+	}
 
+	private void encodeCall(PacketBuffer output, RpcCall call) {
 		{
 			final IRpcTarget targetWrapper = call.target;
-			int targetId = CommonRegistryCallbacks.mapObjectToId(targetRegistry, targetWrapper.getClass());
+			final RegistryIdTable<Class<? extends IRpcTarget>, TargetTypeProvider> targetIds = CommonRegistryCallbacks.getIdTable(targetRegistry);
+			final int targetId = targetIds.getObjectId(targetWrapper.getClass());
+			Preconditions.checkState(targetId != RegistryIdTable.NO_ID, "Unregistered target wrapper %s", targetWrapper.getClass());
 			output.writeVarInt(targetId);
 			targetWrapper.writeToStream(output);
 		}
 
 		{
-			final BiMap<MethodEntry, Integer> eventIdMap = CommonRegistryCallbacks.getEntryIdMap(methodRegistry);
-			int methodId = eventIdMap.get(call.method);
+			final RegistryIdTable<Method, MethodEntry> methodIds = CommonRegistryCallbacks.getIdTable(methodRegistry);
+			final int methodId = methodIds.getId(call.method);
+			Preconditions.checkState(methodId != RegistryIdTable.NO_ID, "Unregistered method %s", call.method);
 			output.writeVarInt(methodId);
 			MethodParamsCodec paramsCodec = call.method.paramsCodec;
 			paramsCodec.writeArgs(output, call.args);
 		}
-
-		FMLProxyPacket packet = new FMLProxyPacket(output, RpcCallDispatcher.CHANNEL_NAME);
-		out.add(packet);
 	}
 
 	@Override
@@ -57,31 +106,62 @@ public class RpcCallCodec extends MessageToMessageCodec<FMLProxyPacket, RpcCall>
 		final PacketBuffer input = new PacketBuffer(msg.payload());
 
 		final Side side = ctx.channel().attr(NetworkRegistry.CHANNEL_SOURCE).get();
+		final EntityPlayer player = getPlayer(msg);
+
+		out.add(decodeMessage(input, (buffer, targetId) -> decodeCall(side, player, buffer, targetId)));
+	}
+
+	/**
+	 * @return {@link RpcCall} or {@link RpcCallBatch}
+	 */
+	static Object decodeMessage(PacketBuffer input, CallDecoder decoder) {
+		final int header = input.readVarInt();
+		if (header == BATCH_MARKER) {
+			final int count = input.readVarInt();
+			// count comes from remote side, so it's checked before anything is allocated. Every call takes at least one byte
+			Preconditions.checkState(count > 0 && count <= RpcCallBatch.MAX_SIZE && count <= input.readableBytes(),
+					"Invalid batch size %s, %s bytes left in buffer", count, input.readableBytes());
+
+			final List<RpcCall> calls = Lists.newArrayList();
+			for (int i = 0; i < count; i++)
+				calls.add(decoder.decode(input, input.readVarInt()));
 
+			int bufferJunkSize = input.readableBytes();
+			Preconditions.checkState(bufferJunkSize == 0, "%s junk bytes left in buffer, batch size = %s", bufferJunkSize, count);
+
+			return new RpcCallBatch(calls);
+		} else {
+			final RpcCall call = decoder.decode(input, header);
+
+			int bufferJunkSize = input.readableBytes();
+			Preconditions.checkState(bufferJunkSize == 0, "%s junk bytes left in buffer, method = %s", bufferJunkSize, call.method);
+
+			return call;
+		}
+	}
+
+	private RpcCall decodeCall(Side side, EntityPlayer player, PacketBuffer input, int targetId) {
 		final IRpcTarget target;
 		final MethodEntry method;
 		final Object[] args;
 
 		{
-			final int targetId = input.readVarInt();
-			final BiMap<Integer, TargetTypeProvider> idToEntryMap = CommonRegistryCallbacks.getEntryIdMap(targetRegistry).inverse();
-			final TargetTypeProvider entry = idToEntryMap.get(targetId);
+			final RegistryIdTable<Class<? extends IRpcTarget>, TargetTypeProvider> targetIds = CommonRegistryCallbacks.getIdTable(targetRegistry);
+			final TargetTypeProvider entry = targetIds.getEntry(targetId);
+			Preconditions.checkState(entry != null, "Unknown target type id %s", targetId);
 			target = entry.createRpcTarget();
-			EntityPlayer player = getPlayer(msg);
 			target.readFromStreamStream(side, player, input);
 		}
 
 		{
-			final BiMap<MethodEntry, Integer> eventIdMap = CommonRegistryCallbacks.getEntryIdMap(methodRegistry);
+			final RegistryIdTable<Method, MethodEntry> methodIds = CommonRegistryCallbacks.getIdTable(methodRegistry);
 			final int methodId = input.readVarInt();
-			method = eventIdMap.inverse().get(methodId);
+			method = methodIds.getEntry(methodId);
+			Preconditions.checkState(method != null, "Unknown method id %s", methodId);
 			args = method.paramsCodec.readArgs(input);
 		}
 
-		int bufferJunkSize = input.readableBytes();
-		Preconditions.checkState(bufferJunkSize == 0, "%s junk bytes left in buffer, method = %s", bufferJunkSize, method);
-
-		out.add(new RpcCall(target, method, args));
+		return new RpcCall(target, method, args);
 	}
 
 	protected EntityPlayer getPlayer(FMLProxyPacket msg) {
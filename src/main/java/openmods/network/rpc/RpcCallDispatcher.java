@@ -69,16 +69,20 @@ public class RpcCallDispatcher extends Dispatcher {
 
 	public final Senders senders;
 
+	public final IPacketSender batchedClientSender;
+
 	private final RpcProxyFactory proxyFactory;
 
 	private final Map<Side, FMLEmbeddedChannel> channels;
 
 	private RpcCallDispatcher(IForgeRegistry<MethodEntry> methodRegistry, IForgeRegistry<TargetTypeProvider> targetRegistry) {
 		this.channels = NetworkRegistry.INSTANCE.newChannel(CHANNEL_NAME, new RpcCallCodec(targetRegistry, methodRegistry), new RpcCallInboundHandler());
-		ExtendedOutboundHandler.install(this.channels);
+		ExtendedOutboundHandler.install(this.channels, true);
 
 		this.senders = new Senders();
 
+		this.batchedClientSender = batched(senders.client);
+
 		this.proxyFactory = new RpcProxyFactory(methodRegistry);
 	}
 
@@ -91,6 +95,14 @@ public class RpcCallDispatcher extends Dispatcher {
 		return proxyFactory.createProxy(getClass().getClassLoader(), sender, wrapper, mainIntf, extraIntf);
 	}
 
+	/**
+	 * Wraps sender, so RPC calls sent through it are collected and sent as single packet at end of tick.
+	 * Methods marked with {@link RpcCoalesce} will only send last call for every target.
+	 */
+	public static IPacketSender batched(IPacketSender sender) {
+		return new RpcCallBatcher(sender);
+	}
+
 	public static final String ID_FIELDS_SEPARATOR = ";";
 
 	public static class MethodRegistrationContext extends RegistrationContextBase<MethodEntry> {
@@ -4,24 +4,48 @@ import com.google.common.base.Preconditions;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import openmods.Log;
 import openmods.utils.NetUtils;
 import openmods.utils.SneakyThrower;
 
 @Sharable
-public class RpcCallInboundHandler extends SimpleChannelInboundHandler<RpcCall> {
+public class RpcCallInboundHandler extends SimpleChannelInboundHandler<Object> {
 
 	@Override
-	protected void channelRead0(ChannelHandlerContext ctx, final RpcCall msg) throws Exception {
-		NetUtils.executeSynchronized(ctx, () -> {
-			try {
-				Object target = msg.target.getTarget();
-				Preconditions.checkNotNull(target, "Target wrapper %s returned null object");
-				msg.method.method.invoke(target, msg.args);
-				msg.target.afterCall();
-			} catch (Throwable t) {
-				throw SneakyThrower.sneakyThrow(t);
-			}
-		});
+	public boolean acceptInboundMessage(Object msg) throws Exception {
+		return msg instanceof RpcCall || msg instanceof RpcCallBatch;
+	}
+
+	@Override
+	protected void channelRead0(ChannelHandlerContext ctx, final Object msg) throws Exception {
+		if (msg instanceof RpcCallBatch) {
+			final RpcCallBatch batch = (RpcCallBatch)msg;
+			// whole batch executed in single task, to preserve order and avoid scheduling overhead
+			NetUtils.executeSynchronized(ctx, () -> {
+				for (RpcCall call : batch.calls) {
+					// failed call should not affect rest of batch, same as when calls were executed in separate tasks
+					try {
+						execute(call);
+					} catch (Throwable t) {
+						Log.warn(t, "Failed to execute RPC call %s on target %s", call.method, call.target);
+					}
+				}
+			});
+		} else {
+			final RpcCall call = (RpcCall)msg;
+			NetUtils.executeSynchronized(ctx, () -> execute(call));
+		}
+	}
+
+	private static void execute(RpcCall msg) {
+		try {
+			Object target = msg.target.getTarget();
+			Preconditions.checkNotNull(target, "Target wrapper %s returned null object");
+			msg.method.invoker.invoke(target, msg.args);
+			msg.target.afterCall();
+		} catch (Throwable t) {
+			throw SneakyThrower.sneakyThrow(t);
+		}
 	}
 
 }
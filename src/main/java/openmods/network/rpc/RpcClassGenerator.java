@@ -0,0 +1,306 @@
+package openmods.network.rpc;
+
+import com.google.common.collect.Maps;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import openmods.Log;
+import openmods.asm.GeneratedClassLoader;
+import openmods.network.senders.IPacketSender;
+import openmods.utils.SneakyThrower;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+/**
+ * Generates RPC proxy classes (with method entries passed as array, indexed by interface method) and method invokers, replacing {@link java.lang.reflect.Proxy} and {@link Method#invoke(Object, Object...)}.
+ * Classes that are not public or not visible from this class loader are handled by reflective fallbacks.
+ */
+class RpcClassGenerator implements Opcodes {
+
+	private static final GeneratedClassLoader classLoader = new GeneratedClassLoader();
+
+	private static final AtomicInteger classCounter = new AtomicInteger();
+
+	private static final Type OBJECT_TYPE = Type.getType(Object.class);
+
+	private static final Type OBJECT_ARRAY_TYPE = Type.getType(Object[].class);
+
+	private static final Type TARGET_TYPE = Type.getType(IRpcTarget.class);
+
+	private static final Type SENDER_TYPE = Type.getType(IPacketSender.class);
+
+	private static final Type METHOD_ENTRY_TYPE = Type.getType(MethodEntry.class);
+
+	private static final Type METHOD_ENTRY_ARRAY_TYPE = Type.getType(MethodEntry[].class);
+
+	private static final Type RPC_CALL_TYPE = Type.getType(RpcCall.class);
+
+	private static final Type INVOKER_TYPE = Type.getType(IRpcMethodInvoker.class);
+
+	private static final org.objectweb.asm.commons.Method OBJECT_CTOR = org.objectweb.asm.commons.Method.getMethod("void <init>()");
+
+	private static final org.objectweb.asm.commons.Method PROXY_CTOR = new org.objectweb.asm.commons.Method("<init>", Type.VOID_TYPE, new Type[] { TARGET_TYPE, SENDER_TYPE, METHOD_ENTRY_ARRAY_TYPE });
+
+	private static final org.objectweb.asm.commons.Method RPC_CALL_CTOR = new org.objectweb.asm.commons.Method("<init>", Type.VOID_TYPE, new Type[] { TARGET_TYPE, METHOD_ENTRY_TYPE, OBJECT_ARRAY_TYPE });
+
+	private static final org.objectweb.asm.commons.Method SEND_MESSAGE = org.objectweb.asm.commons.Method.getMethod("void sendMessage(Object)");
+
+	private static final org.objectweb.asm.commons.Method INVOKE = org.objectweb.asm.commons.Method.getMethod("void invoke(Object, Object[])");
+
+	private static final String FIELD_TARGET = "target";
+
+	private static final String FIELD_SENDER = "sender";
+
+	private static final String FIELD_METHODS = "methods";
+
+	private static boolean isAccessible(Class<?> cls) {
+		if (!Modifier.isPublic(cls.getModifiers())) return false;
+
+		return classLoader.isVisible(cls);
+	}
+
+	private static boolean isAccessible(Method method) {
+		if (!isAccessible(method.getDeclaringClass())) return false;
+		for (Class<?> param : method.getParameterTypes())
+			if (!param.isPrimitive() && !isAccessible(param)) return false;
+		return true;
+	}
+
+	public static class ProxyClass {
+		private final Constructor<?> ctor;
+
+		private final Method[] methods;
+
+		private ProxyClass(Constructor<?> ctor, Method[] methods) {
+			this.ctor = ctor;
+			this.methods = methods;
+		}
+
+		/**
+		 * Entries are resolved on every proxy creation, so class can be reused after new methods are registered
+		 */
+		public Object create(IRpcTarget target, IPacketSender sender, Map<Method, MethodEntry> methodMap) {
+			final MethodEntry[] entries = new MethodEntry[methods.length];
+			for (int i = 0; i < methods.length; i++)
+				entries[i] = methodMap.get(methods[i]);
+
+			try {
+				return ctor.newInstance(target, sender, entries);
+			} catch (InvocationTargetException e) {
+				throw SneakyThrower.sneakyThrow(e.getCause());
+			} catch (ReflectiveOperationException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * Generated methods send call only if entry on their index is not null.
+	 * @return null if any of interfaces can't be implemented by generated class
+	 */
+	public static ProxyClass createProxyClass(List<Class<?>> interfaces) {
+		for (Class<?> intf : interfaces)
+			if (!isAccessible(intf)) return null;
+
+		final Map<String, Method> methods = Maps.newLinkedHashMap();
+		for (Class<?> intf : interfaces)
+			for (Method m : intf.getMethods()) {
+				if (Modifier.isStatic(m.getModifiers())) continue;
+				final String key = m.getName() + Type.getMethodDescriptor(m);
+				if (!methods.containsKey(key)) methods.put(key, m);
+			}
+
+		final String name = RpcClassGenerator.class.getPackage().getName().replace('.', '/') + "/RpcProxy$" + classCounter.incrementAndGet();
+		final Type proxyType = Type.getObjectType(name);
+
+		final String[] interfaceNames = new String[interfaces.size()];
+		for (int i = 0; i < interfaceNames.length; i++)
+			interfaceNames[i] = Type.getInternalName(interfaces.get(i));
+
+		final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(V1_6, ACC_PUBLIC | ACC_SUPER | ACC_SYNTHETIC, name, null, OBJECT_TYPE.getInternalName(), interfaceNames);
+		writer.visitSource(".dynamic", null);
+
+		writer.visitField(ACC_PRIVATE | ACC_FINAL, FIELD_TARGET, TARGET_TYPE.getDescriptor(), null, null).visitEnd();
+		writer.visitField(ACC_PRIVATE | ACC_FINAL, FIELD_SENDER, SENDER_TYPE.getDescriptor(), null, null).visitEnd();
+		writer.visitField(ACC_PRIVATE | ACC_FINAL, FIELD_METHODS, METHOD_ENTRY_ARRAY_TYPE.getDescriptor(), null, null).visitEnd();
+
+		{
+			final GeneratorAdapter mg = new GeneratorAdapter(ACC_PUBLIC, PROXY_CTOR, null, null, writer);
+			mg.visitCode();
+			mg.loadThis();
+			mg.invokeConstructor(OBJECT_TYPE, OBJECT_CTOR);
+			mg.loadThis();
+			mg.loadArg(0);
+			mg.putField(proxyType, FIELD_TARGET, TARGET_TYPE);
+			mg.loadThis();
+			mg.loadArg(1);
+			mg.putField(proxyType, FIELD_SENDER, SENDER_TYPE);
+			mg.loadThis();
+			mg.loadArg(2);
+			mg.putField(proxyType, FIELD_METHODS, METHOD_ENTRY_ARRAY_TYPE);
+			mg.returnValue();
+			mg.endMethod();
+		}
+
+		int entryIndex = 0;
+		for (Method m : methods.values()) {
+			final org.objectweb.asm.commons.Method asmMethod = org.objectweb.asm.commons.Method.getMethod(m);
+			final GeneratorAdapter mg = new GeneratorAdapter(ACC_PUBLIC, asmMethod, null, null, writer);
+			mg.visitCode();
+
+			final int entry = mg.newLocal(METHOD_ENTRY_TYPE);
+			mg.loadThis();
+			mg.getField(proxyType, FIELD_METHODS, METHOD_ENTRY_ARRAY_TYPE);
+			mg.push(entryIndex++);
+			mg.arrayLoad(METHOD_ENTRY_TYPE);
+			mg.storeLocal(entry);
+
+			final Label skipSend = mg.newLabel();
+			mg.loadLocal(entry);
+			mg.ifNull(skipSend);
+
+			mg.loadThis();
+			mg.getField(proxyType, FIELD_SENDER, SENDER_TYPE);
+
+			mg.newInstance(RPC_CALL_TYPE);
+			mg.dup();
+
+			mg.loadThis();
+			mg.getField(proxyType, FIELD_TARGET, TARGET_TYPE);
+
+			mg.loadLocal(entry);
+
+			// same convention as reflection proxy: no args -> null
+			if (asmMethod.getArgumentTypes().length == 0) mg.visitInsn(ACONST_NULL);
+			else mg.loadArgArray();
+
+			mg.invokeConstructor(RPC_CALL_TYPE, RPC_CALL_CTOR);
+			mg.invokeInterface(SENDER_TYPE, SEND_MESSAGE);
+
+			mg.mark(skipSend);
+			pushDefaultValue(mg, asmMethod.getReturnType());
+			mg.returnValue();
+			mg.endMethod();
+		}
+
+		writer.visitEnd();
+
+		final Class<?> cls = classLoader.define(name.replace('/', '.'), writer.toByteArray());
+		try {
+			final Constructor<?> ctor = cls.getConstructor(IRpcTarget.class, IPacketSender.class, MethodEntry[].class);
+			return new ProxyClass(ctor, methods.values().toArray(new Method[0]));
+		} catch (NoSuchMethodException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static void pushDefaultValue(GeneratorAdapter mg, Type type) {
+		switch (type.getSort()) {
+			case Type.VOID:
+				break;
+			case Type.BOOLEAN:
+			case Type.CHAR:
+			case Type.BYTE:
+			case Type.SHORT:
+			case Type.INT:
+				mg.push(0);
+				break;
+			case Type.LONG:
+				mg.push(0L);
+				break;
+			case Type.FLOAT:
+				mg.push(0.0f);
+				break;
+			case Type.DOUBLE:
+				mg.push(0.0);
+				break;
+			default:
+				mg.visitInsn(ACONST_NULL);
+		}
+	}
+
+	private static class ReflectiveInvoker implements IRpcMethodInvoker {
+		private final Method method;
+
+		public ReflectiveInvoker(Method method) {
+			this.method = method;
+		}
+
+		@Override
+		public void invoke(Object target, Object[] args) throws Throwable {
+			try {
+				method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	public static IRpcMethodInvoker createInvoker(Method method) {
+		if (!isAccessible(method)) {
+			Log.debug("Method %s is not accessible, using reflective RPC invoker", method);
+			return new ReflectiveInvoker(method);
+		}
+
+		final String name = RpcClassGenerator.class.getPackage().getName().replace('.', '/') + "/RpcInvoker$" + classCounter.incrementAndGet();
+
+		final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(V1_6, ACC_PUBLIC | ACC_SUPER | ACC_SYNTHETIC, name, null, OBJECT_TYPE.getInternalName(), new String[] { INVOKER_TYPE.getInternalName() });
+		writer.visitSource(".dynamic", null);
+
+		{
+			final GeneratorAdapter mg = new GeneratorAdapter(ACC_PUBLIC, OBJECT_CTOR, null, null, writer);
+			mg.visitCode();
+			mg.loadThis();
+			mg.invokeConstructor(OBJECT_TYPE, OBJECT_CTOR);
+			mg.returnValue();
+			mg.endMethod();
+		}
+
+		{
+			final GeneratorAdapter mg = new GeneratorAdapter(ACC_PUBLIC, INVOKE, null, null, writer);
+			mg.visitCode();
+
+			final Class<?> owner = method.getDeclaringClass();
+			final Type ownerType = Type.getType(owner);
+			mg.loadArg(0);
+			mg.checkCast(ownerType);
+
+			final Class<?>[] params = method.getParameterTypes();
+			for (int i = 0; i < params.length; i++) {
+				mg.loadArg(1);
+				mg.push(i);
+				mg.arrayLoad(OBJECT_TYPE);
+				mg.unbox(Type.getType(params[i]));
+			}
+
+			final org.objectweb.asm.commons.Method asmMethod = org.objectweb.asm.commons.Method.getMethod(method);
+			if (owner.isInterface()) mg.invokeInterface(ownerType, asmMethod);
+			else mg.invokeVirtual(ownerType, asmMethod);
+
+			final Type returnType = asmMethod.getReturnType();
+			if (returnType.getSize() == 1) mg.pop();
+			else if (returnType.getSize() == 2) mg.pop2();
+
+			mg.returnValue();
+			mg.endMethod();
+		}
+
+		writer.visitEnd();
+
+		final Class<?> cls = classLoader.define(name.replace('/', '.'), writer.toByteArray());
+		try {
+			return (IRpcMethodInvoker)cls.newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new AssertionError(e);
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package openmods.network.rpc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * When calls are batched, pending call of this method on same target is replaced by newer one.
+ * Replacement keeps position of pending call: {@code setA(1); apply(); setA(2)} is sent as {@code setA(2); apply()}.
+ * Intended for methods that set absolute state (like slider position).
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RpcCoalesce {}
@@ -1,7 +1,10 @@
 package openmods.network.rpc;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.List;
 import java.util.Map;
 import net.minecraftforge.registries.IForgeRegistry;
 import openmods.network.senders.IPacketSender;
@@ -12,16 +15,30 @@ public class RpcProxyFactory {
 
 	private final IForgeRegistry<MethodEntry> registry;
 
+	// value is null when interfaces can't be implemented by generated class
+	private final Map<List<Class<?>>, RpcClassGenerator.ProxyClass> proxyClasses = Maps.newHashMap();
+
 	RpcProxyFactory(IForgeRegistry<MethodEntry> registry) {
 		this.registry = registry;
 	}
 
+	private synchronized RpcClassGenerator.ProxyClass getProxyClass(List<Class<?>> interfaces) {
+		if (proxyClasses.containsKey(interfaces)) return proxyClasses.get(interfaces);
+
+		final RpcClassGenerator.ProxyClass result = RpcClassGenerator.createProxyClass(interfaces);
+		proxyClasses.put(interfaces, result);
+		return result;
+	}
+
 	@SuppressWarnings("unchecked")
 	public <T> T createProxy(ClassLoader loader, final IPacketSender sender, final IRpcTarget wrapper, Class<? extends T> mainIntf, Class<?>... extraIntf) {
 		Class<?> allInterfaces[] = ArrayUtils.add(extraIntf, mainIntf);
 
 		final Map<Method, MethodEntry> methodMap = CommonRegistryCallbacks.getObjectToEntryMap(registry);
 
+		final RpcClassGenerator.ProxyClass proxyClass = getProxyClass(ImmutableList.copyOf(allInterfaces));
+		if (proxyClass != null) return (T)proxyClass.create(wrapper, sender, methodMap);
+
 		Object proxy = Proxy.newProxyInstance(loader, allInterfaces, (self, method, args) -> {
 			final MethodEntry entry = methodMap.get(method);
 			if (entry != null) {
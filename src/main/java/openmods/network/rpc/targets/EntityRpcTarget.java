@@ -40,4 +40,16 @@ public class EntityRpcTarget implements IRpcTarget {
 
 	@Override
 	public void afterCall() {}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(entity);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (obj == null || obj.getClass() != getClass()) return false;
+		return ((EntityRpcTarget)obj).entity == entity;
+	}
 }
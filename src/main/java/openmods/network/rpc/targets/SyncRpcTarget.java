@@ -64,6 +64,19 @@ public abstract class SyncRpcTarget implements IRpcTarget {
 		getSyncMap().sendUpdates();
 	}
 
+	@Override
+	public int hashCode() {
+		return 31 * syncProvider.hashCode() + objectId;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (obj == null || obj.getClass() != getClass()) return false;
+		final SyncRpcTarget other = (SyncRpcTarget)obj;
+		return other.object == object && other.objectId == objectId && other.syncProvider.equals(syncProvider);
+	}
+
 	public static class SyncTileEntityRpcTarget extends SyncRpcTarget {
 		public SyncTileEntityRpcTarget() {
 			super(new TileEntityRpcTarget());
@@ -42,4 +42,16 @@ public class TileEntityRpcTarget implements IRpcTarget {
 	@Override
 	public void afterCall() {}
 
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(te);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (obj == null || obj.getClass() != getClass()) return false;
+		return ((TileEntityRpcTarget)obj).te == te;
+	}
+
 }
@@ -9,6 +9,7 @@ import net.minecraftforge.fml.common.network.handshake.NetworkDispatcher;
 import net.minecraftforge.fml.relauncher.Side;
 import openmods.network.DimCoord;
 import openmods.network.IPacketTargetSelector;
+import openmods.utils.ChunkWatcherIndex;
 import openmods.utils.NetUtils;
 
 public class SelectChunkWatchers implements IPacketTargetSelector<DimCoord> {
@@ -24,7 +25,7 @@ public class SelectChunkWatchers implements IPacketTargetSelector<DimCoord> {
 	public void listDispatchers(DimCoord coord, Collection<NetworkDispatcher> result) {
 		WorldServer server = DimensionManager.getWorld(coord.dimension);
 
-		Set<EntityPlayerMP> players = NetUtils.getPlayersWatchingBlock(server, coord.blockPos.getX(), coord.blockPos.getZ());
+		Set<EntityPlayerMP> players = ChunkWatcherIndex.INSTANCE.getPlayersWatching(server.provider.getDimension(), coord.blockPos.getX() >> 4, coord.blockPos.getZ() >> 4);
 
 		for (EntityPlayerMP player : players) {
 			NetworkDispatcher dispatcher = NetUtils.getPlayerDispatcher(player);
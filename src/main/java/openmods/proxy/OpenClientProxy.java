@@ -40,6 +40,7 @@ import openmods.model.MappedModelLoader;
 import openmods.model.ModelWithDependencies;
 import openmods.model.MultiLayerModel;
 import openmods.model.PerspectiveAwareModel;
+import openmods.model.eval.CommandEvalModelCache;
 import openmods.model.eval.EvalExpandModel;
 import openmods.model.eval.EvalModel;
 import openmods.model.itemstate.ItemStateModel;
@@ -109,6 +110,7 @@ public final class OpenClientProxy implements IOpenModsProxy {
 		ClientCommandHandler.instance.registerCommand(new CommandConfig("om_config_c", false));
 		ClientCommandHandler.instance.registerCommand(new CommandSource("om_source_c", false, OpenMods.instance.getCollector()));
 		ClientCommandHandler.instance.registerCommand(new CommandGlDebug());
+		ClientCommandHandler.instance.registerCommand(new CommandEvalModelCache());
 
 		if (LibConfig.enableCalculatorCommands) {
 			final ICommandComponent commandRoot = new CommandCalcFactory(new File(getMinecraftDir(), "scripts")).getRoot();
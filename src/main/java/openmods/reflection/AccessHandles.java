@@ -0,0 +1,72 @@
+package openmods.reflection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Creates erased {@link MethodHandle}s for accessors generated by {@link AccessorClassGenerator}.
+ * All methods return null when handle can't be created - callers should fall back to plain reflection in that case.
+ * Members must already be made accessible.
+ */
+class AccessHandles {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	/**
+	 * @return handle with type {@code (Object target, Object arg1, ... Object argN)Object}. Target is ignored for static methods
+	 */
+	static MethodHandle forMethod(Method method) {
+		try {
+			MethodHandle handle = LOOKUP.unreflect(method);
+			if (Modifier.isStatic(method.getModifiers())) handle = MethodHandles.dropArguments(handle, 0, Object.class);
+			return handle.asType(MethodType.genericMethodType(method.getParameterCount() + 1));
+		} catch (IllegalAccessException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return handle with type {@code (Object target)Object}. Target is ignored for static fields
+	 */
+	static MethodHandle forGetter(Field field) {
+		try {
+			MethodHandle handle = LOOKUP.unreflectGetter(field);
+			if (Modifier.isStatic(field.getModifiers())) handle = MethodHandles.dropArguments(handle, 0, Object.class);
+			return handle.asType(MethodType.genericMethodType(1));
+		} catch (IllegalAccessException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return handle with type {@code (Object target, Object value)void}. Target is ignored for static fields
+	 */
+	static MethodHandle forSetter(Field field) {
+		try {
+			MethodHandle handle = LOOKUP.unreflectSetter(field);
+			if (Modifier.isStatic(field.getModifiers())) handle = MethodHandles.dropArguments(handle, 0, Object.class);
+			return handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+		} catch (IllegalAccessException | RuntimeException e) {
+			// i.e. static final fields
+			return null;
+		}
+	}
+
+	/**
+	 * @return handle with type {@code ()Object}
+	 */
+	static MethodHandle forConstructor(Constructor<?> ctor) {
+		if (ctor.getParameterCount() != 0) return null;
+
+		try {
+			return LOOKUP.unreflectConstructor(ctor).asType(MethodType.genericMethodType(0));
+		} catch (IllegalAccessException | RuntimeException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,282 @@
+package openmods.reflection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+import openmods.Log;
+import openmods.asm.GeneratedClassLoader;
+import openmods.reflection.ConstructorAccess.ConstructorAccessException;
+import openmods.reflection.FieldAccess.FieldAccessException;
+import openmods.reflection.MethodAccess.FunctionVar;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+/**
+ * Generates accessor classes that keep {@link MethodHandle}s from {@link AccessHandles} in static final fields.
+ * Such handles are constants for JIT and can be inlined into caller, unlike ones stored in instance fields.
+ * Every accessor gets own class, so generated call sites stay monomorphic.
+ * Exceptions are wrapped same way as in reflective accessors.
+ */
+class AccessorClassGenerator implements Opcodes {
+
+	private static final GeneratedClassLoader classLoader = new GeneratedClassLoader();
+
+	private static final AtomicInteger classCounter = new AtomicInteger();
+
+	private static final Type OBJECT_TYPE = Type.getType(Object.class);
+
+	private static final Type OBJECT_ARRAY_TYPE = Type.getType(Object[].class);
+
+	private static final Type CLASS_TYPE = Type.getType(Class.class);
+
+	private static final Type STRING_TYPE = Type.getType(String.class);
+
+	private static final Type THROWABLE_TYPE = Type.getType(Throwable.class);
+
+	private static final Type METHOD_HANDLE_TYPE = Type.getType(MethodHandle.class);
+
+	private static final Type GENERATED_LOADER_TYPE = Type.getType(GeneratedClassLoader.class);
+
+	private static final Type FIELD_TYPE = Type.getType(Field.class);
+
+	private static final Type CONSTRUCTOR_TYPE = Type.getType(Constructor.class);
+
+	private static final Type FIELD_ACCESS_TYPE = Type.getType(FieldAccess.class);
+
+	private static final Type FIELD_ACCESS_EXCEPTION_TYPE = Type.getType(FieldAccessException.class);
+
+	private static final Type CONSTRUCTOR_ACCESS_TYPE = Type.getType(ConstructorAccess.class);
+
+	private static final Type CONSTRUCTOR_ACCESS_EXCEPTION_TYPE = Type.getType(ConstructorAccessException.class);
+
+	private static final Type RUNTIME_EXCEPTION_TYPE = Type.getType(RuntimeException.class);
+
+	private static final Type INVOCATION_TARGET_EXCEPTION_TYPE = Type.getType(InvocationTargetException.class);
+
+	private static final org.objectweb.asm.commons.Method OBJECT_CTOR = org.objectweb.asm.commons.Method.getMethod("void <init>()");
+
+	private static final org.objectweb.asm.commons.Method FIELD_ACCESS_CTOR = new org.objectweb.asm.commons.Method("<init>", Type.VOID_TYPE, new Type[] { FIELD_TYPE, Type.BOOLEAN_TYPE });
+
+	private static final org.objectweb.asm.commons.Method CONSTRUCTOR_ACCESS_CTOR = new org.objectweb.asm.commons.Method("<init>", Type.VOID_TYPE, new Type[] { CONSTRUCTOR_TYPE });
+
+	private static final org.objectweb.asm.commons.Method TAKE_CONSTANTS = new org.objectweb.asm.commons.Method("takeConstants", OBJECT_ARRAY_TYPE, new Type[] { CLASS_TYPE });
+
+	private static final org.objectweb.asm.commons.Method CLINIT = org.objectweb.asm.commons.Method.getMethod("void <clinit>()");
+
+	private static final org.objectweb.asm.commons.Method WRAP_CTOR = new org.objectweb.asm.commons.Method("<init>", Type.VOID_TYPE, new Type[] { THROWABLE_TYPE });
+
+	private static final org.objectweb.asm.commons.Method FIELD_EXCEPTION_CTOR = new org.objectweb.asm.commons.Method("<init>", Type.VOID_TYPE, new Type[] { FIELD_TYPE, STRING_TYPE, THROWABLE_TYPE });
+
+	private static final org.objectweb.asm.commons.Method CONSTRUCTOR_EXCEPTION_CTOR = new org.objectweb.asm.commons.Method("<init>", Type.VOID_TYPE, new Type[] { CONSTRUCTOR_TYPE, THROWABLE_TYPE });
+
+	private static final org.objectweb.asm.commons.Method FIELD_GET = new org.objectweb.asm.commons.Method("get", OBJECT_TYPE, new Type[] { OBJECT_TYPE });
+
+	private static final org.objectweb.asm.commons.Method FIELD_SET = new org.objectweb.asm.commons.Method("set", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, OBJECT_TYPE });
+
+	private static final org.objectweb.asm.commons.Method CONSTRUCTOR_CREATE = new org.objectweb.asm.commons.Method("create", OBJECT_TYPE, new Type[0]);
+
+	private static final String FIELD_FIELD = "field";
+
+	private static final String FIELD_CTOR = "ctor";
+
+	private interface ExceptionWrapper {
+		public void wrap(GeneratorAdapter mg, int exception);
+	}
+
+	private static class ClassBuilder {
+		private final String name;
+
+		private final Type type;
+
+		private final ClassWriter writer;
+
+		private final MethodHandle[] handles;
+
+		public ClassBuilder(String prefix, Type superType, String[] interfaces, MethodHandle... handles) {
+			this.name = AccessorClassGenerator.class.getPackage().getName().replace('.', '/') + "/" + prefix + "$" + classCounter.incrementAndGet();
+			this.type = Type.getObjectType(name);
+			this.handles = handles;
+
+			this.writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+			writer.visit(V1_7, ACC_PUBLIC | ACC_SUPER | ACC_SYNTHETIC | ACC_FINAL, name, null, superType.getInternalName(), interfaces);
+			writer.visitSource(".dynamic", null);
+
+			for (int i = 0; i < handles.length; i++)
+				if (handles[i] != null) writer.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, handleField(i), METHOD_HANDLE_TYPE.getDescriptor(), null, null).visitEnd();
+
+			final GeneratorAdapter mg = new GeneratorAdapter(ACC_STATIC, CLINIT, null, null, writer);
+			mg.visitCode();
+			final int constants = mg.newLocal(OBJECT_ARRAY_TYPE);
+			mg.push(type);
+			mg.invokeStatic(GENERATED_LOADER_TYPE, TAKE_CONSTANTS);
+			mg.storeLocal(constants);
+
+			for (int i = 0; i < handles.length; i++) {
+				if (handles[i] == null) continue;
+				mg.loadLocal(constants);
+				mg.push(i);
+				mg.arrayLoad(OBJECT_TYPE);
+				mg.checkCast(METHOD_HANDLE_TYPE);
+				mg.putStatic(type, handleField(i), METHOD_HANDLE_TYPE);
+			}
+
+			mg.returnValue();
+			mg.endMethod();
+		}
+
+		private static String handleField(int index) {
+			return "HANDLE_" + index;
+		}
+
+		public void addConstructor(Type superType, org.objectweb.asm.commons.Method ctor) {
+			final GeneratorAdapter mg = new GeneratorAdapter(ACC_PUBLIC, ctor, null, null, writer);
+			mg.visitCode();
+			mg.loadThis();
+			mg.loadArgs();
+			mg.invokeConstructor(superType, ctor);
+			mg.returnValue();
+			mg.endMethod();
+		}
+
+		/**
+		 * Generated method passes all arguments to handle with signature same as erased method
+		 */
+		public void addHandleCall(org.objectweb.asm.commons.Method method, int handleIndex, ExceptionWrapper wrapper) {
+			final GeneratorAdapter mg = new GeneratorAdapter(ACC_PUBLIC, method, null, null, writer);
+			mg.visitCode();
+
+			final Label start = mg.mark();
+			mg.getStatic(type, handleField(handleIndex), METHOD_HANDLE_TYPE);
+			mg.loadArgs();
+			mg.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE_TYPE.getInternalName(), "invokeExact", method.getDescriptor(), false);
+			final Label end = mg.mark();
+			mg.returnValue();
+
+			mg.catchException(start, end, THROWABLE_TYPE);
+			final int exception = mg.newLocal(THROWABLE_TYPE);
+			mg.storeLocal(exception);
+			wrapper.wrap(mg, exception);
+			mg.throwException();
+			mg.endMethod();
+		}
+
+		public Class<?> define() {
+			writer.visitEnd();
+			return classLoader.define(name.replace('/', '.'), writer.toByteArray(), handles);
+		}
+	}
+
+	// same cause chain as Method.invoke: RuntimeException(InvocationTargetException(cause))
+	private static final ExceptionWrapper METHOD_EXCEPTION_WRAPPER = (mg, exception) -> {
+		mg.newInstance(RUNTIME_EXCEPTION_TYPE);
+		mg.dup();
+		mg.newInstance(INVOCATION_TARGET_EXCEPTION_TYPE);
+		mg.dup();
+		mg.loadLocal(exception);
+		mg.invokeConstructor(INVOCATION_TARGET_EXCEPTION_TYPE, WRAP_CTOR);
+		mg.invokeConstructor(RUNTIME_EXCEPTION_TYPE, WRAP_CTOR);
+	};
+
+	private static ExceptionWrapper fieldExceptionWrapper(String action) {
+		return (mg, exception) -> {
+			mg.newInstance(FIELD_ACCESS_EXCEPTION_TYPE);
+			mg.dup();
+			mg.loadThis();
+			mg.getField(FIELD_ACCESS_TYPE, FIELD_FIELD, FIELD_TYPE);
+			mg.push(action);
+			mg.loadLocal(exception);
+			mg.invokeConstructor(FIELD_ACCESS_EXCEPTION_TYPE, FIELD_EXCEPTION_CTOR);
+		};
+	}
+
+	private static final ExceptionWrapper CONSTRUCTOR_EXCEPTION_WRAPPER = (mg, exception) -> {
+		mg.newInstance(CONSTRUCTOR_ACCESS_EXCEPTION_TYPE);
+		mg.dup();
+		mg.loadThis();
+		mg.getField(CONSTRUCTOR_ACCESS_TYPE, FIELD_CTOR, CONSTRUCTOR_TYPE);
+		mg.loadLocal(exception);
+		mg.invokeConstructor(CONSTRUCTOR_ACCESS_EXCEPTION_TYPE, CONSTRUCTOR_EXCEPTION_CTOR);
+	};
+
+	private static org.objectweb.asm.commons.Method erasedCall(int argCount) {
+		final Type[] args = new Type[argCount + 1];
+		for (int i = 0; i < args.length; i++)
+			args[i] = OBJECT_TYPE;
+		return new org.objectweb.asm.commons.Method("call", OBJECT_TYPE, args);
+	}
+
+	/**
+	 * @param intf one of {@code FunctionN} interfaces, with arity matching method. Generated class also implements {@link FunctionVar}
+	 * @return null if class can't be generated
+	 */
+	public static Object createMethodAccessor(Method method, Class<?> intf) {
+		method.setAccessible(true);
+		final MethodHandle handle = AccessHandles.forMethod(method);
+		if (handle == null) return null;
+
+		try {
+			final int argCount = method.getParameterCount();
+			final MethodHandle spreader = handle.asSpreader(Object[].class, argCount);
+			final ClassBuilder builder = new ClassBuilder("MethodAccessor", OBJECT_TYPE, new String[] { Type.getInternalName(intf), Type.getInternalName(FunctionVar.class) }, handle, spreader);
+			builder.addConstructor(OBJECT_TYPE, OBJECT_CTOR);
+			builder.addHandleCall(erasedCall(argCount), 0, METHOD_EXCEPTION_WRAPPER);
+			builder.addHandleCall(new org.objectweb.asm.commons.Method("call", OBJECT_TYPE, new Type[] { OBJECT_TYPE, OBJECT_ARRAY_TYPE }), 1, METHOD_EXCEPTION_WRAPPER);
+			return builder.define().newInstance();
+		} catch (Throwable t) {
+			Log.warn(t, "Failed to generate accessor for method %s, using reflection", method);
+			return null;
+		}
+	}
+
+	/**
+	 * Setter is generated only when handle for it is available (i.e. not for static final fields) - otherwise reflective one from {@link FieldAccess} is used
+	 * @return null if class can't be generated
+	 */
+	public static <T> FieldAccess<T> createFieldAccessor(Field field, boolean log) {
+		field.setAccessible(true);
+		final MethodHandle getter = AccessHandles.forGetter(field);
+		if (getter == null) return null;
+
+		final MethodHandle setter = AccessHandles.forSetter(field);
+
+		try {
+			final ClassBuilder builder = new ClassBuilder("FieldAccessor", FIELD_ACCESS_TYPE, null, getter, setter);
+			builder.addConstructor(FIELD_ACCESS_TYPE, FIELD_ACCESS_CTOR);
+			builder.addHandleCall(FIELD_GET, 0, fieldExceptionWrapper("read"));
+			if (setter != null) builder.addHandleCall(FIELD_SET, 1, fieldExceptionWrapper("set"));
+			@SuppressWarnings("unchecked")
+			final FieldAccess<T> result = (FieldAccess<T>)builder.define().getConstructor(Field.class, boolean.class).newInstance(field, log);
+			return result;
+		} catch (Throwable t) {
+			Log.warn(t, "Failed to generate accessor for field %s, using reflection", field);
+			return null;
+		}
+	}
+
+	/**
+	 * @return null if class can't be generated (i.e. for constructors with parameters)
+	 */
+	public static <T> ConstructorAccess<T> createConstructorAccessor(Constructor<? extends T> ctor) {
+		ctor.setAccessible(true);
+		final MethodHandle handle = AccessHandles.forConstructor(ctor);
+		if (handle == null) return null;
+
+		try {
+			final ClassBuilder builder = new ClassBuilder("ConstructorAccessor", CONSTRUCTOR_ACCESS_TYPE, null, handle);
+			builder.addConstructor(CONSTRUCTOR_ACCESS_TYPE, CONSTRUCTOR_ACCESS_CTOR);
+			builder.addHandleCall(CONSTRUCTOR_CREATE, 0, CONSTRUCTOR_EXCEPTION_WRAPPER);
+			@SuppressWarnings("unchecked")
+			final ConstructorAccess<T> result = (ConstructorAccess<T>)builder.define().getConstructor(Constructor.class).newInstance(ctor);
+			return result;
+		} catch (Throwable t) {
+			Log.warn(t, "Failed to generate accessor for constructor %s, using reflection", ctor);
+			return null;
+		}
+	}
+}
@@ -23,7 +23,8 @@ public class ConstructorAccess<T> implements IInstanceFactory<T> {
 
 	}
 
-	private Constructor<? extends T> ctor;
+	// also used by generated subclasses
+	protected final Constructor<? extends T> ctor;
 
 	public ConstructorAccess(Constructor<? extends T> ctor) {
 		ReflectionLog.logLoad(ctor);
@@ -43,7 +44,8 @@ public class ConstructorAccess<T> implements IInstanceFactory<T> {
 	public static <T> ConstructorAccess<T> create(Class<? extends T> cls) {
 		try {
 			Constructor<? extends T> c = cls.getConstructor();
-			return new ConstructorAccess<>(c);
+			final ConstructorAccess<T> generated = AccessorClassGenerator.createConstructorAccessor(c);
+			return generated != null? generated : new ConstructorAccess<>(c);
 		} catch (Throwable t) {
 			throw SneakyThrower.sneakyThrow(t);
 		}
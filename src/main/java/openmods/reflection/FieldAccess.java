@@ -28,7 +28,8 @@ public class FieldAccess<T> {
 		this(field, true);
 	}
 
-	private FieldAccess(Field field, boolean log) {
+	// also called by generated subclasses
+	protected FieldAccess(Field field, boolean log) {
 		if (log) ReflectionLog.logLoad(field);
 		this.field = field;
 		field.setAccessible(true);
@@ -83,12 +84,17 @@ public class FieldAccess<T> {
 		return (FieldAccess<C>)this;
 	}
 
+	private static <T> FieldAccess<T> create(Field f, boolean log) {
+		final FieldAccess<T> generated = AccessorClassGenerator.createFieldAccessor(f, log);
+		return generated != null? generated : new FieldAccess<>(f, log);
+	}
+
 	public static <T> FieldAccess<T> create(Class<?> cls, String... names) {
 		Field f = ReflectionHelper.getField(cls, names);
-		return new FieldAccess<>(f, false); // log done in ReflectionHelper
+		return create(f, false); // log done in ReflectionHelper
 	}
 
 	public static <T> FieldAccess<T> create(Field f) {
-		return new FieldAccess<>(f, true);
+		return create(f, true);
 	}
 }
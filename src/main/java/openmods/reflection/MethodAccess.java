@@ -36,6 +36,15 @@ public class MethodAccess {
 		}
 	}
 
+	/**
+	 * @return instance of generated class implementing {@code intf} and {@link FunctionVar} or null, if reflective implementation should be used
+	 */
+	@SuppressWarnings("unchecked")
+	private static <F> F tryGenerate(Class<?> returnCls, Method method, Class<?> intf) {
+		Preconditions.checkArgument(returnCls.isAssignableFrom(method.getReturnType()), "Method '%s' has invalid return type", method);
+		return (F)AccessorClassGenerator.createMethodAccessor(method, intf);
+	}
+
 	// R()
 
 	public interface Function0<R> extends FunctionBase<R> {
@@ -54,7 +63,9 @@ public class MethodAccess {
 	}
 
 	public static <R> Function0<R> create(Class<? extends R> returnCls, Class<?> target, String... names) {
-		return new Function0Impl<>(returnCls, ReflectionHelper.getMethod(target, names));
+		final Method method = ReflectionHelper.getMethod(target, names);
+		final Function0<R> generated = tryGenerate(returnCls, method, Function0.class);
+		return generated != null? generated : new Function0Impl<>(returnCls, method);
 	}
 
 	// R(P1)
@@ -75,7 +86,9 @@ public class MethodAccess {
 	}
 
 	public static <R, P1> Function1<R, P1> create(Class<? extends R> returnCls, Class<?> target, Class<? extends P1> p1, String... names) {
-		return new Function1Impl<>(returnCls, ReflectionHelper.getMethod(target, names, p1));
+		final Method method = ReflectionHelper.getMethod(target, names, p1);
+		final Function1<R, P1> generated = tryGenerate(returnCls, method, Function1.class);
+		return generated != null? generated : new Function1Impl<>(returnCls, method);
 	}
 
 	// R(P1, P2)
@@ -96,7 +109,9 @@ public class MethodAccess {
 	}
 
 	public static <R, P1, P2> Function2<R, P1, P2> create(Class<? extends R> returnCls, Class<?> target, Class<? extends P1> p1, Class<? extends P2> p2, String... names) {
-		return new Function2Impl<>(returnCls, ReflectionHelper.getMethod(target, names, p1, p2));
+		final Method method = ReflectionHelper.getMethod(target, names, p1, p2);
+		final Function2<R, P1, P2> generated = tryGenerate(returnCls, method, Function2.class);
+		return generated != null? generated : new Function2Impl<>(returnCls, method);
 	}
 
 	// R(P1, P2, P3)
@@ -117,7 +132,9 @@ public class MethodAccess {
 	}
 
 	public static <R, P1, P2, P3> Function3<R, P1, P2, P3> create(Class<? extends R> returnCls, Class<?> target, Class<? extends P1> p1, Class<? extends P2> p2, Class<? extends P3> p3, String... names) {
-		return new Function3Impl<>(returnCls, ReflectionHelper.getMethod(target, names, p1, p2, p3));
+		final Method method = ReflectionHelper.getMethod(target, names, p1, p2, p3);
+		final Function3<R, P1, P2, P3> generated = tryGenerate(returnCls, method, Function3.class);
+		return generated != null? generated : new Function3Impl<>(returnCls, method);
 	}
 
 	// R(P1, P2, P3, P4)
@@ -138,7 +155,9 @@ public class MethodAccess {
 	}
 
 	public static <R, P1, P2, P3, P4> Function4<R, P1, P2, P3, P4> create(Class<? extends R> returnCls, Class<?> target, Class<? extends P1> p1, Class<? extends P2> p2, Class<? extends P3> p3, Class<? extends P4> p4, String... names) {
-		return new Function4Impl<>(returnCls, ReflectionHelper.getMethod(target, names, p1, p2, p3, p4));
+		final Method method = ReflectionHelper.getMethod(target, names, p1, p2, p3, p4);
+		final Function4<R, P1, P2, P3, P4> generated = tryGenerate(returnCls, method, Function4.class);
+		return generated != null? generated : new Function4Impl<>(returnCls, method);
 	}
 
 	// R(P1, P2, P3, P4, P5)
@@ -159,7 +178,9 @@ public class MethodAccess {
 	}
 
 	public static <R, P1, P2, P3, P4, P5> Function5<R, P1, P2, P3, P4, P5> create(Class<? extends R> returnCls, Class<?> target, Class<? extends P1> p1, Class<? extends P2> p2, Class<? extends P3> p3, Class<? extends P4> p4, Class<? extends P5> p5, String... names) {
-		return new Function5Impl<>(returnCls, ReflectionHelper.getMethod(target, names, p1, p2, p3, p4, p5));
+		final Method method = ReflectionHelper.getMethod(target, names, p1, p2, p3, p4, p5);
+		final Function5<R, P1, P2, P3, P4, P5> generated = tryGenerate(returnCls, method, Function5.class);
+		return generated != null? generated : new Function5Impl<>(returnCls, method);
 	}
 
 	// helpers
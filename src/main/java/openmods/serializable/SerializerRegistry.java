@@ -6,10 +6,11 @@ import com.google.common.collect.Maps;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import net.minecraft.network.PacketBuffer;
 import openmods.reflection.ConstructorAccess;
 import openmods.reflection.TypeUtils;
+import openmods.serializable.cls.ClassSerializersProvider;
 import openmods.serializable.providers.ArraySerializerProvider;
 import openmods.serializable.providers.ClassSerializerProvider;
 import openmods.serializable.providers.EnumSerializerProvider;
@@ -25,13 +26,20 @@ public class SerializerRegistry {
 
 	public static final SerializerRegistry instance = new SerializerRegistry();
 
-	private final Map<Class<?>, IStreamSerializer<?>> serializers = Maps.newHashMap(TypeRW.STREAM_SERIALIZERS);
+	private final ConcurrentMap<Class<?>, IStreamSerializer<?>> serializers = Maps.newConcurrentMap();
 
-	private final List<ISerializerProvider> providers = Lists.newArrayList();
+	// caches for serializers created by providers - they may be updated from any thread (i.e. during packet decoding)
+	private final ConcurrentMap<Class<?>, IStreamSerializer<?>> providedSerializers = Maps.newConcurrentMap();
 
-	private final List<IGenericSerializerProvider> genericProviders = Lists.newArrayList();
+	private final ConcurrentMap<Type, IStreamSerializer<?>> genericSerializers = Maps.newConcurrentMap();
+
+	private final List<ISerializerProvider> providers = Lists.newCopyOnWriteArrayList();
+
+	private final List<IGenericSerializerProvider> genericProviders = Lists.newCopyOnWriteArrayList();
 
 	{
+		serializers.putAll(TypeRW.STREAM_SERIALIZERS);
+
 		providers.add(new EnumSerializerProvider());
 		providers.add(new ArraySerializerProvider());
 		providers.add(new ClassSerializerProvider());
@@ -49,8 +57,9 @@ public class SerializerRegistry {
 
 	public <T> void register(Class<? extends T> target, IStreamSerializer<T> serializer) {
 		Preconditions.checkArgument(target != Object.class, "Can't register serializer for Object");
-		final IStreamSerializer<?> prev = serializers.put(target, serializer);
+		final IStreamSerializer<?> prev = serializers.putIfAbsent(target, serializer);
 		Preconditions.checkState(prev == null, "Duplicate serializer for %s", target);
+		invalidateCaches();
 	}
 
 	public <T> void register(IStreamSerializer<T> serializer) {
@@ -84,15 +93,33 @@ public class SerializerRegistry {
 	public void registerProvider(ISerializerProvider provider) {
 		Preconditions.checkNotNull(provider);
 		providers.add(provider);
+		invalidateCaches();
+	}
+
+	public void registerGenericProvider(IGenericSerializerProvider provider) {
+		Preconditions.checkNotNull(provider);
+		genericProviders.add(provider);
+		invalidateCaches();
 	}
 
-	private IStreamSerializer<?> findClassSerializer(Class<?> cls, IStreamSerializer<?> serializer) {
+	// cached serializers may have been created before this registration (also as components of other serializers).
+	// Registrations are allowed at any time - all maps are concurrent, so no separate read-only phase is needed for thread safety
+	private void invalidateCaches() {
+		providedSerializers.clear();
+		genericSerializers.clear();
+		if (this == instance) ClassSerializersProvider.instance.invalidateCache();
+	}
+
+	// not using computeIfAbsent, since providers may recursively query registry (i.e. for field types)
+	private static <K> IStreamSerializer<?> cache(ConcurrentMap<K, IStreamSerializer<?>> cache, K key, IStreamSerializer<?> serializer) {
+		final IStreamSerializer<?> prev = cache.putIfAbsent(key, serializer);
+		return prev != null? prev : serializer;
+	}
+
+	private IStreamSerializer<?> findClassSerializer(Class<?> cls) {
 		for (ISerializerProvider provider : providers) {
-			serializer = provider.getSerializer(cls);
-			if (serializer != null) {
-				serializers.put(cls, serializer);
-				return serializer;
-			}
+			final IStreamSerializer<?> serializer = provider.getSerializer(cls);
+			if (serializer != null) return cache(providedSerializers, cls, serializer);
 		}
 
 		return null;
@@ -102,7 +129,9 @@ public class SerializerRegistry {
 	public <T> IStreamSerializer<T> findSerializer(Class<? extends T> cls) {
 		IStreamSerializer<?> serializer = serializers.get(cls);
 
-		if (serializer == null) serializer = findClassSerializer(cls, serializer);
+		if (serializer == null) serializer = providedSerializers.get(cls);
+
+		if (serializer == null) serializer = findClassSerializer(cls);
 
 		return (IStreamSerializer<T>)serializer;
 	}
@@ -114,9 +143,12 @@ public class SerializerRegistry {
 
 	@SuppressWarnings("unchecked")
 	protected IStreamSerializer<Object> findGenericSerializer(Type type) {
+		final IStreamSerializer<?> cached = genericSerializers.get(type);
+		if (cached != null) return (IStreamSerializer<Object>)cached;
+
 		for (IGenericSerializerProvider provider : genericProviders) {
 			IStreamSerializer<?> serializer = provider.getSerializer(type);
-			if (serializer != null) return (IStreamSerializer<Object>)serializer;
+			if (serializer != null) return (IStreamSerializer<Object>)cache(genericSerializers, type, serializer);
 		}
 
 		return null;
@@ -23,9 +23,9 @@ import openmods.utils.io.StreamUtils;
 
 public class ClassSerializerBuilder<T> {
 
-	private static class SerializableField extends FieldAccess<Object> {
-		private final IStreamSerializer<Object> serializer;
-		private final boolean isNullable;
+	static class SerializableField extends FieldAccess<Object> {
+		final IStreamSerializer<Object> serializer;
+		final boolean isNullable;
 
 		public SerializableField(Class<?> ownerCls, Field field, boolean isNullable) {
 			super(field);
@@ -138,8 +138,13 @@ public class ClassSerializerBuilder<T> {
 	}
 
 	public IObjectSerializer<T> create() {
+		final int nullBytesCount = StreamUtils.bitsToBytes(nullableCount);
+
+		final IObjectSerializer<T> generated = ClassSerializerGenerator.tryCreate(ownerClass, fields, nullBytesCount);
+		if (generated != null) return generated;
+
 		return (nullableCount != 0)
-				? new NullableSerializer<>(fields, StreamUtils.bitsToBytes(nullableCount))
+				? new NullableSerializer<>(fields, nullBytesCount)
 				: new NonNullableSerializer<>(fields);
 	}
 }
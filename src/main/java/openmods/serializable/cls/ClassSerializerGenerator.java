@@ -0,0 +1,340 @@
+package openmods.serializable.cls;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import io.netty.buffer.ByteBuf;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.minecraft.network.PacketBuffer;
+import openmods.Log;
+import openmods.asm.GeneratedClassLoader;
+import openmods.serializable.IObjectSerializer;
+import openmods.serializable.cls.ClassSerializerBuilder.SerializableField;
+import openmods.utils.io.IStreamSerializer;
+import openmods.utils.io.TypeRW;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+
+/**
+ * Generates {@link IObjectSerializer} implementations with direct field access and inlined primitive reads/writes.
+ * Wire format is identical to reflective serializers from {@link ClassSerializerBuilder}, including null bitmap (written in place, before field values).
+ */
+class ClassSerializerGenerator implements Opcodes {
+
+	private static final GeneratedClassLoader classLoader = new GeneratedClassLoader();
+
+	private static final AtomicInteger classCounter = new AtomicInteger();
+
+	private static class PrimitiveAccess {
+		public final IStreamSerializer<?> serializer;
+		public final Method read;
+		public final Method write;
+
+		public PrimitiveAccess(IStreamSerializer<?> serializer, String read, String write) {
+			this.serializer = serializer;
+			this.read = Method.getMethod(read);
+			this.write = Method.getMethod(write);
+		}
+	}
+
+	// only netty methods - PacketBuffer ones are obfuscated outside dev environment
+	private static final Map<Class<?>, PrimitiveAccess> PRIMITIVES = ImmutableMap.<Class<?>, PrimitiveAccess> builder()
+			.put(int.class, new PrimitiveAccess(TypeRW.INTEGER, "int readInt()", "io.netty.buffer.ByteBuf writeInt(int)"))
+			.put(boolean.class, new PrimitiveAccess(TypeRW.BOOL, "boolean readBoolean()", "io.netty.buffer.ByteBuf writeBoolean(boolean)"))
+			.put(byte.class, new PrimitiveAccess(TypeRW.BYTE, "byte readByte()", "io.netty.buffer.ByteBuf writeByte(int)"))
+			.put(short.class, new PrimitiveAccess(TypeRW.SHORT, "short readShort()", "io.netty.buffer.ByteBuf writeShort(int)"))
+			.put(char.class, new PrimitiveAccess(TypeRW.CHAR, "char readChar()", "io.netty.buffer.ByteBuf writeChar(int)"))
+			.put(long.class, new PrimitiveAccess(TypeRW.LONG, "long readLong()", "io.netty.buffer.ByteBuf writeLong(long)"))
+			.put(float.class, new PrimitiveAccess(TypeRW.FLOAT, "float readFloat()", "io.netty.buffer.ByteBuf writeFloat(float)"))
+			.put(double.class, new PrimitiveAccess(TypeRW.DOUBLE, "double readDouble()", "io.netty.buffer.ByteBuf writeDouble(double)"))
+			.build();
+
+	private static final Type OBJECT_TYPE = Type.getType(Object.class);
+
+	private static final Type BYTE_BUF_TYPE = Type.getType(ByteBuf.class);
+
+	private static final Type STREAM_SERIALIZER_TYPE = Type.getType(IStreamSerializer.class);
+
+	private static final Type STREAM_SERIALIZER_ARRAY_TYPE = Type.getType(IStreamSerializer[].class);
+
+	private static final Type OBJECT_SERIALIZER_TYPE = Type.getType(IObjectSerializer.class);
+
+	private static final Type PRECONDITIONS_TYPE = Type.getType(Preconditions.class);
+
+	private static final Type IO_EXCEPTION_TYPE = Type.getType(IOException.class);
+
+	private static final Method OBJECT_CTOR = Method.getMethod("void <init>()");
+
+	private static final Method SERIALIZER_CTOR = new Method("<init>", Type.VOID_TYPE, new Type[] { STREAM_SERIALIZER_ARRAY_TYPE });
+
+	private static final Method READ_OBJECT = new Method("readFromStream", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, Type.getType(PacketBuffer.class) });
+
+	private static final Method WRITE_OBJECT = new Method("writeToStream", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, Type.getType(PacketBuffer.class) });
+
+	private static final Method STREAM_READ = new Method("readFromStream", OBJECT_TYPE, new Type[] { Type.getType(PacketBuffer.class) });
+
+	private static final Method STREAM_WRITE = new Method("writeToStream", Type.VOID_TYPE, new Type[] { OBJECT_TYPE, Type.getType(PacketBuffer.class) });
+
+	private static final Method CHECK_NOT_NULL = Method.getMethod("Object checkNotNull(Object, Object)");
+
+	private static final Method WRITER_INDEX = Method.getMethod("int writerIndex()");
+
+	private static final Method WRITE_ZERO = Method.getMethod("io.netty.buffer.ByteBuf writeZero(int)");
+
+	private static final Method SET_BYTE = Method.getMethod("io.netty.buffer.ByteBuf setByte(int, int)");
+
+	private static final Method READ_UNSIGNED_BYTE = Method.getMethod("short readUnsignedByte()");
+
+	private static final String FIELD_SERIALIZERS = "serializers";
+
+	private static boolean isAccessible(Class<?> cls) {
+		while (cls.isArray())
+			cls = cls.getComponentType();
+
+		if (cls.isPrimitive()) return true;
+
+		for (Class<?> c = cls; c != null; c = c.getEnclosingClass())
+			if (!Modifier.isPublic(c.getModifiers())) return false;
+
+		return classLoader.isVisible(cls);
+	}
+
+	private static boolean isAccessible(Field field) {
+		final int modifiers = field.getModifiers();
+		return Modifier.isPublic(modifiers) &&
+				!Modifier.isStatic(modifiers) &&
+				!Modifier.isFinal(modifiers) &&
+				isAccessible(field.getDeclaringClass()) &&
+				isAccessible(field.getType());
+	}
+
+	private static PrimitiveAccess getDirectAccess(SerializableField field) {
+		final PrimitiveAccess access = PRIMITIVES.get(field.field.getType());
+		return (access != null && access.serializer == field.serializer)? access : null;
+	}
+
+	private static void mask(GeneratorAdapter mg, int nullableIndex) {
+		mg.push(0x80 >> (nullableIndex % 8));
+	}
+
+	/**
+	 * @return null if serializer can't be generated (i.e. class or fields are not accessible)
+	 */
+	public static <T> IObjectSerializer<T> tryCreate(Class<?> ownerClass, List<SerializableField> fields, int nullBytesCount) {
+		if (!isAccessible(ownerClass)) {
+			Log.debug("Class %s is not accessible, using reflective serializer", ownerClass);
+			return null;
+		}
+
+		for (SerializableField field : fields) {
+			if (!isAccessible(field.field)) {
+				Log.debug("Field %s is not accessible, using reflective serializer", field.field);
+				return null;
+			}
+		}
+
+		try {
+			return createSerializer(ownerClass, fields, nullBytesCount);
+		} catch (Throwable t) {
+			Log.warn(t, "Failed to generate serializer for class %s, using reflective one", ownerClass);
+			return null;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> IObjectSerializer<T> createSerializer(Class<?> ownerClass, List<SerializableField> fields, int nullBytesCount) throws ReflectiveOperationException {
+		final String name = ClassSerializerGenerator.class.getPackage().getName().replace('.', '/') + "/ClassSerializer$" + classCounter.incrementAndGet();
+		final Type serializerType = Type.getObjectType(name);
+		final Type ownerType = Type.getType(ownerClass);
+
+		final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(V1_6, ACC_PUBLIC | ACC_SUPER | ACC_SYNTHETIC, name, null, OBJECT_TYPE.getInternalName(), new String[] { OBJECT_SERIALIZER_TYPE.getInternalName() });
+		writer.visitSource(".dynamic", null);
+
+		writer.visitField(ACC_PRIVATE | ACC_FINAL, FIELD_SERIALIZERS, STREAM_SERIALIZER_ARRAY_TYPE.getDescriptor(), null, null).visitEnd();
+
+		{
+			final GeneratorAdapter mg = new GeneratorAdapter(ACC_PUBLIC, SERIALIZER_CTOR, null, null, writer);
+			mg.visitCode();
+			mg.loadThis();
+			mg.invokeConstructor(OBJECT_TYPE, OBJECT_CTOR);
+			mg.loadThis();
+			mg.loadArg(0);
+			mg.putField(serializerType, FIELD_SERIALIZERS, STREAM_SERIALIZER_ARRAY_TYPE);
+			mg.returnValue();
+			mg.endMethod();
+		}
+
+		{
+			final GeneratorAdapter mg = new GeneratorAdapter(ACC_PUBLIC, READ_OBJECT, null, new Type[] { IO_EXCEPTION_TYPE }, writer);
+			mg.visitCode();
+
+			final int target = mg.newLocal(ownerType);
+			mg.loadArg(0);
+			mg.checkCast(ownerType);
+			mg.storeLocal(target);
+
+			final int[] nullBits = new int[nullBytesCount];
+			for (int i = 0; i < nullBytesCount; i++) {
+				nullBits[i] = mg.newLocal(Type.INT_TYPE);
+				mg.loadArg(1);
+				mg.invokeVirtual(BYTE_BUF_TYPE, READ_UNSIGNED_BYTE);
+				mg.storeLocal(nullBits[i]);
+			}
+
+			int nullableIndex = 0;
+			for (int i = 0; i < fields.size(); i++) {
+				final SerializableField field = fields.get(i);
+				final Type fieldType = Type.getType(field.field.getType());
+				final Type fieldOwner = Type.getType(field.field.getDeclaringClass());
+				final PrimitiveAccess direct = getDirectAccess(field);
+
+				final Label end = mg.newLabel();
+				if (field.isNullable) {
+					final Label notNull = mg.newLabel();
+					mg.loadLocal(nullBits[nullableIndex / 8]);
+					mask(mg, nullableIndex);
+					mg.math(GeneratorAdapter.AND, Type.INT_TYPE);
+					mg.ifZCmp(GeneratorAdapter.EQ, notNull);
+					mg.loadLocal(target);
+					mg.visitInsn(ACONST_NULL);
+					mg.putField(fieldOwner, field.field.getName(), fieldType);
+					mg.goTo(end);
+					mg.mark(notNull);
+					nullableIndex++;
+				}
+
+				mg.loadLocal(target);
+				if (direct != null) {
+					mg.loadArg(1);
+					mg.invokeVirtual(BYTE_BUF_TYPE, direct.read);
+				} else {
+					mg.loadThis();
+					mg.getField(serializerType, FIELD_SERIALIZERS, STREAM_SERIALIZER_ARRAY_TYPE);
+					mg.push(i);
+					mg.arrayLoad(STREAM_SERIALIZER_TYPE);
+					mg.loadArg(1);
+					mg.invokeInterface(STREAM_SERIALIZER_TYPE, STREAM_READ);
+					mg.unbox(fieldType);
+				}
+				mg.putField(fieldOwner, field.field.getName(), fieldType);
+				mg.mark(end);
+			}
+
+			mg.returnValue();
+			mg.endMethod();
+		}
+
+		{
+			final GeneratorAdapter mg = new GeneratorAdapter(ACC_PUBLIC, WRITE_OBJECT, null, new Type[] { IO_EXCEPTION_TYPE }, writer);
+			mg.visitCode();
+
+			final int source = mg.newLocal(ownerType);
+			mg.loadArg(0);
+			mg.checkCast(ownerType);
+			mg.storeLocal(source);
+
+			// null bits are reserved before payload and filled after all fields are written
+			final int nullBitsIndex = mg.newLocal(Type.INT_TYPE);
+			final int[] nullBits = new int[nullBytesCount];
+			if (nullBytesCount > 0) {
+				mg.loadArg(1);
+				mg.invokeVirtual(BYTE_BUF_TYPE, WRITER_INDEX);
+				mg.storeLocal(nullBitsIndex);
+
+				mg.loadArg(1);
+				mg.push(nullBytesCount);
+				mg.invokeVirtual(BYTE_BUF_TYPE, WRITE_ZERO);
+				mg.pop();
+
+				for (int i = 0; i < nullBytesCount; i++) {
+					nullBits[i] = mg.newLocal(Type.INT_TYPE);
+					mg.push(0);
+					mg.storeLocal(nullBits[i]);
+				}
+			}
+
+			int nullableIndex = 0;
+			for (int i = 0; i < fields.size(); i++) {
+				final SerializableField field = fields.get(i);
+				final Type fieldType = Type.getType(field.field.getType());
+				final Type fieldOwner = Type.getType(field.field.getDeclaringClass());
+				final PrimitiveAccess direct = getDirectAccess(field);
+
+				if (direct != null) {
+					mg.loadArg(1);
+					mg.loadLocal(source);
+					mg.getField(fieldOwner, field.field.getName(), fieldType);
+					mg.invokeVirtual(BYTE_BUF_TYPE, direct.write);
+					mg.pop();
+					continue;
+				}
+
+				final int value = mg.newLocal(OBJECT_TYPE);
+				mg.loadLocal(source);
+				mg.getField(fieldOwner, field.field.getName(), fieldType);
+				mg.box(fieldType);
+				mg.storeLocal(value);
+
+				final Label end = mg.newLabel();
+				if (field.isNullable) {
+					final Label notNull = mg.newLabel();
+					final int bits = nullBits[nullableIndex / 8];
+					mg.loadLocal(value);
+					mg.ifNonNull(notNull);
+					mg.loadLocal(bits);
+					mask(mg, nullableIndex);
+					mg.math(GeneratorAdapter.OR, Type.INT_TYPE);
+					mg.storeLocal(bits);
+					mg.goTo(end);
+					mg.mark(notNull);
+					nullableIndex++;
+				} else {
+					mg.loadLocal(value);
+					mg.push("Non-nullable " + field.field + " has null value");
+					mg.invokeStatic(PRECONDITIONS_TYPE, CHECK_NOT_NULL);
+					mg.pop();
+				}
+
+				mg.loadThis();
+				mg.getField(serializerType, FIELD_SERIALIZERS, STREAM_SERIALIZER_ARRAY_TYPE);
+				mg.push(i);
+				mg.arrayLoad(STREAM_SERIALIZER_TYPE);
+				mg.loadLocal(value);
+				mg.loadArg(1);
+				mg.invokeInterface(STREAM_SERIALIZER_TYPE, STREAM_WRITE);
+				mg.mark(end);
+			}
+
+			for (int i = 0; i < nullBytesCount; i++) {
+				mg.loadArg(1);
+				mg.loadLocal(nullBitsIndex);
+				mg.push(i);
+				mg.math(GeneratorAdapter.ADD, Type.INT_TYPE);
+				mg.loadLocal(nullBits[i]);
+				mg.invokeVirtual(BYTE_BUF_TYPE, SET_BYTE);
+				mg.pop();
+			}
+
+			mg.returnValue();
+			mg.endMethod();
+		}
+
+		writer.visitEnd();
+
+		final IStreamSerializer<?>[] serializers = new IStreamSerializer<?>[fields.size()];
+		for (int i = 0; i < serializers.length; i++)
+			serializers[i] = fields.get(i).serializer;
+
+		final Class<?> cls = classLoader.define(name.replace('/', '.'), writer.toByteArray());
+		return (IObjectSerializer<T>)cls.getConstructor(IStreamSerializer[].class).newInstance(new Object[] { serializers });
+	}
+}
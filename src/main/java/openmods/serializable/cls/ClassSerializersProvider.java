@@ -1,28 +1,38 @@
 package openmods.serializable.cls;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 import net.minecraft.network.PacketBuffer;
 import openmods.serializable.IObjectSerializer;
-import openmods.utils.CachedFactory;
 import openmods.utils.FieldsSelector;
 
 public class ClassSerializersProvider {
 	public static final ClassSerializersProvider instance = new ClassSerializersProvider();
 
-	private final CachedFactory<Class<?>, IObjectSerializer<?>> cache = new CachedFactory<Class<?>, IObjectSerializer<?>>() {
-		@Override
-		protected IObjectSerializer<?> create(Class<?> key) {
-			ClassSerializerBuilder<Object> builder = new ClassSerializerBuilder<>(key);
+	// may be called from network threads, so cache must be thread-safe. Not using computeIfAbsent, since serializer creation can be recursive
+	private final ConcurrentMap<Class<?>, IObjectSerializer<?>> cache = Maps.newConcurrentMap();
 
-			for (Field f : SELECTOR.getFields(key))
-				builder.appendField(f);
+	private IObjectSerializer<?> create(Class<?> key) {
+		ClassSerializerBuilder<Object> builder = new ClassSerializerBuilder<>(key);
 
-			return builder.create();
-		}
-	};
+		for (Field f : SELECTOR.getFields(key))
+			builder.appendField(f);
+
+		return builder.create();
+	}
+
+	private IObjectSerializer<?> getOrCreate(Class<?> key) {
+		final IObjectSerializer<?> cached = cache.get(key);
+		if (cached != null) return cached;
+
+		final IObjectSerializer<?> created = create(key);
+		final IObjectSerializer<?> prev = cache.putIfAbsent(key, created);
+		return prev != null? prev : created;
+	}
 
 	private final FieldsSelector SELECTOR = new FieldsSelector() {
 		@Override
@@ -37,9 +47,14 @@ public class ClassSerializersProvider {
 		}
 	};
 
+	// field serializers are resolved once, on creation
+	public void invalidateCache() {
+		cache.clear();
+	}
+
 	@SuppressWarnings("unchecked")
 	public <T> IObjectSerializer<T> getSerializer(Class<? extends T> cls) {
-		return (IObjectSerializer<T>)cache.getOrCreate(cls);
+		return (IObjectSerializer<T>)getOrCreate(cls);
 	}
 
 	@SuppressWarnings("unchecked")
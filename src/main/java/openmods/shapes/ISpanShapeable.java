@@ -0,0 +1,12 @@
+package openmods.shapes;
+
+/**
+ * Optional extension of {@link IShapeable} for receivers that can handle runs of blocks along Z axis faster than single blocks.
+ * Generators should emit spans with {@link openmods.utils.render.GeometryUtils#makeSpan}, which falls back to single blocks for plain {@link IShapeable}.
+ */
+public interface ISpanShapeable extends IShapeable {
+	/**
+	 * Sets blocks from {@code (x, y, zFrom)} to {@code (x, y, zTo)}, inclusive. Always called with {@code zFrom <= zTo}
+	 */
+	public void setSpan(int x, int y, int zFrom, int zTo);
+}
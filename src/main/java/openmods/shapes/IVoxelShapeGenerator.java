@@ -0,0 +1,8 @@
+package openmods.shapes;
+
+/**
+ * Generator that can build {@link VoxelSet} directly (i.e. in parallel), instead of emitting blocks one by one.
+ */
+public interface IVoxelShapeGenerator extends IShapeGenerator {
+	public VoxelSet generateVoxels(int minX, int minY, int minZ, int maxX, int maxY, int maxZ);
+}
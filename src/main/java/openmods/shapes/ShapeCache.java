@@ -0,0 +1,134 @@
+package openmods.shapes;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of shapes generated by {@link IShapeGenerator}s, keyed by generator instance and bounds.
+ * Generators are expected to be immutable.
+ */
+public class ShapeCache {
+
+	public static final long DEFAULT_MAX_SPANS = 1 << 20;
+
+	public static final ShapeCache INSTANCE = new ShapeCache(DEFAULT_MAX_SPANS);
+
+	private static class Key {
+		private final IShapeGenerator generator;
+
+		// if true, bounds are xSize, ySize, zSize (see IShapeGenerator.generateShape)
+		private final boolean sizes;
+
+		private final int minX;
+
+		private final int minY;
+
+		private final int minZ;
+
+		private final int maxX;
+
+		private final int maxY;
+
+		private final int maxZ;
+
+		public Key(IShapeGenerator generator, boolean sizes, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+			this.generator = generator;
+			this.sizes = sizes;
+			this.minX = minX;
+			this.minY = minY;
+			this.minZ = minZ;
+			this.maxX = maxX;
+			this.maxY = maxY;
+			this.maxZ = maxZ;
+		}
+
+		public VoxelSet generate() {
+			return sizes
+					? VoxelSet.generate(generator, minX, minY, minZ)
+					: VoxelSet.generate(generator, minX, minY, minZ, maxX, maxY, maxZ);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = System.identityHashCode(generator);
+			result = 31 * result + (sizes? 1 : 0);
+			result = 31 * result + minX;
+			result = 31 * result + minY;
+			result = 31 * result + minZ;
+			result = 31 * result + maxX;
+			result = 31 * result + maxY;
+			result = 31 * result + maxZ;
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) return true;
+			if (!(obj instanceof Key)) return false;
+			final Key other = (Key)obj;
+			return other.generator == this.generator &&
+					other.sizes == this.sizes &&
+					other.minX == this.minX &&
+					other.minY == this.minY &&
+					other.minZ == this.minZ &&
+					other.maxX == this.maxX &&
+					other.maxY == this.maxY &&
+					other.maxZ == this.maxZ;
+		}
+	}
+
+	private final LoadingCache<Key, VoxelSet> cache;
+
+	/**
+	 * @param maxSpans limit of total {@link VoxelSet#spanCount()} of all cached shapes
+	 */
+	public ShapeCache(long maxSpans) {
+		this.cache = CacheBuilder.newBuilder()
+				.expireAfterAccess(5, TimeUnit.MINUTES)
+				.maximumWeight(maxSpans)
+				.weigher((Key key, VoxelSet value) -> value.spanCount() + 1)
+				.recordStats()
+				.build(new CacheLoader<Key, VoxelSet>() {
+					@Override
+					public VoxelSet load(Key key) {
+						return key.generate();
+					}
+				});
+	}
+
+	public VoxelSet getShape(IShapeGenerator generator, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		return cache.getUnchecked(new Key(generator, false, minX, minY, minZ, maxX, maxY, maxZ));
+	}
+
+	public VoxelSet getShape(IShapeGenerator generator, int xSize, int ySize, int zSize) {
+		return cache.getUnchecked(new Key(generator, true, xSize, ySize, zSize, 0, 0, 0));
+	}
+
+	/**
+	 * @return generator that replays shapes from this cache. Duplicated blocks are emitted only once.
+	 */
+	public IShapeGenerator wrap(final IShapeGenerator generator) {
+		return new IShapeGenerator() {
+			@Override
+			public void generateShape(int xSize, int ySize, int zSize, IShapeable shapeable) {
+				getShape(generator, xSize, ySize, zSize).forEach(shapeable);
+			}
+
+			@Override
+			public void generateShape(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, IShapeable shapeable) {
+				getShape(generator, minX, minY, minZ, maxX, maxY, maxZ).forEach(shapeable);
+			}
+		};
+	}
+
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	public void clear() {
+		cache.invalidateAll();
+	}
+}
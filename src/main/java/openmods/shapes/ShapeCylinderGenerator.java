@@ -17,11 +17,8 @@ public class ShapeCylinderGenerator extends DefaultShapeGenerator {
 	}
 
 	@Override
-	public void generateShape(int minX, final int minY, int minZ, int maxX, final int maxY, int maxZ, final IShapeable shapeable) {
-		GeometryUtils.makeEllipse(minX, minZ, maxX, maxZ, 0, (x, ignore, z) -> {
-			for (int y = minY; y <= maxY; y++)
-				shapeable.setBlock(x, y, z);
-		}, quadrants);
+	public void generateShape(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, IShapeable shapeable) {
+		GeometryUtils.makeEllipticCylinder(minX, minY, minZ, maxX, maxY, maxZ, shapeable, quadrants);
 	}
 
 }
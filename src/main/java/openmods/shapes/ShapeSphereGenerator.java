@@ -4,7 +4,7 @@ import java.util.Set;
 import openmods.utils.render.GeometryUtils;
 import openmods.utils.render.GeometryUtils.Octant;
 
-public class ShapeSphereGenerator extends DefaultShapeGenerator {
+public class ShapeSphereGenerator extends DefaultShapeGenerator implements IVoxelShapeGenerator {
 
 	private final Set<Octant> octants;
 
@@ -20,4 +20,9 @@ public class ShapeSphereGenerator extends DefaultShapeGenerator {
 	public void generateShape(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, IShapeable shapeable) {
 		GeometryUtils.makeEllipsoid(minX, minY, minZ, maxX, maxY, maxZ, shapeable, octants);
 	}
+
+	@Override
+	public VoxelSet generateVoxels(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		return GeometryUtils.makeEllipsoidVoxels(minX, minY, minZ, maxX, maxY, maxZ, octants);
+	}
 }
@@ -0,0 +1,202 @@
+package openmods.shapes;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of blocks, stored as runs of consecutive blocks along Z axis (spans), sorted by X, Y and Z.
+ * Duplicated blocks are merged.
+ */
+public class VoxelSet {
+
+	private static final int COORD_BITS = 21;
+
+	private static final int COORD_OFFSET = 1 << (COORD_BITS - 1);
+
+	private static final long COORD_MASK = (1L << COORD_BITS) - 1;
+
+	private static final int SPAN_SIZE = 4;
+
+	public static final VoxelSet EMPTY = new VoxelSet(new int[0], 0);
+
+	// x, y, zFrom, zTo (inclusive)
+	private final int[] spans;
+
+	private final int size;
+
+	private VoxelSet(int[] spans, int size) {
+		this.spans = spans;
+		this.size = size;
+	}
+
+	// above that, sorting is split between threads
+	private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
+
+	public static class Builder implements ISpanShapeable {
+		private long[] blocks = new long[64];
+
+		private int count;
+
+		private void ensureCapacity(int required) {
+			if (required > blocks.length) blocks = Arrays.copyOf(blocks, Math.max(required, 2 * blocks.length));
+		}
+
+		private static long pack(int x, int y, int z) {
+			// not Preconditions - varargs would box coordinates on every call
+			if (x < -COORD_OFFSET || x >= COORD_OFFSET ||
+					y < -COORD_OFFSET || y >= COORD_OFFSET ||
+					z < -COORD_OFFSET || z >= COORD_OFFSET) throw new IllegalArgumentException("Coordinates out of range: " + x + "," + y + "," + z);
+			return ((x + COORD_OFFSET) & COORD_MASK) << (2 * COORD_BITS) |
+					((y + COORD_OFFSET) & COORD_MASK) << COORD_BITS |
+					((z + COORD_OFFSET) & COORD_MASK);
+		}
+
+		private static int unpack(long packed, int shift) {
+			return (int)((packed >>> shift) & COORD_MASK) - COORD_OFFSET;
+		}
+
+		@Override
+		public void setBlock(int x, int y, int z) {
+			ensureCapacity(count + 1);
+			blocks[count++] = pack(x, y, z);
+		}
+
+		@Override
+		public void setSpan(int x, int y, int zFrom, int zTo) {
+			final long start = pack(x, y, zFrom);
+			pack(x, y, zTo); // range check only
+
+			final int length = zTo - zFrom + 1;
+			ensureCapacity(count + length);
+			for (int i = 0; i < length; i++)
+				blocks[count++] = start + i;
+		}
+
+		/**
+		 * Used for merging results of parallel generation
+		 */
+		public Builder addAll(Builder other) {
+			ensureCapacity(count + other.count);
+			System.arraycopy(other.blocks, 0, blocks, count, other.count);
+			count += other.count;
+			return this;
+		}
+
+		public VoxelSet build() {
+			if (count == 0) return EMPTY;
+
+			if (count >= PARALLEL_SORT_THRESHOLD) Arrays.parallelSort(blocks, 0, count);
+			else Arrays.sort(blocks, 0, count);
+
+			int[] spans = new int[SPAN_SIZE * 16];
+			int spanCount = 0;
+			int size = 0;
+
+			long prev = Long.MIN_VALUE;
+			for (int i = 0; i < count; i++) {
+				final long block = blocks[i];
+				if (block == prev) continue;
+
+				size++;
+				final int z = unpack(block, 0);
+				if (prev == block - 1 && (prev >>> COORD_BITS) == (block >>> COORD_BITS)) {
+					// same column, next Z
+					spans[(spanCount - 1) * SPAN_SIZE + 3] = z;
+				} else {
+					if ((spanCount + 1) * SPAN_SIZE > spans.length) spans = Arrays.copyOf(spans, 2 * spans.length);
+					final int offset = spanCount * SPAN_SIZE;
+					spans[offset + 0] = unpack(block, 2 * COORD_BITS);
+					spans[offset + 1] = unpack(block, COORD_BITS);
+					spans[offset + 2] = z;
+					spans[offset + 3] = z;
+					spanCount++;
+				}
+				prev = block;
+			}
+
+			return new VoxelSet(Arrays.copyOf(spans, spanCount * SPAN_SIZE), size);
+		}
+	}
+
+	public static VoxelSet generate(IShapeGenerator generator, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		if (generator instanceof IVoxelShapeGenerator) return ((IVoxelShapeGenerator)generator).generateVoxels(minX, minY, minZ, maxX, maxY, maxZ);
+
+		final Builder builder = new Builder();
+		generator.generateShape(minX, minY, minZ, maxX, maxY, maxZ, builder);
+		return builder.build();
+	}
+
+	public static VoxelSet generate(IShapeGenerator generator, int xSize, int ySize, int zSize) {
+		final Builder builder = new Builder();
+		generator.generateShape(xSize, ySize, zSize, builder);
+		return builder.build();
+	}
+
+	/**
+	 * Number of blocks in set
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int spanCount() {
+		return spans.length / SPAN_SIZE;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(int x, int y, int z) {
+		int low = 0;
+		int high = spanCount() - 1;
+
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final int offset = mid * SPAN_SIZE;
+
+			int cmp = Integer.compare(spans[offset + 0], x);
+			if (cmp == 0) cmp = Integer.compare(spans[offset + 1], y);
+			if (cmp == 0) {
+				if (z < spans[offset + 2]) cmp = 1;
+				else if (z > spans[offset + 3]) cmp = -1;
+				else return true;
+			}
+
+			if (cmp < 0) low = mid + 1;
+			else high = mid - 1;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Replays all blocks, in X, Y, Z order. Uses spans if target is {@link ISpanShapeable}
+	 */
+	public void forEach(IShapeable shapeable) {
+		if (shapeable instanceof ISpanShapeable) {
+			final ISpanShapeable spanShapeable = (ISpanShapeable)shapeable;
+			for (int offset = 0; offset < spans.length; offset += SPAN_SIZE)
+				spanShapeable.setSpan(spans[offset + 0], spans[offset + 1], spans[offset + 2], spans[offset + 3]);
+			return;
+		}
+
+		for (int offset = 0; offset < spans.length; offset += SPAN_SIZE) {
+			final int x = spans[offset + 0];
+			final int y = spans[offset + 1];
+			final int zTo = spans[offset + 3];
+			for (int z = spans[offset + 2]; z <= zTo; z++)
+				shapeable.setBlock(x, y, z);
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(spans);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		return (obj instanceof VoxelSet) && Arrays.equals(((VoxelSet)obj).spans, this.spans);
+	}
+}
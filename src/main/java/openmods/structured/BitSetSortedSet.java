@@ -0,0 +1,153 @@
+package openmods.structured;
+
+import com.google.common.base.Preconditions;
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * Sorted set of non-negative ints, backed by bitset. Values are limited to range [from, to).
+ */
+class BitSetSortedSet extends AbstractSet<Integer> implements SortedSet<Integer> {
+
+	private final BitSet bits;
+
+	private final int from;
+
+	private final int to;
+
+	private BitSetSortedSet(BitSet bits, int from, int to) {
+		this.bits = bits;
+		this.from = from;
+		this.to = to;
+	}
+
+	public BitSetSortedSet(BitSet bits) {
+		this(bits, 0, Integer.MAX_VALUE);
+	}
+
+	private boolean isFullRange() {
+		return from == 0 && to == Integer.MAX_VALUE;
+	}
+
+	private boolean inRange(int value) {
+		return value >= from && value < to;
+	}
+
+	private int nextValue(int start) {
+		if (start >= to) return -1;
+		final int value = bits.nextSetBit(start);
+		return value >= 0 && value < to? value : -1;
+	}
+
+	@Override
+	public int size() {
+		return isFullRange()? bits.cardinality() : bits.get(from, to).cardinality();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return nextValue(from) < 0;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Integer)) return false;
+		final int value = (Integer)o;
+		return inRange(value) && bits.get(value);
+	}
+
+	@Override
+	public boolean add(Integer value) {
+		Preconditions.checkArgument(inRange(value), "Value %s outside of [%s, %s)", value, from, to);
+		if (bits.get(value)) return false;
+		bits.set(value);
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (!contains(o)) return false;
+		bits.clear((Integer)o);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		if (isFullRange()) bits.clear();
+		else bits.clear(from, to);
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+			private int next = nextValue(from);
+
+			private int last = -1;
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public Integer next() {
+				if (next < 0) throw new NoSuchElementException();
+				last = next;
+				next = nextValue(next + 1);
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				Preconditions.checkState(last >= 0);
+				bits.clear(last);
+				last = -1;
+			}
+		};
+	}
+
+	@Override
+	public Comparator<? super Integer> comparator() {
+		return null;
+	}
+
+	private SortedSet<Integer> createView(int newFrom, int newTo) {
+		Preconditions.checkArgument(newFrom <= newTo, "Invalid range: %s > %s", newFrom, newTo);
+		Preconditions.checkArgument(newFrom >= from && newTo <= to, "Range [%s, %s) outside of [%s, %s)", newFrom, newTo, from, to);
+		return new BitSetSortedSet(bits, newFrom, newTo);
+	}
+
+	@Override
+	public SortedSet<Integer> subSet(Integer fromElement, Integer toElement) {
+		return createView(fromElement, toElement);
+	}
+
+	@Override
+	public SortedSet<Integer> headSet(Integer toElement) {
+		return createView(from, toElement);
+	}
+
+	@Override
+	public SortedSet<Integer> tailSet(Integer fromElement) {
+		return createView(fromElement, to);
+	}
+
+	@Override
+	public Integer first() {
+		final int value = nextValue(from);
+		if (value < 0) throw new NoSuchElementException();
+		return value;
+	}
+
+	@Override
+	public Integer last() {
+		if (to <= from) throw new NoSuchElementException();
+		final int value = bits.previousSetBit(to - 1);
+		if (value < from) throw new NoSuchElementException();
+		return value;
+	}
+}
@@ -2,10 +2,10 @@ package openmods.structured;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 import io.netty.buffer.ByteBuf;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -176,7 +176,8 @@ public abstract class Command {
 	}
 
 	public static class Delete extends Command {
-		public final SortedSet<Integer> idList = Sets.newTreeSet();
+		final BitSet ids = new BitSet();
+		public final SortedSet<Integer> idList = new BitSetSortedSet(ids);
 
 		@Override
 		public Type type() {
@@ -185,17 +186,17 @@ public abstract class Command {
 
 		@Override
 		protected void readDataFromStream(PacketBuffer input) {
-			CollectionUtils.readSortedIdList(input, idList);
+			CollectionUtils.readSortedIdList(input, ids);
 		}
 
 		@Override
 		protected void writeDataToStream(PacketBuffer output) {
-			CollectionUtils.writeSortedIdList(output, idList);
+			CollectionUtils.writeSortedIdList(output, ids);
 		}
 
 		@Override
 		public String dumpContents() {
-			return String.valueOf(idList);
+			return String.valueOf(ids);
 		}
 	}
 
@@ -262,7 +263,8 @@ public abstract class Command {
 	}
 
 	public abstract static class Update extends Command {
-		public final SortedSet<Integer> idList = Sets.newTreeSet();
+		final BitSet ids = new BitSet();
+		public final SortedSet<Integer> idList = new BitSetSortedSet(ids);
 		PacketBuffer elementPayload;
 
 		@Override
@@ -285,19 +287,19 @@ public abstract class Command {
 
 		@Override
 		protected void readDataFromStream(PacketBuffer input) {
-			CollectionUtils.readSortedIdList(input, idList);
+			CollectionUtils.readSortedIdList(input, ids);
 			super.readDataFromStream(input);
 		}
 
 		@Override
 		protected void writeDataToStream(PacketBuffer output) {
-			CollectionUtils.writeSortedIdList(output, idList);
+			CollectionUtils.writeSortedIdList(output, ids);
 			super.writeDataToStream(output);
 		}
 
 		@Override
 		public String dumpContents() {
-			return String.format("%s -> %s", idList,
+			return String.format("%s -> %s", ids,
 					(elementPayload == null? "<null>" : Integer.toString(elementPayload.writerIndex())));
 		}
 	}
@@ -1,25 +1,43 @@
 package openmods.structured;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Range;
 import com.google.common.collect.TreeMultimap;
 import gnu.trove.impl.Constants;
+import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.TIntIntHashMap;
-import java.util.Map;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import java.util.BitSet;
 import java.util.SortedMap;
 import java.util.SortedSet;
+import openmods.structured.Command.ConsistencyCheck;
 import org.apache.commons.lang3.mutable.MutableInt;
 
 public abstract class StructuredData<C extends IStructureContainer<E>, E extends IStructureElement> {
 	protected static final int NULL = -1;
 
+	final TIntObjectMap<E> elementsById = new TIntObjectHashMap<>();
+	final TIntObjectMap<C> containersById = new TIntObjectHashMap<>();
+
+	// sorted views of used ids
+	final BitSet elementIds = new BitSet();
+	final BitSet containerIds = new BitSet();
+
+	// boxed copies of structure, for subclasses. Updated only when containers are added or removed, never on element updates
 	protected final SortedMap<Integer, E> elements = Maps.newTreeMap();
 	protected final SortedMap<Integer, C> containers = Maps.newTreeMap();
 	protected final TreeMultimap<Integer, Integer> containerToElement = TreeMultimap.create();
+
+	// elements of single container always have consecutive ids, so container contents can be stored as range
+	final TIntIntHashMap containerFirstElement = new TIntIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, NULL, NULL);
+	final TIntIntHashMap containerElementCount = new TIntIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, NULL, 0);
 	protected final TIntIntHashMap elementToContainer = new TIntIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, NULL, NULL);
 
 	public boolean isEmpty() {
-		return elements.isEmpty() && containers.isEmpty();
+		return elementsById.isEmpty() && containersById.isEmpty();
 	}
 
 	protected final IStructureObserver<C, E> observer;
@@ -33,40 +51,60 @@ public abstract class StructuredData<C extends IStructureContainer<E>, E extends
 	}
 
 	public void removeAll() {
-		for (Map.Entry<Integer, C> c : containers.entrySet()) {
-			final int containerId = c.getKey();
-			final C container = c.getValue();
+		for (int containerId = containerIds.nextSetBit(0); containerId >= 0; containerId = containerIds.nextSetBit(containerId + 1)) {
+			final C container = containersById.get(containerId);
 			observer.onContainerRemoved(containerId, container);
 
-			for (Integer elementId : containerToElement.get(containerId)) {
-				E element = elements.get(elementId);
+			final int firstElement = containerFirstElement.get(containerId);
+			final int lastElement = firstElement + containerElementCount.get(containerId);
+			for (int elementId = firstElement; elementId < lastElement; elementId++) {
+				E element = elementsById.get(elementId);
 				Preconditions.checkNotNull(element);
 				observer.onElementRemoved(containerId, container, elementId, element);
 			}
 		}
 
+		elementsById.clear();
+		containersById.clear();
+		elementIds.clear();
+		containerIds.clear();
+		containerFirstElement.clear();
+		containerElementCount.clear();
+		elementToContainer.clear();
+
 		elements.clear();
 		containers.clear();
 		containerToElement.clear();
-		elementToContainer.clear();
 	}
 
 	protected SortedSet<Integer> removeContainer(int containerId) {
-		Preconditions.checkArgument(containerToElement.containsKey(containerId), "Container %s doesn't exists", containerId);
-		SortedSet<Integer> removedElements = containerToElement.removeAll(containerId);
+		Preconditions.checkArgument(containersById.containsKey(containerId), "Container %s doesn't exists", containerId);
+		final int firstElement = containerFirstElement.remove(containerId);
+		final int lastElement = firstElement + containerElementCount.remove(containerId);
 
-		final C container = containers.remove(containerId);
+		final C container = containersById.remove(containerId);
+		containerIds.clear(containerId);
 		observer.onContainerRemoved(containerId, container);
 
-		for (Integer elementId : removedElements) {
-			final E element = elements.remove(elementId);
+		for (int elementId = firstElement; elementId < lastElement; elementId++) {
+			final E element = elementsById.remove(elementId);
 			elementToContainer.remove(elementId);
 			observer.onElementRemoved(containerId, container, elementId, element);
 		}
 
+		elementIds.clear(firstElement, lastElement);
+
+		containers.remove(containerId);
+		containerToElement.removeAll(containerId);
+		final SortedSet<Integer> removedElements = elementRange(firstElement, lastElement);
+		elements.keySet().removeAll(removedElements);
 		return removedElements;
 	}
 
+	private static SortedSet<Integer> elementRange(int firstElement, int lastElement) {
+		return ContiguousSet.create(Range.closedOpen(firstElement, lastElement), DiscreteDomain.integers());
+	}
+
 	protected int addContainer(final int containerId, final C container, int firstElementId) {
 		final MutableInt nextElementId = new MutableInt(firstElementId);
 
@@ -74,18 +112,42 @@ public abstract class StructuredData<C extends IStructureContainer<E>, E extends
 			final int elementId = nextElementId.intValue();
 			nextElementId.increment();
 
+			elementsById.put(elementId, element);
+			elementIds.set(elementId);
+			elementToContainer.put(elementId, containerId);
 			elements.put(elementId, element);
 			containerToElement.put(containerId, elementId);
-			elementToContainer.put(elementId, containerId);
 
 			observer.onElementAdded(containerId, container, elementId, element);
 
 			return elementId;
 		});
 
+		containersById.put(containerId, container);
+		containerIds.set(containerId);
 		containers.put(containerId, container);
+		containerFirstElement.put(containerId, firstElementId);
+		containerElementCount.put(containerId, nextElementId.intValue() - firstElementId);
 		observer.onContainerAdded(containerId, container);
 
 		return nextElementId.intValue();
 	}
+
+	protected ConsistencyCheck createConsistencyCheck() {
+		final ConsistencyCheck check = new ConsistencyCheck();
+
+		if (!containersById.isEmpty()) {
+			check.containerCount = containersById.size();
+			check.minContainerId = containerIds.nextSetBit(0);
+			check.maxContainerId = containerIds.length() - 1;
+		}
+
+		if (!elementsById.isEmpty()) {
+			check.elementCount = elementsById.size();
+			check.minElementId = elementIds.nextSetBit(0);
+			check.maxElementId = elementIds.length() - 1;
+		}
+
+		return check;
+	}
 }
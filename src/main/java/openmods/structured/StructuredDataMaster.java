@@ -1,12 +1,10 @@
 package openmods.structured;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Sets;
 import io.netty.buffer.Unpooled;
 import java.io.IOException;
-import java.util.Collection;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Set;
 import java.util.SortedSet;
 import net.minecraft.network.PacketBuffer;
 import openmods.structured.Command.ConsistencyCheck;
@@ -18,9 +16,9 @@ import openmods.structured.Command.UpdateSingle;
 public class StructuredDataMaster<C extends IStructureContainer<E>, E extends IStructureElement> extends StructuredData<C, E> {
 	public static final int CONSISTENCY_CHECK_PERIOD = 10;
 
-	private final Set<Integer> newContainers = Sets.newTreeSet();
-	private final Set<Integer> deletedContainers = Sets.newTreeSet();
-	private final Set<Integer> modifiedElements = Sets.newTreeSet();
+	private final BitSet newContainers = new BitSet();
+	private final BitSet deletedContainers = new BitSet();
+	private final BitSet modifiedElements = new BitSet();
 	private byte checkCount;
 
 	private int nextElementId;
@@ -28,6 +26,9 @@ public class StructuredDataMaster<C extends IStructureContainer<E>, E extends IS
 
 	private boolean fullUpdateNeeded;
 
+	// scratch space for payloads, contents are copied to exactly sized buffers when done
+	private final PacketBuffer payloadBuffer = new PacketBuffer(Unpooled.buffer());
+
 	public StructuredDataMaster() {
 		super();
 	}
@@ -54,8 +55,8 @@ public class StructuredDataMaster<C extends IStructureContainer<E>, E extends IS
 	private void createFullCommands(List<Command> commands) {
 		commands.add(Command.RESET_INST);
 
-		if (!containers.isEmpty()) {
-			appendContainersCreate(commands, containers.keySet());
+		if (!containersById.isEmpty()) {
+			appendContainersCreate(commands, containerIds);
 			commands.add(createConsistencyCheck());
 		}
 	}
@@ -66,20 +67,20 @@ public class StructuredDataMaster<C extends IStructureContainer<E>, E extends IS
 		if (!deletedContainers.isEmpty()) {
 			addCheck = true;
 			Command.Delete delete = new Delete();
-			delete.idList.addAll(deletedContainers);
+			delete.ids.or(deletedContainers);
 			commands.add(delete);
-			newContainers.removeAll(deletedContainers);
+			newContainers.andNot(deletedContainers);
 		}
 
 		if (!newContainers.isEmpty()) {
 			addCheck = true;
-			Set<Integer> newElements = appendContainersCreate(commands, newContainers);
-			modifiedElements.removeAll(newElements);
+			BitSet newElements = appendContainersCreate(commands, newContainers);
+			modifiedElements.andNot(newElements);
 		}
 
 		if (!modifiedElements.isEmpty()) {
 			Command.UpdateSingle update = new UpdateSingle();
-			update.idList.addAll(modifiedElements);
+			update.ids.or(modifiedElements);
 			update.elementPayload = createElementPayload(modifiedElements);
 			commands.add(update);
 		}
@@ -87,14 +88,13 @@ public class StructuredDataMaster<C extends IStructureContainer<E>, E extends IS
 		if (addCheck) commands.add(createConsistencyCheck());
 	}
 
-	private synchronized Set<Integer> appendContainersCreate(List<Command> commands, final Set<Integer> containersToSend) {
-		Set<Integer> newElements = Sets.newTreeSet();
+	private synchronized BitSet appendContainersCreate(List<Command> commands, final BitSet containersToSend) {
+		BitSet newElements = new BitSet();
 		Command.Create create = new Create();
-		for (Integer containerId : containersToSend) {
-			C container = containers.get(containerId);
-			SortedSet<Integer> containerContents = containerToElement.get(containerId);
-			newElements.addAll(containerContents);
-			int firstContainerElement = containerContents.first();
+		for (int containerId = containersToSend.nextSetBit(0); containerId >= 0; containerId = containersToSend.nextSetBit(containerId + 1)) {
+			C container = containersById.get(containerId);
+			final int firstContainerElement = containerFirstElement.get(containerId);
+			newElements.set(firstContainerElement, firstContainerElement + containerElementCount.get(containerId));
 			create.containers.add(new ContainerInfo(containerId, container.getType(), firstContainerElement));
 		}
 
@@ -104,22 +104,9 @@ public class StructuredDataMaster<C extends IStructureContainer<E>, E extends IS
 		return newElements;
 	}
 
-	private synchronized ConsistencyCheck createConsistencyCheck() {
-		ConsistencyCheck check = new ConsistencyCheck();
-
-		SortedSet<Integer> containers = containerToElement.keySet();
-		if (!containers.isEmpty()) {
-			check.containerCount = containers.size();
-			check.minContainerId = containers.first();
-			check.maxContainerId = containers.last();
-		}
-
-		if (!elements.isEmpty()) {
-			check.elementCount = elements.size();
-			check.minElementId = elements.firstKey();
-			check.maxElementId = elements.lastKey();
-		}
-		return check;
+	@Override
+	protected synchronized ConsistencyCheck createConsistencyCheck() {
+		return super.createConsistencyCheck();
 	}
 
 	@Override
@@ -147,13 +134,13 @@ public class StructuredDataMaster<C extends IStructureContainer<E>, E extends IS
 	}
 
 	public synchronized void markElementModified(int elementId) {
-		final E element = elements.get(elementId);
+		final E element = elementsById.get(elementId);
 		Preconditions.checkArgument(element != null, "No element with id %s", elementId);
-		modifiedElements.add(elementId);
+		modifiedElements.set(elementId);
 
 		final int containerId = elementToContainer.get(elementId);
 		Preconditions.checkState(containerId != NULL, "Inconsistent state for element %s", elementId);
-		final C container = containers.get(containerId);
+		final C container = containersById.get(containerId);
 		Preconditions.checkState(container != null, "Inconsistent state for element %s, container %s", elementId, containerId);
 
 		observer.onContainerUpdated(containerId, container);
@@ -164,7 +151,7 @@ public class StructuredDataMaster<C extends IStructureContainer<E>, E extends IS
 	public synchronized int addContainer(C container) {
 		int containerId = nextContainerId++;
 		nextElementId = addContainer(containerId, container, nextElementId);
-		newContainers.add(containerId);
+		newContainers.set(containerId);
 		observer.onStructureUpdate();
 		return containerId;
 	}
@@ -172,40 +159,47 @@ public class StructuredDataMaster<C extends IStructureContainer<E>, E extends IS
 	@Override
 	public synchronized SortedSet<Integer> removeContainer(int containerId) {
 		SortedSet<Integer> removedElements = super.removeContainer(containerId);
-		boolean isNewContainer = newContainers.remove(containerId);
-		if (!isNewContainer) deletedContainers.add(containerId);
 
-		modifiedElements.removeAll(removedElements);
+		boolean isNewContainer = newContainers.get(containerId);
+		if (isNewContainer) newContainers.clear(containerId);
+		else deletedContainers.set(containerId);
+
+		if (!removedElements.isEmpty()) modifiedElements.clear(removedElements.first(), removedElements.last() + 1);
 		observer.onStructureUpdate();
 		return removedElements;
 	}
 
-	private PacketBuffer createContainerPayload(Set<Integer> containerIds) {
+	private PacketBuffer createContainerPayload(BitSet containerIds) {
 		try {
-			PacketBuffer result = new PacketBuffer(Unpooled.buffer());
+			payloadBuffer.clear();
 
-			for (Integer id : containerIds) {
-				final C c = containers.get(id);
-				if (c instanceof ICustomCreateData) ((ICustomCreateData)c).writeCustomDataFromStream(result);
+			for (int id = containerIds.nextSetBit(0); id >= 0; id = containerIds.nextSetBit(id + 1)) {
+				final C c = containersById.get(id);
+				if (c instanceof ICustomCreateData) ((ICustomCreateData)c).writeCustomDataFromStream(payloadBuffer);
 			}
 
-			return result;
+			return copyPayload();
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
-	private PacketBuffer createElementPayload(Collection<Integer> ids) {
+	private PacketBuffer createElementPayload(BitSet ids) {
 		try {
-			PacketBuffer output = new PacketBuffer(Unpooled.buffer());
-			for (Integer id : ids) {
-				E element = elements.get(id);
-				element.writeToStream(output);
+			payloadBuffer.clear();
+
+			for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+				E element = elementsById.get(id);
+				element.writeToStream(payloadBuffer);
 			}
 
-			return output;
+			return copyPayload();
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
+
+	private PacketBuffer copyPayload() {
+		return new PacketBuffer(Unpooled.copiedBuffer(payloadBuffer));
+	}
 }
@@ -1,13 +1,8 @@
 package openmods.structured;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Sets;
 import java.io.IOException;
-import java.util.Collection;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
-import java.util.SortedSet;
 import net.minecraft.network.PacketBuffer;
 import openmods.structured.Command.ConsistencyCheck;
 import openmods.structured.Command.ContainerInfo;
@@ -49,7 +44,8 @@ public abstract class StructuredDataSlave<C extends IStructureContainer<E>, E ex
 	protected abstract void onConsistencyCheckFail();
 
 	public void interpretCommandList(List<Command> commands) {
-		Multimap<Integer, Integer> updatedContainers = HashMultimap.create();
+		final BitSet updatedContainers = new BitSet();
+		final BitSet updatedElements = new BitSet();
 
 		boolean isStructureUpdated = false;
 		observer.onUpdateStarted();
@@ -58,22 +54,14 @@ public abstract class StructuredDataSlave<C extends IStructureContainer<E>, E ex
 				if (c.isEnd()) break;
 				else if (c instanceof ConsistencyCheck) {
 					final ConsistencyCheck msg = (ConsistencyCheck)c;
-
-					SortedSet<Integer> containers = containerToElement.keySet();
-
-					final int containerCount = containers.size();
-					final int minContainerId = containerCount == 0? 0 : containers.first();
-					final int maxContainerId = containerCount == 0? 0 : containers.last();
-					final int elementCount = elements.size();
-					final int minElementId = elementCount == 0? 0 : elements.firstKey();
-					final int maxElementId = elementCount == 0? 0 : elements.lastKey();
-
-					if (msg.containerCount != containerCount ||
-							msg.minContainerId != minContainerId ||
-							msg.maxContainerId != maxContainerId ||
-							msg.elementCount != elementCount ||
-							msg.minElementId != minElementId ||
-							msg.maxElementId != maxElementId)
+					final ConsistencyCheck current = createConsistencyCheck();
+
+					if (msg.containerCount != current.containerCount ||
+							msg.minContainerId != current.minContainerId ||
+							msg.maxContainerId != current.maxContainerId ||
+							msg.elementCount != current.elementCount ||
+							msg.minElementId != current.minElementId ||
+							msg.maxElementId != current.maxElementId)
 						throw new ConsistencyCheckFailed("Validation packet not matched");
 				} else if (c instanceof Reset) {
 					removeAll();
@@ -81,34 +69,34 @@ public abstract class StructuredDataSlave<C extends IStructureContainer<E>, E ex
 				} else if (c instanceof Create) {
 					final Create msg = (Create)c;
 
-					SortedSet<Integer> containers = Sets.newTreeSet();
-					SortedSet<Integer> elements = Sets.newTreeSet();
+					final BitSet elements = new BitSet();
 
 					for (ContainerInfo info : msg.containers) {
-						SortedSet<Integer> newElementsId = createAndAddContainer(msg.containerPayload, info.type, info.id, info.start);
-						elements.addAll(newElementsId);
-						updatedContainers.putAll(info.id, newElementsId);
-						containers.add(info.id);
+						final int nextElementId = createAndAddContainer(msg.containerPayload, info.type, info.id, info.start);
+						elements.set(info.start, nextElementId);
+						updatedContainers.set(info.id);
 					}
 
 					if (msg.containerPayload.readableBytes() != 0) throw new ConsistencyCheckFailed("Container payload not fully consumed");
 
 					readElementPayload(elements, msg.elementPayload);
+					updatedElements.or(elements);
 					isStructureUpdated = true;
 				} else if (c instanceof Delete) {
 					final Delete msg = (Delete)c;
-					for (int i : msg.idList)
+					for (int i = msg.ids.nextSetBit(0); i >= 0; i = msg.ids.nextSetBit(i + 1))
 						removeContainer(i);
 					isStructureUpdated = true;
 				} else if (c instanceof Update) {
 					final Update msg = (Update)c;
-					readElementPayload(msg.idList, msg.elementPayload);
+					readElementPayload(msg.ids, msg.elementPayload);
 
-					for (Integer elementId : msg.idList) {
+					for (int elementId = msg.ids.nextSetBit(0); elementId >= 0; elementId = msg.ids.nextSetBit(elementId + 1)) {
 						int containerId = elementToContainer.get(elementId);
 						if (containerId == NULL) throw new ConsistencyCheckFailed("Orphaned element %d", elementId);
-						updatedContainers.put(containerId, elementId);
+						updatedContainers.set(containerId);
 					}
+					updatedElements.or(msg.ids);
 				}
 			} catch (ConsistencyCheckFailed e) {
 				onConsistencyCheckFail();
@@ -118,23 +106,27 @@ public abstract class StructuredDataSlave<C extends IStructureContainer<E>, E ex
 
 		if (isStructureUpdated) observer.onStructureUpdate();
 
-		for (Map.Entry<Integer, Collection<Integer>> e : updatedContainers.asMap().entrySet()) {
-			final Integer containerId = e.getKey();
-			final C container = containers.get(containerId);
+		boolean isDataUpdated = false;
+		for (int containerId = updatedContainers.nextSetBit(0); containerId >= 0; containerId = updatedContainers.nextSetBit(containerId + 1)) {
+			final C container = containersById.get(containerId);
+			if (container == null) continue; // removed later in same update
 			observer.onContainerUpdated(containerId, container);
+			isDataUpdated = true;
 
-			for (Integer elementId : e.getValue()) {
-				final E element = elements.get(elementId);
+			final int firstElement = containerFirstElement.get(containerId);
+			final int lastElement = firstElement + containerElementCount.get(containerId);
+			for (int elementId = updatedElements.nextSetBit(firstElement); elementId >= 0 && elementId < lastElement; elementId = updatedElements.nextSetBit(elementId + 1)) {
+				final E element = elementsById.get(elementId);
 				observer.onElementUpdated(containerId, container, elementId, element);
 			}
 		}
 
-		if (!updatedContainers.isEmpty()) observer.onDataUpdate();
+		if (isDataUpdated) observer.onDataUpdate();
 
 		observer.onUpdateFinished();
 	}
 
-	private SortedSet<Integer> createAndAddContainer(PacketBuffer input, int type, int containerId, int start) {
+	private int createAndAddContainer(PacketBuffer input, int type, int containerId, int start) {
 		C container = factory.createContainer(type);
 		try {
 			if (container instanceof ICustomCreateData) ((ICustomCreateData)container).readCustomDataFromStream(input);
@@ -142,15 +134,14 @@ public abstract class StructuredDataSlave<C extends IStructureContainer<E>, E ex
 			throw new ConsistencyCheckFailed(e, "Failed to read element %d, type %d", containerId, type);
 		}
 
-		if (containerToElement.containsEntry(containerId, start)) throw new ConsistencyCheckFailed("Container %d already exists", containerId);
-		addContainer(containerId, container, start);
-		return containerToElement.get(containerId);
+		if (containersById.containsKey(containerId)) throw new ConsistencyCheckFailed("Container %d already exists", containerId);
+		return addContainer(containerId, container, start);
 	}
 
-	private void readElementPayload(SortedSet<Integer> ids, PacketBuffer input) {
+	private void readElementPayload(BitSet ids, PacketBuffer input) {
 		try {
-			for (Integer id : ids) {
-				final E element = elements.get(id);
+			for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+				final E element = elementsById.get(id);
 				if (element == null) throw new ConsistencyCheckFailed("Element %d not found", id);
 				element.readFromStream(input);
 			}
@@ -0,0 +1,115 @@
+package openmods.sync;
+
+import java.util.Arrays;
+import net.minecraft.network.PacketBuffer;
+
+/**
+ * Bitset of dirty objects in single sync map, indexed by object id.
+ * Objects mark their own bits, so map does not need to poll every object on update.
+ */
+public final class DirtyTracker {
+
+	private long[] dirty;
+
+	private long[] changes;
+
+	private boolean anyDirty;
+
+	private boolean anyChanged;
+
+	DirtyTracker() {
+		this.dirty = new long[1];
+		this.changes = new long[1];
+	}
+
+	private DirtyTracker(long[] changes) {
+		this.dirty = new long[0];
+		this.changes = changes;
+		this.anyChanged = true;
+	}
+
+	/**
+	 * @return read-only copy of current change set
+	 */
+	DirtyTracker copyChanges() {
+		return new DirtyTracker(changes.clone());
+	}
+
+	void ensureCapacity(int bitCount) {
+		final int wordCount = (bitCount + 63) >>> 6;
+		if (wordCount > dirty.length) {
+			dirty = Arrays.copyOf(dirty, wordCount);
+			changes = Arrays.copyOf(changes, wordCount);
+		}
+	}
+
+	public void markDirty(int id) {
+		dirty[id >>> 6] |= 1L << id;
+		anyDirty = true;
+	}
+
+	void clearDirty() {
+		if (anyDirty) {
+			Arrays.fill(dirty, 0);
+			anyDirty = false;
+		}
+	}
+
+	/**
+	 * Moves all dirty bits to change set, replacing previous one.
+	 */
+	boolean commit() {
+		if (anyChanged) {
+			Arrays.fill(changes, 0);
+			anyChanged = false;
+		}
+
+		if (!anyDirty) return false;
+
+		final long[] tmp = changes;
+		changes = dirty;
+		dirty = tmp;
+
+		anyDirty = false;
+		anyChanged = true;
+		return true;
+	}
+
+	boolean isChanged(int id) {
+		final int word = id >>> 6;
+		return word < changes.length && (changes[word] & (1L << id)) != 0;
+	}
+
+	/**
+	 * @return id of first changed object with id >= fromId, or -1 if none
+	 */
+	int nextChanged(int fromId) {
+		int word = fromId >>> 6;
+		if (word >= changes.length) return -1;
+
+		long bits = changes[word] & (-1L << fromId);
+		while (true) {
+			if (bits != 0) return (word << 6) + Long.numberOfTrailingZeros(bits);
+			if (++word >= changes.length) return -1;
+			bits = changes[word];
+		}
+	}
+
+	int changedCount() {
+		int result = 0;
+		for (long word : changes)
+			result += Long.bitCount(word);
+		return result;
+	}
+
+	/**
+	 * Writes change set in same format as {@link openmods.utils.bitstream.OutputBitStream} (MSB first in every byte)
+	 */
+	void writeChanges(PacketBuffer output, int byteCount) {
+		for (int i = 0; i < byteCount; i++) {
+			final int word = i >>> 3;
+			final int value = word < changes.length? (int)(changes[word] >>> ((i & 7) << 3)) & 0xFF : 0;
+			output.writeByte(Integer.reverse(value) >>> 24);
+		}
+	}
+}
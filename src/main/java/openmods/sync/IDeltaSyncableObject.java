@@ -0,0 +1,15 @@
+package openmods.sync;
+
+import java.io.IOException;
+import net.minecraft.network.PacketBuffer;
+
+/**
+ * Syncable object that can send changes relative to state previously seen by clients, instead of full value.
+ * State is committed by every {@link #markClean()} call: {@link #writeToStream(PacketBuffer)} (used in initialization packets) writes last committed state,
+ * while {@link #writeDeltaToStream(PacketBuffer)} (used in update packets) writes last committed state in compact form, based on what changed since previous commit.
+ * Batched updates may arrive after initialization packet that already contains their state, so reading them must be idempotent (i.e. no relative amounts).
+ * Both forms must be accepted by {@link #readFromStream(PacketBuffer)}.
+ */
+public interface IDeltaSyncableObject extends ISyncableObject {
+	public void writeDeltaToStream(PacketBuffer buf) throws IOException;
+}
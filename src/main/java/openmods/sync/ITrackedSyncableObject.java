@@ -0,0 +1,9 @@
+package openmods.sync;
+
+/**
+ * Syncable object that reports {@link #markDirty()} calls directly to owning sync map.
+ * Objects not implementing this interface are polled with {@link #isDirty()} on every update.
+ */
+public interface ITrackedSyncableObject extends ISyncableObject {
+	public void setDirtyTracker(DirtyTracker tracker, int id);
+}
@@ -4,8 +4,10 @@ import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import net.minecraftforge.fml.common.network.internal.FMLProxyPacket;
+import openmods.Log;
 import openmods.OpenMods;
 import openmods.utils.NetUtils;
 
@@ -20,6 +22,45 @@ public class InboundSyncHandler extends SimpleChannelInboundHandler<FMLProxyPack
 		}
 	}
 
+	private static void readUpdate(ISyncMapProvider provider, PacketBuffer payload) {
+		try {
+			if (provider != null) provider.getSyncMap().readUpdate(payload);
+		} catch (Throwable e) {
+			throw new SyncException(e, provider);
+		}
+	}
+
+	static void readBatch(World world, PacketBuffer payload) {
+		BlockPos prevTilePos = BlockPos.ORIGIN;
+		int prevEntityId = 0;
+
+		while (payload.isReadable()) {
+			final int ownerType = payload.readVarInt();
+
+			final ISyncMapProvider provider;
+			switch (ownerType) {
+				case SyncMapEntity.OWNER_TYPE:
+					prevEntityId = SyncMapEntity.readOwnerDelta(payload, prevEntityId);
+					provider = SyncMapEntity.findOwner(world, prevEntityId);
+					break;
+				case SyncMapTile.OWNER_TYPE:
+					prevTilePos = SyncMapTile.readOwnerDelta(payload, prevTilePos);
+					provider = SyncMapTile.findOwner(world, prevTilePos);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown sync map owner type: " + ownerType);
+			}
+
+			final int payloadSize = payload.readVarInt();
+			// every entry has own slice, so failure of one owner does not affect others
+			try {
+				readUpdate(provider, new PacketBuffer(payload.readSlice(payloadSize)));
+			} catch (SyncException e) {
+				Log.warn(e, "Failed to apply batched sync update");
+			}
+		}
+	}
+
 	@Override
 	protected void channelRead0(ChannelHandlerContext ctx, final FMLProxyPacket msg) throws Exception {
 		NetUtils.executeSynchronized(ctx, new Runnable() {
@@ -27,18 +68,20 @@ public class InboundSyncHandler extends SimpleChannelInboundHandler<FMLProxyPack
 			public void run() {
 				PacketBuffer payload = new PacketBuffer(msg.payload());
 
-				final ISyncMapProvider provider = findSyncMapProvider(payload);
-
-				try {
-					if (provider != null) provider.getSyncMap().readUpdate(payload);
-				} catch (Throwable e) {
-					throw new SyncException(e, provider);
+				final int packetType = payload.readVarInt();
+				switch (packetType) {
+					case SyncSchemaRegistry.PACKET_TYPE:
+						SyncSchemaRegistry.readSchemas(payload);
+						break;
+					case SyncUpdateScheduler.PACKET_TYPE:
+						readBatch(OpenMods.proxy.getClientWorld(), payload);
+						break;
+					default:
+						readUpdate(findSyncMapProvider(packetType, payload), payload);
 				}
 			}
 
-			private ISyncMapProvider findSyncMapProvider(PacketBuffer payload) {
-				final int ownerType = payload.readVarInt();
-
+			private ISyncMapProvider findSyncMapProvider(int ownerType, PacketBuffer payload) {
 				final World world = OpenMods.proxy.getClientWorld();
 
 				switch (ownerType) {
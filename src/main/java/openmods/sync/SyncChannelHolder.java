@@ -28,7 +28,7 @@ public class SyncChannelHolder {
 
 		for (Map.Entry<Side, FMLEmbeddedChannel> e : channels.entrySet()) {
 			final FMLEmbeddedChannel channel = e.getValue();
-			ExtendedOutboundHandler.install(channel);
+			ExtendedOutboundHandler.install(channel, true);
 			senders.put(e.getKey(), ExtPacketSenderFactory.createMultiplePlayersSender(channel));
 		}
 	}
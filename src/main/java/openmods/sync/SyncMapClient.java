@@ -54,7 +54,8 @@ public class SyncMapClient extends SyncMap {
 
 	@Override
 	public void readIntializationData(PacketBuffer dis) throws IOException {
-		final int count = dis.readVarInt();
+		final SyncSchemaRegistry.Schema schema = SyncSchemaRegistry.getClientSchema(dis.readVarInt());
+		final int count = schema.size();
 
 		final ImmutableList.Builder<ISyncableObject> idToObject = ImmutableList.builder();
 
@@ -63,8 +64,8 @@ public class SyncMapClient extends SyncMap {
 		final Set<ISyncableObject> changedObjects = Sets.newIdentityHashSet();
 
 		for (int i = 0; i < count; i++) {
-			final String id = dis.readString(Short.MAX_VALUE);
-			final int typeId = dis.readVarInt();
+			final String id = schema.getName(i);
+			final int typeId = schema.getTypeId(i);
 
 			final SyncableObjectType type = SyncableObjectTypeRegistry.getType(typeId);
 
@@ -1,12 +1,14 @@
 package openmods.sync;
 
 import java.util.Set;
+import javax.annotation.Nullable;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.network.PacketBuffer;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 import openmods.Log;
+import openmods.utils.ByteUtils;
 import openmods.utils.NetUtils;
 
 public class SyncMapEntity extends SyncMapServer {
@@ -21,7 +23,14 @@ public class SyncMapEntity extends SyncMapServer {
 	public static final int OWNER_TYPE = 0;
 
 	public static ISyncMapProvider findOwner(World world, PacketBuffer input) {
-		int entityId = input.readInt();
+		return findOwner(world, input.readInt());
+	}
+
+	public static int readOwnerDelta(PacketBuffer input, int previous) {
+		return previous + ByteUtils.zigZagDecode(input.readVarInt());
+	}
+
+	public static ISyncMapProvider findOwner(World world, int entityId) {
 		Entity entity = world.getEntityByID(entityId);
 		if (entity instanceof ISyncMapProvider)
 			return (ISyncMapProvider)entity;
@@ -40,6 +49,12 @@ public class SyncMapEntity extends SyncMapServer {
 		outputBuffer.writeInt(owner.getEntityId());
 	}
 
+	@Override
+	protected void writeOwnerDataDelta(PacketBuffer output, @Nullable SyncMapServer previous) {
+		final int prevId = (previous instanceof SyncMapEntity)? ((SyncMapEntity)previous).owner.getEntityId() : 0;
+		output.writeVarInt(ByteUtils.zigZagEncode(owner.getEntityId() - prevId));
+	}
+
 	@Override
 	protected Set<EntityPlayerMP> getPlayersWatching() {
 		return NetUtils.getPlayersWatchingEntity((WorldServer)owner.world, owner);
@@ -1,33 +1,38 @@
 package openmods.sync;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import java.io.IOException;
-import java.util.Collections;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import javax.annotation.Nullable;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.network.PacketBuffer;
+import openmods.LibConfig;
 import openmods.Log;
-import openmods.utils.bitstream.OutputBitStream;
+import openmods.network.PayloadBuffers;
 
 public abstract class SyncMapServer extends SyncMap {
 
 	private final Map<String, ISyncableObject> objects = Maps.newHashMap();
 
 	private static class Entry {
+		private final int id;
 		private final String name;
 		private final ISyncableObject obj;
 		private final SyncableObjectType type;
 
-		public Entry(String name, ISyncableObject obj) {
+		public Entry(int id, String name, ISyncableObject obj) {
+			this.id = id;
 			this.name = name;
 			this.obj = obj;
 			this.type = SyncableObjectTypeRegistry.getType(obj.getClass());
@@ -37,18 +42,33 @@ public abstract class SyncMapServer extends SyncMap {
 
 	private final List<Entry> orderedEntries = Lists.newArrayList();
 
+	// objects that can't report changes on their own and have to be polled
+	private final List<Entry> untrackedEntries = Lists.newArrayList();
+
+	private final DirtyTracker dirtyTracker = new DirtyTracker();
+
 	private final Map<ISyncableObject, Integer> objectToId = Maps.newIdentityHashMap();
 
 	private boolean firstRemoteObjectInitialized = false;
 
 	private int bitmapLength;
 
+	private int schemaId;
+
 	private final IUpdateStrategy updateStrategy;
 
 	public SyncMapServer(UpdateStrategy strategy) {
 		this.updateStrategy = strategy.create(this);
 	}
 
+	/**
+	 * Subclasses of {@link SyncableObjectBase} from outside this package may write protected dirty flag (or override {@link ISyncableObject#isDirty()}) without calling {@link ISyncableObject#markDirty()}, so they are polled
+	 */
+	private static boolean isTracked(ISyncableObject value) {
+		if (!(value instanceof ITrackedSyncableObject)) return false;
+		return !(value instanceof SyncableObjectBase) || value.getClass().getPackage() == SyncableObjectBase.class.getPackage();
+	}
+
 	@Override
 	public void registerObject(String name, ISyncableObject value) {
 		Preconditions.checkState(!firstRemoteObjectInitialized, "Can't add fields to object that has already sent data to clients");
@@ -59,7 +79,16 @@ public abstract class SyncMapServer extends SyncMap {
 		}
 
 		final int newId = orderedEntries.size();
-		orderedEntries.add(new Entry(name, value));
+		final Entry entry = new Entry(newId, name, value);
+		orderedEntries.add(entry);
+
+		dirtyTracker.ensureCapacity(newId + 1);
+		if (isTracked(value)) {
+			((ITrackedSyncableObject)value).setDirtyTracker(dirtyTracker, newId);
+			if (value.isDirty()) dirtyTracker.markDirty(newId);
+		} else {
+			untrackedEntries.add(entry);
+		}
 
 		{
 			final Integer prev = objectToId.put(value, newId);
@@ -79,6 +108,8 @@ public abstract class SyncMapServer extends SyncMap {
 			}
 			obj.markClean();
 		}
+
+		dirtyTracker.clearDirty();
 	}
 
 	@Override
@@ -126,47 +157,64 @@ public abstract class SyncMapServer extends SyncMap {
 		writeOwnerData(dos);
 	}
 
+	private final PayloadBuffers.SizeEstimate deltaPayloadSize = new PayloadBuffers.SizeEstimate();
+
+	private final PayloadBuffers.SizeEstimate fullPayloadSize = new PayloadBuffers.SizeEstimate();
+
+	// owner info is written here only for unbatched updates - scheduler adds it when assembling frame
+	// batched flag must be read once per sync and passed to both methods, so config change can't split single update
+	private PacketBuffer createPayload(PayloadBuffers.SizeEstimate size, boolean batched) {
+		final PacketBuffer payload = size.allocate();
+		if (!batched) writeOwnerInfo(payload);
+		return payload;
+	}
+
+	private void sendPayload(PacketBuffer payload, Collection<EntityPlayerMP> players, boolean batched) {
+		if (batched) SyncUpdateScheduler.INSTANCE.schedule(this, payload, players);
+		else SyncChannelHolder.INSTANCE.sendPayloadToPlayers(payload, players);
+	}
+
 	private void writeSyncObjectInitialization(PacketBuffer dos) throws IOException {
 		if (!firstRemoteObjectInitialized) {
 			firstRemoteObjectInitialized = true;
 			bitmapLength = (objects.size() + 7) / 8;
+			schemaId = SyncSchemaRegistry.getSchemaId(createSchema());
 		}
 
-		dos.writeVarInt(objects.size());
+		dos.writeVarInt(schemaId);
 
-		for (Entry e : orderedEntries) {
-			dos.writeString(e.name);
+		for (Entry e : orderedEntries)
+			e.obj.writeToStream(dos);
+	}
 
-			final int typeId = SyncableObjectTypeRegistry.getTypeId(e.type);
-			dos.writeVarInt(typeId);
+	private SyncSchemaRegistry.Schema createSchema() {
+		final int count = orderedEntries.size();
+		final String[] names = new String[count];
+		final int[] typeIds = new int[count];
 
-			e.obj.writeToStream(dos);
+		for (int i = 0; i < count; i++) {
+			final Entry e = orderedEntries.get(i);
+			names[i] = e.name;
+			typeIds[i] = SyncableObjectTypeRegistry.getTypeId(e.type);
 		}
+
+		return new SyncSchemaRegistry.Schema(names, typeIds);
 	}
 
-	private void writeUpdatePacket(PacketBuffer dos, Set<ISyncableObject> changes) throws IOException {
+	private void writeUpdatePacket(PacketBuffer dos) throws IOException {
 		Preconditions.checkState(firstRemoteObjectInitialized, "Remote objects not intialized yet");
 
-		final ByteBuf bitmapData = dos.slice(dos.writerIndex(), bitmapLength);
-		bitmapData.clear();
-		dos.writeZero(bitmapLength);
-
-		final OutputBitStream bitmap = new OutputBitStream(bitmapData::writeByte);
+		dirtyTracker.writeChanges(dos, bitmapLength);
 
-		for (Entry e : orderedEntries) {
-			if (changes.contains(e.obj)) {
-				e.obj.writeToStream(dos);
-				bitmap.writeBit(true);
-			} else {
-				bitmap.writeBit(false);
-			}
+		for (int id = dirtyTracker.nextChanged(0); id >= 0; id = dirtyTracker.nextChanged(id + 1)) {
+			final ISyncableObject obj = orderedEntries.get(id).obj;
+			if (obj instanceof IDeltaSyncableObject) ((IDeltaSyncableObject)obj).writeDeltaToStream(dos);
+			else obj.writeToStream(dos);
 		}
-
-		bitmap.flush();
 	}
 
 	protected interface IUpdateStrategy {
-		public void sendUpdates(Set<ISyncableObject> changedObjects);
+		public void sendUpdates(boolean hasChanges);
 
 		public void writeInitializationData(PacketBuffer dos) throws IOException;
 
@@ -176,16 +224,17 @@ public abstract class SyncMapServer extends SyncMap {
 	private class SeparateInitializationPacketStrategy implements IUpdateStrategy {
 
 		@Override
-		public void sendUpdates(Set<ISyncableObject> changedObjects) {
-			if (changedObjects.isEmpty()) return;
+		public void sendUpdates(boolean hasChanges) {
+			if (!hasChanges) return;
 
 			final Set<EntityPlayerMP> players = getPlayersWatching();
+			final boolean batched = LibConfig.batchSyncUpdates;
 
 			try {
-				final PacketBuffer deltaPayload = new PacketBuffer(Unpooled.buffer());
-				writeOwnerInfo(deltaPayload);
-				writeUpdatePacket(deltaPayload, changedObjects);
-				SyncChannelHolder.INSTANCE.sendPayloadToPlayers(deltaPayload, players);
+				final PacketBuffer deltaPayload = createPayload(deltaPayloadSize, batched);
+				writeUpdatePacket(deltaPayload);
+				deltaPayloadSize.update(deltaPayload);
+				sendPayload(deltaPayload, players, batched);
 			} catch (IOException e) {
 				Log.warn(e, "IOError during delta sync");
 			}
@@ -208,9 +257,7 @@ public abstract class SyncMapServer extends SyncMap {
 		private Set<Integer> knownUsers = Sets.newHashSet();
 
 		@Override
-		public void sendUpdates(Set<ISyncableObject> changes) {
-			final boolean hasChanges = !changes.isEmpty();
-
+		public void sendUpdates(boolean hasChanges) {
 			List<EntityPlayerMP> fullPacketTargets = Lists.newArrayList();
 			List<EntityPlayerMP> deltaPacketTargets = Lists.newArrayList();
 
@@ -224,12 +271,14 @@ public abstract class SyncMapServer extends SyncMap {
 				}
 			}
 
+			final boolean batched = LibConfig.batchSyncUpdates;
+
 			try {
 				if (!deltaPacketTargets.isEmpty()) {
-					final PacketBuffer deltaPayload = new PacketBuffer(Unpooled.buffer());
-					writeOwnerInfo(deltaPayload);
-					writeUpdatePacket(deltaPayload, changes);
-					SyncChannelHolder.INSTANCE.sendPayloadToPlayers(deltaPayload, deltaPacketTargets);
+					final PacketBuffer deltaPayload = createPayload(deltaPayloadSize, batched);
+					writeUpdatePacket(deltaPayload);
+					deltaPayloadSize.update(deltaPayload);
+					sendPayload(deltaPayload, deltaPacketTargets, batched);
 				}
 			} catch (IOException e) {
 				Log.warn(e, "IOError during delta sync");
@@ -237,10 +286,10 @@ public abstract class SyncMapServer extends SyncMap {
 
 			try {
 				if (!fullPacketTargets.isEmpty()) {
-					final PacketBuffer fullPayload = new PacketBuffer(Unpooled.buffer());
-					writeOwnerInfo(fullPayload);
+					final PacketBuffer fullPayload = createPayload(fullPayloadSize, batched);
 					writeSyncObjectInitialization(fullPayload);
-					SyncChannelHolder.INSTANCE.sendPayloadToPlayers(fullPayload, fullPacketTargets);
+					fullPayloadSize.update(fullPayload);
+					sendPayload(fullPayload, fullPacketTargets, batched);
 				}
 			} catch (IOException e) {
 				Log.warn(e, "IOError during full sync");
@@ -276,15 +325,50 @@ public abstract class SyncMapServer extends SyncMap {
 		protected abstract IUpdateStrategy create(SyncMapServer owner);
 	}
 
-	private Set<ISyncableObject> listChanges() {
-		Set<ISyncableObject> changes = Sets.newIdentityHashSet();
-		for (Entry e : orderedEntries)
-			if (e.obj.isDirty()) {
-				changes.add(e.obj);
-				e.obj.markClean();
-			}
+	private boolean collectChanges() {
+		for (Entry e : untrackedEntries)
+			if (e.obj.isDirty()) dirtyTracker.markDirty(e.id);
 
-		return changes;
+		if (!dirtyTracker.commit()) return false;
+
+		for (int id = dirtyTracker.nextChanged(0); id >= 0; id = dirtyTracker.nextChanged(id + 1))
+			orderedEntries.get(id).obj.markClean();
+
+		return true;
+	}
+
+	private class ChangeSetView extends AbstractSet<ISyncableObject> {
+		private final DirtyTracker changes;
+
+		public ChangeSetView(DirtyTracker changes) {
+			this.changes = changes;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			final Integer id = objectToId.get(o);
+			return id != null && changes.isChanged(id);
+		}
+
+		@Override
+		public Iterator<ISyncableObject> iterator() {
+			return new AbstractIterator<ISyncableObject>() {
+				private int nextId = changes.nextChanged(0);
+
+				@Override
+				protected ISyncableObject computeNext() {
+					if (nextId < 0) return endOfData();
+					final ISyncableObject result = orderedEntries.get(nextId).obj;
+					nextId = changes.nextChanged(nextId + 1);
+					return result;
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return changes.changedCount();
+		}
 	}
 
 	protected final Set<ISyncListener> syncListeners = Sets.newIdentityHashSet();
@@ -308,11 +392,12 @@ public abstract class SyncMapServer extends SyncMap {
 	public void sendUpdates() {
 		if (isInvalid() || !updateStrategy.canSendUpdates()) return;
 
-		final Set<ISyncableObject> changedObjects = listChanges();
-		updateStrategy.sendUpdates(changedObjects);
+		final boolean hasChanges = collectChanges();
+		updateStrategy.sendUpdates(hasChanges);
 
-		if (!changedObjects.isEmpty()) {
-			notifySyncListeners(syncListeners, Collections.unmodifiableSet(changedObjects));
+		if (hasChanges && !syncListeners.isEmpty()) {
+			// snapshot, since tracker will be reused on next update
+			notifySyncListeners(syncListeners, new ChangeSetView(dirtyTracker.copyChanges()));
 		}
 	}
 
@@ -342,6 +427,11 @@ public abstract class SyncMapServer extends SyncMap {
 
 	protected abstract void writeOwnerData(PacketBuffer output);
 
+	/**
+	 * Used in batched frames. Previous owner is last one with same owner type in frame or null, if this is first one.
+	 */
+	protected abstract void writeOwnerDataDelta(PacketBuffer output, @Nullable SyncMapServer previous);
+
 	protected abstract Set<EntityPlayerMP> getPlayersWatching();
 
 	protected abstract boolean isInvalid();
@@ -1,14 +1,15 @@
 package openmods.sync;
 
 import java.util.Set;
+import javax.annotation.Nullable;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.network.PacketBuffer;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
-import net.minecraft.world.WorldServer;
 import openmods.tileentity.SyncedTileEntity;
-import openmods.utils.NetUtils;
+import openmods.utils.ByteUtils;
+import openmods.utils.ChunkWatcherIndex;
 
 public class SyncMapTile extends SyncMapServer {
 
@@ -22,7 +23,17 @@ public class SyncMapTile extends SyncMapServer {
 	public static final int OWNER_TYPE = 1;
 
 	public static ISyncMapProvider findOwner(World world, PacketBuffer input) {
-		final BlockPos pos = input.readBlockPos();
+		return findOwner(world, input.readBlockPos());
+	}
+
+	public static BlockPos readOwnerDelta(PacketBuffer input, BlockPos previous) {
+		final int dx = ByteUtils.zigZagDecode(input.readVarInt());
+		final int dy = ByteUtils.zigZagDecode(input.readVarInt());
+		final int dz = ByteUtils.zigZagDecode(input.readVarInt());
+		return previous.add(dx, dy, dz);
+	}
+
+	public static ISyncMapProvider findOwner(World world, BlockPos pos) {
 		if (world != null) {
 			if (world.isBlockLoaded(pos)) {
 				final TileEntity tile = world.getTileEntity(pos);
@@ -43,10 +54,19 @@ public class SyncMapTile extends SyncMapServer {
 		output.writeBlockPos(owner.getPos());
 	}
 
+	@Override
+	protected void writeOwnerDataDelta(PacketBuffer output, @Nullable SyncMapServer previous) {
+		final BlockPos prevPos = (previous instanceof SyncMapTile)? ((SyncMapTile)previous).owner.getPos() : BlockPos.ORIGIN;
+		final BlockPos pos = owner.getPos();
+		output.writeVarInt(ByteUtils.zigZagEncode(pos.getX() - prevPos.getX()));
+		output.writeVarInt(ByteUtils.zigZagEncode(pos.getY() - prevPos.getY()));
+		output.writeVarInt(ByteUtils.zigZagEncode(pos.getZ() - prevPos.getZ()));
+	}
+
 	@Override
 	protected Set<EntityPlayerMP> getPlayersWatching() {
 		final BlockPos pos = owner.getPos();
-		return NetUtils.getPlayersWatchingBlock((WorldServer)owner.getWorld(), pos.getX(), pos.getZ());
+		return ChunkWatcherIndex.INSTANCE.getPlayersWatching(owner.getWorld().provider.getDimension(), pos.getX() >> 4, pos.getZ() >> 4);
 	}
 
 	@Override
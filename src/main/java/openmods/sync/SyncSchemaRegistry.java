@@ -0,0 +1,205 @@
+package openmods.sync;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.server.MinecraftServer;
+import net.minecraftforge.common.util.FakePlayer;
+import net.minecraftforge.event.entity.EntityJoinWorldEvent;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import openmods.network.PayloadBuffers;
+
+/**
+ * Keeps layouts (ordered field names and type ids) of sync maps, so initialization packets only need to carry small schema id.
+ * Server assigns ids sequentially and sends every schema once per connection: either when player joins world (before any chunk data) or when new schema is created.
+ */
+@EventBusSubscriber
+public class SyncSchemaRegistry {
+
+	public static final int PACKET_TYPE = 2;
+
+	private static final int MAX_NAME_LENGTH = Short.MAX_VALUE;
+
+	public static class Schema {
+		private final String[] names;
+
+		private final int[] typeIds;
+
+		private final int hash;
+
+		public Schema(String[] names, int[] typeIds) {
+			Preconditions.checkArgument(names.length == typeIds.length, "Names and types length mismatch");
+			this.names = names;
+			this.typeIds = typeIds;
+			this.hash = 31 * Arrays.hashCode(names) + Arrays.hashCode(typeIds);
+		}
+
+		public int size() {
+			return names.length;
+		}
+
+		public String getName(int index) {
+			return names[index];
+		}
+
+		public int getTypeId(int index) {
+			return typeIds[index];
+		}
+
+		private void write(PacketBuffer output) {
+			output.writeVarInt(names.length);
+			for (int i = 0; i < names.length; i++) {
+				output.writeString(names[i]);
+				output.writeVarInt(typeIds[i]);
+			}
+		}
+
+		private static Schema read(PacketBuffer input) {
+			final int count = input.readVarInt();
+			final String[] names = new String[count];
+			final int[] typeIds = new int[count];
+			for (int i = 0; i < count; i++) {
+				names[i] = input.readString(MAX_NAME_LENGTH);
+				typeIds[i] = input.readVarInt();
+			}
+			return new Schema(names, typeIds);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof Schema)) return false;
+			final Schema other = (Schema)obj;
+			return hash == other.hash &&
+					Arrays.equals(names, other.names) &&
+					Arrays.equals(typeIds, other.typeIds);
+		}
+
+		@Override
+		public String toString() {
+			return "Schema" + Arrays.toString(names);
+		}
+	}
+
+	private static final AttributeKey<Integer> SENT_SCHEMAS = AttributeKey.valueOf("om:sentSyncSchemas");
+
+	private static final List<Schema> serverSchemas = Lists.newArrayList();
+
+	private static final Map<Schema, Integer> serverSchemaIds = Maps.newHashMap();
+
+	private static final List<Schema> clientSchemas = Lists.newArrayList();
+
+	// only accessed with class lock held
+	private static final PayloadBuffers.SizeEstimate schemaPayloadSize = new PayloadBuffers.SizeEstimate();
+
+	public static synchronized int getSchemaId(Schema schema) {
+		final Integer existingId = serverSchemaIds.get(schema);
+		if (existingId != null) return existingId;
+
+		final int newId = registerSchema(schema);
+
+		final MinecraftServer server = FMLCommonHandler.instance().getMinecraftServerInstance();
+		if (server != null) {
+			for (EntityPlayerMP player : server.getPlayerList().getPlayers())
+				sendMissingSchemas(player);
+		}
+
+		return newId;
+	}
+
+	static synchronized int registerSchema(Schema schema) {
+		final Integer existingId = serverSchemaIds.get(schema);
+		if (existingId != null) return existingId;
+
+		final int newId = serverSchemas.size();
+		serverSchemas.add(schema);
+		serverSchemaIds.put(schema, newId);
+		return newId;
+	}
+
+	static synchronized void clearServerSchemas() {
+		serverSchemas.clear();
+		serverSchemaIds.clear();
+	}
+
+	/**
+	 * Should be called when server stops - ids are only valid for single server run.
+	 */
+	public static synchronized void resetServerSchemas() {
+		clearServerSchemas();
+
+		final MinecraftServer server = FMLCommonHandler.instance().getMinecraftServerInstance();
+		if (server != null) {
+			for (EntityPlayerMP player : server.getPlayerList().getPlayers())
+				if (player.connection != null) player.connection.netManager.channel().attr(SENT_SCHEMAS).set(null);
+		}
+	}
+
+	@SubscribeEvent
+	public static void onEntityJoinWorld(EntityJoinWorldEvent evt) {
+		final Entity entity = evt.getEntity();
+		if (entity instanceof EntityPlayerMP && !(entity instanceof FakePlayer)) {
+			synchronized (SyncSchemaRegistry.class) {
+				sendMissingSchemas((EntityPlayerMP)entity);
+			}
+		}
+	}
+
+	private static void sendMissingSchemas(EntityPlayerMP player) {
+		if (player.connection == null) return;
+
+		final Attribute<Integer> sentSchemas = player.connection.netManager.channel().attr(SENT_SCHEMAS);
+		final Integer prevSent = sentSchemas.get();
+		final int firstId = prevSent != null? prevSent : 0;
+		final int lastId = serverSchemas.size();
+		if (firstId >= lastId) return;
+
+		final PacketBuffer payload = schemaPayloadSize.allocate();
+		payload.writeVarInt(PACKET_TYPE);
+		writeSchemas(payload, firstId, lastId);
+		schemaPayloadSize.update(payload);
+
+		SyncChannelHolder.INSTANCE.sendPayloadToPlayers(payload, Collections.singleton(player));
+		sentSchemas.set(lastId);
+	}
+
+	static synchronized void writeSchemas(PacketBuffer payload, int firstId, int lastId) {
+		payload.writeVarInt(firstId);
+		payload.writeVarInt(lastId - firstId);
+		for (int i = firstId; i < lastId; i++)
+			serverSchemas.get(i).write(payload);
+	}
+
+	public static void readSchemas(PacketBuffer input) {
+		final int firstId = input.readVarInt();
+		final int count = input.readVarInt();
+
+		// new connection always starts from zero
+		if (firstId == 0) clientSchemas.clear();
+		Preconditions.checkState(firstId == clientSchemas.size(), "Schema id mismatch: expected %s, got %s", clientSchemas.size(), firstId);
+
+		for (int i = 0; i < count; i++)
+			clientSchemas.add(Schema.read(input));
+	}
+
+	public static Schema getClientSchema(int schemaId) {
+		Preconditions.checkState(schemaId >= 0 && schemaId < clientSchemas.size(), "Unknown sync schema: %s", schemaId);
+		return clientSchemas.get(schemaId);
+	}
+}
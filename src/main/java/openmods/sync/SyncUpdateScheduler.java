@@ -0,0 +1,139 @@
+package openmods.sync;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import io.netty.buffer.ByteBuf;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.PacketBuffer;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+import net.minecraftforge.fml.common.gameevent.TickEvent.ServerTickEvent;
+import openmods.network.PayloadBuffers;
+
+/**
+ * Collects sync map payloads produced during server tick and sends them at end of tick as one frame per player (shared by players with same updates).
+ * Frame: packet type, then entries (owner type, owner data delta-encoded against previous entry of same owner type, payload length, payload).
+ */
+public class SyncUpdateScheduler {
+
+	public static final SyncUpdateScheduler INSTANCE = new SyncUpdateScheduler();
+
+	public static final int PACKET_TYPE = 3;
+
+	static final int MAX_FRAME_SIZE = 0x10000;
+
+	private static final int MAX_VAR_INT_SIZE = 5;
+
+	// owner type, owner data (at most three var ints) and payload length
+	private static final int MAX_ENTRY_HEADER_SIZE = 5 * MAX_VAR_INT_SIZE;
+
+	private SyncUpdateScheduler() {}
+
+	static class PendingUpdate {
+		private final SyncMapServer owner;
+
+		private final ByteBuf payload;
+
+		public PendingUpdate(SyncMapServer owner, ByteBuf payload) {
+			this.owner = owner;
+			this.payload = payload;
+		}
+	}
+
+	private final Map<EntityPlayerMP, List<PendingUpdate>> pendingUpdates = Maps.newIdentityHashMap();
+
+	public void schedule(SyncMapServer owner, ByteBuf payload, Collection<EntityPlayerMP> players) {
+		final PendingUpdate update = new PendingUpdate(owner, payload);
+		for (EntityPlayerMP player : players) {
+			List<PendingUpdate> updates = pendingUpdates.get(player);
+			if (updates == null) {
+				updates = Lists.newArrayList();
+				pendingUpdates.put(player, updates);
+			}
+			updates.add(update);
+		}
+	}
+
+	@SubscribeEvent
+	public void onServerTick(ServerTickEvent evt) {
+		if (evt.phase == Phase.END) flush();
+	}
+
+	public void flush() {
+		if (pendingUpdates.isEmpty()) return;
+
+		// players with same updates (usually watching same area) share encoded frames
+		final Map<List<PendingUpdate>, List<EntityPlayerMP>> groups = Maps.newHashMap();
+		for (Map.Entry<EntityPlayerMP, List<PendingUpdate>> e : pendingUpdates.entrySet()) {
+			final EntityPlayerMP player = e.getKey();
+			if (player.connection == null) continue;
+
+			List<EntityPlayerMP> group = groups.get(e.getValue());
+			if (group == null) {
+				group = Lists.newArrayList();
+				groups.put(e.getValue(), group);
+			}
+			group.add(player);
+		}
+
+		pendingUpdates.clear();
+
+		for (Map.Entry<List<PendingUpdate>, List<EntityPlayerMP>> e : groups.entrySet())
+			sendFrames(e.getValue(), e.getKey());
+	}
+
+	private static void sendFrames(Collection<EntityPlayerMP> target, List<PendingUpdate> updates) {
+		for (PacketBuffer frame : encodeFrames(updates)) {
+			PayloadBuffers.recordAllocation(frame);
+			SyncChannelHolder.INSTANCE.sendPayloadToPlayers(frame, target);
+		}
+	}
+
+	/**
+	 * Frame is closed after first entry that reaches {@link #MAX_FRAME_SIZE}. Owner deltas restart in every frame.
+	 */
+	static List<PacketBuffer> encodeFrames(List<PendingUpdate> updates) {
+		final List<PacketBuffer> frames = Lists.newArrayList();
+		final Map<Integer, SyncMapServer> previousOwners = Maps.newHashMap();
+
+		PacketBuffer frame = null;
+		for (int i = 0; i < updates.size(); i++) {
+			if (frame == null) {
+				frame = createFrame(updates, i);
+				previousOwners.clear();
+			}
+
+			final PendingUpdate update = updates.get(i);
+			final SyncMapServer owner = update.owner;
+			final int ownerType = owner.getOwnerType();
+			frame.writeVarInt(ownerType);
+			owner.writeOwnerDataDelta(frame, previousOwners.put(ownerType, owner));
+
+			final ByteBuf payload = update.payload;
+			final int payloadSize = payload.readableBytes();
+			frame.writeVarInt(payloadSize);
+			frame.writeBytes(payload, payload.readerIndex(), payloadSize);
+
+			if (frame.writerIndex() >= MAX_FRAME_SIZE) {
+				frames.add(frame);
+				frame = null;
+			}
+		}
+
+		if (frame != null) frames.add(frame);
+		return frames;
+	}
+
+	private static PacketBuffer createFrame(List<PendingUpdate> updates, int firstUpdate) {
+		int expectedSize = MAX_VAR_INT_SIZE;
+		for (int i = firstUpdate; i < updates.size() && expectedSize < MAX_FRAME_SIZE; i++)
+			expectedSize += MAX_ENTRY_HEADER_SIZE + updates.get(i).payload.readableBytes();
+
+		final PacketBuffer frame = PayloadBuffers.allocate(expectedSize);
+		frame.writeVarInt(PACKET_TYPE);
+		return frame;
+	}
+}
@@ -1,9 +1,23 @@
 package openmods.sync;
 
-public abstract class SyncableObjectBase implements ISyncableObject {
+/**
+ * Base for syncable objects. Objects from this library report changes with {@link #markDirty()} directly to owning sync map.
+ * Subclasses defined elsewhere may set {@link #dirty} directly or override {@link #isDirty()}, so sync map keeps polling them.
+ */
+public abstract class SyncableObjectBase implements ITrackedSyncableObject {
 
 	protected boolean dirty = false;
 
+	private DirtyTracker tracker;
+
+	private int trackerId;
+
+	@Override
+	public void setDirtyTracker(DirtyTracker tracker, int id) {
+		this.tracker = tracker;
+		this.trackerId = id;
+	}
+
 	@Override
 	public boolean isDirty() {
 		return dirty;
@@ -17,5 +31,6 @@ public abstract class SyncableObjectBase implements ISyncableObject {
 	@Override
 	public void markDirty() {
 		dirty = true;
+		if (tracker != null) tracker.markDirty(trackerId);
 	}
 }
@@ -4,7 +4,6 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
-import java.util.Map;
 import net.minecraft.util.ResourceLocation;
 import net.minecraftforge.event.RegistryEvent;
 import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
@@ -13,6 +12,7 @@ import net.minecraftforge.registries.IForgeRegistry;
 import net.minecraftforge.registries.RegistryBuilder;
 import openmods.OpenMods;
 import openmods.utils.CommonRegistryCallbacks;
+import openmods.utils.RegistryIdTable;
 import openmods.utils.RegistrationContextBase;
 
 @EventBusSubscriber
@@ -39,17 +39,23 @@ public class SyncableObjectTypeRegistry {
 
 	}
 
+	private static RegistryIdTable<Class<? extends ISyncableObject>, SyncableObjectType> getIdTable() {
+		return CommonRegistryCallbacks.getIdTable(REGISTRY);
+	}
+
 	public static SyncableObjectType getType(int typeId) {
-		return CommonRegistryCallbacks.getEntryIdMap(REGISTRY).inverse().get(typeId);
+		return getIdTable().getEntry(typeId);
 	}
 
 	public static int getTypeId(SyncableObjectType type) {
-		return CommonRegistryCallbacks.getEntryIdMap(REGISTRY).get(type);
+		final int id = getIdTable().getId(type);
+		Preconditions.checkState(id != RegistryIdTable.NO_ID, "Unregistered type %s", type);
+		return id;
 	}
 
 	public static SyncableObjectType getType(Class<? extends ISyncableObject> cls) {
-		final Map<Class<? extends ISyncableObject>, SyncableObjectType> objectToEntryMap = CommonRegistryCallbacks.getObjectToEntryMap(REGISTRY);
-		return objectToEntryMap.get(cls);
+		final RegistryIdTable<Class<? extends ISyncableObject>, SyncableObjectType> table = getIdTable();
+		return table.getEntry(table.getObjectId(cls));
 	}
 
 	public static RegistrationContext startRegistration(IForgeRegistry<SyncableObjectType> registry) {
@@ -1,5 +1,7 @@
 package openmods.sync;
 
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
 import java.io.IOException;
 import javax.annotation.Nullable;
 import net.minecraft.nbt.NBTTagCompound;
@@ -11,10 +13,64 @@ import net.minecraftforge.fluids.FluidStack;
 import openmods.api.IValueProvider;
 import openmods.liquids.GenericTank;
 
-public class SyncableTank extends GenericTank implements ISyncableObject, IValueProvider<FluidStack> {
+public class SyncableTank extends GenericTank implements ITrackedSyncableObject, IDeltaSyncableObject, IValueProvider<FluidStack> {
+
+	private static final int TYPE_EMPTY = 0;
+	private static final int TYPE_FULL = 1;
+	private static final int TYPE_AMOUNT = 2;
+
+	private static class SentState {
+		private boolean isValid;
+		private Fluid fluid;
+		private int amount;
+		private NBTTagCompound tag;
+
+		public void set(@Nullable FluidStack stack) {
+			isValid = true;
+			if (stack == null) {
+				fluid = null;
+				amount = 0;
+				tag = null;
+			} else {
+				fluid = stack.getFluid();
+				amount = stack.amount;
+				// tag rarely changes, so avoid copying it on every amount change
+				if (!Objects.equal(tag, stack.tag)) tag = stack.tag != null? stack.tag.copy() : null;
+			}
+		}
+
+		public boolean hasSameFluid(SentState other) {
+			return other.isValid && fluid != null && fluid == other.fluid && Objects.equal(tag, other.tag);
+		}
+
+		public void write(PacketBuffer stream) {
+			writeFull(stream, fluid, amount, tag);
+		}
+	}
+
+	private static void writeFull(PacketBuffer stream, @Nullable Fluid fluid, int amount, @Nullable NBTTagCompound tag) {
+		if (fluid != null) {
+			stream.writeByte(TYPE_FULL);
+			stream.writeString(FluidRegistry.getFluidName(fluid));
+			stream.writeVarInt(amount);
+			stream.writeCompoundTag(tag);
+		} else {
+			stream.writeByte(TYPE_EMPTY);
+		}
+	}
+
+	// state committed on last markClean, i.e. one that will be known to all clients after pending updates are sent
+	private SentState sentState = new SentState();
+
+	// state committed on markClean before last one, used to check if fluid changed
+	private SentState previousSentState = new SentState();
 
 	private boolean dirty = false;
 
+	private DirtyTracker tracker;
+
+	private int trackerId;
+
 	public SyncableTank() {
 		super(0);
 	}
@@ -31,6 +87,12 @@ public class SyncableTank extends GenericTank implements ISyncableObject, IValue
 		super(capacity, acceptableFluids);
 	}
 
+	@Override
+	public void setDirtyTracker(DirtyTracker tracker, int id) {
+		this.tracker = tracker;
+		this.trackerId = id;
+	}
+
 	@Override
 	public boolean isDirty() {
 		return dirty;
@@ -39,38 +101,65 @@ public class SyncableTank extends GenericTank implements ISyncableObject, IValue
 	@Override
 	public void markClean() {
 		dirty = false;
+
+		final SentState tmp = previousSentState;
+		previousSentState = sentState;
+		sentState = tmp;
+		sentState.set(fluid);
 	}
 
 	@Override
 	public void markDirty() {
 		dirty = true;
+		if (tracker != null) tracker.markDirty(trackerId);
 	}
 
 	@Override
 	public void readFromStream(PacketBuffer stream) throws IOException {
-		if (stream.readBoolean()) {
-			String fluidName = stream.readString(Short.MAX_VALUE);
-			Fluid fluid = FluidRegistry.getFluid(fluidName);
-
-			int fluidAmount = stream.readInt();
-
-			this.fluid = new FluidStack(fluid, fluidAmount);
-			this.fluid.tag = stream.readCompoundTag();
-		} else {
-			this.fluid = null;
+		final int type = stream.readByte();
+		switch (type) {
+			case TYPE_EMPTY:
+				this.fluid = null;
+				break;
+			case TYPE_FULL: {
+				String fluidName = stream.readString(Short.MAX_VALUE);
+				Fluid fluid = FluidRegistry.getFluid(fluidName);
+
+				int fluidAmount = stream.readVarInt();
+
+				this.fluid = new FluidStack(fluid, fluidAmount);
+				this.fluid.tag = stream.readCompoundTag();
+				break;
+			}
+			case TYPE_AMOUNT: {
+				final int amount = stream.readVarInt();
+				Preconditions.checkState(this.fluid != null, "Received amount change for empty tank");
+				this.fluid.amount = amount;
+				break;
+			}
+			default:
+				throw new IOException("Invalid tank update type: " + type);
 		}
 	}
 
 	@Override
 	public void writeToStream(PacketBuffer stream) {
-		if (fluid != null) {
-			stream.writeBoolean(true);
-			final String id = FluidRegistry.getFluidName(fluid.getFluid());
-			stream.writeString(id);
-			stream.writeInt(fluid.amount);
-			stream.writeCompoundTag(fluid.tag);
+		// always current contents - tank may be written outside sync map or before pending changes are committed.
+		// Deltas carry absolute amounts, so late ones can't corrupt state sent here
+		if (fluid != null) writeFull(stream, fluid.getFluid(), fluid.amount, fluid.tag);
+		else writeFull(stream, null, 0, null);
+	}
+
+	@Override
+	public void writeDeltaToStream(PacketBuffer stream) {
+		if (!sentState.isValid) sentState.set(fluid);
+
+		// amount is absolute, since client may receive this update after initialization packet that already contains same state
+		if (sentState.hasSameFluid(previousSentState)) {
+			stream.writeByte(TYPE_AMOUNT);
+			stream.writeVarInt(sentState.amount);
 		} else {
-			stream.writeBoolean(false);
+			sentState.write(stream);
 		}
 	}
 
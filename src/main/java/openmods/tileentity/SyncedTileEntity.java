@@ -171,9 +171,19 @@ public abstract class SyncedTileEntity extends OpenTileEntity implements ISyncMa
 	}
 
 	public <T> T createRpcProxy(ISyncableObject object, Class<? extends T> mainIntf, Class<?>... extraIntf) {
+		return createSyncRpcProxy(RpcCallDispatcher.instance().senders.client, object, mainIntf, extraIntf);
+	}
+
+	/**
+	 * Calls on returned proxy are sent at end of tick, as single packet with other batched calls. They may be reordered with packets sent in other ways.
+	 */
+	public <T> T createBatchedRpcProxy(ISyncableObject object, Class<? extends T> mainIntf, Class<?>... extraIntf) {
+		return createSyncRpcProxy(RpcCallDispatcher.instance().batchedClientSender, object, mainIntf, extraIntf);
+	}
+
+	private <T> T createSyncRpcProxy(IPacketSender sender, ISyncableObject object, Class<? extends T> mainIntf, Class<?>... extraIntf) {
 		TypeUtils.isInstance(object, mainIntf, extraIntf);
 		IRpcTarget target = new SyncRpcTarget.SyncTileEntityRpcTarget(this, object);
-		final IPacketSender sender = RpcCallDispatcher.instance().senders.client;
 		return RpcCallDispatcher.instance().createProxy(target, sender, mainIntf, extraIntf);
 	}
 }
@@ -120,6 +120,14 @@ public class ByteUtils {
 		return result;
 	}
 
+	public static int zigZagEncode(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	public static int zigZagDecode(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
 	public static int nextPowerOf2(int v) {
 		v--;
 		v |= v >> 1;
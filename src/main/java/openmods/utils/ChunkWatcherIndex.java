@@ -0,0 +1,122 @@
+package openmods.utils;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import java.util.Set;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraftforge.event.world.ChunkWatchEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedOutEvent;
+
+/**
+ * Index of players that have received chunk data, maintained from chunk watch events.
+ * Queries return shared immutable snapshots, rebuilt only after watcher set changes.
+ * Not thread-safe: events are fired and queries should be made only on server thread.
+ */
+public class ChunkWatcherIndex {
+
+	public static final ChunkWatcherIndex INSTANCE = new ChunkWatcherIndex();
+
+	private ChunkWatcherIndex() {}
+
+	private static class ChunkWatchers {
+		private final Set<EntityPlayerMP> players = Sets.newIdentityHashSet();
+
+		private Set<EntityPlayerMP> snapshot;
+
+		public Set<EntityPlayerMP> getSnapshot() {
+			if (snapshot == null) snapshot = ImmutableSet.copyOf(players);
+			return snapshot;
+		}
+
+		public void add(EntityPlayerMP player) {
+			if (players.add(player)) snapshot = null;
+		}
+
+		public boolean remove(EntityPlayerMP player) {
+			if (players.remove(player)) {
+				snapshot = null;
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private final TIntObjectMap<TLongObjectMap<ChunkWatchers>> dimensions = new TIntObjectHashMap<>();
+
+	public Set<EntityPlayerMP> getPlayersWatching(int dimension, int chunkX, int chunkZ) {
+		final TLongObjectMap<ChunkWatchers> chunks = dimensions.get(dimension);
+		if (chunks == null) return ImmutableSet.of();
+
+		final ChunkWatchers watchers = chunks.get(ChunkPos.asLong(chunkX, chunkZ));
+		return watchers != null? watchers.getSnapshot() : ImmutableSet.of();
+	}
+
+	@SubscribeEvent
+	public void onChunkWatch(ChunkWatchEvent.Watch evt) {
+		final EntityPlayerMP player = evt.getPlayer();
+		final ChunkPos chunk = evt.getChunk();
+
+		TLongObjectMap<ChunkWatchers> chunks = dimensions.get(player.dimension);
+		if (chunks == null) {
+			chunks = new TLongObjectHashMap<>();
+			dimensions.put(player.dimension, chunks);
+		}
+
+		final long key = ChunkPos.asLong(chunk.x, chunk.z);
+		ChunkWatchers watchers = chunks.get(key);
+		if (watchers == null) {
+			watchers = new ChunkWatchers();
+			chunks.put(key, watchers);
+		}
+
+		watchers.add(player);
+	}
+
+	@SubscribeEvent
+	public void onChunkUnwatch(ChunkWatchEvent.UnWatch evt) {
+		final EntityPlayerMP player = evt.getPlayer();
+		final long key = ChunkPos.asLong(evt.getChunk().x, evt.getChunk().z);
+
+		// during dimension change player is already moved to new world when old chunks are unwatched
+		if (!removeWatcher(dimensions.get(player.dimension), key, player)) {
+			for (TLongObjectMap<ChunkWatchers> chunks : dimensions.valueCollection())
+				if (removeWatcher(chunks, key, player)) break;
+		}
+	}
+
+	private static boolean removeWatcher(TLongObjectMap<ChunkWatchers> chunks, long key, EntityPlayerMP player) {
+		if (chunks == null) return false;
+		final ChunkWatchers watchers = chunks.get(key);
+		if (watchers == null || !watchers.remove(player)) return false;
+		if (watchers.players.isEmpty()) chunks.remove(key);
+		return true;
+	}
+
+	// chunks should be already unwatched at this point, this just makes sure disconnected player isn't kept
+	@SubscribeEvent
+	public void onPlayerLogout(PlayerLoggedOutEvent evt) {
+		if (!(evt.player instanceof EntityPlayerMP)) return;
+		final EntityPlayerMP player = (EntityPlayerMP)evt.player;
+
+		for (TLongObjectMap<ChunkWatchers> chunks : dimensions.valueCollection()) {
+			chunks.retainEntries((key, watchers) -> {
+				watchers.remove(player);
+				return !watchers.players.isEmpty();
+			});
+		}
+	}
+
+	@SubscribeEvent
+	public void onWorldUnload(WorldEvent.Unload evt) {
+		final World world = evt.getWorld();
+		if (!world.isRemote) dimensions.remove(world.provider.getDimension());
+	}
+}
@@ -8,6 +8,7 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -62,6 +63,18 @@ public class CollectionUtils {
 		return list.get(randomIndex);
 	}
 
+	/**
+	 * In-place Fisher-Yates shuffle of first {@code length} elements
+	 */
+	public static <T> void shuffle(T[] array, int length, Random rand) {
+		for (int i = length - 1; i > 0; i--) {
+			final int j = rand.nextInt(i + 1);
+			final T tmp = array[i];
+			array[i] = array[j];
+			array[j] = tmp;
+		}
+	}
+
 	public static <T> T getWeightedRandom(Map<T, Integer> collection) {
 		int totalWeight = 0;
 		Collection<Integer> values = collection.values();
@@ -119,6 +132,27 @@ public class CollectionUtils {
 		}
 	}
 
+	public static void readSortedIdList(PacketBuffer input, BitSet output) {
+		final int elemCount = input.readVarInt();
+
+		int currentId = 0;
+		for (int i = 0; i < elemCount; i++) {
+			currentId += input.readVarInt();
+			output.set(currentId);
+		}
+	}
+
+	public static void writeSortedIdList(PacketBuffer output, BitSet idList) {
+		output.writeVarInt(idList.cardinality());
+
+		int currentId = 0;
+		for (int id = idList.nextSetBit(0); id >= 0; id = idList.nextSetBit(id + 1)) {
+			int delta = id - currentId;
+			output.writeVarInt(delta);
+			currentId = id;
+		}
+	}
+
 	public static <D> void readSortedIdMap(PacketBuffer input, Map<Integer, D> output, IStreamReader<D> reader) {
 		final int elemCount = input.readVarInt();
 
@@ -1,5 +1,6 @@
 package openmods.utils;
 
+import com.google.common.base.Function;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.Maps;
@@ -11,14 +12,47 @@ import net.minecraftforge.registries.IForgeRegistryEntry;
 import net.minecraftforge.registries.IForgeRegistryInternal;
 import net.minecraftforge.registries.RegistryManager;
 import openmods.OpenMods;
-import openmods.network.rpc.MethodEntry;
 
-public abstract class CommonRegistryCallbacks<T, E extends IForgeRegistryEntry<E>> implements IForgeRegistry.AddCallback<E>, IForgeRegistry.ClearCallback<E>, IForgeRegistry.CreateCallback<E> {
+public abstract class CommonRegistryCallbacks<T, E extends IForgeRegistryEntry<E>> implements IForgeRegistry.AddCallback<E>, IForgeRegistry.ClearCallback<E>, IForgeRegistry.CreateCallback<E>, IForgeRegistry.BakeCallback<E> {
 
 	private static final ResourceLocation OBJECT_TO_ENTRY = OpenMods.location("object_to_entry");
 
 	private static final ResourceLocation ENTRY_TO_ID = OpenMods.location("entry_to_id");
 
+	private static final ResourceLocation ID_TABLE = OpenMods.location("id_table");
+
+	private static class IdTableHolder<T, E> {
+		private final Map<E, Integer> entryToId;
+
+		private final Function<E, T> wrappedObjectGetter;
+
+		private volatile RegistryIdTable<T, E> table;
+
+		public IdTableHolder(Map<E, Integer> entryToId, Function<E, T> wrappedObjectGetter) {
+			this.entryToId = entryToId;
+			this.wrappedObjectGetter = wrappedObjectGetter;
+		}
+
+		public void invalidate() {
+			table = null;
+		}
+
+		public synchronized void rebuild() {
+			table = new RegistryIdTable<>(entryToId, wrappedObjectGetter);
+		}
+
+		public RegistryIdTable<T, E> get() {
+			final RegistryIdTable<T, E> result = table;
+			if (result != null) return result;
+
+			// registry changed outside of bake (like during id sync), rebuild on first use
+			synchronized (this) {
+				if (table == null) rebuild();
+				return table;
+			}
+		}
+	}
+
 	protected abstract T getWrappedObject(E entry);
 
 	@Override
@@ -26,20 +60,42 @@ public abstract class CommonRegistryCallbacks<T, E extends IForgeRegistryEntry<E
 		final Map<T, E> classToEntryMap = Maps.newHashMap();
 		owner.setSlaveMap(OBJECT_TO_ENTRY, classToEntryMap);
 
-		final BiMap<MethodEntry, Integer> entryToId = HashBiMap.create();
+		final BiMap<E, Integer> entryToId = HashBiMap.create();
 		owner.setSlaveMap(ENTRY_TO_ID, entryToId);
+
+		owner.setSlaveMap(ID_TABLE, new IdTableHolder<>(entryToId, this::getWrappedObject));
 	}
 
 	@Override
 	public void onClear(IForgeRegistryInternal<E> owner, RegistryManager stage) {
 		getObjectToEntryMap(owner).clear();
 		getEntryIdMap(owner).clear();
+		getIdTableHolder(owner).invalidate();
 	}
 
 	@Override
 	public void onAdd(IForgeRegistryInternal<E> owner, RegistryManager stage, int id, E obj, @Nullable E oldObj) {
 		getObjectToEntryMap(owner).put(getWrappedObject(obj), obj);
 		getEntryIdMap(owner).put(obj, id);
+		getIdTableHolder(owner).invalidate();
+	}
+
+	@Override
+	public void onBake(IForgeRegistryInternal<E> owner, RegistryManager stage) {
+		getIdTableHolder(owner).rebuild();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T, E extends IForgeRegistryEntry<E>> IdTableHolder<T, E> getIdTableHolder(IForgeRegistry<E> registry) {
+		return registry.getSlaveMap(ID_TABLE, IdTableHolder.class);
+	}
+
+	/**
+	 * Returns id lookup tables for current registry state. Should be preferred over {@link #getEntryIdMap(IForgeRegistry)} on hot paths.
+	 */
+	public static <T, E extends IForgeRegistryEntry<E>> RegistryIdTable<T, E> getIdTable(IForgeRegistry<E> registry) {
+		final IdTableHolder<T, E> holder = getIdTableHolder(registry);
+		return holder.get();
 	}
 
 	@SuppressWarnings("unchecked")
@@ -0,0 +1,110 @@
+package openmods.utils;
+
+import java.util.Arrays;
+import javax.annotation.Nullable;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.fluids.capability.IFluidHandler;
+import net.minecraftforge.items.IItemHandler;
+
+/**
+ * Per-side cache of handlers exposed by neighbours of single block (i.e. {@link IItemHandler}, {@link IFluidHandler}).
+ * Found handler is used until tile providing it is invalidated or owner calls {@link #invalidate()} (which should be done on neighbour change and when owner itself is invalidated).
+ * All results, found or missing, are looked up again after {@link #HANDLER_RECHECK_TICKS}, so neighbours in unloaded chunks (which don't invalidate tiles) and handler changes (i.e. side configuration) are eventually noticed.
+ */
+public abstract class NeighbourHandlerCache<T> {
+
+	public static final long HANDLER_RECHECK_TICKS = 20;
+
+	private static final int SIDE_COUNT = EnumFacing.VALUES.length;
+
+	private World world;
+
+	private BlockPos pos;
+
+	private final BlockPos[] neighbourPos = new BlockPos[SIDE_COUNT];
+
+	private final boolean[] isResolved = new boolean[SIDE_COUNT];
+
+	private final TileEntity[] tiles = new TileEntity[SIDE_COUNT];
+
+	private final Object[] handlers = new Object[SIDE_COUNT];
+
+	private final long[] recheckTime = new long[SIDE_COUNT];
+
+	/**
+	 * @param side side of neighbour, facing cache owner
+	 */
+	@Nullable
+	protected abstract T findHandler(TileEntity te, EnumFacing side);
+
+	public void invalidate() {
+		Arrays.fill(isResolved, false);
+		Arrays.fill(tiles, null);
+		Arrays.fill(handlers, null);
+	}
+
+	public void invalidate(EnumFacing side) {
+		final int index = side.ordinal();
+		isResolved[index] = false;
+		tiles[index] = null;
+		handlers[index] = null;
+	}
+
+	private void updateOwner(World world, BlockPos pos) {
+		if (this.world == world && pos.equals(this.pos)) return;
+
+		invalidate();
+		this.world = world;
+		this.pos = pos.toImmutable();
+		for (EnumFacing side : EnumFacing.VALUES)
+			neighbourPos[side.ordinal()] = this.pos.offset(side);
+	}
+
+	@Nullable
+	@SuppressWarnings("unchecked")
+	public T get(World world, BlockPos pos, EnumFacing side) {
+		updateOwner(world, pos);
+
+		final int index = side.ordinal();
+		final long now = world.getTotalWorldTime();
+
+		if (isResolved[index] && now < recheckTime[index]) {
+			final Object handler = handlers[index];
+			if (handler == null) return null;
+			// replaced or removed tiles are invalidated by world, so no need for world lookup here
+			if (!tiles[index].isInvalid()) return (T)handler;
+		}
+
+		final BlockPos neighbour = neighbourPos[index];
+		final TileEntity te = world.isBlockLoaded(neighbour)? world.getTileEntity(neighbour) : null;
+		final T handler = te != null? findHandler(te, side.getOpposite()) : null;
+
+		isResolved[index] = true;
+		tiles[index] = handler != null? te : null;
+		handlers[index] = handler;
+		recheckTime[index] = now + HANDLER_RECHECK_TICKS;
+
+		return handler;
+	}
+
+	public static NeighbourHandlerCache<IFluidHandler> createFluidHandlerCache() {
+		return new NeighbourHandlerCache<IFluidHandler>() {
+			@Override
+			protected IFluidHandler findHandler(TileEntity te, EnumFacing side) {
+				return CompatibilityUtils.getFluidHandler(te, side);
+			}
+		};
+	}
+
+	public static NeighbourHandlerCache<IItemHandler> createItemHandlerCache() {
+		return new NeighbourHandlerCache<IItemHandler>() {
+			@Override
+			protected IItemHandler findHandler(TileEntity te, EnumFacing side) {
+				return InventoryUtils.tryGetHandler(te, side);
+			}
+		};
+	}
+}
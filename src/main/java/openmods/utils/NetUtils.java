@@ -7,9 +7,7 @@ import io.netty.channel.ChannelHandlerContext;
 import java.util.Set;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityTracker;
-import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
-import net.minecraft.server.management.PlayerChunkMapEntry;
 import net.minecraft.util.IThreadListener;
 import net.minecraft.world.WorldServer;
 import net.minecraftforge.fml.common.FMLCommonHandler;
@@ -32,18 +30,11 @@ public class NetUtils {
 		return ImmutableSet.copyOf(trackingPlayers);
 	}
 
+	/**
+	 * Returns new, mutable set. Callers that only iterate can use {@link ChunkWatcherIndex} snapshots directly.
+	 */
 	public static Set<EntityPlayerMP> getPlayersWatchingChunk(WorldServer world, int chunkX, int chunkZ) {
-		final PlayerChunkMapEntry playerChunkMap = world.getPlayerChunkMap().getEntry(chunkX, chunkZ);
-
-		final Set<EntityPlayerMP> playerList = Sets.newHashSet();
-		if (playerChunkMap == null || !playerChunkMap.isSentToPlayers())
-			return playerList;
-
-		for (EntityPlayer o : world.playerEntities) {
-			EntityPlayerMP player = (EntityPlayerMP)o;
-			if (playerChunkMap.containsPlayer(player)) playerList.add(player);
-		}
-		return playerList;
+		return Sets.newHashSet(ChunkWatcherIndex.INSTANCE.getPlayersWatching(world.provider.getDimension(), chunkX, chunkZ));
 	}
 
 	public static Set<EntityPlayerMP> getPlayersWatchingBlock(WorldServer world, int blockX, int blockZ) {
@@ -0,0 +1,59 @@
+package openmods.utils;
+
+import com.google.common.base.Function;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.custom_hash.TObjectIntCustomHashMap;
+import gnu.trove.strategy.IdentityHashingStrategy;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Frozen snapshot of registry ids. Entries are stored in array indexed by id, reverse lookups use identity maps with primitive values.
+ * Wrapped objects are compared by identity, so this is only useful for objects like classes.
+ */
+public class RegistryIdTable<T, E> {
+
+	public static final int NO_ID = -1;
+
+	private final Object[] entries;
+
+	private final TObjectIntMap<E> entryToId;
+
+	private final TObjectIntMap<T> objectToId;
+
+	public RegistryIdTable(Map<E, Integer> entryIdMap, Function<E, T> wrappedObjectGetter) {
+		int maxId = NO_ID;
+		for (int id : entryIdMap.values())
+			maxId = Math.max(maxId, id);
+
+		this.entries = new Object[maxId + 1];
+		this.entryToId = new TObjectIntCustomHashMap<>(IdentityHashingStrategy.INSTANCE, entryIdMap.size(), 0.5f, NO_ID);
+		this.objectToId = new TObjectIntCustomHashMap<>(IdentityHashingStrategy.INSTANCE, entryIdMap.size(), 0.5f, NO_ID);
+
+		for (Map.Entry<E, Integer> e : entryIdMap.entrySet()) {
+			final E entry = e.getKey();
+			final int id = e.getValue();
+			entries[id] = entry;
+			entryToId.put(entry, id);
+			objectToId.put(wrappedObjectGetter.apply(entry), id);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Nullable
+	public E getEntry(int id) {
+		return (id >= 0 && id < entries.length)? (E)entries[id] : null;
+	}
+
+	public int getId(E entry) {
+		return entryToId.get(entry);
+	}
+
+	public int getObjectId(T object) {
+		return objectToId.get(object);
+	}
+
+	public int size() {
+		return entryToId.size();
+	}
+}
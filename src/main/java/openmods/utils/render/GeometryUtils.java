@@ -1,14 +1,15 @@
 package openmods.utils.render;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 import java.util.EnumSet;
-import java.util.List;
 import java.util.Set;
+import java.util.concurrent.RecursiveTask;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.util.math.Vec3i;
 import openmods.shapes.IShapeable;
+import openmods.shapes.ISpanShapeable;
+import openmods.shapes.VoxelSet;
 import openmods.utils.Coord;
 import openmods.utils.MathUtils;
 
@@ -107,6 +108,19 @@ public class GeometryUtils {
 		}
 	}
 
+	/**
+	 * Makes a run of blocks along Z axis, from {@code zFrom} to {@code zTo} (inclusive). Uses single call if shapeable supports spans.
+	 */
+	public static void makeSpan(int x, int y, int zFrom, int zTo, IShapeable shapeable) {
+		if (zFrom > zTo) return;
+		if (shapeable instanceof ISpanShapeable) {
+			((ISpanShapeable)shapeable).setSpan(x, y, zFrom, zTo);
+		} else {
+			for (int z = zFrom; z <= zTo; z++)
+				shapeable.setBlock(x, y, z);
+		}
+	}
+
 	public static void makeLine(int startX, int startY, int startZ, Axis axis, int length, IShapeable shapeable) {
 		makeLine(startX, startY, startZ, axis.positive, length, shapeable);
 	}
@@ -117,6 +131,12 @@ public class GeometryUtils {
 	public static void makeLine(int startX, int startY, int startZ, EnumFacing direction, int length, IShapeable shapeable) {
 		if (length < 0) return;
 		final Vec3i v = direction.getDirectionVec();
+		if (v.getX() == 0 && v.getY() == 0) {
+			if (v.getZ() > 0) makeSpan(startX, startY, startZ, startZ + length, shapeable);
+			else makeSpan(startX, startY, startZ - length, startZ, shapeable);
+			return;
+		}
+
 		for (int offset = 0; offset <= length; offset++)
 			// Create a line in the direction of direction, length in size
 			shapeable.setBlock(
@@ -136,9 +156,21 @@ public class GeometryUtils {
 	public static void makePlane(int startX, int startY, int startZ, int width, int height, EnumFacing right, EnumFacing up, IShapeable shapeable) {
 		if (width < 0 || height < 0) return;
 		int lineOffsetX, lineOffsetY, lineOffsetZ;
-		// We offset each line by up, and then apply it right
 
 		final Vec3i v = up.getDirectionVec();
+		final Vec3i r = right.getDirectionVec();
+		if (v.getZ() != 0 && r.getZ() == 0) {
+			// lines along Z axis can be emitted as spans, so offset each line by right, and then apply it up
+			for (int w = 0; w <= width; w++) {
+				lineOffsetX = startX + (w * r.getX());
+				lineOffsetY = startY + (w * r.getY());
+				lineOffsetZ = startZ + (w * r.getZ());
+				makeLine(lineOffsetX, lineOffsetY, lineOffsetZ, up, height, shapeable);
+			}
+			return;
+		}
+
+		// We offset each line by up, and then apply it right
 		for (int h = 0; h <= height; h++) {
 			lineOffsetX = startX + (h * v.getX());
 			lineOffsetY = startY + (h * v.getY());
@@ -152,192 +184,281 @@ public class GeometryUtils {
 		makeEllipsoid(radiusX, radiusY, radiusZ, shapeable, octants);
 	}
 
-	public static void makeEllipsoid(int radiusX, int radiusY, int radiusZ, IShapeable shapeable, Set<Octant> octants) {
-		final List<Octant> octantsList = ImmutableList.copyOf(octants);
-
-		final double invRadiusX = 1.0 / (radiusX + 0.5);
-		final double invRadiusY = 1.0 / (radiusY + 0.5);
-		final double invRadiusZ = 1.0 / (radiusZ + 0.5);
-
-		double nextXn = 0;
-		forX: for (int x = 0; x <= radiusX; ++x) {
-			final double xn = nextXn;
-			nextXn += invRadiusX;
-			double nextYn = 0;
-			forY: for (int y = 0; y <= radiusY; ++y) {
-				final double yn = nextYn;
-				nextYn += invRadiusY;
-				double nextZn = 0;
-				forZ: for (int z = 0; z <= radiusZ; ++z) {
-					final double zn = nextZn;
-					nextZn += invRadiusZ;
-
-					double distanceSq = MathUtils.lengthSq(xn, yn, zn);
-					if (distanceSq > 1) {
-						if (z == 0) {
-							if (y == 0) {
-								break forX;
+	/**
+	 * Normalized coordinates of block edges: {@code result[i] = i / (radius + 0.5)}.
+	 * Values are accumulated (not multiplied), since shapes depend on exact rounding errors.
+	 */
+	private static double[] normalizedSteps(int radius) {
+		final double invRadius = 1.0 / (radius + 0.5);
+		final double[] result = new double[radius + 2];
+		double next = 0;
+		for (int i = 0; i < result.length; i++) {
+			result[i] = next;
+			next += invRadius;
+		}
+		return result;
+	}
+
+	/**
+	 * Surface of ellipsoid, generated as runs along Z axis, one X slice at time. Slices are independent, so they can be generated in parallel.
+	 */
+	private static class EllipsoidSlices {
+		private final double[] xs;
+		private final double[] ys;
+		private final double[] zs;
+
+		private final Octant[] octants;
+
+		public EllipsoidSlices(int radiusX, int radiusY, int radiusZ, Set<Octant> octants) {
+			this.xs = normalizedSteps(radiusX);
+			this.ys = normalizedSteps(radiusY);
+			this.zs = normalizedSteps(radiusZ);
+			this.octants = octants.toArray(new Octant[octants.size()]);
+		}
+
+		public int radiusX() {
+			return xs.length - 2;
+		}
+
+		private void emitSpan(int x, int y, int zFrom, int zTo, IShapeable shapeable) {
+			for (Octant octant : octants) {
+				if (octant.z > 0) makeSpan(x * octant.x, y * octant.y, zFrom, zTo, shapeable);
+				else makeSpan(x * octant.x, y * octant.y, -zTo, -zFrom, shapeable);
+			}
+		}
+
+		public void generate(int fromX, int toX, IShapeable shapeable) {
+			final int radiusY = ys.length - 2;
+			final int radiusZ = zs.length - 2;
+
+			for (int x = fromX; x <= toX; x++) {
+				final double xn = xs[x];
+				final double nextXn = xs[x + 1];
+				for (int y = 0; y <= radiusY; y++) {
+					final double yn = ys[y];
+					final double nextYn = ys[y + 1];
+
+					int spanStart = -1;
+					int z = 0;
+					for (; z <= radiusZ; z++) {
+						final double zn = zs[z];
+						final double nextZn = zs[z + 1];
+
+						if (MathUtils.lengthSq(xn, yn, zn) > 1) break;
+
+						if (MathUtils.lengthSq(nextXn, yn, zn) <= 1
+								&& MathUtils.lengthSq(xn, nextYn, zn) <= 1
+								&& MathUtils.lengthSq(xn, yn, nextZn) <= 1) {
+							// inside - ends current span
+							if (spanStart >= 0) {
+								emitSpan(x, y, spanStart, z - 1, shapeable);
+								spanStart = -1;
 							}
-							break forY;
+						} else if (spanStart < 0) {
+							spanStart = z;
 						}
-						break forZ;
 					}
 
-					if (MathUtils.lengthSq(nextXn, yn, zn) <= 1
-							&& MathUtils.lengthSq(xn, nextYn, zn) <= 1
-							&& MathUtils.lengthSq(xn, yn, nextZn) <= 1) {
-						continue;
-					}
+					if (spanStart >= 0) emitSpan(x, y, spanStart, z - 1, shapeable);
 
-					for (Octant octant : octantsList)
-						shapeable.setBlock(x * octant.x, y * octant.y, z * octant.z);
+					// first block of row is outside, so are all following rows
+					if (z == 0) break;
 				}
 			}
 		}
 	}
 
+	public static void makeEllipsoid(int radiusX, int radiusY, int radiusZ, IShapeable shapeable, Set<Octant> octants) {
+		new EllipsoidSlices(radiusX, radiusY, radiusZ, octants).generate(0, radiusX, shapeable);
+	}
+
 	public static void makeEllipsoid(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, IShapeable shapeable, Set<Octant> octants) {
-		{
-			final int centerX = (minX + maxX) / 2;
-			final int centerY = (minY + maxY) / 2;
-			final int centerZ = (minZ + maxZ) / 2;
+		final CenteredShapeable centered = new CenteredShapeable(shapeable, minX, minY, minZ, maxX, maxY, maxZ);
+		makeEllipsoid(radius(minX, maxX), radius(minY, maxY), radius(minZ, maxZ), centered, octants);
+	}
 
-			final IShapeable prevShapeable = shapeable;
-			shapeable = (x, y, z) -> prevShapeable.setBlock(centerX + x, centerY + y, centerZ + z);
-		}
+	// below that, slices are generated on current thread
+	private static final int PARALLEL_SLICES = 8;
 
-		final int radiusX;
-		final int radiusY;
-		final int radiusZ;
-
-		// Cutting middle of shape == terrible hack. No idea if it works in any case
-		// Anyone now better algorithm for ellipsoids with non-integer axis?
-		{
-			final int diffX = maxX - minX;
-			if ((diffX & 1) == 0) {
-				radiusX = diffX / 2;
-			} else {
-				radiusX = diffX / 2 + 1;
-				shapeable = skipMiddleX(shapeable);
-			}
-		}
+	private static class EllipsoidTask extends RecursiveTask<VoxelSet.Builder> {
+		private static final long serialVersionUID = 1L;
 
-		{
-			final int diffY = maxY - minY;
-			if ((diffY & 1) == 0) {
-				radiusY = diffY / 2;
-			} else {
-				radiusY = diffY / 2 + 1;
-				shapeable = skipMiddleY(shapeable);
-			}
+		private final EllipsoidSlices slices;
+
+		private final CenteredShapeable centered;
+
+		private final int fromX;
+
+		private final int toX;
+
+		public EllipsoidTask(EllipsoidSlices slices, CenteredShapeable centered, int fromX, int toX) {
+			this.slices = slices;
+			this.centered = centered;
+			this.fromX = fromX;
+			this.toX = toX;
 		}
 
-		{
-			final int diffZ = maxZ - minZ;
-			if ((diffZ & 1) == 0) {
-				radiusZ = diffZ / 2;
-			} else {
-				radiusZ = diffZ / 2 + 1;
-				shapeable = skipMiddleZ(shapeable);
+		@Override
+		protected VoxelSet.Builder compute() {
+			if (toX - fromX < PARALLEL_SLICES) {
+				final VoxelSet.Builder result = new VoxelSet.Builder();
+				slices.generate(fromX, toX, centered.withTarget(result));
+				return result;
 			}
+
+			final int middleX = (fromX + toX) >>> 1;
+			final EllipsoidTask left = new EllipsoidTask(slices, centered, fromX, middleX);
+			left.fork();
+			final VoxelSet.Builder right = new EllipsoidTask(slices, centered, middleX + 1, toX).compute();
+			return left.join().addAll(right);
 		}
+	}
 
-		makeEllipsoid(radiusX, radiusY, radiusZ, shapeable, octants);
+	/**
+	 * Same blocks as {@link #makeEllipsoid(int, int, int, int, int, int, IShapeable, Set)}, but X slices of big shapes are generated in parallel (on common fork-join pool)
+	 */
+	public static VoxelSet makeEllipsoidVoxels(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, Set<Octant> octants) {
+		final CenteredShapeable centered = new CenteredShapeable(null, minX, minY, minZ, maxX, maxY, maxZ);
+		final EllipsoidSlices slices = new EllipsoidSlices(radius(minX, maxX), radius(minY, maxY), radius(minZ, maxZ), octants);
+		return new EllipsoidTask(slices, centered, 0, slices.radiusX()).invoke().build();
 	}
 
 	public static void makeEllipse(int radiusX, int radiusZ, int y, IShapeable shapeable, Set<Quadrant> quadrants) {
-		final double invRadiusX = 1.0 / (radiusX + 0.5);
-		final double invRadiusZ = 1.0 / (radiusZ + 0.5);
-
-		final List<Quadrant> quadrantsList = ImmutableList.copyOf(quadrants);
-
-		double nextXn = 0;
-		forX: for (int x = 0; x <= radiusX; ++x) {
-			final double xn = nextXn;
-			nextXn += invRadiusX;
-			double nextZn = 0;
-			forZ: for (int z = 0; z <= radiusZ; ++z) {
-				final double zn = nextZn;
-				nextZn += invRadiusZ;
-
-				double distanceSq = MathUtils.lengthSq(xn, zn);
-				if (distanceSq > 1) {
-					if (z == 0) {
-						break forX;
-					}
-					break forZ;
-				}
+		makeEllipticCylinder(radiusX, radiusZ, y, y, shapeable, quadrants);
+	}
+
+	/**
+	 * Stack of same ellipses, from {@code minY} to {@code maxY} (inclusive)
+	 */
+	public static void makeEllipticCylinder(int radiusX, int radiusZ, int minY, int maxY, IShapeable shapeable, Set<Quadrant> quadrants) {
+		final double[] xs = normalizedSteps(radiusX);
+		final double[] zs = normalizedSteps(radiusZ);
+
+		final Quadrant[] quadrantsList = quadrants.toArray(new Quadrant[quadrants.size()]);
+
+		for (int x = 0; x <= radiusX; ++x) {
+			final double xn = xs[x];
+			final double nextXn = xs[x + 1];
+
+			int spanStart = -1;
+			int z = 0;
+			for (; z <= radiusZ; ++z) {
+				final double zn = zs[z];
+				final double nextZn = zs[z + 1];
+
+				if (MathUtils.lengthSq(xn, zn) > 1) break;
 
 				if (MathUtils.lengthSq(nextXn, zn) <= 1 && MathUtils.lengthSq(xn, nextZn) <= 1) {
-					continue;
+					if (spanStart >= 0) {
+						makeEllipseSpan(x, spanStart, z - 1, minY, maxY, shapeable, quadrantsList);
+						spanStart = -1;
+					}
+				} else if (spanStart < 0) {
+					spanStart = z;
 				}
+			}
 
-				for (Quadrant quadrant : quadrantsList)
-					shapeable.setBlock(x * quadrant.x, y, z * quadrant.z);
+			if (z == 0) break;
+			if (spanStart >= 0) makeEllipseSpan(x, spanStart, z - 1, minY, maxY, shapeable, quadrantsList);
+		}
+	}
+
+	private static void makeEllipseSpan(int x, int zFrom, int zTo, int minY, int maxY, IShapeable shapeable, Quadrant[] quadrants) {
+		for (Quadrant quadrant : quadrants) {
+			for (int y = minY; y <= maxY; y++) {
+				if (quadrant.z > 0) makeSpan(x * quadrant.x, y, zFrom, zTo, shapeable);
+				else makeSpan(x * quadrant.x, y, -zTo, -zFrom, shapeable);
 			}
 		}
 	}
 
 	public static void makeEllipse(int minX, int minZ, int maxX, int maxZ, int y, IShapeable shapeable, Set<Quadrant> quadrants) {
-		{
-			final int centerX = (minX + maxX) / 2;
-			final int centerZ = (minZ + maxZ) / 2;
+		makeEllipticCylinder(minX, y, minZ, maxX, y, maxZ, shapeable, quadrants);
+	}
 
-			final IShapeable prevShapeable = shapeable;
-			shapeable = (x, y1, z) -> prevShapeable.setBlock(centerX + x, y1, centerZ + z);
+	/**
+	 * Stack of same ellipses, centered in X-Z bounds. Unlike ellipsoids, layers are not centered on Y axis
+	 */
+	public static void makeEllipticCylinder(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, IShapeable shapeable, Set<Quadrant> quadrants) {
+		final CenteredShapeable centered = new CenteredShapeable(shapeable, minX, 0, minZ, maxX, 0, maxZ);
+		makeEllipticCylinder(radius(minX, maxX), radius(minZ, maxZ), minY, maxY, centered, quadrants);
+	}
+
+	private static int radius(int min, int max) {
+		final int diff = max - min;
+		return ((diff & 1) == 0)? diff / 2 : diff / 2 + 1;
+	}
+
+	private static int skipMiddle(int v) {
+		return v < 0? v + 1 : v;
+	}
+
+	/**
+	 * Moves shapes generated around (0,0,0) to center of bounds.
+	 * Cutting middle of shape (on axis with odd sizes) == terrible hack. No idea if it works in any case
+	 * Anyone now better algorithm for ellipsoids with non-integer axis?
+	 */
+	private static class CenteredShapeable implements ISpanShapeable {
+		private final IShapeable target;
+
+		private final int centerX, centerY, centerZ;
+
+		private final boolean skipMiddleX, skipMiddleY, skipMiddleZ;
+
+		private CenteredShapeable(IShapeable target, int centerX, int centerY, int centerZ, boolean skipMiddleX, boolean skipMiddleY, boolean skipMiddleZ) {
+			this.target = target;
+			this.centerX = centerX;
+			this.centerY = centerY;
+			this.centerZ = centerZ;
+			this.skipMiddleX = skipMiddleX;
+			this.skipMiddleY = skipMiddleY;
+			this.skipMiddleZ = skipMiddleZ;
 		}
 
-		final int radiusX;
-		final int radiusZ;
+		public CenteredShapeable(IShapeable target, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+			this(target, (minX + maxX) / 2, (minY + maxY) / 2, (minZ + maxZ) / 2,
+					((maxX - minX) & 1) != 0, ((maxY - minY) & 1) != 0, ((maxZ - minZ) & 1) != 0);
+		}
 
-		{
-			final int diffX = maxX - minX;
-			if ((diffX & 1) == 0) {
-				radiusX = diffX / 2;
-			} else {
-				radiusX = diffX / 2 + 1;
-				shapeable = skipMiddleX(shapeable);
-			}
+		public CenteredShapeable withTarget(IShapeable target) {
+			return new CenteredShapeable(target, centerX, centerY, centerZ, skipMiddleX, skipMiddleY, skipMiddleZ);
 		}
 
-		{
-			final int diffY = maxZ - minZ;
-			if ((diffY & 1) == 0) {
-				radiusZ = diffY / 2;
-			} else {
-				radiusZ = diffY / 2 + 1;
-				shapeable = skipMiddleZ(shapeable);
+		@Override
+		public void setBlock(int x, int y, int z) {
+			if (skipMiddleZ) {
+				if (z == 0) return;
+				z = skipMiddle(z);
 			}
-		}
 
-		makeEllipse(radiusX, radiusZ, y, shapeable, quadrants);
-	}
+			setColumnBlocks(x, y, z, z);
+		}
 
-	private static IShapeable skipMiddleX(final IShapeable shapeable) {
-		return (x, y, z) -> {
-			if (x != 0) {
-				if (x < 0) shapeable.setBlock(x + 1, y, z);
-				else shapeable.setBlock(x, y, z);
+		@Override
+		public void setSpan(int x, int y, int zFrom, int zTo) {
+			if (skipMiddleZ) {
+				// removing 0 and shifting negative values keeps span continuous
+				zFrom = zFrom <= 0? zFrom + 1 : zFrom;
+				zTo = skipMiddle(zTo);
 			}
-		};
-	}
 
-	private static IShapeable skipMiddleY(final IShapeable shapeable) {
-		return (x, y, z) -> {
-			if (y != 0) {
-				if (y < 0) shapeable.setBlock(x, y + 1, z);
-				else shapeable.setBlock(x, y, z);
+			setColumnBlocks(x, y, zFrom, zTo);
+		}
+
+		private void setColumnBlocks(int x, int y, int zFrom, int zTo) {
+			if (skipMiddleX) {
+				if (x == 0) return;
+				x = skipMiddle(x);
 			}
-		};
-	}
 
-	private static IShapeable skipMiddleZ(final IShapeable shapeable) {
-		return (x, y, z) -> {
-			if (z != 0) {
-				if (z < 0) shapeable.setBlock(x, y, z + 1);
-				else shapeable.setBlock(x, y, z);
+			if (skipMiddleY) {
+				if (y == 0) return;
+				y = skipMiddle(y);
 			}
-		};
+
+			if (zFrom == zTo) target.setBlock(centerX + x, centerY + y, centerZ + zFrom);
+			else makeSpan(centerX + x, centerY + y, centerZ + zFrom, centerZ + zTo, target);
+		}
 	}
 
 	public static void line2D(int y, int x0, int z0, int x1, int z1, IShapeable shapeable) {
@@ -1,52 +1,336 @@
 package openmods.world;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Queues;
-import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nullable;
 import net.minecraft.world.World;
+import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
 import net.minecraftforge.fml.common.gameevent.TickEvent.WorldTickEvent;
 import net.minecraftforge.fml.relauncher.Side;
+import openmods.LibConfig;
+import openmods.Log;
 
+/**
+ * Runs callbacks at end of server world tick.
+ * Time spent per world per tick is limited by {@link LibConfig#delayedActionTickBudget}: callbacks that didn't fit are executed in next ticks, higher priorities first.
+ * Callbacks still waiting when world is unloaded or server is stopped are dropped.
+ */
 // TODO maybe replace with IThreadListener?
 public class DelayedActionTickHandler {
 
+	public enum Priority {
+		HIGH,
+		NORMAL,
+		LOW;
+	}
+
 	public static final DelayedActionTickHandler INSTANCE = new DelayedActionTickHandler();
 
 	private DelayedActionTickHandler() {}
 
-	private Map<Integer, Queue<Runnable>> callbacks = Maps.newHashMap();
+	public static class Stats {
+		private final AtomicInteger queueDepth = new AtomicInteger();
+
+		private final AtomicLong executedCount = new AtomicLong();
+
+		private final AtomicLong executionNanos = new AtomicLong();
+
+		private final AtomicLong maxTickNanos = new AtomicLong();
+
+		private final AtomicLong deferredTicks = new AtomicLong();
+
+		private void recordTick(long nanos, int executed) {
+			executedCount.addAndGet(executed);
+			executionNanos.addAndGet(nanos);
+
+			long currentMax;
+			do {
+				currentMax = maxTickNanos.get();
+			} while (nanos > currentMax && !maxTickNanos.compareAndSet(currentMax, nanos));
+		}
+
+		/**
+		 * Number of callbacks waiting for execution (including delayed ones)
+		 */
+		public int getQueueDepth() {
+			return queueDepth.get();
+		}
+
+		public long getExecutedCount() {
+			return executedCount.get();
+		}
+
+		public long getExecutionNanos() {
+			return executionNanos.get();
+		}
+
+		public long getMaxTickNanos() {
+			return maxTickNanos.get();
+		}
+
+		/**
+		 * Number of ticks that ended with callbacks left for next tick, due to time budget
+		 */
+		public long getDeferredTicks() {
+			return deferredTicks.get();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("depth: %d, executed: %d, total: %.2f ms, max tick: %.2f ms, deferred ticks: %d",
+					getQueueDepth(), getExecutedCount(), getExecutionNanos() / 1000000.0, getMaxTickNanos() / 1000000.0, getDeferredTicks());
+		}
+	}
+
+	private static class DelayedCallback implements Comparable<DelayedCallback> {
+		private final Runnable callback;
+
+		private final Priority priority;
+
+		private final int delay;
 
-	private Queue<Runnable> getWorldQueue(int worldId) {
-		synchronized (callbacks) {
-			Queue<Runnable> result = callbacks.get(worldId);
+		private final long order;
 
-			if (result == null) {
-				result = Queues.newConcurrentLinkedQueue();
-				callbacks.put(worldId, result);
+		private long targetTick;
+
+		public DelayedCallback(Runnable callback, Priority priority, int delay, long order) {
+			this.callback = callback;
+			this.priority = priority;
+			this.delay = delay;
+			this.order = order;
+		}
+
+		@Override
+		public int compareTo(DelayedCallback o) {
+			final int result = Long.compare(this.targetTick, o.targetTick);
+			return result != 0? result : Long.compare(this.order, o.order);
+		}
+	}
+
+	private static final Priority[] PRIORITIES = Priority.values();
+
+	private static class WorldQueues {
+		private final Stats stats = new Stats();
+
+		private final Queue<Runnable>[] ready;
+
+		private final Queue<DelayedCallback> delayedIntake = Queues.newConcurrentLinkedQueue();
+
+		private final AtomicLong delayedOrder = new AtomicLong();
+
+		// only accessed from world tick
+		private final PriorityQueue<DelayedCallback> delayed = new PriorityQueue<>();
+
+		private long tick;
+
+		@SuppressWarnings("unchecked")
+		public WorldQueues() {
+			this.ready = new Queue[PRIORITIES.length];
+			for (int i = 0; i < ready.length; i++)
+				ready[i] = Queues.newConcurrentLinkedQueue();
+		}
+
+		public void add(Priority priority, Runnable callback) {
+			stats.queueDepth.incrementAndGet();
+			ready[priority.ordinal()].add(callback);
+		}
+
+		public void addDelayed(Priority priority, int delay, Runnable callback) {
+			stats.queueDepth.incrementAndGet();
+			delayedIntake.add(new DelayedCallback(callback, priority, delay, delayedOrder.incrementAndGet()));
+		}
+
+		private void drainDelayedIntake() {
+			DelayedCallback callback;
+			while ((callback = delayedIntake.poll()) != null) {
+				callback.targetTick = tick + callback.delay;
+				delayed.add(callback);
 			}
+		}
+
+		private void scheduleDelayed() {
+			drainDelayedIntake();
 
-			return result;
+			DelayedCallback callback;
+			while (!delayed.isEmpty() && delayed.peek().targetTick <= tick) {
+				callback = delayed.poll();
+				ready[callback.priority.ordinal()].add(callback.callback);
+			}
+		}
+
+		private Runnable pollReady() {
+			// callbacks may add new ones with higher priority, so always start from top
+			for (Queue<Runnable> queue : ready) {
+				final Runnable callback = queue.poll();
+				if (callback != null) return callback;
+			}
+
+			return null;
+		}
+
+		private boolean hasReady() {
+			for (Queue<Runnable> queue : ready)
+				if (!queue.isEmpty()) return true;
+
+			return false;
+		}
+
+		/**
+		 * @return number of dropped callbacks
+		 */
+		public int clear() {
+			for (Queue<Runnable> queue : ready)
+				queue.clear();
+			delayedIntake.clear();
+			delayed.clear();
+			tick = 0;
+			return stats.queueDepth.getAndSet(0);
+		}
+
+		public void execute(long budgetNanos) {
+			tick++;
+			scheduleDelayed();
+
+			final long start = System.nanoTime();
+			int executed = 0;
+			long now = start;
+			try {
+				Runnable callback;
+				while ((callback = pollReady()) != null) {
+					stats.queueDepth.decrementAndGet();
+					callback.run();
+					executed++;
+					now = System.nanoTime();
+
+					// at least one callback per tick, so queue always makes progress
+					if (budgetNanos > 0 && now - start >= budgetNanos) {
+						if (hasReady()) stats.deferredTicks.incrementAndGet();
+						break;
+					}
+				}
+			} finally {
+				// delays of callbacks added during this tick are counted from it
+				drainDelayedIntake();
+				stats.recordTick(now - start, executed);
+			}
+		}
+	}
+
+	// vanilla and most mod dimensions fit here, rest goes to map
+	private static final int MIN_INDEXED_DIMENSION = -16;
+
+	private static final int INDEXED_DIMENSIONS = 256;
+
+	private final AtomicReferenceArray<WorldQueues> indexedQueues = new AtomicReferenceArray<>(INDEXED_DIMENSIONS);
+
+	private final ConcurrentMap<Integer, WorldQueues> otherQueues = Maps.newConcurrentMap();
+
+	private static int queueIndex(int worldId) {
+		final int index = worldId - MIN_INDEXED_DIMENSION;
+		return index >= 0 && index < INDEXED_DIMENSIONS? index : -1;
+	}
+
+	private WorldQueues getWorldQueues(int worldId) {
+		final int index = queueIndex(worldId);
+		if (index >= 0) {
+			final WorldQueues result = indexedQueues.get(index);
+			if (result != null) return result;
+
+			final WorldQueues newQueues = new WorldQueues();
+			return indexedQueues.compareAndSet(index, null, newQueues)? newQueues : indexedQueues.get(index);
+		}
+
+		return otherQueues.computeIfAbsent(worldId, id -> new WorldQueues());
+	}
+
+	@Nullable
+	private WorldQueues findWorldQueues(int worldId) {
+		final int index = queueIndex(worldId);
+		return index >= 0? indexedQueues.get(index) : otherQueues.get(worldId);
+	}
+
+	@Nullable
+	private WorldQueues removeWorldQueues(int worldId) {
+		final int index = queueIndex(worldId);
+		return index >= 0? indexedQueues.getAndSet(index, null) : otherQueues.remove(worldId);
+	}
+
+	private static void dropQueues(int worldId, @Nullable WorldQueues queues) {
+		if (queues != null) {
+			final int dropped = queues.clear();
+			if (dropped > 0) Log.debug("Dropping %d delayed actions from dimension %d", dropped, worldId);
 		}
 	}
 
 	public void addTickCallback(World world, Runnable callback) {
+		addTickCallback(world, Priority.NORMAL, callback);
+	}
+
+	public void addTickCallback(World world, Priority priority, Runnable callback) {
+		int worldId = world.provider.getDimension();
+		getWorldQueues(worldId).add(priority, callback);
+	}
+
+	/**
+	 * Executes callback {@code delay} ticks later than {@link #addTickCallback(World, Runnable)} would
+	 */
+	public void addDelayedCallback(World world, int delay, Runnable callback) {
+		addDelayedCallback(world, delay, Priority.NORMAL, callback);
+	}
+
+	public void addDelayedCallback(World world, int delay, Priority priority, Runnable callback) {
+		Preconditions.checkArgument(delay >= 0, "Negative delay: %s", delay);
 		int worldId = world.provider.getDimension();
-		getWorldQueue(worldId).add(callback);
+		if (delay == 0) getWorldQueues(worldId).add(priority, callback);
+		else getWorldQueues(worldId).addDelayed(priority, delay, callback);
+	}
+
+	/**
+	 * Returns empty stats for dimensions that never had callbacks (or were unloaded since)
+	 */
+	public Stats getStats(int worldId) {
+		final WorldQueues queues = findWorldQueues(worldId);
+		return queues != null? queues.stats : new Stats();
+	}
+
+	/**
+	 * Drops queues of all dimensions. Should be called after server stops.
+	 */
+	public void removeAll() {
+		for (int i = 0; i < INDEXED_DIMENSIONS; i++)
+			dropQueues(i + MIN_INDEXED_DIMENSION, indexedQueues.getAndSet(i, null));
+
+		for (Integer worldId : otherQueues.keySet())
+			dropQueues(worldId, otherQueues.remove(worldId));
+	}
+
+	private static long budgetNanos() {
+		return (long)(LibConfig.delayedActionTickBudget * 1000000.0);
 	}
 
 	@SubscribeEvent
 	public void onWorldTick(WorldTickEvent evt) {
 		if (evt.side == Side.SERVER && evt.phase == Phase.END) {
 			int worldId = evt.world.provider.getDimension();
-			Queue<Runnable> callbacks = getWorldQueue(worldId);
+			getWorldQueues(worldId).execute(budgetNanos());
+		}
+	}
 
-			Runnable callback;
-			while ((callback = callbacks.poll()) != null) {
-				callback.run();
-			}
+	@SubscribeEvent
+	public void onWorldUnload(WorldEvent.Unload evt) {
+		final World world = evt.getWorld();
+		if (!world.isRemote) {
+			final int worldId = world.provider.getDimension();
+			dropQueues(worldId, removeWorldQueues(worldId));
 		}
 	}
 }
@@ -1,68 +1,217 @@
 package openmods.world;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.item.EntityItem;
 import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
 import net.minecraftforge.event.entity.EntityJoinWorldEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 
+/**
+ * Captures items dropped in given areas (i.e. by fake players breaking blocks).
+ * Active contexts are indexed by dimension and chunk, so cost of checking single item does not depend on number of active captures.
+ */
 public class DropCapture {
 
+	// contexts spanning more chunks are not indexed by chunk and checked for every item in dimension
+	private static final int MAX_INDEXED_CHUNKS = 16;
+
 	public class CaptureContext {
 		private final AxisAlignedBB aabb;
 
+		private final DimensionIndex index;
+
+		// when multiple contexts match, oldest one gets item
+		private final long order;
+
 		private final List<EntityItem> drops = Lists.newArrayList();
 
-		public CaptureContext(AxisAlignedBB aabb) {
+		private CaptureContext(DimensionIndex index, AxisAlignedBB aabb) {
+			this.index = index;
 			this.aabb = aabb;
+			this.order = nextOrder.incrementAndGet();
 		}
 
-		private boolean check(EntityItem item) {
-			if (!item.isDead && aabb.intersects(item.getEntityBoundingBox())) {
-				drops.add(item);
-				return true;
-			}
+		public List<EntityItem> stop() {
+			index.remove(this);
+			return drops;
+		}
+	}
+
+	private static int minChunk(double coord) {
+		return MathHelper.floor(coord) >> 4;
+	}
+
+	private static int maxChunk(double coord) {
+		return (MathHelper.ceil(coord) - 1) >> 4;
+	}
+
+	private static class DimensionIndex {
+		private final ConcurrentMap<Long, Collection<CaptureContext>> chunks = Maps.newConcurrentMap();
 
-			return false;
+		private final Collection<CaptureContext> unindexed = new CopyOnWriteArrayList<>();
+
+		private interface ChunkVisitor {
+			public void visit(long chunkKey);
 		}
 
-		public List<EntityItem> stop() {
-			captures.remove(this);
-			return drops;
+		private static boolean visitChunks(AxisAlignedBB aabb, int maxChunks, ChunkVisitor visitor) {
+			final int minX = minChunk(aabb.minX);
+			final int minZ = minChunk(aabb.minZ);
+			final int maxX = Math.max(minX, maxChunk(aabb.maxX));
+			final int maxZ = Math.max(minZ, maxChunk(aabb.maxZ));
+
+			if ((long)(maxX - minX + 1) * (maxZ - minZ + 1) > maxChunks) return false;
+
+			for (int x = minX; x <= maxX; x++)
+				for (int z = minZ; z <= maxZ; z++)
+					visitor.visit(ChunkPos.asLong(x, z));
+
+			return true;
+		}
+
+		public void add(CaptureContext context) {
+			final boolean indexed = visitChunks(context.aabb, MAX_INDEXED_CHUNKS,
+					key -> chunks.compute(key, (k, contexts) -> {
+						// modified inside compute, so concurrent remove can't drop list that's being updated
+						if (contexts == null) contexts = new CopyOnWriteArrayList<>();
+						contexts.add(context);
+						return contexts;
+					}));
+			if (!indexed) unindexed.add(context);
+		}
+
+		public void remove(CaptureContext context) {
+			final boolean indexed = visitChunks(context.aabb, MAX_INDEXED_CHUNKS,
+					key -> chunks.computeIfPresent(key, (k, contexts) -> {
+						contexts.remove(context);
+						return contexts.isEmpty()? null : contexts;
+					}));
+			if (!indexed) unindexed.remove(context);
+		}
+
+		public boolean isEmpty() {
+			return chunks.isEmpty() && unindexed.isEmpty();
+		}
+
+		@Nullable
+		private static CaptureContext selectOldest(@Nullable CaptureContext current, Collection<CaptureContext> candidates, AxisAlignedBB aabb) {
+			for (CaptureContext candidate : candidates)
+				if ((current == null || candidate.order < current.order) && candidate.aabb.intersects(aabb))
+					current = candidate;
+
+			return current;
+		}
+
+		@Nullable
+		public CaptureContext find(@Nullable CaptureContext current, AxisAlignedBB aabb) {
+			if (isEmpty()) return current;
+
+			current = selectOldest(current, unindexed, aabb);
+			if (!chunks.isEmpty()) {
+				// items are small, so this should not visit more than 4 chunks
+				final CaptureContext[] result = { current };
+				visitChunks(aabb, Integer.MAX_VALUE, key -> {
+					final Collection<CaptureContext> contexts = chunks.get(key);
+					if (contexts != null) result[0] = selectOldest(result[0], contexts, aabb);
+				});
+				current = result[0];
+			}
+
+			return current;
 		}
 	}
 
 	public static final DropCapture instance = new DropCapture();
 
-	private final List<CaptureContext> captures = Lists.newArrayList();
+	private final AtomicLong nextOrder = new AtomicLong();
 
-	public CaptureContext start(AxisAlignedBB aabb) {
-		CaptureContext context = new CaptureContext(aabb);
-		captures.add(context);
+	private final ConcurrentMap<Integer, DimensionIndex> dimensions = Maps.newConcurrentMap();
+
+	// contexts started without world, checked for items in every dimension
+	private final DimensionIndex anyDimension = new DimensionIndex();
+
+	private final AtomicLong scannedCount = new AtomicLong();
+
+	private final AtomicLong capturedCount = new AtomicLong();
+
+	private CaptureContext start(DimensionIndex index, AxisAlignedBB aabb) {
+		final CaptureContext context = new CaptureContext(index, aabb);
+		index.add(context);
 		return context;
 	}
 
+	public CaptureContext start(World world, AxisAlignedBB aabb) {
+		final DimensionIndex index = dimensions.computeIfAbsent(world.provider.getDimension(), dim -> new DimensionIndex());
+		return start(index, aabb);
+	}
+
+	public CaptureContext start(World world, BlockPos pos) {
+		return start(world, new AxisAlignedBB(pos));
+	}
+
+	/**
+	 * Captures drops in every dimension. Use {@link #start(World, AxisAlignedBB)} when world is known
+	 */
+	@Deprecated
+	public CaptureContext start(AxisAlignedBB aabb) {
+		return start(anyDimension, aabb);
+	}
+
+	@Deprecated
 	public CaptureContext start(int x, int y, int z) {
 		return start(new AxisAlignedBB(x, y, z, x + 1, y + 1, z + 1));
 	}
 
+	@Deprecated
 	public CaptureContext start(BlockPos pos) {
 		return start(pos.getX(), pos.getY(), pos.getZ());
 	}
 
+	@Nullable
+	CaptureContext findContext(int dimension, AxisAlignedBB aabb) {
+		final CaptureContext result = anyDimension.find(null, aabb);
+		final DimensionIndex index = dimensions.get(dimension);
+		return index != null? index.find(result, aabb) : result;
+	}
+
+	/**
+	 * Number of dropped items checked against active contexts
+	 */
+	public long getScannedCount() {
+		return scannedCount.get();
+	}
+
+	public long getCapturedCount() {
+		return capturedCount.get();
+	}
+
 	@SubscribeEvent
 	public void onEntityConstruct(EntityJoinWorldEvent evt) {
 		final Entity e = evt.getEntity();
 		if (e != null
 				&& e.getClass() == EntityItem.class
-				&& !e.world.isRemote) {
+				&& !e.world.isRemote
+				&& !e.isDead) {
 			final EntityItem ei = (EntityItem)e;
 
-			for (CaptureContext c : captures)
-				if (c.check(ei)) break;
+			scannedCount.incrementAndGet();
+			final CaptureContext context = findContext(e.world.provider.getDimension(), ei.getEntityBoundingBox());
+			if (context != null) {
+				context.drops.add(ei);
+				capturedCount.incrementAndGet();
+			}
 		}
 	}
 
@@ -0,0 +1,188 @@
+package openmods.fakeplayer;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import java.util.Map;
+import net.minecraft.entity.player.InventoryPlayer;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+import net.minecraftforge.fml.common.gameevent.TickEvent.WorldTickEvent;
+import net.minecraftforge.fml.relauncher.Side;
+import openmods.fakeplayer.FakePlayerPool.ActionStats;
+import openmods.fakeplayer.FakePlayerPool.PlayerUserReturning;
+import openmods.world.MockWorlds;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class FakePlayerPoolTest {
+
+	private final List<OpenModsFakePlayer> createdPlayers = Lists.newArrayList();
+
+	private final FakePlayerPool pool = new FakePlayerPool((world, id) -> {
+		final OpenModsFakePlayer player = Mockito.mock(OpenModsFakePlayer.class);
+		player.inventory = Mockito.mock(InventoryPlayer.class);
+		createdPlayers.add(player);
+		return player;
+	});
+
+	private final List<String> log = Lists.newArrayList();
+
+	private final List<String> results = Lists.newArrayList();
+
+	private final List<OpenModsFakePlayer> usedPlayers = Lists.newArrayList();
+
+	private WorldServer world;
+
+	@Before
+	public void setup() {
+		world = MockWorlds.serverWorld(0);
+		pool.onWorldLoad(new WorldEvent.Load(world));
+	}
+
+	private class Action implements PlayerUserReturning<String> {
+		private final String value;
+
+		public Action(String value) {
+			this.value = value;
+		}
+
+		@Override
+		public String usePlayer(OpenModsFakePlayer fakePlayer) {
+			Assert.assertFalse(fakePlayer.isDead);
+			usedPlayers.add(fakePlayer);
+			log.add(value);
+			return value + "!";
+		}
+	}
+
+	private void submit(String value) {
+		pool.submit(world, new Action(value), results::add);
+	}
+
+	private void tick(Side side, Phase phase) {
+		pool.onWorldTick(new WorldTickEvent(side, phase, world));
+	}
+
+	private void tick() {
+		tick(Side.SERVER, Phase.END);
+	}
+
+	private void assertLog(String... values) {
+		Assert.assertEquals(Lists.newArrayList(values), log);
+		log.clear();
+	}
+
+	private void assertSinglePlayerUsed() {
+		Assert.assertEquals(1, createdPlayers.size());
+		final OpenModsFakePlayer player = createdPlayers.get(0);
+		for (OpenModsFakePlayer used : usedPlayers)
+			Assert.assertSame(player, used);
+	}
+
+	@Test
+	public void testSubmittedActionsExecutedInOrderAtTickEnd() {
+		submit("a");
+		submit("b");
+		submit("c");
+
+		tick(Side.SERVER, Phase.START);
+		tick(Side.CLIENT, Phase.END);
+		assertLog();
+
+		tick();
+		assertLog("a", "b", "c");
+		Assert.assertEquals(Lists.newArrayList("a!", "b!", "c!"), results);
+		assertSinglePlayerUsed();
+
+		final OpenModsFakePlayer player = createdPlayers.get(0);
+		// cleared between actions, then released
+		Mockito.verify(player.inventory, Mockito.times(2)).clear();
+		Mockito.verify(player).setDead();
+
+		tick();
+		assertLog();
+	}
+
+	@Test
+	public void testActionsSubmittedDuringTickCarriedOver() {
+		pool.<String> submit(world, fakePlayer -> {
+			log.add("a");
+			submit("nested");
+			return "a!";
+		}, results::add);
+		submit("b");
+
+		tick();
+		assertLog("a", "b");
+
+		tick();
+		assertLog("nested");
+		Assert.assertEquals(Lists.newArrayList("a!", "b!", "nested!"), results);
+
+		// player returned to pool after first tick and reused
+		assertSinglePlayerUsed();
+	}
+
+	@Test
+	public void testFailingActionDoesNotAffectOthers() {
+		submit("a");
+		pool.<String> submit(world, fakePlayer -> {
+			log.add("fail");
+			throw new IllegalStateException("failed");
+		}, results::add);
+		submit("b");
+
+		tick();
+		assertLog("a", "fail", "b");
+		Assert.assertEquals(Lists.newArrayList("a!", "b!"), results);
+
+		assertSinglePlayerUsed();
+		Mockito.verify(createdPlayers.get(0)).setDead();
+	}
+
+	@Test
+	public void testExecuteBatch() {
+		final List<String> batchResults = pool.executeBatch(world, Lists.newArrayList(new Action("a"), new Action("b"), new Action("c")));
+		assertLog("a", "b", "c");
+		Assert.assertEquals(Lists.newArrayList("a!", "b!", "c!"), batchResults);
+
+		assertSinglePlayerUsed();
+		Mockito.verify(createdPlayers.get(0).inventory, Mockito.times(2)).clear();
+
+		Assert.assertTrue(pool.executeBatch(world, Lists.<Action> newArrayList()).isEmpty());
+	}
+
+	@Test
+	public void testUnloadedWorld() {
+		submit("a");
+		pool.onWorldUnload(new WorldEvent.Unload(world));
+		tick();
+		assertLog();
+
+		submit("b");
+		Assert.assertNull(pool.executeOnPlayer(world, new Action("c")));
+		tick();
+		assertLog();
+		Assert.assertTrue(createdPlayers.isEmpty());
+	}
+
+	@Test
+	public void testActionStats() {
+		submit("a");
+		submit("b");
+		tick();
+		pool.executeOnPlayer(world, new Action("c"));
+
+		final Map<Class<?>, ActionStats> stats = pool.getActionStats();
+		Assert.assertEquals(1, stats.size());
+		final ActionStats actionStats = stats.get(Action.class);
+		Assert.assertEquals(3, actionStats.getCount());
+		Assert.assertTrue(actionStats.getMaxNanos() <= actionStats.getTotalNanos());
+
+		pool.resetActionStats();
+		Assert.assertTrue(pool.getActionStats().isEmpty());
+	}
+}
@@ -1,10 +1,13 @@
 package openmods.inventory;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import java.util.List;
 import net.minecraft.init.Bootstrap;
 import net.minecraft.item.ItemStack;
 import net.minecraftforge.items.IItemHandler;
 import net.minecraftforge.items.wrapper.InvWrapper;
+import openmods.utils.OptionalInt;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -22,15 +25,38 @@ public class ItemMoverTest {
 		}
 
 		public void assertContents(ItemStack... items) {
-			Assert.assertEquals(items.length, getSlots());
-			for (int i = 0; i < items.length; i++) {
-				final ItemStack expected = items[i];
-				final ItemStack actual = getStackInSlot(i);
-				Assert.assertTrue("expected: " + expected + ", actual: " + actual, ItemStack.areItemStacksEqual(expected, actual));
-			}
+			ItemMoverTest.assertContents(this, items);
 		}
 	}
 
+	// first slot is output-only
+	private static class LockedFirstSlotHandler extends TestHandler {
+		public LockedFirstSlotHandler(ItemStack... items) {
+			super(items);
+		}
+
+		@Override
+		public ItemStack extractItem(int slot, int amount, boolean simulate) {
+			return slot == 0? ItemStack.EMPTY : super.extractItem(slot, amount, simulate);
+		}
+	}
+
+	private static void assertContents(IItemHandler handler, ItemStack... items) {
+		Assert.assertEquals(items.length, handler.getSlots());
+		for (int i = 0; i < items.length; i++) {
+			final ItemStack expected = items[i];
+			final ItemStack actual = handler.getStackInSlot(i);
+			Assert.assertTrue("expected: " + expected + ", actual: " + actual, ItemStack.areItemStacksEqual(expected, actual));
+		}
+	}
+
+	private static GenericInventory genericInv(ItemStack... items) {
+		final GenericInventory inventory = new GenericInventory("", false, items.length);
+		for (int i = 0; i < items.length; i++)
+			inventory.setInventorySlotContents(i, items[i]);
+		return inventory;
+	}
+
 	private static TestHandler inv(ItemStack... items) {
 		return new TestHandler(items);
 	}
@@ -55,6 +81,26 @@ public class ItemMoverTest {
 		target.assertContents(Utils.itemA(5));
 	}
 
+	@Test
+	public void testPullSkipsSlotRefusingExtraction() {
+		final TestHandler source = new LockedFirstSlotHandler(Utils.itemA(5), Utils.itemA(4));
+		final TestHandler target = inv(Utils.itemA(1));
+
+		Assert.assertEquals(3, ItemMover.pullToSlot(target, 0, 3, single(source)));
+		source.assertContents(Utils.itemA(5), Utils.itemA(1));
+		target.assertContents(Utils.itemA(4));
+	}
+
+	@Test
+	public void testPullToEmptySlotSkipsSlotRefusingExtraction() {
+		final TestHandler source = new LockedFirstSlotHandler(Utils.itemA(5), Utils.itemB(4));
+		final TestHandler target = inv(NULL_STACK);
+
+		Assert.assertEquals(4, ItemMover.pullToSlot(target, 0, 64, single(source)));
+		source.assertContents(Utils.itemA(5), NULL_STACK);
+		target.assertContents(Utils.itemB(4));
+	}
+
 	@Test
 	public void testSingleItemPartialPull() {
 		final TestHandler source = inv(Utils.itemA(5));
@@ -263,4 +309,69 @@ public class ItemMoverTest {
 		targetB.assertContents(Utils.itemB(7), Utils.itemA(64));
 	}
 
+	@Test
+	public void testDirectInventoryPullMixedSources() {
+		final GenericInventory sourceA = genericInv(Utils.itemA(5), Utils.itemB(6));
+		final TestHandler sourceB = inv(Utils.itemB(7), Utils.itemA(8));
+		final GenericInventory target = genericInv(NULL_STACK);
+
+		Assert.assertNotNull(ItemTransfer.getDirectInventory(target.getHandler()));
+		Assert.assertNull(ItemTransfer.getDirectInventory(sourceB));
+
+		Assert.assertEquals(13, ItemMover.pullToSlot(target.getHandler(), 0, 64, multiple(sourceA.getHandler(), sourceB)));
+		assertContents(sourceA.getHandler(), NULL_STACK, Utils.itemB(6));
+		sourceB.assertContents(Utils.itemB(7), NULL_STACK);
+		assertContents(target.getHandler(), Utils.itemA(13));
+	}
+
+	@Test
+	public void testDirectInventoryPullWithMergeOverflow() {
+		final GenericInventory source = genericInv(Utils.itemA(32), Utils.itemA(32));
+		final GenericInventory target = genericInv(Utils.itemA(1));
+
+		Assert.assertEquals(63, ItemMover.pullToSlot(target.getHandler(), 0, 128, single(source.getHandler())));
+		assertContents(source.getHandler(), NULL_STACK, Utils.itemA(1));
+		assertContents(target.getHandler(), Utils.itemA(64));
+	}
+
+	@Test
+	public void testDirectInventoryPushMultipleInventories() {
+		final GenericInventory source = genericInv(Utils.itemA(64));
+		final GenericInventory targetA = genericInv(Utils.itemA(40), Utils.itemB(6));
+		final TestHandler targetB = inv(Utils.itemB(7), NULL_STACK);
+
+		Assert.assertEquals(64, ItemMover.pushFromSlot(source.getHandler(), 0, 64, multiple(targetA.getHandler(), targetB)));
+		assertContents(source.getHandler(), NULL_STACK);
+		assertContents(targetA.getHandler(), Utils.itemA(64), Utils.itemB(6));
+		targetB.assertContents(Utils.itemB(7), Utils.itemA(40));
+	}
+
+	@Test
+	public void testDirectInventoryPushRespectsStackLimits() {
+		final GenericInventory source = genericInv(Utils.itemA(40));
+		final GenericInventory target = new GenericInventory("", false, 3) {
+			@Override
+			public int getInventoryStackLimit() {
+				return 16;
+			}
+		};
+
+		Assert.assertEquals(40, ItemMover.pushFromSlot(source.getHandler(), 0, 64, single(target.getHandler())));
+		assertContents(source.getHandler(), NULL_STACK);
+		assertContents(target.getHandler(), Utils.itemA(16), Utils.itemA(16), Utils.itemA(8));
+	}
+
+	@Test
+	public void testDirectInventoryPushNotifiesChangedSlots() {
+		final GenericInventory source = genericInv(Utils.itemA(10));
+		final GenericInventory target = genericInv(Utils.itemB(1), NULL_STACK);
+
+		final List<OptionalInt> changedSlots = Lists.newArrayList();
+		target.addCallback((inventory, slot) -> changedSlots.add(slot));
+
+		Assert.assertEquals(10, ItemMover.pushFromSlot(source.getHandler(), 0, 64, single(target.getHandler())));
+		assertContents(target.getHandler(), Utils.itemB(1), Utils.itemA(10));
+		Assert.assertEquals(ImmutableList.of(OptionalInt.of(1)), changedSlots);
+	}
+
 }
@@ -12,6 +12,7 @@ import net.minecraftforge.common.model.animation.IJoint;
 import net.minecraftforge.common.model.animation.IJointClip;
 import openmods.model.eval.EvaluatorFactory;
 import openmods.model.eval.EvaluatorFactory.IClipProvider;
+import openmods.model.eval.ITransformEvaluator;
 import openmods.model.eval.IVarExpander;
 import org.junit.Assert;
 import org.junit.Test;
@@ -709,4 +710,24 @@ public class EvalModelTest {
 		Mockito.verify(jointClipMock2).apply(2.5f);
 		Mockito.verifyNoMoreInteractions(jointClipMock2);
 	}
+
+	@Test
+	public void testBoundRepeatedApply() {
+		EvaluatorFactory factory = new EvaluatorFactory();
+		factory.appendStatement("param := param + 1");
+		factory.appendStatement("clip(param)");
+
+		final ClipStub clipStub = new ClipStub();
+		final IJointClip jointClipMock = clipStub.jointClipMock;
+
+		final TRSRTransformation transform = new TRSRTransformation(EnumFacing.NORTH);
+		Mockito.when(jointClipMock.apply(Matchers.anyFloat())).thenReturn(transform);
+
+		final ITransformEvaluator.IJointEvaluator evaluator = factory.createEvaluator(clips("clip", clipStub)).bind(ImmutableMap.of("param", 2.0f));
+		Assert.assertEquals(transform, evaluator.evaluate(DUMMY_JOINT));
+		Assert.assertEquals(transform, evaluator.evaluate(DUMMY_JOINT));
+
+		Mockito.verify(jointClipMock, Mockito.times(2)).apply(3.0f);
+		Mockito.verifyNoMoreInteractions(jointClipMock);
+	}
 }
@@ -0,0 +1,62 @@
+package openmods.model;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import openmods.model.eval.EvalModelState;
+import openmods.model.variant.VariantModelState;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ModelStateInterningTest {
+
+	@Test
+	public void testVariantStateCreateIsCanonical() {
+		final VariantModelState a = VariantModelState.create(ImmutableMap.of("a", "1", "b", "2"));
+		final VariantModelState b = VariantModelState.create(ImmutableMap.of("b", "2", "a", "1"));
+		Assert.assertSame(a, b);
+		Assert.assertSame(VariantModelState.EMPTY, VariantModelState.create(ImmutableMap.of()));
+	}
+
+	@Test
+	public void testVariantStateTransitions() {
+		final VariantModelState a = VariantModelState.create().withKey("a", "1").withKey("b", "2");
+		final VariantModelState b = VariantModelState.create().withKey("b", "2").withKey("a", "1");
+		Assert.assertSame(a, b);
+		Assert.assertSame(a, VariantModelState.create(ImmutableMap.of("a", "1", "b", "2")));
+		Assert.assertSame(a, a.withKey("a", "1"));
+		Assert.assertNotEquals(a, a.withKey("a", "3"));
+	}
+
+	@Test
+	public void testVariantStateDefaultKeys() {
+		final VariantModelState a = VariantModelState.create().withKeys(ImmutableSet.of("a", "b"));
+		final VariantModelState b = VariantModelState.create().withKeys(Sets.newHashSet("b", "a"));
+		Assert.assertSame(a, b);
+		Assert.assertSame(a, VariantModelState.create().withKey("a").withKey("b"));
+	}
+
+	@Test
+	public void testEvalStateCreateIsCanonical() {
+		final EvalModelState a = EvalModelState.create(ImmutableMap.of("a", 1.0f));
+		Assert.assertSame(a, EvalModelState.create(ImmutableMap.of("a", 1.0f)));
+		Assert.assertSame(EvalModelState.EMPTY, EvalModelState.create(ImmutableMap.of()));
+	}
+
+	@Test
+	public void testEvalStateShortLivedFlagIsKept() {
+		final EvalModelState a = EvalModelState.create(ImmutableMap.of("a", 1.0f), true);
+		Assert.assertNotSame(a, EvalModelState.create(ImmutableMap.of("a", 1.0f)));
+		Assert.assertSame(a, EvalModelState.create(ImmutableMap.of("a", 1.0f)).markShortLived());
+	}
+
+	@Test
+	public void testEvalStateTransitions() {
+		final EvalModelState a = EvalModelState.create().withArg("a", 1.0f).withArg("b", 2.0f);
+		final EvalModelState b = EvalModelState.create().withArg("b", 2.0f).withArg("a", 1.0f);
+		Assert.assertSame(a, b);
+		Assert.assertSame(a, a.withArg("a", 1.0f));
+		Assert.assertSame(a.withArg("a", 3.0f), a.withArg("a", 3.0f));
+		Assert.assertNotSame(a, a.withArg("a", 1.0f, true));
+	}
+}
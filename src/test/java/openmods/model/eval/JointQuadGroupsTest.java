@@ -0,0 +1,374 @@
+package openmods.model.eval;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import javax.vecmath.Matrix3f;
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Quat4f;
+import javax.vecmath.Vector3f;
+import javax.vecmath.Vector4f;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.client.renderer.block.model.BakedQuad;
+import net.minecraft.client.renderer.block.model.IBakedModel;
+import net.minecraft.client.renderer.block.model.ItemCameraTransforms;
+import net.minecraft.client.renderer.block.model.ItemOverrideList;
+import net.minecraft.client.renderer.texture.TextureAtlasSprite;
+import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
+import net.minecraft.client.renderer.vertex.VertexFormat;
+import net.minecraft.util.EnumFacing;
+import net.minecraftforge.client.model.ModelStateComposition;
+import net.minecraftforge.client.model.pipeline.LightUtil;
+import net.minecraftforge.common.model.IModelState;
+import net.minecraftforge.common.model.TRSRTransformation;
+import net.minecraftforge.common.model.animation.IJoint;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JointQuadGroupsTest {
+
+	private static final VertexFormat FORMAT = DefaultVertexFormats.ITEM;
+
+	private static final int POSITION = 0;
+
+	private static final int COLOR = 1;
+
+	private static final int UV = 2;
+
+	private static final int NORMAL = 3;
+
+	private static class TestJoint implements IJoint {
+		private final String name;
+
+		private final Optional<TestJoint> parent;
+
+		public TestJoint(String name, @Nullable TestJoint parent) {
+			this.name = name;
+			this.parent = Optional.ofNullable(parent);
+		}
+
+		@Override
+		public TRSRTransformation getInvBindPose() {
+			return TRSRTransformation.identity();
+		}
+
+		@Override
+		public Optional<? extends IJoint> getParent() {
+			return parent;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static class Cuboid {
+		@Nullable
+		final TestJoint joint;
+
+		final Vector3f from;
+
+		final Vector3f to;
+
+		// baked as culled faces, like full block sides
+		final boolean sided;
+
+		public Cuboid(@Nullable TestJoint joint, Vector3f from, Vector3f to, boolean sided) {
+			this.joint = joint;
+			this.from = from;
+			this.to = to;
+			this.sided = sided;
+		}
+	}
+
+	private static class TestBakedModel implements IBakedModel {
+		private final Map<EnumFacing, List<BakedQuad>> sidedQuads;
+
+		private final List<BakedQuad> generalQuads;
+
+		public TestBakedModel(Map<EnumFacing, List<BakedQuad>> sidedQuads, List<BakedQuad> generalQuads) {
+			this.sidedQuads = sidedQuads;
+			this.generalQuads = generalQuads;
+		}
+
+		@Override
+		public List<BakedQuad> getQuads(@Nullable IBlockState state, @Nullable EnumFacing side, long rand) {
+			return side != null? sidedQuads.get(side) : generalQuads;
+		}
+
+		@Override
+		public boolean isAmbientOcclusion() {
+			return true;
+		}
+
+		@Override
+		public boolean isGui3d() {
+			return false;
+		}
+
+		@Override
+		public boolean isBuiltInRenderer() {
+			return false;
+		}
+
+		@Override
+		public TextureAtlasSprite getParticleTexture() {
+			return null;
+		}
+
+		@Override
+		public ItemCameraTransforms getItemCameraTransforms() {
+			return ItemCameraTransforms.DEFAULT;
+		}
+
+		@Override
+		public ItemOverrideList getOverrides() {
+			return ItemOverrideList.NONE;
+		}
+	}
+
+	/**
+	 * Minimal stand-in for multi-part models (like B3D or OBJ ones): every cuboid is moved by transform of its joint, composed with transforms of all parent joints.
+	 */
+	private static class TestModel {
+		private final List<Cuboid> cuboids = Lists.newArrayList();
+
+		private final boolean cornerOrigin;
+
+		public TestModel(boolean cornerOrigin) {
+			this.cornerOrigin = cornerOrigin;
+		}
+
+		public TestModel add(@Nullable TestJoint joint, float x1, float y1, float z1, float x2, float y2, float z2) {
+			cuboids.add(new Cuboid(joint, new Vector3f(x1, y1, z1), new Vector3f(x2, y2, z2), false));
+			return this;
+		}
+
+		public TestModel addSided(@Nullable TestJoint joint, float x1, float y1, float z1, float x2, float y2, float z2) {
+			cuboids.add(new Cuboid(joint, new Vector3f(x1, y1, z1), new Vector3f(x2, y2, z2), true));
+			return this;
+		}
+
+		private static TRSRTransformation getJointTransform(IModelState state, @Nullable IJoint joint) {
+			if (joint == null) return TRSRTransformation.identity();
+			final TRSRTransformation parentTransform = getJointTransform(state, joint.getParent().orElse(null));
+			return parentTransform.compose(state.apply(Optional.of(joint)).orElse(TRSRTransformation.identity()));
+		}
+
+		public IBakedModel bake(IModelState state) {
+			final Map<EnumFacing, List<BakedQuad>> sidedQuads = Maps.newEnumMap(EnumFacing.class);
+			for (EnumFacing side : EnumFacing.VALUES)
+				sidedQuads.put(side, Lists.newArrayList());
+			final List<BakedQuad> generalQuads = Lists.newArrayList();
+
+			for (Cuboid cuboid : cuboids) {
+				TRSRTransformation transform = getJointTransform(state, cuboid.joint);
+				if (cornerOrigin) transform = TRSRTransformation.blockCenterToCorner(transform);
+
+				for (EnumFacing face : EnumFacing.VALUES) {
+					final BakedQuad quad = createQuad(cuboid, face, transform.getMatrix());
+					if (cuboid.sided) sidedQuads.get(face).add(quad);
+					else generalQuads.add(quad);
+				}
+			}
+
+			return new TestBakedModel(sidedQuads, generalQuads);
+		}
+
+		public Function<IModelState, IBakedModel> baker(IModelState originalState) {
+			return clip -> bake(new ModelStateComposition(originalState, clip));
+		}
+	}
+
+	private static Vector3f[] faceVertices(Vector3f f, Vector3f t, EnumFacing face) {
+		switch (face) {
+			case DOWN:
+				return new Vector3f[] { new Vector3f(f.x, f.y, t.z), new Vector3f(f.x, f.y, f.z), new Vector3f(t.x, f.y, f.z), new Vector3f(t.x, f.y, t.z) };
+			case UP:
+				return new Vector3f[] { new Vector3f(f.x, t.y, f.z), new Vector3f(f.x, t.y, t.z), new Vector3f(t.x, t.y, t.z), new Vector3f(t.x, t.y, f.z) };
+			case NORTH:
+				return new Vector3f[] { new Vector3f(t.x, t.y, f.z), new Vector3f(t.x, f.y, f.z), new Vector3f(f.x, f.y, f.z), new Vector3f(f.x, t.y, f.z) };
+			case SOUTH:
+				return new Vector3f[] { new Vector3f(f.x, t.y, t.z), new Vector3f(f.x, f.y, t.z), new Vector3f(t.x, f.y, t.z), new Vector3f(t.x, t.y, t.z) };
+			case WEST:
+				return new Vector3f[] { new Vector3f(f.x, t.y, f.z), new Vector3f(f.x, f.y, f.z), new Vector3f(f.x, f.y, t.z), new Vector3f(f.x, t.y, t.z) };
+			case EAST:
+				return new Vector3f[] { new Vector3f(t.x, t.y, t.z), new Vector3f(t.x, f.y, t.z), new Vector3f(t.x, f.y, f.z), new Vector3f(t.x, t.y, f.z) };
+			default:
+				throw new AssertionError(face);
+		}
+	}
+
+	private static BakedQuad createQuad(Cuboid cuboid, EnumFacing face, Matrix4f matrix) {
+		final Vector3f normal = new Vector3f(face.getFrontOffsetX(), face.getFrontOffsetY(), face.getFrontOffsetZ());
+		final Matrix3f normalMatrix = new Matrix3f();
+		matrix.getRotationScale(normalMatrix);
+		if (normalMatrix.determinant() != 0) {
+			normalMatrix.invert();
+			normalMatrix.transpose();
+			normalMatrix.transform(normal);
+			normal.normalize();
+		}
+
+		final int[] data = new int[4 * FORMAT.getIntegerSize()];
+		final Vector3f[] vertices = faceVertices(cuboid.from, cuboid.to, face);
+		for (int v = 0; v < 4; v++) {
+			final Vector4f position = new Vector4f(vertices[v].x, vertices[v].y, vertices[v].z, 1);
+			matrix.transform(position);
+			LightUtil.pack(new float[] { position.x, position.y, position.z, 1 }, data, FORMAT, v, POSITION);
+			LightUtil.pack(new float[] { 1, 1, 1, 1 }, data, FORMAT, v, COLOR);
+			LightUtil.pack(new float[] { v / 4.0f, 0.5f, 0, 1 }, data, FORMAT, v, UV);
+			LightUtil.pack(new float[] { normal.x, normal.y, normal.z, 0 }, data, FORMAT, v, NORMAL);
+		}
+
+		return new BakedQuad(data, -1, EnumFacing.getFacingFromVector(normal.x, normal.y, normal.z), null, true, FORMAT);
+	}
+
+	private static TRSRTransformation transform(float tx, float ty, float tz, float angle, float sx, float sy, float sz) {
+		final Quat4f rotation = TRSRTransformation.quatFromXYZ(angle, 0.5f * angle, -angle);
+		return new TRSRTransformation(new Vector3f(tx, ty, tz), rotation, new Vector3f(sx, sy, sz), null);
+	}
+
+	private static final IModelState NO_ORIGIN = part -> Optional.empty();
+
+	private static void assertQuadsMatch(List<BakedQuad> expected, List<BakedQuad> actual, boolean checkNormals) {
+		Assert.assertEquals(expected.size(), actual.size());
+		final float[] expectedBuffer = new float[4];
+		final float[] actualBuffer = new float[4];
+
+		for (int i = 0; i < expected.size(); i++) {
+			final BakedQuad expectedQuad = expected.get(i);
+			final BakedQuad actualQuad = actual.get(i);
+			if (checkNormals) Assert.assertEquals("quad " + i, expectedQuad.getFace(), actualQuad.getFace());
+
+			for (int v = 0; v < 4; v++) {
+				LightUtil.unpack(expectedQuad.getVertexData(), expectedBuffer, FORMAT, v, POSITION);
+				LightUtil.unpack(actualQuad.getVertexData(), actualBuffer, FORMAT, v, POSITION);
+				for (int c = 0; c < 3; c++)
+					Assert.assertEquals("quad " + i + ", vertex " + v, expectedBuffer[c], actualBuffer[c], 1e-3f);
+
+				LightUtil.unpack(expectedQuad.getVertexData(), expectedBuffer, FORMAT, v, UV);
+				LightUtil.unpack(actualQuad.getVertexData(), actualBuffer, FORMAT, v, UV);
+				for (int c = 0; c < 2; c++)
+					Assert.assertEquals(expectedBuffer[c], actualBuffer[c], 1e-5f);
+
+				if (checkNormals) {
+					LightUtil.unpack(expectedQuad.getVertexData(), expectedBuffer, FORMAT, v, NORMAL);
+					LightUtil.unpack(actualQuad.getVertexData(), actualBuffer, FORMAT, v, NORMAL);
+					for (int c = 0; c < 3; c++)
+						Assert.assertEquals(expectedBuffer[c], actualBuffer[c], 0.05f);
+				}
+			}
+		}
+	}
+
+	private static void assertRecomposeMatchesBake(JointQuadGroups groups, Function<IModelState, IBakedModel> baker, Map<IJoint, TRSRTransformation> transforms, boolean checkNormals) {
+		final IModelState clip = part -> part.map(p -> transforms.getOrDefault(p, TRSRTransformation.identity()));
+		final List<BakedQuad> expected = baker.apply(clip).getQuads(null, null, 0);
+		final List<BakedQuad> actual = groups.recompose(joint -> transforms.getOrDefault(joint, TRSRTransformation.identity()));
+		assertQuadsMatch(expected, actual, checkNormals);
+	}
+
+	private final TestJoint lid = new TestJoint("lid", null);
+
+	private final TestJoint arm = new TestJoint("arm", null);
+
+	private TestModel createChest(boolean cornerOrigin) {
+		return new TestModel(cornerOrigin)
+				.addSided(null, 0, 0, 0, 1, 0.25f, 1)
+				.add(null, 0.0625f, 0.25f, 0.0625f, 0.9375f, 0.625f, 0.9375f)
+				.add(lid, 0.0625f, 0.625f, 0.0625f, 0.9375f, 0.875f, 0.9375f)
+				.add(lid, 0.4375f, 0.5f, 0, 0.5625f, 0.75f, 0.0625f)
+				.add(arm, 0.9375f, 0.25f, 0.375f, 1, 0.75f, 0.625f);
+	}
+
+	private void testMultipleJoints(boolean cornerOrigin, IModelState originalState) {
+		final TestModel model = createChest(cornerOrigin);
+		final Function<IModelState, IBakedModel> baker = model.baker(originalState);
+		final JointQuadGroups groups = JointQuadGroups.create(baker, originalState);
+		Assert.assertNotNull(groups);
+
+		// static sided quads are reused as they are
+		final IBakedModel base = baker.apply(NO_ORIGIN);
+		for (EnumFacing side : EnumFacing.VALUES)
+			assertQuadsMatch(base.getQuads(null, side, 0), groups.getQuads(side), true);
+
+		assertRecomposeMatchesBake(groups, baker, ImmutableMap.of(), true);
+		assertRecomposeMatchesBake(groups, baker, ImmutableMap.of(lid, transform(0, 0.1f, 0.2f, 0.8f, 1, 1, 1)), true);
+		assertRecomposeMatchesBake(groups, baker, ImmutableMap.of(arm, transform(-0.3f, 0, 0, 1.5f, 1, 1, 1)), true);
+		assertRecomposeMatchesBake(groups, baker, ImmutableMap.of(
+				lid, transform(0.05f, 0.3f, -0.1f, -0.4f, 1.5f, 0.5f, 2),
+				arm, transform(0, -0.2f, 0.4f, 2.5f, 0.75f, 1.25f, 1)), true);
+		// mirroring
+		assertRecomposeMatchesBake(groups, baker, ImmutableMap.of(arm, transform(0, 0, 0, 0, -1, 1, 1)), true);
+	}
+
+	@Test
+	public void testMultipleJointsCenterOrigin() {
+		testMultipleJoints(false, NO_ORIGIN);
+	}
+
+	@Test
+	public void testMultipleJointsCornerOrigin() {
+		testMultipleJoints(true, NO_ORIGIN);
+	}
+
+	@Test
+	public void testMultipleJointsWithOriginalState() {
+		final TRSRTransformation lidOrigin = transform(0, 0.25f, 0, 0.3f, 1, 1, 1);
+		final IModelState originalState = part -> part.filter(p -> p == lid).map(p -> lidOrigin);
+		testMultipleJoints(true, originalState);
+	}
+
+	@Test
+	public void testDegenerateScale() {
+		final TestModel model = createChest(true);
+		final Function<IModelState, IBakedModel> baker = model.baker(NO_ORIGIN);
+		final JointQuadGroups groups = JointQuadGroups.create(baker, NO_ORIGIN);
+		Assert.assertNotNull(groups);
+
+		// zero scale is common way of hiding parts
+		assertRecomposeMatchesBake(groups, baker, ImmutableMap.of(lid, transform(0, 0, 0, 0, 0, 0, 0)), false);
+		assertRecomposeMatchesBake(groups, baker, ImmutableMap.of(lid, transform(0, 0.2f, 0, 0.5f, 1, 0, 1), arm, transform(0, 0, 0, 0, 0, 1, 1)), false);
+	}
+
+	@Test
+	public void testNestedJointsRejected() {
+		final TestJoint hinge = new TestJoint("hinge", lid);
+		final TestModel model = createChest(true).add(hinge, 0.25f, 0.875f, 0.25f, 0.75f, 1, 0.75f);
+		Assert.assertNull(JointQuadGroups.create(model.baker(NO_ORIGIN), NO_ORIGIN));
+	}
+
+	@Test
+	public void testMovingSidedQuadsRejected() {
+		final TestModel model = createChest(true).addSided(arm, 0, 0.75f, 0, 1, 1, 1);
+		Assert.assertNull(JointQuadGroups.create(model.baker(NO_ORIGIN), NO_ORIGIN));
+	}
+
+	@Test
+	public void testStaticModelRejected() {
+		final TestModel model = new TestModel(true).add(null, 0, 0, 0, 1, 1, 1);
+		Assert.assertNull(JointQuadGroups.create(model.baker(NO_ORIGIN), NO_ORIGIN));
+	}
+
+	@Test
+	public void testJointWithoutQuads() {
+		final TestJoint unused = new TestJoint("unused", null);
+		final TestModel model = createChest(true);
+		// joint is queried by bake, but doesn't move anything
+		final Function<IModelState, IBakedModel> baker = clip -> {
+			clip.apply(Optional.of(unused));
+			return model.bake(clip);
+		};
+
+		final JointQuadGroups groups = JointQuadGroups.create(baker, NO_ORIGIN);
+		Assert.assertNotNull(groups);
+		assertRecomposeMatchesBake(groups, baker, ImmutableMap.of(unused, transform(1, 1, 1, 1, 2, 2, 2), lid, transform(0, 0.1f, 0, 0.2f, 1, 1, 1)), true);
+	}
+}
@@ -0,0 +1,112 @@
+package openmods.network.rpc;
+
+import com.google.common.collect.ImmutableList;
+import io.netty.buffer.Unpooled;
+import java.util.List;
+import net.minecraft.network.PacketBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RpcCallCodecTest {
+
+	// target and method are not needed for framing, so args store ids written by test encoder
+	private static RpcCall call(int targetId, int value) {
+		return new RpcCall(null, null, new Object[] { targetId, value });
+	}
+
+	private static final RpcCallCodec.CallEncoder ENCODER = (output, call) -> {
+		output.writeVarInt((Integer)call.args[0]);
+		output.writeVarInt((Integer)call.args[1]);
+	};
+
+	private static final RpcCallCodec.CallDecoder DECODER = (input, targetId) -> call(targetId, input.readVarInt());
+
+	private static PacketBuffer buffer() {
+		return new PacketBuffer(Unpooled.buffer());
+	}
+
+	private static void assertCall(int targetId, int value, RpcCall call) {
+		Assert.assertEquals(targetId, call.args[0]);
+		Assert.assertEquals(value, call.args[1]);
+	}
+
+	@Test
+	public void testSingleCall() {
+		final PacketBuffer buffer = buffer();
+		ENCODER.encode(buffer, call(5, 1234));
+
+		final Object result = RpcCallCodec.decodeMessage(buffer, DECODER);
+		Assert.assertTrue(result instanceof RpcCall);
+		assertCall(5, 1234, (RpcCall)result);
+	}
+
+	@Test
+	public void testBatch() {
+		final PacketBuffer buffer = buffer();
+		RpcCallCodec.encodeBatch(buffer, ImmutableList.of(call(1, 10), call(0xFF, 20), call(3, 300000)), ENCODER);
+
+		Assert.assertEquals(RpcCallCodec.BATCH_MARKER, new PacketBuffer(buffer.copy()).readVarInt());
+
+		final Object result = RpcCallCodec.decodeMessage(buffer, DECODER);
+		Assert.assertTrue(result instanceof RpcCallBatch);
+		final List<RpcCall> calls = ((RpcCallBatch)result).calls;
+		Assert.assertEquals(3, calls.size());
+		assertCall(1, 10, calls.get(0));
+		assertCall(0xFF, 20, calls.get(1));
+		assertCall(3, 300000, calls.get(2));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyBatchNotEncoded() {
+		RpcCallCodec.encodeBatch(buffer(), ImmutableList.of(), ENCODER);
+	}
+
+	private static PacketBuffer batchHeader(int count) {
+		final PacketBuffer buffer = buffer();
+		buffer.writeVarInt(RpcCallCodec.BATCH_MARKER);
+		buffer.writeVarInt(count);
+		return buffer;
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testZeroCountRejected() {
+		RpcCallCodec.decodeMessage(batchHeader(0), DECODER);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNegativeCountRejected() {
+		RpcCallCodec.decodeMessage(batchHeader(-1), DECODER);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testOversizedCountRejected() {
+		final PacketBuffer buffer = batchHeader(Integer.MAX_VALUE);
+		ENCODER.encode(buffer, call(1, 2));
+		RpcCallCodec.decodeMessage(buffer, DECODER);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCountAboveLimitRejected() {
+		final PacketBuffer buffer = batchHeader(RpcCallBatch.MAX_SIZE + 1);
+		for (int i = 0; i <= RpcCallBatch.MAX_SIZE; i++)
+			ENCODER.encode(buffer, call(1, 2));
+		RpcCallCodec.decodeMessage(buffer, DECODER);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testTruncatedBatchRejected() {
+		// declares 5 calls, but has only 2 (4 bytes)
+		final PacketBuffer buffer = batchHeader(5);
+		ENCODER.encode(buffer, call(1, 2));
+		ENCODER.encode(buffer, call(3, 4));
+		RpcCallCodec.decodeMessage(buffer, DECODER);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testJunkAfterBatchRejected() {
+		final PacketBuffer buffer = buffer();
+		RpcCallCodec.encodeBatch(buffer, ImmutableList.of(call(1, 10), call(2, 20)), ENCODER);
+		buffer.writeByte(0);
+		RpcCallCodec.decodeMessage(buffer, DECODER);
+	}
+}
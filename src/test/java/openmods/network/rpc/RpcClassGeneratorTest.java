@@ -0,0 +1,214 @@
+package openmods.network.rpc;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import openmods.network.senders.IPacketSender;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class RpcClassGeneratorTest {
+
+	public interface TestRpc {
+		public void noArgs();
+
+		public void withArgs(int a, String b);
+
+		public int wideArgs(long a, double b);
+
+		public String notRegistered(String a);
+	}
+
+	public interface ExtraRpc {
+		public void extra(boolean flag);
+
+		public void noArgs();
+	}
+
+	interface HiddenRpc {
+		public void hidden();
+	}
+
+	private static class RecordingSender implements IPacketSender {
+		private final List<RpcCall> calls = Lists.newArrayList();
+
+		@Override
+		public void sendMessage(Object msg) {
+			calls.add((RpcCall)msg);
+		}
+
+		@Override
+		public void sendMessages(Collection<Object> msg) {
+			for (Object m : msg)
+				sendMessage(m);
+		}
+	}
+
+	private final Map<Method, MethodEntry> methodMap = Maps.newHashMap();
+
+	private final RecordingSender sender = new RecordingSender();
+
+	private final IRpcTarget target = Mockito.mock(IRpcTarget.class);
+
+	private static Method method(Class<?> cls, String name) {
+		for (Method m : cls.getMethods())
+			if (m.getName().equals(name)) return m;
+		throw new AssertionError(name);
+	}
+
+	private MethodEntry register(Class<?> cls, String name) {
+		final Method m = method(cls, name);
+		final MethodEntry entry = new MethodEntry(m);
+		methodMap.put(m, entry);
+		return entry;
+	}
+
+	private RpcCall checkCall(int index, MethodEntry expectedEntry, Object... expectedArgs) {
+		final RpcCall call = sender.calls.get(index);
+		Assert.assertSame(target, call.target);
+		Assert.assertSame(expectedEntry, call.method);
+		if (expectedArgs.length == 0) Assert.assertNull(call.args);
+		else Assert.assertArrayEquals(expectedArgs, call.args);
+		return call;
+	}
+
+	@Test
+	public void testProxySendsRegisteredMethods() {
+		final MethodEntry noArgs = register(TestRpc.class, "noArgs");
+		final MethodEntry withArgs = register(TestRpc.class, "withArgs");
+		final MethodEntry wideArgs = register(TestRpc.class, "wideArgs");
+
+		final RpcClassGenerator.ProxyClass proxyClass = RpcClassGenerator.createProxyClass(ImmutableList.<Class<?>> of(TestRpc.class));
+		Assert.assertNotNull(proxyClass);
+
+		final TestRpc proxy = (TestRpc)proxyClass.create(target, sender, methodMap);
+		proxy.noArgs();
+		proxy.withArgs(5, "hello");
+		Assert.assertEquals(0, proxy.wideArgs(Long.MAX_VALUE, -2.5));
+		Assert.assertNull(proxy.notRegistered("ignored"));
+
+		Assert.assertEquals(3, sender.calls.size());
+		checkCall(0, noArgs);
+		checkCall(1, withArgs, 5, "hello");
+		checkCall(2, wideArgs, Long.MAX_VALUE, -2.5);
+	}
+
+	@Test
+	public void testProxyWithMultipleInterfaces() {
+		final MethodEntry extra = register(ExtraRpc.class, "extra");
+		// same as java.lang.reflect.Proxy: duplicated method is dispatched with Method of first interface
+		final MethodEntry noArgs = register(ExtraRpc.class, "noArgs");
+		register(TestRpc.class, "noArgs");
+
+		final RpcClassGenerator.ProxyClass proxyClass = RpcClassGenerator.createProxyClass(ImmutableList.<Class<?>> of(ExtraRpc.class, TestRpc.class));
+		final Object proxy = proxyClass.create(target, sender, methodMap);
+
+		((ExtraRpc)proxy).extra(true);
+		((TestRpc)proxy).noArgs();
+
+		Assert.assertEquals(2, sender.calls.size());
+		checkCall(0, extra, true);
+		checkCall(1, noArgs);
+	}
+
+	@Test
+	public void testCachedProxyClassSeesMethodsRegisteredLater() {
+		final MethodEntry noArgs = register(TestRpc.class, "noArgs");
+
+		final RpcClassGenerator.ProxyClass proxyClass = RpcClassGenerator.createProxyClass(ImmutableList.<Class<?>> of(TestRpc.class));
+
+		final TestRpc first = (TestRpc)proxyClass.create(target, sender, methodMap);
+		first.withArgs(1, "before");
+		Assert.assertTrue(sender.calls.isEmpty());
+
+		final MethodEntry withArgs = register(TestRpc.class, "withArgs");
+		final TestRpc second = (TestRpc)proxyClass.create(target, sender, methodMap);
+		second.withArgs(2, "after");
+		second.noArgs();
+
+		Assert.assertEquals(2, sender.calls.size());
+		checkCall(0, withArgs, 2, "after");
+		checkCall(1, noArgs);
+	}
+
+	@Test
+	public void testHiddenInterfaceNotGenerated() {
+		Assert.assertNull(RpcClassGenerator.createProxyClass(ImmutableList.<Class<?>> of(TestRpc.class, HiddenRpc.class)));
+	}
+
+	public static class InvokerTarget {
+		private final List<Object> calls = Lists.newArrayList();
+
+		public void noArgs() {
+			calls.add("noArgs");
+		}
+
+		public long mixed(int a, long b, double c, boolean d, String e) {
+			calls.add(a);
+			calls.add(b);
+			calls.add(c);
+			calls.add(d);
+			calls.add(e);
+			return b;
+		}
+
+		public void fail() {
+			throw new IllegalStateException("failed");
+		}
+	}
+
+	private static class HiddenInvokerTarget {
+		private final List<Object> calls = Lists.newArrayList();
+
+		@SuppressWarnings("unused")
+		public void call(int a) {
+			calls.add(a);
+		}
+
+		@SuppressWarnings("unused")
+		public void fail() {
+			throw new IllegalStateException("failed");
+		}
+	}
+
+	@Test
+	public void testGeneratedInvoker() throws Throwable {
+		final InvokerTarget invokerTarget = new InvokerTarget();
+
+		final IRpcMethodInvoker noArgs = RpcClassGenerator.createInvoker(method(InvokerTarget.class, "noArgs"));
+		Assert.assertNotEquals(RpcClassGenerator.class.getName() + "$ReflectiveInvoker", noArgs.getClass().getName());
+		noArgs.invoke(invokerTarget, null);
+
+		final IRpcMethodInvoker mixed = RpcClassGenerator.createInvoker(method(InvokerTarget.class, "mixed"));
+		mixed.invoke(invokerTarget, new Object[] { 3, Long.MIN_VALUE, 0.5, true, "str" });
+
+		Assert.assertEquals(ImmutableList.<Object> of("noArgs", 3, Long.MIN_VALUE, 0.5, true, "str"), invokerTarget.calls);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testGeneratedInvokerPassesExceptions() throws Throwable {
+		RpcClassGenerator.createInvoker(method(InvokerTarget.class, "fail")).invoke(new InvokerTarget(), null);
+	}
+
+	@Test
+	public void testReflectiveInvokerForHiddenClass() throws Throwable {
+		final HiddenInvokerTarget invokerTarget = new HiddenInvokerTarget();
+		final Method method = HiddenInvokerTarget.class.getMethod("call", int.class);
+		method.setAccessible(true);
+
+		RpcClassGenerator.createInvoker(method).invoke(invokerTarget, new Object[] { 7 });
+		Assert.assertEquals(ImmutableList.<Object> of(7), invokerTarget.calls);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testReflectiveInvokerPassesExceptions() throws Throwable {
+		final Method method = HiddenInvokerTarget.class.getMethod("fail");
+		method.setAccessible(true);
+		RpcClassGenerator.createInvoker(method).invoke(new HiddenInvokerTarget(), null);
+	}
+}
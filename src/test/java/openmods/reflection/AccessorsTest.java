@@ -0,0 +1,146 @@
+package openmods.reflection;
+
+import java.lang.reflect.InvocationTargetException;
+import openmods.reflection.MethodAccess.Function0;
+import openmods.reflection.MethodAccess.Function1;
+import openmods.reflection.MethodAccess.Function2;
+import openmods.reflection.MethodAccess.FunctionVar;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AccessorsTest {
+
+	public static class Target {
+		private int intField = 5;
+
+		private static String staticField = "static";
+
+		private static final String CONSTANT = "constant";
+
+		private String concat(String a, Integer b) {
+			return a + b;
+		}
+
+		private static int twice(int a) {
+			return 2 * a;
+		}
+
+		private void fail() {
+			throw new IllegalStateException();
+		}
+
+		private void failChecked() throws Exception {
+			throw new Exception("checked");
+		}
+
+		private void failError() {
+			throw new AssertionError("error");
+		}
+
+		private Target() {}
+	}
+
+	@Test
+	public void testMethod() {
+		final Function2<String, String, Integer> f = MethodAccess.create(String.class, Target.class, String.class, Integer.class, "concat");
+		Assert.assertEquals("a4", f.call(new Target(), "a", 4));
+	}
+
+	@Test
+	public void testStaticMethodWithPrimitives() {
+		final Function1<Integer, Integer> f = MethodAccess.create(int.class, Target.class, int.class, "twice");
+		Assert.assertEquals(Integer.valueOf(42), f.call(null, 21));
+
+		@SuppressWarnings("unchecked")
+		final FunctionVar<Integer> var = (FunctionVar<Integer>)f;
+		Assert.assertEquals(Integer.valueOf(14), var.call(null, 7));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testMethodException() {
+		final Function0<Void> f = MethodAccess.create(void.class, Target.class, "fail");
+		f.call(new Target());
+	}
+
+	@Test
+	public void testMethodExceptionsWrapped() {
+		final Function0<Void> f = MethodAccess.create(void.class, Target.class, "fail");
+		try {
+			f.call(new Target());
+			Assert.fail();
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getCause() instanceof InvocationTargetException);
+			Assert.assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+		}
+
+		final Function0<Void> error = MethodAccess.create(void.class, Target.class, "failError");
+		try {
+			error.call(new Target());
+			Assert.fail();
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getCause() instanceof InvocationTargetException);
+			Assert.assertEquals("error", e.getCause().getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void testCheckedMethodExceptionWrapped() {
+		final Function0<Void> f = MethodAccess.create(void.class, Target.class, "failChecked");
+		try {
+			f.call(new Target());
+			Assert.fail();
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getCause() instanceof InvocationTargetException);
+			Assert.assertEquals("checked", e.getCause().getCause().getMessage());
+		}
+	}
+
+	@Test
+	public void testField() {
+		final Target target = new Target();
+		final FieldAccess<Integer> f = FieldAccess.create(Target.class, "intField");
+		Assert.assertEquals(Integer.valueOf(5), f.get(target));
+
+		f.set(target, 9);
+		Assert.assertEquals(9, target.intField);
+		Assert.assertEquals(Integer.valueOf(9), f.get(target));
+	}
+
+	@Test
+	public void testStaticField() {
+		final FieldAccess<String> f = FieldAccess.create(Target.class, "staticField");
+		final String prev = f.get(null);
+		try {
+			f.set(null, "hello");
+			Assert.assertEquals("hello", Target.staticField);
+			Assert.assertEquals("hello", f.get(null));
+		} finally {
+			f.set(null, prev);
+		}
+	}
+
+	@Test
+	public void testStaticFinalField() {
+		final FieldAccess<String> f = FieldAccess.create(Target.class, "CONSTANT");
+		Assert.assertEquals("constant", f.get(null));
+
+		try {
+			f.set(null, "hello");
+			Assert.fail();
+		} catch (FieldAccess.FieldAccessException e) {
+			// expected
+		}
+	}
+
+	@Test(expected = FieldAccess.FieldAccessException.class)
+	public void testNullToPrimitiveField() {
+		final FieldAccess<Integer> f = FieldAccess.create(Target.class, "intField");
+		f.set(new Target(), null);
+	}
+
+	@Test
+	public void testConstructor() throws Exception {
+		final ConstructorAccess<Target> ctor = new ConstructorAccess<>(Target.class.getDeclaredConstructor());
+		Assert.assertEquals(5, ctor.create().intField);
+	}
+}
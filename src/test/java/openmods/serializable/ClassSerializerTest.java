@@ -5,8 +5,11 @@ import java.io.IOException;
 import net.minecraft.network.PacketBuffer;
 import openmods.serializable.cls.ClassSerializersProvider;
 import openmods.serializable.cls.Serialize;
+import openmods.utils.io.IStreamSerializer;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
 
 public class ClassSerializerTest {
 
@@ -191,4 +194,116 @@ public class ClassSerializerTest {
 
 		testSerializer(serializer, source, target);
 	}
+
+	public static class ManyNullableFields {
+		@Serialize(rank = 0)
+		public String field0;
+
+		@Serialize(rank = 1)
+		public String field1;
+
+		@Serialize(rank = 2)
+		public String field2;
+
+		@Serialize(rank = 3)
+		public String field3;
+
+		@Serialize(rank = 4)
+		public String field4;
+
+		@Serialize(rank = 5)
+		public String field5;
+
+		@Serialize(rank = 6)
+		public String field6;
+
+		@Serialize(rank = 7)
+		public String field7;
+
+		@Serialize(rank = 8)
+		public String field8;
+
+		@Serialize(rank = 9)
+		public long field9;
+	}
+
+	@Test
+	public void testMultipleNullBytes() {
+		IObjectSerializer<ManyNullableFields> serializer = ClassSerializersProvider.instance.getSerializer(ManyNullableFields.class);
+
+		ManyNullableFields source = new ManyNullableFields();
+		source.field0 = "a";
+		source.field3 = "b";
+		source.field8 = "c";
+		source.field9 = Long.MIN_VALUE;
+
+		ManyNullableFields target = new ManyNullableFields();
+		target.field1 = "dummy";
+		target.field7 = "dummy";
+
+		testSerializer(serializer, source, target);
+
+		Assert.assertEquals(source.field0, target.field0);
+		Assert.assertNull(target.field1);
+		Assert.assertNull(target.field2);
+		Assert.assertEquals(source.field3, target.field3);
+		Assert.assertNull(target.field7);
+		Assert.assertEquals(source.field8, target.field8);
+		Assert.assertEquals(source.field9, target.field9);
+	}
+
+	private static class PrivateClass {
+		@Serialize
+		public String stringField = "dummy";
+
+		@Serialize
+		public int intField = -2;
+	}
+
+	@Test
+	public void testPrivateClass() {
+		IObjectSerializer<PrivateClass> serializer = ClassSerializersProvider.instance.getSerializer(PrivateClass.class);
+
+		PrivateClass source = new PrivateClass();
+		source.stringField = null;
+		source.intField = 42;
+
+		PrivateClass target = new PrivateClass();
+
+		testSerializer(serializer, source, target);
+
+		Assert.assertNull(target.stringField);
+		Assert.assertEquals(source.intField, target.intField);
+	}
+
+	public enum LateEnum {
+		A, B
+	}
+
+	public static class LateFieldClass {
+		@Serialize
+		public LateEnum field = LateEnum.A;
+	}
+
+	public interface LateEnumSerializer extends IStreamSerializer<LateEnum> {}
+
+	@Test
+	public void testRegistrationInvalidatesClassSerializers() throws IOException {
+		final IObjectSerializer<LateFieldClass> defaultSerializer = ClassSerializersProvider.instance.getSerializer(LateFieldClass.class);
+		Assert.assertSame(defaultSerializer, ClassSerializersProvider.instance.getSerializer(LateFieldClass.class));
+
+		final LateEnumSerializer fieldSerializer = Mockito.mock(LateEnumSerializer.class);
+		Mockito.when(fieldSerializer.readFromStream(Matchers.any(PacketBuffer.class))).thenReturn(LateEnum.B);
+		SerializerRegistry.instance.register(LateEnum.class, fieldSerializer);
+
+		final IObjectSerializer<LateFieldClass> serializer = ClassSerializersProvider.instance.getSerializer(LateFieldClass.class);
+		Assert.assertNotSame(defaultSerializer, serializer);
+
+		final LateFieldClass source = new LateFieldClass();
+		final LateFieldClass target = new LateFieldClass();
+		testSerializer(serializer, source, target);
+
+		Assert.assertEquals(LateEnum.B, target.field);
+		Mockito.verify(fieldSerializer).writeToStream(Matchers.eq(LateEnum.A), Matchers.any(PacketBuffer.class));
+	}
 }
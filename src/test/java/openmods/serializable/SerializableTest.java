@@ -538,4 +538,30 @@ public class SerializableTest {
 		Assert.assertEquals(target.intField, result.intField);
 		Assert.assertNull(result.nullField);
 	}
+
+	@Test
+	public void testGenericSerializerCached() {
+		final Type type = new TypeToken<List<Set<String>>>() {}.getType();
+		final IStreamSerializer<Object> first = registry.findSerializer(type);
+		Assert.assertNotNull(first);
+		Assert.assertSame(first, registry.findSerializer(type));
+	}
+
+	@Test
+	public void testClassSerializerCached() {
+		final IStreamSerializer<SimpleSerializableClass> first = registry.findSerializer(SimpleSerializableClass.class);
+		Assert.assertNotNull(first);
+		Assert.assertSame(first, registry.findSerializer(SimpleSerializableClass.class));
+	}
+
+	@Test
+	public void testRegisterAfterLookup() throws IOException {
+		final Type type = new TypeToken<List<Integer>>() {}.getType();
+		final IStreamSerializer<Object> cached = registry.findSerializer(type);
+
+		final IStreamSerializer<TestCls> serializer = createSerializer();
+		registry.register(serializer);
+		Assert.assertSame(serializer, registry.findSerializer(TestCls.class));
+		Assert.assertNotSame(cached, registry.findSerializer(type));
+	}
 }
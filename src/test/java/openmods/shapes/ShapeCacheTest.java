@@ -0,0 +1,119 @@
+package openmods.shapes;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+import java.util.Set;
+import openmods.utils.Coord;
+import openmods.utils.render.GeometryUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ShapeCacheTest {
+
+	private static Set<Coord> replay(VoxelSet voxels) {
+		final Multiset<Coord> result = HashMultiset.create();
+		voxels.forEach((x, y, z) -> result.add(new Coord(x, y, z)));
+		// no duplicates
+		Assert.assertEquals(result.size(), result.elementSet().size());
+		return result.elementSet();
+	}
+
+	private static void checkSameAsGenerator(IShapeGenerator generator, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		final Set<Coord> expected = ShapesTest.generate(generator, minX, minY, minZ, maxX, maxY, maxZ).elementSet();
+		final VoxelSet voxels = VoxelSet.generate(generator, minX, minY, minZ, maxX, maxY, maxZ);
+
+		Assert.assertEquals(expected, replay(voxels));
+		Assert.assertEquals(expected.size(), voxels.size());
+		for (Coord c : expected)
+			Assert.assertTrue(voxels.contains(c.x, c.y, c.z));
+
+		Assert.assertFalse(voxels.contains(maxX + 1, maxY, maxZ));
+	}
+
+	@Test
+	public void testGeneratorsReplay() {
+		checkSameAsGenerator(new ShapeSphereGenerator(), -5, -5, -5, 5, 5, 5);
+		checkSameAsGenerator(new ShapeSphereGenerator(), 0, 0, 0, 7, 4, 9);
+		checkSameAsGenerator(new ShapeCylinderGenerator(), -4, -2, -4, 4, 2, 4);
+		checkSameAsGenerator(new ShapeCuboidGenerator(), -3, -3, -3, 3, 3, 3);
+		checkSameAsGenerator(new ShapeCuboidGenerator(ShapeCuboidGenerator.Elements.EDGES), 0, 0, 0, 5, 6, 7);
+		checkSameAsGenerator(new ShapeAxesGenerator(), -3, -3, -3, 3, 3, 3);
+	}
+
+	@Test
+	public void testEmpty() {
+		final VoxelSet voxels = VoxelSet.generate((minX, minY, minZ, maxX, maxY, maxZ, shapeable) -> {}, 0, 0, 0, 1, 1, 1);
+		Assert.assertSame(VoxelSet.EMPTY, voxels);
+		Assert.assertTrue(voxels.isEmpty());
+		Assert.assertTrue(replay(voxels).isEmpty());
+	}
+
+	@Test
+	public void testSpansAreMerged() {
+		final VoxelSet.Builder builder = new VoxelSet.Builder();
+		builder.setBlock(0, 0, 2);
+		builder.setBlock(0, 0, 0);
+		builder.setBlock(0, 0, 1);
+		builder.setBlock(0, 0, 1);
+		builder.setBlock(0, 1, 3);
+		builder.setBlock(0, 0, 5);
+
+		final VoxelSet voxels = builder.build();
+		Assert.assertEquals(5, voxels.size());
+		Assert.assertEquals(3, voxels.spanCount());
+		Assert.assertEquals(Sets.newHashSet(new Coord(0, 0, 0), new Coord(0, 0, 1), new Coord(0, 0, 2), new Coord(0, 1, 3), new Coord(0, 0, 5)), replay(voxels));
+	}
+
+	@Test
+	public void testSpansMatchBlocks() {
+		final VoxelSet.Builder blocks = new VoxelSet.Builder();
+		final VoxelSet.Builder spans = new VoxelSet.Builder();
+		for (int z = -3; z <= 4; z++)
+			blocks.setBlock(1, 2, z);
+		blocks.setBlock(1, 3, 7);
+		spans.setSpan(1, 2, -3, 1);
+		spans.setSpan(1, 3, 7, 7);
+		spans.setSpan(1, 2, 0, 4);
+
+		final VoxelSet expected = blocks.build();
+		final VoxelSet actual = spans.build();
+		Assert.assertEquals(expected, actual);
+		Assert.assertEquals(2, actual.spanCount());
+
+		final VoxelSet.Builder replayed = new VoxelSet.Builder();
+		actual.forEach(replayed);
+		Assert.assertEquals(expected, replayed.build());
+	}
+
+	@Test
+	public void testParallelEllipsoidSameAsSequential() {
+		// big enough to split slices between tasks, odd sizes to check middle skipping
+		checkSameAsGenerator(new ShapeSphereGenerator(), -40, -20, -30, 41, 21, 30);
+		checkSameAsGenerator(new ShapeSphereGenerator(GeometryUtils.Octant.TOP), 0, 0, 0, 63, 30, 17);
+		checkSameAsGenerator(new ShapeCylinderGenerator(GeometryUtils.Quadrant.ALL), -20, 0, -15, 21, 3, 15);
+	}
+
+	@Test
+	public void testCacheReusesShapes() {
+		final ShapeCache cache = new ShapeCache(ShapeCache.DEFAULT_MAX_SPANS);
+		final IShapeGenerator generator = new ShapeSphereGenerator();
+
+		final VoxelSet first = cache.getShape(generator, -10, -10, -10, 10, 10, 10);
+		Assert.assertSame(first, cache.getShape(generator, -10, -10, -10, 10, 10, 10));
+		Assert.assertNotSame(first, cache.getShape(generator, -10, -10, -10, 10, 10, 11));
+		Assert.assertNotSame(first, cache.getShape(new ShapeSphereGenerator(), -10, -10, -10, 10, 10, 10));
+
+		Assert.assertEquals(first, cache.getShape(generator, 10, 10, 10));
+	}
+
+	@Test
+	public void testWrappedGenerator() {
+		final ShapeCache cache = new ShapeCache(ShapeCache.DEFAULT_MAX_SPANS);
+		final IShapeGenerator generator = new ShapeCylinderGenerator();
+		final IShapeGenerator wrapped = cache.wrap(generator);
+
+		Assert.assertEquals(ShapesTest.generate(generator, -3, 0, -3, 3, 4, 3).elementSet(), ShapesTest.generate(wrapped, -3, 0, -3, 3, 4, 3).elementSet());
+		ShapesTest.checkBasicBehaviour(wrapped);
+	}
+}
@@ -6,7 +6,11 @@ import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.SetMultimap;
 import java.util.List;
 import java.util.Map;
 import net.minecraft.network.PacketBuffer;
@@ -176,6 +180,10 @@ public class StructuredTest {
 		public Map<Integer, TestElement> getElements() {
 			return elements;
 		}
+
+		public SetMultimap<Integer, Integer> getContainerToElement() {
+			return containerToElement;
+		}
 	}
 
 	private static StringTestContainer createStringContainer(final TestMaster master, String value) {
@@ -566,6 +574,28 @@ public class StructuredTest {
 		performUpdate(master, slave, Command.Type.CONSISTENCY_CHECK);
 	}
 
+	@Test
+	public void testRemoveContainerReturnsElementIds() {
+		final TestMaster master = new TestMaster();
+		final TestSlave slave = new TestSlave();
+
+		createIntContainer(master, 1);
+		master.addContainer(new CustomDataTestContainer());
+		createIntContainer(master, 2);
+
+		performUpdate(master, slave, Command.Type.CREATE, Command.Type.CONSISTENCY_CHECK);
+		Assert.assertEquals(ImmutableList.of(0, 1, 2, 3), ImmutableList.copyOf(slave.getElements().keySet()));
+		Assert.assertEquals(ImmutableSortedSet.of(1, 2), slave.getContainerToElement().get(1));
+
+		Assert.assertEquals(ImmutableSortedSet.of(1, 2), master.removeContainer(1));
+
+		performUpdate(master, slave, Command.Type.DELETE, Command.Type.CONSISTENCY_CHECK);
+		Assert.assertEquals(ImmutableList.of(0, 2), ImmutableList.copyOf(slave.getContainers().keySet()));
+		Assert.assertEquals(ImmutableList.of(0, 3), ImmutableList.copyOf(slave.getElements().keySet()));
+		checkIntElement(slave.getElements(), 3, 2);
+		Assert.assertEquals(ImmutableSetMultimap.of(0, 0, 2, 3), slave.getContainerToElement());
+	}
+
 	@Test
 	public void testDeleteAfterCreateAndUpdate() {
 		final TestMaster master = new TestMaster();
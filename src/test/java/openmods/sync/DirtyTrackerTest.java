@@ -0,0 +1,159 @@
+package openmods.sync;
+
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import net.minecraft.network.PacketBuffer;
+import openmods.utils.bitstream.InputBitStream;
+import openmods.utils.bitstream.OutputBitStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DirtyTrackerTest {
+
+	private static final int[] SIZES = { 1, 7, 8, 9, 63, 64, 65, 127, 128, 129, 200 };
+
+	private static byte[] writeWithTracker(DirtyTracker tracker, int objectCount) {
+		final PacketBuffer output = new PacketBuffer(Unpooled.buffer());
+		tracker.writeChanges(output, (objectCount + 7) / 8);
+		final byte[] result = new byte[output.readableBytes()];
+		output.readBytes(result);
+		return result;
+	}
+
+	private static byte[] writeWithBitStream(BitSet bits, int objectCount) throws IOException {
+		final PacketBuffer output = new PacketBuffer(Unpooled.buffer());
+		final OutputBitStream bitmap = new OutputBitStream(output::writeByte);
+		for (int i = 0; i < objectCount; i++)
+			bitmap.writeBit(bits.get(i));
+		bitmap.flush();
+
+		final byte[] result = new byte[output.readableBytes()];
+		output.readBytes(result);
+		return result;
+	}
+
+	private static DirtyTracker createTracker(BitSet bits, int objectCount) {
+		final DirtyTracker tracker = new DirtyTracker();
+		tracker.ensureCapacity(objectCount);
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+			tracker.markDirty(i);
+		return tracker;
+	}
+
+	private static void checkSameAsBitStream(BitSet bits, int objectCount) throws IOException {
+		final DirtyTracker tracker = createTracker(bits, objectCount);
+		Assert.assertEquals(!bits.isEmpty(), tracker.commit());
+
+		final byte[] expected = writeWithBitStream(bits, objectCount);
+		final byte[] actual = writeWithTracker(tracker, objectCount);
+		Assert.assertTrue("Bitmap mismatch for " + bits + " (" + objectCount + " objects)", Arrays.equals(expected, actual));
+
+		final PacketBuffer input = new PacketBuffer(Unpooled.wrappedBuffer(actual));
+		final InputBitStream bitmap = new InputBitStream(input::readUnsignedByte);
+		for (int i = 0; i < objectCount; i++) {
+			Assert.assertEquals(bits.get(i), bitmap.readBit());
+			Assert.assertEquals(bits.get(i), tracker.isChanged(i));
+		}
+
+		Assert.assertEquals(bits.cardinality(), tracker.changedCount());
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		for (int size : SIZES)
+			checkSameAsBitStream(new BitSet(), size);
+	}
+
+	@Test
+	public void testFull() throws IOException {
+		for (int size : SIZES) {
+			final BitSet bits = new BitSet();
+			bits.set(0, size);
+			checkSameAsBitStream(bits, size);
+		}
+	}
+
+	@Test
+	public void testSingleBits() throws IOException {
+		for (int size : SIZES) {
+			for (int i = 0; i < size; i++) {
+				final BitSet bits = new BitSet();
+				bits.set(i);
+				checkSameAsBitStream(bits, size);
+			}
+		}
+	}
+
+	@Test
+	public void testRandomBits() throws IOException {
+		final Random random = new Random(1234);
+		for (int size : SIZES) {
+			for (int iteration = 0; iteration < 50; iteration++) {
+				final BitSet bits = new BitSet();
+				for (int i = 0; i < size; i++)
+					if (random.nextBoolean()) bits.set(i);
+				checkSameAsBitStream(bits, size);
+			}
+		}
+	}
+
+	@Test
+	public void testNextChanged() {
+		final BitSet bits = new BitSet();
+		bits.set(0);
+		bits.set(63);
+		bits.set(64);
+		bits.set(130);
+
+		final DirtyTracker tracker = createTracker(bits, 200);
+		tracker.commit();
+
+		final BitSet result = new BitSet();
+		for (int i = tracker.nextChanged(0); i >= 0; i = tracker.nextChanged(i + 1))
+			result.set(i);
+
+		Assert.assertEquals(bits, result);
+		Assert.assertEquals(-1, tracker.nextChanged(131));
+		Assert.assertEquals(-1, tracker.nextChanged(1000));
+	}
+
+	@Test
+	public void testCommitReplacesChanges() throws IOException {
+		final DirtyTracker tracker = new DirtyTracker();
+		tracker.ensureCapacity(16);
+		tracker.markDirty(3);
+		Assert.assertTrue(tracker.commit());
+
+		tracker.markDirty(10);
+		Assert.assertTrue(tracker.commit());
+		Assert.assertFalse(tracker.isChanged(3));
+		Assert.assertTrue(tracker.isChanged(10));
+
+		final BitSet expected = new BitSet();
+		expected.set(10);
+		Assert.assertTrue(Arrays.equals(writeWithBitStream(expected, 16), writeWithTracker(tracker, 16)));
+
+		// nothing marked since last commit
+		Assert.assertFalse(tracker.commit());
+		Assert.assertEquals(0, tracker.changedCount());
+		Assert.assertTrue(Arrays.equals(writeWithBitStream(new BitSet(), 16), writeWithTracker(tracker, 16)));
+	}
+
+	@Test
+	public void testCopyIsIndependent() {
+		final DirtyTracker tracker = new DirtyTracker();
+		tracker.ensureCapacity(8);
+		tracker.markDirty(2);
+		tracker.commit();
+
+		final DirtyTracker copy = tracker.copyChanges();
+		tracker.markDirty(5);
+		tracker.commit();
+
+		Assert.assertTrue(copy.isChanged(2));
+		Assert.assertFalse(copy.isChanged(5));
+	}
+}
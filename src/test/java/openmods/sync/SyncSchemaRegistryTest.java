@@ -0,0 +1,106 @@
+package openmods.sync;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketBuffer;
+import openmods.sync.SyncSchemaRegistry.Schema;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SyncSchemaRegistryTest {
+
+	private static final Schema SCHEMA_A = new Schema(new String[] { "a", "b" }, new int[] { 1, 2 });
+
+	private static final Schema SCHEMA_B = new Schema(new String[] { "b", "a" }, new int[] { 2, 1 });
+
+	private static final Schema SCHEMA_C = new Schema(new String[] { "c" }, new int[] { 3 });
+
+	@Before
+	public void setup() {
+		SyncSchemaRegistry.clearServerSchemas();
+	}
+
+	private static void send(int firstId, int lastId) {
+		final PacketBuffer payload = new PacketBuffer(Unpooled.buffer());
+		SyncSchemaRegistry.writeSchemas(payload, firstId, lastId);
+		SyncSchemaRegistry.readSchemas(payload);
+		Assert.assertEquals(0, payload.readableBytes());
+	}
+
+	private static void assertSchemaEquals(Schema expected, Schema actual) {
+		Assert.assertEquals(expected, actual);
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.getName(i), actual.getName(i));
+			Assert.assertEquals(expected.getTypeId(i), actual.getTypeId(i));
+		}
+	}
+
+	@Test
+	public void testEqualSchemasShareId() {
+		Assert.assertEquals(0, SyncSchemaRegistry.registerSchema(SCHEMA_A));
+		Assert.assertEquals(1, SyncSchemaRegistry.registerSchema(SCHEMA_B));
+		Assert.assertEquals(0, SyncSchemaRegistry.registerSchema(new Schema(new String[] { "a", "b" }, new int[] { 1, 2 })));
+	}
+
+	@Test
+	public void testSchemasResolvedById() {
+		final int idA = SyncSchemaRegistry.registerSchema(SCHEMA_A);
+		final int idB = SyncSchemaRegistry.registerSchema(SCHEMA_B);
+		send(0, 2);
+
+		assertSchemaEquals(SCHEMA_A, SyncSchemaRegistry.getClientSchema(idA));
+		assertSchemaEquals(SCHEMA_B, SyncSchemaRegistry.getClientSchema(idB));
+	}
+
+	@Test
+	public void testSchemasSentIncrementally() {
+		SyncSchemaRegistry.registerSchema(SCHEMA_A);
+		send(0, 1);
+
+		final int idB = SyncSchemaRegistry.registerSchema(SCHEMA_B);
+		final int idC = SyncSchemaRegistry.registerSchema(SCHEMA_C);
+		send(1, 3);
+
+		assertSchemaEquals(SCHEMA_A, SyncSchemaRegistry.getClientSchema(0));
+		assertSchemaEquals(SCHEMA_B, SyncSchemaRegistry.getClientSchema(idB));
+		assertSchemaEquals(SCHEMA_C, SyncSchemaRegistry.getClientSchema(idC));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testGapInIdsRejected() {
+		SyncSchemaRegistry.registerSchema(SCHEMA_A);
+		SyncSchemaRegistry.registerSchema(SCHEMA_B);
+		SyncSchemaRegistry.registerSchema(SCHEMA_C);
+		send(0, 1);
+		send(2, 3);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testUnknownIdRejected() {
+		SyncSchemaRegistry.registerSchema(SCHEMA_A);
+		send(0, 1);
+		SyncSchemaRegistry.getClientSchema(1);
+	}
+
+	@Test
+	public void testIdsRestartAfterServerReset() {
+		SyncSchemaRegistry.registerSchema(SCHEMA_A);
+		SyncSchemaRegistry.registerSchema(SCHEMA_B);
+		send(0, 2);
+
+		SyncSchemaRegistry.clearServerSchemas();
+		Assert.assertEquals(0, SyncSchemaRegistry.registerSchema(SCHEMA_C));
+
+		// new connection replaces all previous client schemas
+		send(0, 1);
+		assertSchemaEquals(SCHEMA_C, SyncSchemaRegistry.getClientSchema(0));
+
+		try {
+			SyncSchemaRegistry.getClientSchema(1);
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,212 @@
+package openmods.sync;
+
+import com.google.common.collect.Lists;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Arrays;
+import java.util.List;
+import net.minecraft.entity.Entity;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import openmods.sync.SyncMapServer.UpdateStrategy;
+import openmods.sync.SyncUpdateScheduler.PendingUpdate;
+import openmods.tileentity.SyncedTileEntity;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class SyncUpdateSchedulerTest {
+
+	private static class Received {
+		private final Object owner;
+
+		private final byte[] payload;
+
+		public Received(Object owner, byte[] payload) {
+			this.owner = owner;
+			this.payload = payload;
+		}
+	}
+
+	private final List<Received> received = Lists.newArrayList();
+
+	private World world;
+
+	private final List<PendingUpdate> updates = Lists.newArrayList();
+
+	private final List<Object> expectedOwners = Lists.newArrayList();
+
+	private final List<byte[]> expectedPayloads = Lists.newArrayList();
+
+	@Before
+	public void setup() {
+		world = Mockito.mock(World.class);
+		Mockito.when(world.isBlockLoaded(Matchers.any(BlockPos.class))).thenReturn(true);
+	}
+
+	private SyncMap createReceiver(final Object owner) throws Exception {
+		final SyncMap syncMap = Mockito.mock(SyncMap.class);
+		Mockito.doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				final PacketBuffer input = (PacketBuffer)invocation.getArguments()[0];
+				final byte[] data = new byte[input.readableBytes()];
+				input.readBytes(data);
+				received.add(new Received(owner, data));
+				return null;
+			}
+		}).when(syncMap).readUpdate(Matchers.any(PacketBuffer.class));
+		return syncMap;
+	}
+
+	private SyncMapServer tile(BlockPos pos) throws Exception {
+		final SyncedTileEntity serverTile = Mockito.mock(SyncedTileEntity.class);
+		Mockito.when(serverTile.getPos()).thenReturn(pos);
+
+		final TileEntity clientTile = Mockito.mock(TileEntity.class, Mockito.withSettings().extraInterfaces(ISyncMapProvider.class));
+		final SyncMap syncMap = createReceiver(clientTile);
+		Mockito.when(((ISyncMapProvider)clientTile).getSyncMap()).thenReturn(syncMap);
+		Mockito.when(world.getTileEntity(pos)).thenReturn(clientTile);
+		expectedOwners.add(clientTile);
+
+		return new SyncMapTile(serverTile, UpdateStrategy.WITH_INITIAL_PACKET);
+	}
+
+	private SyncMapServer entity(int id) throws Exception {
+		final Entity serverEntity = Mockito.mock(Entity.class);
+		Mockito.when(serverEntity.getEntityId()).thenReturn(id);
+
+		final Entity clientEntity = Mockito.mock(Entity.class, Mockito.withSettings().extraInterfaces(ISyncMapProvider.class));
+		final SyncMap syncMap = createReceiver(clientEntity);
+		Mockito.when(((ISyncMapProvider)clientEntity).getSyncMap()).thenReturn(syncMap);
+		Mockito.when(world.getEntityByID(id)).thenReturn(clientEntity);
+		expectedOwners.add(clientEntity);
+
+		return new SyncMapEntity(serverEntity, UpdateStrategy.WITH_INITIAL_PACKET);
+	}
+
+	private SyncMapServer failingEntity(int id) throws Exception {
+		final Entity serverEntity = Mockito.mock(Entity.class);
+		Mockito.when(serverEntity.getEntityId()).thenReturn(id);
+
+		final Entity clientEntity = Mockito.mock(Entity.class, Mockito.withSettings().extraInterfaces(ISyncMapProvider.class));
+		final SyncMap syncMap = Mockito.mock(SyncMap.class);
+		Mockito.doThrow(new IllegalStateException("broken")).when(syncMap).readUpdate(Matchers.any(PacketBuffer.class));
+		Mockito.when(((ISyncMapProvider)clientEntity).getSyncMap()).thenReturn(syncMap);
+		Mockito.when(world.getEntityByID(id)).thenReturn(clientEntity);
+
+		return new SyncMapEntity(serverEntity, UpdateStrategy.WITH_INITIAL_PACKET);
+	}
+
+	private void add(SyncMapServer owner, int payloadSize) {
+		final byte[] payload = new byte[payloadSize];
+		for (int i = 0; i < payloadSize; i++)
+			payload[i] = (byte)(updates.size() * 31 + i);
+
+		expectedPayloads.add(payload);
+
+		// non-zero reader index, to check only readable part is sent
+		final ByteBuf buffer = Unpooled.buffer();
+		buffer.writeByte(0xFF);
+		buffer.writeBytes(payload);
+		buffer.readByte();
+
+		updates.add(new PendingUpdate(owner, buffer));
+	}
+
+	private List<PacketBuffer> encodeAndDecode() {
+		final List<PacketBuffer> frames = SyncUpdateScheduler.encodeFrames(updates);
+		for (PacketBuffer frame : frames) {
+			final PacketBuffer input = new PacketBuffer(frame.copy());
+			Assert.assertEquals(SyncUpdateScheduler.PACKET_TYPE, input.readVarInt());
+			InboundSyncHandler.readBatch(world, input);
+			Assert.assertEquals(0, input.readableBytes());
+		}
+
+		Assert.assertEquals(expectedOwners.size(), received.size());
+		for (int i = 0; i < received.size(); i++) {
+			final Received r = received.get(i);
+			Assert.assertSame("Owner of update " + i, expectedOwners.get(i), r.owner);
+			Assert.assertTrue("Payload of update " + i, Arrays.equals(expectedPayloads.get(i), r.payload));
+		}
+
+		return frames;
+	}
+
+	@Test
+	public void testEmpty() {
+		Assert.assertTrue(encodeAndDecode().isEmpty());
+	}
+
+	@Test
+	public void testMixedOwnersInSingleFrame() throws Exception {
+		add(tile(new BlockPos(100, 64, -200)), 5);
+		add(entity(1000), 0);
+		add(tile(new BlockPos(98, 70, -150)), 3);
+		add(entity(12), 7);
+		add(tile(new BlockPos(-30000000, 0, 30000000)), 1);
+		add(entity(Integer.MAX_VALUE), 2);
+		add(entity(0), 2);
+
+		Assert.assertEquals(1, encodeAndDecode().size());
+	}
+
+	@Test
+	public void testFailingOwnerDoesNotDropOtherUpdates() throws Exception {
+		add(tile(new BlockPos(1, 2, 3)), 4);
+		updates.add(new PendingUpdate(failingEntity(7), Unpooled.wrappedBuffer(new byte[] { 1, 2, 3 })));
+		add(entity(8), 2);
+		add(tile(new BlockPos(4, 5, 6)), 3);
+
+		Assert.assertEquals(1, encodeAndDecode().size());
+	}
+
+	@Test
+	public void testNearbyOwnersUseShortDeltas() throws Exception {
+		add(tile(new BlockPos(1000, 64, 1000)), 0);
+		final int firstEntrySize = SyncUpdateScheduler.encodeFrames(updates).get(0).writerIndex();
+
+		// (-1, +1, -1) -> one byte per coordinate
+		add(tile(new BlockPos(999, 65, 999)), 0);
+		final List<PacketBuffer> frames = encodeAndDecode();
+		Assert.assertEquals(1, frames.size());
+
+		// owner type, 3 * delta, payload size
+		Assert.assertEquals(firstEntrySize + 5, frames.get(0).writerIndex());
+	}
+
+	@Test
+	public void testLargeBatchSplit() throws Exception {
+		final int payloadSize = 1000;
+		final int count = 3 * SyncUpdateScheduler.MAX_FRAME_SIZE / payloadSize;
+		for (int i = 0; i < count; i++) {
+			if (i % 2 == 0) add(tile(new BlockPos(i, 64 - i % 7, -i)), payloadSize);
+			else add(entity(count - i), payloadSize);
+		}
+
+		final List<PacketBuffer> frames = encodeAndDecode();
+		Assert.assertTrue(frames.size() >= 3);
+
+		for (PacketBuffer frame : frames)
+			Assert.assertTrue(frame.writerIndex() < SyncUpdateScheduler.MAX_FRAME_SIZE + payloadSize + 32);
+
+		for (PacketBuffer frame : frames.subList(0, frames.size() - 1))
+			Assert.assertTrue(frame.writerIndex() >= SyncUpdateScheduler.MAX_FRAME_SIZE);
+	}
+
+	@Test
+	public void testOversizedPayloadClosesFrame() throws Exception {
+		add(entity(1), 10);
+		add(entity(2), SyncUpdateScheduler.MAX_FRAME_SIZE * 2);
+		add(entity(3), 10);
+
+		final List<PacketBuffer> frames = encodeAndDecode();
+		Assert.assertEquals(2, frames.size());
+	}
+}
@@ -0,0 +1,147 @@
+package openmods.sync;
+
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.network.PacketBuffer;
+import net.minecraftforge.fluids.FluidRegistry;
+import net.minecraftforge.fluids.FluidStack;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SyncableTankTest {
+
+	static {
+		Bootstrap.register();
+	}
+
+	private static final int TYPE_EMPTY = 0;
+	private static final int TYPE_FULL = 1;
+	private static final int TYPE_AMOUNT = 2;
+
+	private final SyncableTank server = new SyncableTank(1000);
+
+	private static PacketBuffer initPacket(SyncableTank tank) {
+		final PacketBuffer buffer = new PacketBuffer(Unpooled.buffer());
+		tank.writeToStream(buffer);
+		return buffer;
+	}
+
+	private static PacketBuffer updatePacket(SyncableTank tank) {
+		final PacketBuffer buffer = new PacketBuffer(Unpooled.buffer());
+		tank.writeDeltaToStream(buffer);
+		return buffer;
+	}
+
+	private static int type(PacketBuffer buffer) {
+		return buffer.getByte(buffer.readerIndex());
+	}
+
+	private static void read(SyncableTank client, PacketBuffer buffer) throws IOException {
+		client.readFromStream(buffer.copy());
+	}
+
+	private static void assertContents(SyncableTank tank, FluidStack expected) {
+		final FluidStack actual = tank.getFluid();
+		if (expected == null) {
+			Assert.assertNull(actual);
+		} else {
+			Assert.assertNotNull(actual);
+			Assert.assertTrue(actual.isFluidEqual(expected));
+			Assert.assertEquals(expected.amount, actual.amount);
+		}
+	}
+
+	@Test
+	public void testUpdateTypes() throws IOException {
+		final SyncableTank client = new SyncableTank(1000);
+
+		server.fill(new FluidStack(FluidRegistry.WATER, 100), true);
+		server.markClean();
+		PacketBuffer update = updatePacket(server);
+		Assert.assertEquals(TYPE_FULL, type(update));
+		read(client, update);
+		assertContents(client, new FluidStack(FluidRegistry.WATER, 100));
+
+		server.fill(new FluidStack(FluidRegistry.WATER, 50), true);
+		server.markClean();
+		update = updatePacket(server);
+		Assert.assertEquals(TYPE_AMOUNT, type(update));
+		read(client, update);
+		assertContents(client, new FluidStack(FluidRegistry.WATER, 150));
+
+		server.setFluid(new FluidStack(FluidRegistry.LAVA, 20));
+		server.markClean();
+		update = updatePacket(server);
+		Assert.assertEquals(TYPE_FULL, type(update));
+		read(client, update);
+		assertContents(client, new FluidStack(FluidRegistry.LAVA, 20));
+
+		server.drain(1000, true);
+		server.markClean();
+		update = updatePacket(server);
+		Assert.assertEquals(TYPE_EMPTY, type(update));
+		read(client, update);
+		assertContents(client, null);
+	}
+
+	@Test
+	public void testFullWriteContainsUncommittedState() throws IOException {
+		server.fill(new FluidStack(FluidRegistry.WATER, 100), true);
+		server.markClean();
+
+		// not committed yet, but full write must still contain current contents
+		server.fill(new FluidStack(FluidRegistry.WATER, 30), true);
+
+		final SyncableTank client = new SyncableTank(1000);
+		read(client, initPacket(server));
+		assertContents(client, new FluidStack(FluidRegistry.WATER, 130));
+
+		server.markClean();
+		read(client, updatePacket(server));
+		assertContents(client, new FluidStack(FluidRegistry.WATER, 130));
+	}
+
+	@Test
+	public void testFullWriteWithoutMarkClean() throws IOException {
+		final SyncableTank client = new SyncableTank(1000);
+
+		server.fill(new FluidStack(FluidRegistry.WATER, 100), true);
+		read(client, initPacket(server));
+		assertContents(client, new FluidStack(FluidRegistry.WATER, 100));
+
+		server.setFluid(new FluidStack(FluidRegistry.LAVA, 40));
+		read(client, initPacket(server));
+		assertContents(client, new FluidStack(FluidRegistry.LAVA, 40));
+
+		server.drain(1000, true);
+		read(client, initPacket(server));
+		assertContents(client, null);
+	}
+
+	@Test
+	public void testLateUpdateAfterInit() throws IOException {
+		final SyncableTank oldClient = new SyncableTank(1000);
+
+		server.fill(new FluidStack(FluidRegistry.WATER, 100), true);
+		server.markClean();
+		read(oldClient, initPacket(server));
+
+		server.fill(new FluidStack(FluidRegistry.WATER, 50), true);
+		server.markClean();
+		final PacketBuffer update = updatePacket(server);
+
+		// update was batched, but init for same state was sent before it
+		final SyncableTank newClient = new SyncableTank(1000);
+		read(newClient, initPacket(server));
+		read(newClient, update);
+		assertContents(newClient, new FluidStack(FluidRegistry.WATER, 150));
+
+		read(oldClient, update);
+		assertContents(oldClient, new FluidStack(FluidRegistry.WATER, 150));
+
+		// and repeated
+		read(oldClient, update);
+		assertContents(oldClient, new FluidStack(FluidRegistry.WATER, 150));
+	}
+}
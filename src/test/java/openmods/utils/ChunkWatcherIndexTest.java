@@ -0,0 +1,157 @@
+package openmods.utils;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.Set;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProvider;
+import net.minecraftforge.event.world.ChunkWatchEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent.PlayerLoggedOutEvent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ChunkWatcherIndexTest {
+
+	// index is global, so every test gets own dimensions
+	private static int nextDimension = 1000;
+
+	private final ChunkWatcherIndex index = ChunkWatcherIndex.INSTANCE;
+
+	private final int dimension = nextDimension++;
+
+	private final int otherDimension = nextDimension++;
+
+	private static EntityPlayerMP player(int dimension) {
+		final EntityPlayerMP player = Mockito.mock(EntityPlayerMP.class);
+		player.dimension = dimension;
+		return player;
+	}
+
+	private void watch(EntityPlayerMP player, int x, int z) {
+		index.onChunkWatch(new ChunkWatchEvent.Watch(new ChunkPos(x, z), player));
+	}
+
+	private void unwatch(EntityPlayerMP player, int x, int z) {
+		index.onChunkUnwatch(new ChunkWatchEvent.UnWatch(new ChunkPos(x, z), player));
+	}
+
+	private Set<EntityPlayerMP> watching(int dimension, int x, int z) {
+		return index.getPlayersWatching(dimension, x, z);
+	}
+
+	@Test
+	public void testWatch() {
+		final EntityPlayerMP a = player(dimension);
+		final EntityPlayerMP b = player(dimension);
+
+		Assert.assertEquals(ImmutableSet.of(), watching(dimension, 1, 2));
+
+		watch(a, 1, 2);
+		watch(b, 1, 2);
+		watch(b, 3, 4);
+
+		Assert.assertEquals(ImmutableSet.of(a, b), watching(dimension, 1, 2));
+		Assert.assertEquals(ImmutableSet.of(b), watching(dimension, 3, 4));
+		Assert.assertEquals(ImmutableSet.of(), watching(dimension, 2, 1));
+		Assert.assertEquals(ImmutableSet.of(), watching(otherDimension, 1, 2));
+	}
+
+	@Test
+	public void testSnapshotSharedUntilChange() {
+		final EntityPlayerMP a = player(dimension);
+		final EntityPlayerMP b = player(dimension);
+
+		watch(a, 0, 0);
+		final Set<EntityPlayerMP> snapshot = watching(dimension, 0, 0);
+		Assert.assertSame(snapshot, watching(dimension, 0, 0));
+
+		watch(a, 0, 0);
+		Assert.assertSame(snapshot, watching(dimension, 0, 0));
+
+		watch(b, 0, 0);
+		Assert.assertEquals(ImmutableSet.of(a), snapshot);
+		Assert.assertEquals(ImmutableSet.of(a, b), watching(dimension, 0, 0));
+	}
+
+	@Test
+	public void testUnwatch() {
+		final EntityPlayerMP a = player(dimension);
+		final EntityPlayerMP b = player(dimension);
+
+		watch(a, 1, 2);
+		watch(b, 1, 2);
+
+		unwatch(a, 1, 2);
+		Assert.assertEquals(ImmutableSet.of(b), watching(dimension, 1, 2));
+
+		unwatch(b, 1, 2);
+		Assert.assertEquals(ImmutableSet.of(), watching(dimension, 1, 2));
+
+		// not watched - ignored
+		unwatch(b, 1, 2);
+		Assert.assertEquals(ImmutableSet.of(), watching(dimension, 1, 2));
+	}
+
+	@Test
+	public void testUnwatchFallsBackToAllDimensions() {
+		final EntityPlayerMP a = player(dimension);
+
+		watch(a, 5, 5);
+
+		// player is moved to new world before old chunks are unwatched
+		a.dimension = otherDimension;
+		unwatch(a, 5, 5);
+
+		Assert.assertEquals(ImmutableSet.of(), watching(dimension, 5, 5));
+	}
+
+	@Test
+	public void testDimensionChange() {
+		final EntityPlayerMP a = player(dimension);
+
+		watch(a, 0, 0);
+
+		a.dimension = otherDimension;
+		unwatch(a, 0, 0);
+		watch(a, 7, 7);
+
+		Assert.assertEquals(ImmutableSet.of(), watching(dimension, 0, 0));
+		Assert.assertEquals(ImmutableSet.of(a), watching(otherDimension, 7, 7));
+		Assert.assertEquals(ImmutableSet.of(), watching(dimension, 7, 7));
+	}
+
+	@Test
+	public void testLogout() {
+		final EntityPlayerMP a = player(dimension);
+		final EntityPlayerMP b = player(dimension);
+
+		watch(a, 0, 0);
+		watch(a, 0, 1);
+		watch(b, 0, 1);
+
+		a.dimension = otherDimension;
+		watch(a, 3, 3);
+
+		index.onPlayerLogout(new PlayerLoggedOutEvent(a));
+
+		Assert.assertEquals(ImmutableSet.of(), watching(dimension, 0, 0));
+		Assert.assertEquals(ImmutableSet.of(b), watching(dimension, 0, 1));
+		Assert.assertEquals(ImmutableSet.of(), watching(otherDimension, 3, 3));
+	}
+
+	@Test
+	public void testWorldUnload() {
+		final EntityPlayerMP a = player(dimension);
+		watch(a, 0, 0);
+
+		final World world = Mockito.mock(World.class);
+		world.provider = Mockito.mock(WorldProvider.class);
+		Mockito.when(world.provider.getDimension()).thenReturn(dimension);
+		index.onWorldUnload(new WorldEvent.Unload(world));
+
+		Assert.assertEquals(ImmutableSet.of(), watching(dimension, 0, 0));
+	}
+}
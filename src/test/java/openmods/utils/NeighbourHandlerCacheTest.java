@@ -0,0 +1,159 @@
+package openmods.utils;
+
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class NeighbourHandlerCacheTest {
+
+	private static final BlockPos OWNER = new BlockPos(15, 64, 0);
+
+	// across chunk border
+	private static final BlockPos NEIGHBOUR = OWNER.east();
+
+	private World world;
+
+	private int lookups;
+
+	private final NeighbourHandlerCache<String> cache = new NeighbourHandlerCache<String>() {
+		@Override
+		protected String findHandler(TileEntity te, EnumFacing side) {
+			Assert.assertEquals(EnumFacing.WEST, side);
+			lookups++;
+			return "handler:" + System.identityHashCode(te);
+		}
+	};
+
+	@Before
+	public void setup() {
+		world = Mockito.mock(World.class);
+		Mockito.when(world.isBlockLoaded(NEIGHBOUR)).thenReturn(true);
+		setTime(0);
+	}
+
+	private void setTime(long time) {
+		Mockito.when(world.getTotalWorldTime()).thenReturn(time);
+	}
+
+	private TileEntity placeTile() {
+		final TileEntity te = Mockito.mock(TileEntity.class);
+		Mockito.when(world.getTileEntity(NEIGHBOUR)).thenReturn(te);
+		return te;
+	}
+
+	private String get() {
+		return cache.get(world, OWNER, EnumFacing.EAST);
+	}
+
+	@Test
+	public void testHandlerCached() {
+		final TileEntity te = placeTile();
+		final String handler = get();
+		Assert.assertEquals("handler:" + System.identityHashCode(te), handler);
+		Assert.assertSame(handler, get());
+		Assert.assertEquals(1, lookups);
+	}
+
+	@Test
+	public void testHitDoesntQueryWorld() {
+		placeTile();
+		get();
+		get();
+		get();
+		Mockito.verify(world, Mockito.times(1)).isBlockLoaded(NEIGHBOUR);
+		Mockito.verify(world, Mockito.times(1)).getTileEntity(NEIGHBOUR);
+	}
+
+	@Test
+	public void testUnloadedNeighbourDroppedOnRecheck() {
+		placeTile();
+		Assert.assertNotNull(get());
+
+		// chunk unload doesn't invalidate tile
+		Mockito.when(world.isBlockLoaded(NEIGHBOUR)).thenReturn(false);
+		Assert.assertNotNull(get());
+
+		setTime(NeighbourHandlerCache.HANDLER_RECHECK_TICKS);
+		Assert.assertNull(get());
+	}
+
+	@Test
+	public void testInvalidateDropsHandler() {
+		placeTile();
+		Assert.assertNotNull(get());
+
+		Mockito.when(world.getTileEntity(NEIGHBOUR)).thenReturn(null);
+		Assert.assertNotNull(get());
+
+		cache.invalidate();
+		Assert.assertNull(get());
+	}
+
+	@Test
+	public void testInvalidateSideDropsHandler() {
+		placeTile();
+		get();
+
+		cache.invalidate(EnumFacing.WEST);
+		get();
+		Assert.assertEquals(1, lookups);
+
+		cache.invalidate(EnumFacing.EAST);
+		get();
+		Assert.assertEquals(2, lookups);
+	}
+
+	@Test
+	public void testReplacedNeighbourDropped() {
+		final TileEntity first = placeTile();
+		final String firstHandler = get();
+
+		// world invalidates replaced tile
+		Mockito.when(first.isInvalid()).thenReturn(true);
+		final TileEntity second = placeTile();
+		final String handler = get();
+		Assert.assertNotEquals(firstHandler, handler);
+		Assert.assertEquals("handler:" + System.identityHashCode(second), handler);
+	}
+
+	@Test
+	public void testInvalidNeighbourDropped() {
+		final TileEntity te = placeTile();
+		Assert.assertNotNull(get());
+
+		Mockito.when(te.isInvalid()).thenReturn(true);
+		Mockito.when(world.getTileEntity(NEIGHBOUR)).thenReturn(null);
+		Assert.assertNull(get());
+	}
+
+	@Test
+	public void testFoundHandlerRechecked() {
+		placeTile();
+		get();
+
+		setTime(NeighbourHandlerCache.HANDLER_RECHECK_TICKS - 1);
+		get();
+		Assert.assertEquals(1, lookups);
+
+		setTime(NeighbourHandlerCache.HANDLER_RECHECK_TICKS);
+		get();
+		Assert.assertEquals(2, lookups);
+	}
+
+	@Test
+	public void testMissingHandlerRechecked() {
+		Assert.assertNull(get());
+
+		placeTile();
+		setTime(NeighbourHandlerCache.HANDLER_RECHECK_TICKS - 1);
+		Assert.assertNull(get());
+
+		setTime(NeighbourHandlerCache.HANDLER_RECHECK_TICKS);
+		Assert.assertNotNull(get());
+	}
+}
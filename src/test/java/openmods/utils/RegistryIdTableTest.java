@@ -0,0 +1,139 @@
+package openmods.utils;
+
+import com.google.common.collect.Maps;
+import java.util.Map;
+import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.registries.IForgeRegistryEntry;
+import net.minecraftforge.registries.IForgeRegistryInternal;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+public class RegistryIdTableTest {
+
+	public static class TestEntry extends IForgeRegistryEntry.Impl<TestEntry> {
+		private final Class<?> cls;
+
+		public TestEntry(Class<?> cls) {
+			this.cls = cls;
+		}
+	}
+
+	private final CommonRegistryCallbacks<Class<?>, TestEntry> callbacks = new CommonRegistryCallbacks<Class<?>, TestEntry>() {
+		@Override
+		protected Class<?> getWrappedObject(TestEntry entry) {
+			return entry.cls;
+		}
+	};
+
+	private final TestEntry stringEntry = new TestEntry(String.class);
+
+	private final TestEntry integerEntry = new TestEntry(Integer.class);
+
+	private final TestEntry floatEntry = new TestEntry(Float.class);
+
+	private IForgeRegistryInternal<TestEntry> registry;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		final Map<ResourceLocation, Object> slaveMaps = Maps.newHashMap();
+		registry = Mockito.mock(IForgeRegistryInternal.class);
+
+		Mockito.doAnswer(invocation -> {
+			final Object[] args = invocation.getArguments();
+			slaveMaps.put((ResourceLocation)args[0], args[1]);
+			return null;
+		}).when(registry).setSlaveMap(Matchers.any(ResourceLocation.class), Matchers.any());
+
+		Mockito.when(registry.getSlaveMap(Matchers.any(ResourceLocation.class), Matchers.any(Class.class)))
+				.thenAnswer(invocation -> slaveMaps.get(invocation.getArguments()[0]));
+
+		callbacks.onCreate(registry, null);
+	}
+
+	private void add(int id, TestEntry entry) {
+		callbacks.onAdd(registry, null, id, entry, null);
+	}
+
+	private RegistryIdTable<Class<?>, TestEntry> getTable() {
+		return CommonRegistryCallbacks.getIdTable(registry);
+	}
+
+	@Test
+	public void testLookupAfterBake() {
+		add(0, stringEntry);
+		add(2, integerEntry);
+		callbacks.onBake(registry, null);
+
+		final RegistryIdTable<Class<?>, TestEntry> table = getTable();
+		Assert.assertEquals(2, table.size());
+
+		Assert.assertSame(stringEntry, table.getEntry(0));
+		Assert.assertNull(table.getEntry(1));
+		Assert.assertSame(integerEntry, table.getEntry(2));
+		Assert.assertNull(table.getEntry(3));
+		Assert.assertNull(table.getEntry(-1));
+
+		Assert.assertEquals(0, table.getId(stringEntry));
+		Assert.assertEquals(2, table.getId(integerEntry));
+		Assert.assertEquals(RegistryIdTable.NO_ID, table.getId(floatEntry));
+
+		Assert.assertEquals(0, table.getObjectId(String.class));
+		Assert.assertEquals(2, table.getObjectId(Integer.class));
+		Assert.assertEquals(RegistryIdTable.NO_ID, table.getObjectId(Float.class));
+	}
+
+	@Test
+	public void testTableReusedUntilChange() {
+		add(0, stringEntry);
+		callbacks.onBake(registry, null);
+
+		final RegistryIdTable<Class<?>, TestEntry> table = getTable();
+		Assert.assertSame(table, getTable());
+	}
+
+	@Test
+	public void testAddInvalidatesTable() {
+		add(0, stringEntry);
+		callbacks.onBake(registry, null);
+		final RegistryIdTable<Class<?>, TestEntry> oldTable = getTable();
+
+		add(1, floatEntry);
+		final RegistryIdTable<Class<?>, TestEntry> newTable = getTable();
+		Assert.assertNotSame(oldTable, newTable);
+		Assert.assertSame(floatEntry, newTable.getEntry(1));
+		Assert.assertEquals(1, newTable.getObjectId(Float.class));
+
+		// snapshots are frozen
+		Assert.assertNull(oldTable.getEntry(1));
+		Assert.assertEquals(RegistryIdTable.NO_ID, oldTable.getObjectId(Float.class));
+	}
+
+	@Test
+	public void testClearInvalidatesTable() {
+		add(0, stringEntry);
+		add(1, integerEntry);
+		callbacks.onBake(registry, null);
+		Assert.assertEquals(2, getTable().size());
+
+		callbacks.onClear(registry, null);
+		final RegistryIdTable<Class<?>, TestEntry> table = getTable();
+		Assert.assertEquals(0, table.size());
+		Assert.assertNull(table.getEntry(0));
+		Assert.assertEquals(RegistryIdTable.NO_ID, table.getId(stringEntry));
+	}
+
+	@Test
+	public void testLazyRebuildWithoutBake() {
+		// i.e. id sync from server, which adds entries without bake
+		add(3, integerEntry);
+
+		final RegistryIdTable<Class<?>, TestEntry> table = getTable();
+		Assert.assertSame(integerEntry, table.getEntry(3));
+		Assert.assertEquals(3, table.getObjectId(Integer.class));
+		Assert.assertSame(table, getTable());
+	}
+}
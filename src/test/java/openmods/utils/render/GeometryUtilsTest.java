@@ -0,0 +1,182 @@
+package openmods.utils.render;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import openmods.shapes.IShapeable;
+import openmods.shapes.ISpanShapeable;
+import openmods.shapes.VoxelSet;
+import openmods.utils.Coord;
+import openmods.utils.render.GeometryUtils.Octant;
+import openmods.utils.render.GeometryUtils.Quadrant;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares generated shapes with blocks recorded from previous, block-by-block implementation (cylinders as stacked ellipses).
+ * Coordinates are sorted, duplicates are intentional - some blocks on symmetry planes were always emitted twice.
+ */
+public class GeometryUtilsTest {
+
+	// ellipsoid, 5 blocks wide, all octants
+	private static final String ELLIPSOID_5 =
+			"-2,-1,-1 -2,-1,0 -2,-1,0 -2,-1,1 -2,0,-1 -2,0,-1 -2,0,0 -2,0,0 -2,0,0 -2,0,0 -2,0,1 -2,0,1 " +
+			"-2,1,-1 -2,1,0 -2,1,0 -2,1,1 -1,-2,-1 -1,-2,0 -1,-2,0 -1,-2,1 -1,-1,-2 -1,-1,2 -1,0,-2 -1,0,-2 " +
+			"-1,0,2 -1,0,2 -1,1,-2 -1,1,2 -1,2,-1 -1,2,0 -1,2,0 -1,2,1 0,-2,-1 0,-2,-1 0,-2,0 0,-2,0 " +
+			"0,-2,0 0,-2,0 0,-2,1 0,-2,1 0,-1,-2 0,-1,-2 0,-1,2 0,-1,2 0,0,-2 0,0,-2 0,0,-2 0,0,-2 " +
+			"0,0,2 0,0,2 0,0,2 0,0,2 0,1,-2 0,1,-2 0,1,2 0,1,2 0,2,-1 0,2,-1 0,2,0 0,2,0 " +
+			"0,2,0 0,2,0 0,2,1 0,2,1 1,-2,-1 1,-2,0 1,-2,0 1,-2,1 1,-1,-2 1,-1,2 1,0,-2 1,0,-2 " +
+			"1,0,2 1,0,2 1,1,-2 1,1,2 1,2,-1 1,2,0 1,2,0 1,2,1 2,-1,-1 2,-1,0 2,-1,0 2,-1,1 " +
+			"2,0,-1 2,0,-1 2,0,0 2,0,0 2,0,0 2,0,0 2,0,1 2,0,1 2,1,-1 2,1,0 2,1,0 2,1,1";
+
+	// ellipsoid, 4 blocks wide (middle layers removed), all octants
+	private static final String ELLIPSOID_4 =
+			"0,1,1 0,1,2 0,2,1 0,2,2 1,0,1 1,0,2 1,1,0 1,1,3 1,2,0 1,2,3 1,3,1 1,3,2 " +
+			"2,0,1 2,0,2 2,1,0 2,1,3 2,2,0 2,2,3 2,3,1 2,3,2 3,1,1 3,1,2 3,2,1 3,2,2";
+
+	// ellipsoid, 7x4x5, top octants
+	private static final String ELLIPSOID_7_4_5_TOP =
+			"0,2,2 0,2,2 1,2,1 1,2,3 1,3,2 1,3,2 2,2,0 2,2,4 2,3,1 2,3,2 2,3,2 2,3,3 " +
+			"3,2,0 3,2,0 3,2,4 3,2,4 3,3,1 3,3,1 3,3,2 3,3,2 3,3,2 3,3,2 3,3,3 3,3,3 " +
+			"4,2,0 4,2,4 4,3,1 4,3,2 4,3,2 4,3,3 5,2,1 5,2,3 5,3,2 5,3,2 6,2,2 6,2,2";
+
+	// ellipsoid, 8x5x4, north octants
+	private static final String ELLIPSOID_8_5_4_NORTH =
+			"-3,3,0 -3,3,0 -2,2,0 -2,3,0 -2,3,0 -2,4,0 -1,1,0 -1,2,-1 -1,3,-1 -1,3,-1 -1,4,-1 -1,5,0 " +
+			"0,1,0 0,2,-1 0,3,-1 0,3,-1 0,4,-1 0,5,0 1,1,0 1,2,-1 1,3,-1 1,3,-1 1,4,-1 1,5,0 " +
+			"2,1,0 2,2,-1 2,3,-1 2,3,-1 2,4,-1 2,5,0 3,2,0 3,3,0 3,3,0 3,4,0 4,3,0 4,3,0";
+
+	// ellipsoid with radius 3x2x4, two opposite octants
+	private static final String ELLIPSOID_R3_2_4_OPPOSITE =
+			"-3,0,0 -3,0,1 -3,0,2 -3,1,0 -3,1,1 -2,0,3 -2,1,1 -2,1,2 -2,1,3 -2,2,0 -1,0,4 -1,1,3 " +
+			"-1,2,0 -1,2,1 -1,2,2 0,-2,-2 0,-2,-1 0,-2,0 0,-1,-4 0,-1,-3 0,0,-4 0,0,4 0,1,3 0,1,4 " +
+			"0,2,0 0,2,1 0,2,2 1,-2,-2 1,-2,-1 1,-2,0 1,-1,-3 1,0,-4 2,-2,0 2,-1,-3 2,-1,-2 2,-1,-1 " +
+			"2,0,-3 3,-1,-1 3,-1,0 3,0,-2 3,0,-1 3,0,0";
+
+	// ellipsoid, 10x7x8, all octants
+	private static final String ELLIPSOID_10_7_8 =
+			"0,2,3 0,2,4 0,3,3 0,3,3 0,3,4 0,3,4 0,4,3 0,4,4 1,1,3 1,1,4 1,2,2 1,2,5 " +
+			"1,3,1 1,3,1 1,3,2 1,3,2 1,3,5 1,3,5 1,3,6 1,3,6 1,4,2 1,4,5 1,5,3 1,5,4 " +
+			"2,1,2 2,1,3 2,1,4 2,1,5 2,2,1 2,2,6 2,3,1 2,3,1 2,3,6 2,3,6 2,4,1 2,4,6 " +
+			"2,5,2 2,5,3 2,5,4 2,5,5 3,0,3 3,0,4 3,1,1 3,1,2 3,1,5 3,1,6 3,2,1 3,2,6 " +
+			"3,3,0 3,3,0 3,3,7 3,3,7 3,4,1 3,4,6 3,5,1 3,5,2 3,5,5 3,5,6 3,6,3 3,6,4 " +
+			"4,0,2 4,0,3 4,0,4 4,0,5 4,1,1 4,1,6 4,2,0 4,2,7 4,3,0 4,3,0 4,3,7 4,3,7 " +
+			"4,4,0 4,4,7 4,5,1 4,5,6 4,6,2 4,6,3 4,6,4 4,6,5 5,0,2 5,0,3 5,0,4 5,0,5 " +
+			"5,1,1 5,1,6 5,2,0 5,2,7 5,3,0 5,3,0 5,3,7 5,3,7 5,4,0 5,4,7 5,5,1 5,5,6 " +
+			"5,6,2 5,6,3 5,6,4 5,6,5 6,0,3 6,0,4 6,1,1 6,1,2 6,1,5 6,1,6 6,2,1 6,2,6 " +
+			"6,3,0 6,3,0 6,3,7 6,3,7 6,4,1 6,4,6 6,5,1 6,5,2 6,5,5 6,5,6 6,6,3 6,6,4 " +
+			"7,1,2 7,1,3 7,1,4 7,1,5 7,2,1 7,2,6 7,3,1 7,3,1 7,3,6 7,3,6 7,4,1 7,4,6 " +
+			"7,5,2 7,5,3 7,5,4 7,5,5 8,1,3 8,1,4 8,2,2 8,2,5 8,3,1 8,3,1 8,3,2 8,3,2 " +
+			"8,3,5 8,3,5 8,3,6 8,3,6 8,4,2 8,4,5 8,5,3 8,5,4 9,2,3 9,2,4 9,3,3 9,3,3 " +
+			"9,3,4 9,3,4 9,4,3 9,4,4";
+
+	// cylinder, 5x2x5, all quadrants
+	private static final String CYLINDER_5_2_5 =
+			"0,0,1 0,0,2 0,0,2 0,0,3 0,1,1 0,1,2 0,1,2 0,1,3 1,0,0 1,0,4 1,1,0 1,1,4 " +
+			"2,0,0 2,0,0 2,0,4 2,0,4 2,1,0 2,1,0 2,1,4 2,1,4 3,0,0 3,0,4 3,1,0 3,1,4 " +
+			"4,0,1 4,0,2 4,0,2 4,0,3 4,1,1 4,1,2 4,1,2 4,1,3";
+
+	// ellipse, 6x6, all quadrants
+	private static final String ELLIPSE_6_6 =
+			"-2,3,1 -2,3,2 -1,3,0 -1,3,3 0,3,-1 0,3,4 1,3,-1 1,3,4 2,3,0 2,3,3 3,3,1 3,3,2";
+
+	// cylinder, 6x3x4, two quadrants
+	private static final String CYLINDER_6_3_4_TWO =
+			"0,0,2 0,1,2 0,2,2 1,0,3 1,1,3 1,2,3 2,0,3 2,1,3 2,2,3 3,0,0 3,1,0 3,2,0 " +
+			"4,0,0 4,1,0 4,2,0 5,0,1 5,1,1 5,2,1";
+
+	// ellipse with radius 3x2, one quadrant
+	private static final String ELLIPSE_R3_2_ONE =
+			"-3,5,-1 -3,5,0 -2,5,-2 -1,5,-2 0,5,-2";
+
+	// cylinder with radius 2x4, 3 layers, one quadrant
+	private static final String CYLINDER_R2_4_ONE =
+			"0,-1,4 0,0,4 0,1,4 1,-1,3 1,-1,4 1,0,3 1,0,4 1,1,3 1,1,4 2,-1,0 2,-1,1 2,-1,2 " +
+			"2,0,0 2,0,1 2,0,2 2,1,0 2,1,1 2,1,2";
+
+	// ellipse, 10x11, all quadrants
+	private static final String ELLIPSE_10_11 =
+			"-4,2,-2 -4,2,-1 -4,2,0 -4,2,0 -4,2,1 -4,2,2 -3,2,-3 -3,2,3 -2,2,-4 -2,2,4 -1,2,-5 -1,2,5 " +
+			"0,2,-5 0,2,5 1,2,-5 1,2,5 2,2,-5 2,2,5 3,2,-4 3,2,4 4,2,-3 4,2,3 5,2,-2 5,2,-1 " +
+			"5,2,0 5,2,0 5,2,1 5,2,2";
+
+	private static Multiset<Coord> parse(String coords) {
+		final Multiset<Coord> result = HashMultiset.create();
+		for (String coord : coords.split(" ")) {
+			final String[] parts = coord.split(",");
+			result.add(new Coord(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+		}
+		return result;
+	}
+
+	private static Multiset<Coord> generate(Consumer<IShapeable> generator) {
+		final Multiset<Coord> result = HashMultiset.create();
+		generator.accept((x, y, z) -> result.add(new Coord(x, y, z)));
+		return result;
+	}
+
+	private static Multiset<Coord> generateSpans(Consumer<IShapeable> generator) {
+		final Multiset<Coord> result = HashMultiset.create();
+		generator.accept(new ISpanShapeable() {
+			@Override
+			public void setBlock(int x, int y, int z) {
+				result.add(new Coord(x, y, z));
+			}
+
+			@Override
+			public void setSpan(int x, int y, int zFrom, int zTo) {
+				Assert.assertTrue(zFrom <= zTo);
+				for (int z = zFrom; z <= zTo; z++)
+					result.add(new Coord(x, y, z));
+			}
+		});
+		return result;
+	}
+
+	private static void check(String expected, Consumer<IShapeable> generator) {
+		final Multiset<Coord> expectedCoords = parse(expected);
+		Assert.assertEquals(expectedCoords, generate(generator));
+		Assert.assertEquals(expectedCoords, generateSpans(generator));
+	}
+
+	private static void checkEllipsoid(String expected, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, Set<Octant> octants) {
+		check(expected, shapeable -> GeometryUtils.makeEllipsoid(minX, minY, minZ, maxX, maxY, maxZ, shapeable, octants));
+
+		final VoxelSet voxels = GeometryUtils.makeEllipsoidVoxels(minX, minY, minZ, maxX, maxY, maxZ, octants);
+		Assert.assertEquals(parse(expected).elementSet(), generate(voxels::forEach).elementSet());
+	}
+
+	private static void checkCylinder(String expected, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, Set<Quadrant> quadrants) {
+		check(expected, shapeable -> GeometryUtils.makeEllipticCylinder(minX, minY, minZ, maxX, maxY, maxZ, shapeable, quadrants));
+	}
+
+	@Test
+	public void testEllipsoids() {
+		checkEllipsoid(ELLIPSOID_5, -2, -2, -2, 2, 2, 2, Octant.ALL);
+		checkEllipsoid(ELLIPSOID_4, 0, 0, 0, 3, 3, 3, Octant.ALL);
+		checkEllipsoid(ELLIPSOID_7_4_5_TOP, 0, 0, 0, 6, 3, 4, Octant.TOP);
+		checkEllipsoid(ELLIPSOID_8_5_4_NORTH, -3, 1, -2, 4, 5, 1, Octant.NORTH);
+		checkEllipsoid(ELLIPSOID_10_7_8, 0, 0, 0, 9, 6, 7, Octant.ALL);
+	}
+
+	@Test
+	public void testEllipsoidFromRadius() {
+		check(ELLIPSOID_R3_2_4_OPPOSITE, shapeable -> GeometryUtils.makeEllipsoid(3, 2, 4, shapeable, EnumSet.of(Octant.TopSouthWest, Octant.BottomNorthEast)));
+	}
+
+	@Test
+	public void testCylinders() {
+		checkCylinder(CYLINDER_5_2_5, 0, 0, 0, 4, 1, 4, Quadrant.ALL);
+		checkCylinder(CYLINDER_6_3_4_TWO, 0, 0, 0, 5, 2, 3, EnumSet.of(Quadrant.TopNorthEast, Quadrant.TopSouthWest));
+		check(CYLINDER_R2_4_ONE, shapeable -> GeometryUtils.makeEllipticCylinder(2, 4, -1, 1, shapeable, EnumSet.of(Quadrant.TopSouthEast)));
+	}
+
+	@Test
+	public void testEllipses() {
+		check(ELLIPSE_6_6, shapeable -> GeometryUtils.makeEllipse(-2, -1, 3, 4, 3, shapeable, Quadrant.ALL));
+		check(ELLIPSE_10_11, shapeable -> GeometryUtils.makeEllipse(-4, -5, 5, 5, 2, shapeable, Quadrant.ALL));
+		check(ELLIPSE_R3_2_ONE, shapeable -> GeometryUtils.makeEllipse(3, 2, 5, shapeable, EnumSet.of(Quadrant.TopNorthWest)));
+	}
+}
@@ -0,0 +1,196 @@
+package openmods.world;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import net.minecraft.world.World;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+import net.minecraftforge.fml.common.gameevent.TickEvent.WorldTickEvent;
+import net.minecraftforge.fml.relauncher.Side;
+import openmods.LibConfig;
+import openmods.world.DelayedActionTickHandler.Priority;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DelayedActionTickHandlerTest {
+
+	private static int nextDimension = 100;
+
+	private final DelayedActionTickHandler handler = DelayedActionTickHandler.INSTANCE;
+
+	private final List<String> log = Lists.newArrayList();
+
+	private float prevBudget;
+
+	@Before
+	public void setup() {
+		prevBudget = LibConfig.delayedActionTickBudget;
+		LibConfig.delayedActionTickBudget = 0;
+	}
+
+	@After
+	public void cleanup() {
+		LibConfig.delayedActionTickBudget = prevBudget;
+	}
+
+	// every test gets own queues
+	private static World newWorld() {
+		return MockWorlds.world(nextDimension++);
+	}
+
+	private void tick(World world) {
+		handler.onWorldTick(new WorldTickEvent(Side.SERVER, Phase.END, world));
+	}
+
+	private Runnable entry(String value) {
+		return () -> log.add(value);
+	}
+
+	private void assertLog(String... values) {
+		Assert.assertEquals(Lists.newArrayList(values), log);
+		log.clear();
+	}
+
+	@Test
+	public void testOrderAndPriorities() {
+		final World world = newWorld();
+		handler.addTickCallback(world, entry("n1"));
+		handler.addTickCallback(world, Priority.LOW, entry("l1"));
+		handler.addTickCallback(world, Priority.HIGH, entry("h1"));
+		handler.addTickCallback(world, entry("n2"));
+		handler.addTickCallback(world, Priority.HIGH, () -> {
+			log.add("h2");
+			handler.addTickCallback(world, Priority.HIGH, entry("h3"));
+		});
+
+		Assert.assertEquals(5, handler.getStats(world.provider.getDimension()).getQueueDepth());
+		assertLog();
+
+		tick(world);
+		assertLog("h1", "h2", "h3", "n1", "n2", "l1");
+
+		final DelayedActionTickHandler.Stats stats = handler.getStats(world.provider.getDimension());
+		Assert.assertEquals(0, stats.getQueueDepth());
+		Assert.assertEquals(6, stats.getExecutedCount());
+	}
+
+	@Test
+	public void testDimensions() {
+		final World nether = MockWorlds.world(-1);
+		final World other = MockWorlds.world(123456);
+
+		handler.addTickCallback(nether, entry("nether"));
+		handler.addTickCallback(other, entry("other"));
+
+		tick(other);
+		assertLog("other");
+		tick(nether);
+		assertLog("nether");
+	}
+
+	@Test
+	public void testDelayedCallbacks() {
+		final World world = newWorld();
+		handler.addDelayedCallback(world, 2, entry("d2"));
+		handler.addDelayedCallback(world, 0, entry("d0"));
+		handler.addDelayedCallback(world, 1, Priority.LOW, entry("d1"));
+		handler.addDelayedCallback(world, 1, Priority.HIGH, () -> {
+			log.add("h1");
+			handler.addDelayedCallback(world, 1, entry("nested"));
+		});
+		Assert.assertEquals(4, handler.getStats(world.provider.getDimension()).getQueueDepth());
+
+		tick(world);
+		assertLog("d0");
+		tick(world);
+		assertLog("h1", "d1");
+		tick(world);
+		assertLog("d2", "nested");
+		tick(world);
+		assertLog();
+		Assert.assertEquals(0, handler.getStats(world.provider.getDimension()).getQueueDepth());
+	}
+
+	private Runnable slowEntry(String value) {
+		return () -> {
+			log.add(value);
+			final long end = System.nanoTime() + 2000000;
+			while (System.nanoTime() < end) {}
+		};
+	}
+
+	@Test
+	public void testBudgetCarriesOver() {
+		LibConfig.delayedActionTickBudget = 1;
+		final World world = newWorld();
+		handler.addTickCallback(world, slowEntry("a"));
+		handler.addTickCallback(world, slowEntry("b"));
+		handler.addTickCallback(world, Priority.LOW, slowEntry("c"));
+
+		tick(world);
+		assertLog("a");
+
+		handler.addTickCallback(world, Priority.HIGH, slowEntry("h"));
+		tick(world);
+		assertLog("h");
+		tick(world);
+		assertLog("b");
+		tick(world);
+		assertLog("c");
+		tick(world);
+		assertLog();
+
+		final DelayedActionTickHandler.Stats stats = handler.getStats(world.provider.getDimension());
+		Assert.assertEquals(3, stats.getDeferredTicks());
+		Assert.assertEquals(4, stats.getExecutedCount());
+		Assert.assertTrue(stats.getMaxTickNanos() >= 2000000);
+	}
+
+	@Test
+	public void testWorldUnloadDropsCallbacks() {
+		final World world = newWorld();
+		handler.addTickCallback(world, entry("ready"));
+		handler.addDelayedCallback(world, 2, entry("delayed"));
+		tick(world);
+		assertLog("ready");
+
+		handler.addTickCallback(world, entry("dropped"));
+		handler.onWorldUnload(new WorldEvent.Unload(world));
+		Assert.assertEquals(0, handler.getStats(world.provider.getDimension()).getQueueDepth());
+
+		tick(world);
+		tick(world);
+		tick(world);
+		assertLog();
+	}
+
+	@Test
+	public void testRemoveAll() {
+		final World nether = MockWorlds.world(-1);
+		final World other = MockWorlds.world(654321);
+
+		handler.addTickCallback(nether, entry("nether"));
+		handler.addDelayedCallback(other, 1, entry("other"));
+		handler.removeAll();
+
+		tick(nether);
+		tick(other);
+		tick(other);
+		assertLog();
+	}
+
+	@Test
+	public void testStatsDontCreateQueues() {
+		final World world = newWorld();
+		final DelayedActionTickHandler.Stats before = handler.getStats(world.provider.getDimension());
+		Assert.assertEquals(0, before.getQueueDepth());
+
+		handler.addTickCallback(world, entry("a"));
+		Assert.assertNotSame(before, handler.getStats(world.provider.getDimension()));
+		Assert.assertEquals(1, handler.getStats(world.provider.getDimension()).getQueueDepth());
+		tick(world);
+		assertLog("a");
+	}
+}
@@ -0,0 +1,71 @@
+package openmods.world;
+
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import openmods.world.DropCapture.CaptureContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DropCaptureTest {
+
+	private final DropCapture capture = new DropCapture();
+
+	private static AxisAlignedBB item(double x, double y, double z) {
+		return new AxisAlignedBB(x - 0.125, y, z - 0.125, x + 0.125, y + 0.25, z + 0.125);
+	}
+
+	@Test
+	public void testDimensions() {
+		final CaptureContext context = capture.start(MockWorlds.world(0), new BlockPos(5, 64, 5));
+		Assert.assertSame(context, capture.findContext(0, item(5.5, 64.5, 5.5)));
+		Assert.assertNull(capture.findContext(1, item(5.5, 64.5, 5.5)));
+		Assert.assertNull(capture.findContext(0, item(7.5, 64.5, 5.5)));
+
+		Assert.assertTrue(context.stop().isEmpty());
+		Assert.assertNull(capture.findContext(0, item(5.5, 64.5, 5.5)));
+		// second stop is ignored
+		context.stop();
+	}
+
+	@Test
+	public void testChunkBorders() {
+		final CaptureContext context = capture.start(MockWorlds.world(0), new AxisAlignedBB(15, 0, -17, 17, 1, -15));
+		Assert.assertSame(context, capture.findContext(0, item(16.5, 0.5, -16.5)));
+		Assert.assertSame(context, capture.findContext(0, item(15.5, 0.5, -15.5)));
+		Assert.assertSame(context, capture.findContext(0, item(16, 0.5, -16)));
+		Assert.assertNull(capture.findContext(0, item(18, 0.5, -16)));
+		context.stop();
+	}
+
+	@Test
+	public void testOldestContextWins() {
+		final World world = MockWorlds.world(0);
+		final CaptureContext big = capture.start(world, new AxisAlignedBB(-1000, 0, -1000, 1000, 256, 1000));
+		final CaptureContext small = capture.start(world, new BlockPos(100, 10, 100));
+		Assert.assertSame(big, capture.findContext(0, item(100.5, 10.5, 100.5)));
+
+		big.stop();
+		Assert.assertSame(small, capture.findContext(0, item(100.5, 10.5, 100.5)));
+		Assert.assertNull(capture.findContext(0, item(-500, 10.5, 100.5)));
+
+		final CaptureContext later = capture.start(world, new BlockPos(100, 10, 100));
+		Assert.assertSame(small, capture.findContext(0, item(100.5, 10.5, 100.5)));
+		small.stop();
+		Assert.assertSame(later, capture.findContext(0, item(100.5, 10.5, 100.5)));
+		later.stop();
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testAnyDimension() {
+		final CaptureContext dimensionContext = capture.start(MockWorlds.world(3), new BlockPos(0, 0, 0));
+		final CaptureContext anyContext = capture.start(new BlockPos(0, 0, 0));
+		Assert.assertSame(dimensionContext, capture.findContext(3, item(0.5, 0.5, 0.5)));
+		Assert.assertSame(anyContext, capture.findContext(-1, item(0.5, 0.5, 0.5)));
+		dimensionContext.stop();
+		Assert.assertSame(anyContext, capture.findContext(3, item(0.5, 0.5, 0.5)));
+		anyContext.stop();
+		Assert.assertNull(capture.findContext(3, item(0.5, 0.5, 0.5)));
+	}
+}
@@ -0,0 +1,24 @@
+package openmods.world;
+
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProvider;
+import net.minecraft.world.WorldServer;
+import org.mockito.Mockito;
+
+public class MockWorlds {
+
+	private static <T extends World> T create(Class<T> cls, int dimension) {
+		final T world = Mockito.mock(cls);
+		world.provider = Mockito.mock(WorldProvider.class);
+		Mockito.when(world.provider.getDimension()).thenReturn(dimension);
+		return world;
+	}
+
+	public static World world(int dimension) {
+		return create(World.class, dimension);
+	}
+
+	public static WorldServer serverWorld(int dimension) {
+		return create(WorldServer.class, dimension);
+	}
+}